@@ -3,7 +3,9 @@ package com.joshlong.mogul.api;
 import com.joshlong.mogul.api.utils.ReflectionUtils;
 import com.joshlong.mogul.api.utils.TypeUtils;
 import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 
 import java.util.Collection;
 import java.util.Map;
@@ -29,6 +31,19 @@ public abstract class AbstractDomainService<M, R extends DomainResolver<M, ?>> {
 
 	private final Map<String, Class<?>> typeMap = new ConcurrentHashMap<>();
 
+	/**
+	 * the resolver for each entity class, worked out the first time we're asked, rather
+	 * than by asking every resolver every time.
+	 */
+	private final ClassValue<R> resolversByClass = new ClassValue<>() {
+
+		@Override
+		protected R computeValue(Class<?> type) {
+			return resolverForClass(type);
+		}
+
+	};
+
 	protected AbstractDomainService(Collection<R> resolvers) {
 		this.resolvers = resolvers;
 		initializeTypeMap();
@@ -76,10 +91,28 @@ public abstract class AbstractDomainService<M, R extends DomainResolver<M, ?>> {
 	}
 
 	protected R findResolver(Class<? extends M> entityClass) {
-		return resolvers.stream()
-			.filter(repo -> repo.supports(entityClass))
-			.findFirst()
-			.orElseThrow(() -> new IllegalArgumentException("No repository found for " + entityClass.getName()));
+		var resolver = this.resolversByClass.get(entityClass);
+		if (resolver == null)
+			throw new IllegalArgumentException("No repository found for " + entityClass.getName());
+		return resolver;
+	}
+
+	/**
+	 * the first resolver that supports the class or, failing that, its nearest superclass
+	 * or, failing that, one of its interfaces, so that subclasses and proxies
+	 * (class-based or JDK) of an entity resolve as the entity does.
+	 */
+	private @Nullable R resolverForClass(Class<?> entityClass) {
+		for (var clzz = entityClass; clzz != null && clzz != Object.class; clzz = clzz.getSuperclass())
+			for (var resolver : this.resolvers)
+				if (resolver.supports(clzz))
+					return resolver;
+		// all a JDK proxy has in common with the entity is its interfaces
+		for (var iface : ClassUtils.getAllInterfacesForClassAsSet(entityClass))
+			for (var resolver : this.resolvers)
+				if (resolver.supports(iface))
+					return resolver;
+		return null;
 	}
 
 	protected <T extends M> T findEntity(Class<T> entityClass, Long key) {
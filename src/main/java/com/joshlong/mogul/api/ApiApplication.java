@@ -21,7 +21,6 @@ import org.springframework.integration.annotation.IntegrationComponentScan;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 
-import java.time.Duration;
 import java.time.format.DateTimeFormatter;
 import java.util.EventObject;
 
@@ -40,7 +39,7 @@ public class ApiApplication {
 		var ccm = new CaffeineCacheManager();//
 		var caffeine = Caffeine.newBuilder()//
 			.maximumSize(properties.cache().maxEntries())//
-			.expireAfterWrite(Duration.ofDays(1))
+			.expireAfterWrite(properties.cache().ttl())
 			.recordStats();//
 		ccm.setCaffeine(caffeine);
 		return ccm;
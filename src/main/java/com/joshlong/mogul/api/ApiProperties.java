@@ -1,21 +1,44 @@
 package com.joshlong.mogul.api;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 import java.io.File;
 import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
 
 @ConfigurationProperties(prefix = "mogul")
 public record ApiProperties(Aws aws, ManagedFiles managedFiles, Transcripts transcripts, Podcasts podcasts, Cache cache,
-		Feeds feeds, Amqp amqp, Notifications notifications, Settings settings, boolean debug) {
+		Feeds feeds, Amqp amqp, Notifications notifications, Settings settings, Workspaces workspaces,
+		Processes processes, Search search, boolean debug) {
 
 	public record Feeds(String elementPrefix, String namespace) {
 	}
 
-	public record Amqp(String settingsEvents) {
+	public record Amqp(String settingsEvents, String cacheInvalidations) {
 	}
 
-	public record Cache(int maxEntries) {
+	public record Cache(int maxEntries, Duration ttl, Postgres postgres) {
+
+		/**
+		 * configures the second-tier cache that lives in a PostgreSQL unlogged table and
+		 * is shared by every replica.
+		 *
+		 * @param ttl how long an entry lives in the shared table. It may be no longer
+		 * than the local tier's {@link Cache#ttl()}, because a stale value written late
+		 * by one replica is copied into every replica's local tier until it expires here.
+		 * @param caches the caches that get a second tier, each with the one type of
+		 * value that it holds
+		 */
+		public record Postgres(boolean enabled, Duration ttl, Map<String, Class<?>> caches) {
+
+			public Set<String> cacheNames() {
+				return this.caches.keySet();
+			}
+
+		}
 	}
 
 	public record Notifications(Ably ably) {
@@ -24,7 +47,88 @@ public record ApiProperties(Aws aws, ManagedFiles managedFiles, Transcripts tran
 
 	}
 
-	public record Transcripts(File root) {
+	/**
+	 * @param chunksInFlight how many chunks of a single file may be with the
+	 * transcription model at once
+	 * @param concurrency how many files may be transcribed at once, across every mogul
+	 * @param lease how long a node may hold a transcription request without renewing its
+	 * claim, before another node may take it over
+	 * @param chunkCacheTtl how long we reuse what the transcription model said about a
+	 * chunk of audio before we ask it again
+	 */
+	public record Transcripts(int chunksInFlight, int concurrency, Duration lease, Duration chunkCacheTtl) {
+	}
+
+	/**
+	 * scratch directories for the media pipeline.
+	 *
+	 * @param root the directory under which every workspace is created
+	 * @param quota the most bytes all the workspaces on this node may use before we
+	 * refuse to create new ones
+	 * @param orphanTtl how long a directory that no live workspace owns may sit idle
+	 * before it's deleted
+	 */
+	public record Workspaces(File root, DataSize quota, Duration orphanTtl) {
+	}
+
+	/**
+	 * the command line tools, like {@code ffmpeg}, that the media pipeline runs.
+	 *
+	 * @param timeout how long a process may run before it's killed
+	 * @param concurrency how many processes of each tool (by name, like {@code ffmpeg})
+	 * may run at once on this node
+	 */
+	public record Processes(Duration timeout, Map<String, Integer> concurrency) {
+	}
+
+	/**
+	 * @param backend which search index to use
+	 * @param bulk how we batch documents on their way to the search index
+	 * @param outbox how we drain the searchables that have changed into the index
+	 * @param lucene the embedded index, if that's the backend
+	 */
+	public record Search(Backend backend, Bulk bulk, Outbox outbox, Lucene lucene) {
+
+		public enum Backend {
+
+			/** a (remote) Elasticsearch cluster */
+			ELASTIC,
+
+			/** an embedded, on-disk Lucene index, for a single node */
+			LUCENE
+
+		}
+
+		/**
+		 * @param directory where the index lives
+		 * @param commitInterval how often to commit the index to disk. Searches see
+		 * changes well before they're committed, but a crash loses whatever wasn't. What
+		 * comes through the outbox is committed right away.
+		 */
+		public record Lucene(File directory, Duration commitInterval) {
+		}
+
+		/**
+		 * @param debounce how long a searchable must go without changing before we index
+		 * it, so that a burst of changes is indexed once
+		 * @param maxDelay the longest a change waits to be indexed, however often the
+		 * searchable keeps changing
+		 * @param batchSize the most searchables to index at a time
+		 * @param maxAttempts how many times to try a searchable the index rejects before
+		 * giving up on it
+		 */
+		public record Outbox(Duration debounce, Duration maxDelay, int batchSize, int maxAttempts) {
+		}
+
+		/**
+		 * a batch is sent when it has {@code maxActions} documents, or when they add up
+		 * to {@code maxSize}, or when the oldest of them has waited {@code maxAge},
+		 * whichever comes first. These are only checked as documents are added, so
+		 * {@code maxAge} doesn't send a batch that has stopped growing. Whatever is left
+		 * is sent once everything has been added.
+		 */
+		public record Bulk(int maxActions, DataSize maxSize, Duration maxAge) {
+		}
 	}
 
 	public record Settings(String password, String salt) {
@@ -35,15 +139,67 @@ public record ApiProperties(Aws aws, ManagedFiles managedFiles, Transcripts tran
 		}
 	}
 
-	public record ManagedFiles(S3 s3) {
-		public record S3(String bucket) {
+	public record ManagedFiles(S3 s3, LocalCache cache) {
+
+		/**
+		 * a node-local, size-bounded cache of managed files' bytes, for the media
+		 * pipeline.
+		 *
+		 * @param root the directory in which to keep the files
+		 * @param maxSize the most bytes to keep before evicting the least recently used
+		 * files
+		 */
+		public record LocalCache(File root, DataSize maxSize) {
+		}
+
+		public record S3(String bucket, Uploads uploads) {
+
+			/**
+			 * @param partSize the size of each part of a multipart upload. Objects
+			 * smaller than this are sent with a single PUT.
+			 * @param partsInFlight how many parts may be uploading concurrently, across
+			 * all uploads on this node
+			 * @param maxAttempts how many times to try each part before giving up
+			 */
+			public record Uploads(DataSize partSize, int partsInFlight, int maxAttempts) {
+			}
 		}
 	}
 
 	public record Podcasts(Producer production) {
-		public record Producer(Amqp amqp) {
+		public record Producer(Amqp amqp, Mode mode, Renders renders) {
 			public record Amqp(String requests, String replies) {
 			}
+
+			/**
+			 * a node-local, size-bounded cache of each segment's {@code .wav} rendition,
+			 * for the {@link Mode#CONCAT concat} mode.
+			 *
+			 * @param root the directory in which to keep the renditions
+			 * @param maxSize the most bytes to keep before evicting the renditions of the
+			 * least recently used segments
+			 */
+			public record Renders(File root, DataSize maxSize) {
+			}
+
+			/**
+			 * how to turn an episode's segments into its final audio.
+			 */
+			public enum Mode {
+
+				/**
+				 * render each segment to a {@code .wav}, concatenate them, and encode the
+				 * result.
+				 */
+				CONCAT,
+
+				/**
+				 * a single {@code ffmpeg} {@code filter_complex} that joins the segments,
+				 * with their crossfades, and encodes the result in one pass.
+				 */
+				FILTER_GRAPH
+
+			}
 		}
 	}
 }
\ No newline at end of file
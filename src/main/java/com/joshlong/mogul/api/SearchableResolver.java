@@ -6,4 +6,12 @@ public interface SearchableResolver<T extends Searchable> extends DomainResolver
 
 	List<SearchableResult<T>> results(List<Long> searchableIds);
 
+	/**
+	 * what we show for the searchables in a page of search results, which needn't have
+	 * their full text, since the search index gives us a snippet of it.
+	 */
+	default List<SearchableResult<T>> summaries(List<Long> searchableIds) {
+		return this.results(searchableIds);
+	}
+
 }
@@ -1,10 +1,21 @@
 package com.joshlong.mogul.api;
 
+import org.jspecify.annotations.Nullable;
+
 import java.util.Date;
 import java.util.Map;
 
+/**
+ * @param text the searchable's text, as we index it
+ * @param snippet the part of the text that matched a search, if the index told us
+ */
 public record SearchableResult<T extends Searchable>(long searchableId, T searchable, String title, String text,
-		long aggregateId, Date created, String type, Map<String, Object> context) {
+		long aggregateId, Date created, String type, Map<String, Object> context, @Nullable String snippet) {
+
+	public SearchableResult(long searchableId, T searchable, String title, String text, long aggregateId, Date created,
+			String type, Map<String, Object> context) {
+		this(searchableId, searchable, title, text, aggregateId, created, type, context, null);
+	}
 
 	public SearchableResult(long searchableId, T searchable, String title, String text, long aggregateId, Date created,
 			String type) {
@@ -12,4 +23,9 @@ public record SearchableResult<T extends Searchable>(long searchableId, T search
 				Map.of("type", type, "id", searchableId));
 	}
 
-}
\ No newline at end of file
+	public SearchableResult<T> withSnippet(@Nullable String snippet) {
+		return new SearchableResult<>(this.searchableId, this.searchable, this.title, this.text, this.aggregateId,
+				this.created, this.type, this.context, snippet);
+	}
+
+}
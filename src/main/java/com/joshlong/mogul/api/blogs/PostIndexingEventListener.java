@@ -1,35 +1,38 @@
 package com.joshlong.mogul.api.blogs;
 
-import com.joshlong.mogul.api.search.SearchService;
+import com.joshlong.mogul.api.search.SearchIndexOutbox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.modulith.events.ApplicationModuleListener;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+/**
+ * queues posts for the search index in the same transaction that changed them.
+ */
 @Component
 class PostIndexingEventListener {
 
-	private final SearchService searchService;
+	private final SearchIndexOutbox searchIndexOutbox;
 
 	private final Logger log = LoggerFactory.getLogger(this.getClass());
 
-	PostIndexingEventListener(SearchService searchService) {
-		this.searchService = searchService;
+	PostIndexingEventListener(SearchIndexOutbox searchIndexOutbox) {
+		this.searchIndexOutbox = searchIndexOutbox;
 	}
 
-	@ApplicationModuleListener
+	@EventListener
 	void postUpdatedIndexListener(PostUpdatedEvent postUpdatedEvent) {
 		this.index(postUpdatedEvent.post());
 	}
 
-	@ApplicationModuleListener
+	@EventListener
 	void postCreatedIndexListener(PostCreatedEvent postCreatedEvent) {
 		this.index(postCreatedEvent.post());
 	}
 
 	private void index(Post post) {
-		this.searchService.index(post);
-		this.log.info("indexed post {}", post);
+		this.searchIndexOutbox.enqueue(post);
+		this.log.info("queued post {} for indexing", post);
 	}
 
 }
@@ -0,0 +1,99 @@
+package com.joshlong.mogul.api.cache;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+import org.springframework.cache.Cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * decorates a {@link Cache} so that every eviction is also handed to
+ * {@link CacheInvalidations} and, from there, broadcast to every other replica.
+ *
+ * @author Josh Long
+ */
+class BroadcastingCache implements BulkCache {
+
+	private final BulkCache delegate;
+
+	private final CacheInvalidations invalidations;
+
+	BroadcastingCache(Cache delegate, CacheInvalidations invalidations) {
+		this.delegate = BulkCaches.from(delegate);
+		this.invalidations = invalidations;
+	}
+
+	@Override
+	@NullMarked
+	public String getName() {
+		return this.delegate.getName();
+	}
+
+	@Override
+	@NullMarked
+	public Object getNativeCache() {
+		return this.delegate.getNativeCache();
+	}
+
+	@Override
+	public @Nullable ValueWrapper get(Object key) {
+		return this.delegate.get(key);
+	}
+
+	@Override
+	public @Nullable <T> T get(Object key, @Nullable Class<T> type) {
+		return this.delegate.get(key, type);
+	}
+
+	@Override
+	public @Nullable <T> T get(Object key, Callable<T> valueLoader) {
+		return this.delegate.get(key, valueLoader);
+	}
+
+	@Override
+	public <K, V> Map<K, V> getAll(Collection<K> keys, Function<Set<K>, Map<K, V>> loader) {
+		return this.delegate.getAll(keys, loader);
+	}
+
+	@Override
+	public void put(Object key, @Nullable Object value) {
+		this.delegate.put(key, value);
+	}
+
+	@Override
+	public void putAll(Map<?, ?> entries) {
+		this.delegate.putAll(entries);
+	}
+
+	@Override
+	public void evict(Object key) {
+		this.delegate.evict(key);
+		this.invalidations.publish(CacheInvalidation.evict(this.getName(), key));
+	}
+
+	@Override
+	public boolean evictIfPresent(Object key) {
+		// other replicas may have the key even if we don't, so always broadcast
+		var present = this.delegate.evictIfPresent(key);
+		this.invalidations.publish(CacheInvalidation.evict(this.getName(), key));
+		return present;
+	}
+
+	@Override
+	public void clear() {
+		this.delegate.clear();
+		this.invalidations.publish(CacheInvalidation.clear(this.getName()));
+	}
+
+	@Override
+	public boolean invalidate() {
+		var invalidated = this.delegate.invalidate();
+		this.invalidations.publish(CacheInvalidation.clear(this.getName()));
+		return invalidated;
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.joshlong.mogul.api.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * a {@link Cache} that can resolve many keys at once. Use {@link BulkCaches#from(Cache)}
+ * to get one for any {@link Cache}.
+ *
+ * @author Josh Long
+ */
+public interface BulkCache extends Cache {
+
+	/**
+	 * returns the values for all the given keys. the keys that aren't already cached are
+	 * handed to {@code loader} in a single call, and whatever it returns is cached. keys
+	 * for which the loader returns nothing are absent from the resulting (mutable)
+	 * {@link Map}, and are not cached.
+	 * @param keys the keys to resolve
+	 * @param loader loads the values for every key not already present in the cache
+	 */
+	<K, V> Map<K, V> getAll(Collection<K> keys, Function<Set<K>, Map<K, V>> loader);
+
+	void putAll(Map<?, ?> entries);
+
+}
@@ -0,0 +1,149 @@
+package com.joshlong.mogul.api.cache;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.util.Assert;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * adapts any {@link Cache} to a {@link BulkCache}. Caches backed by Caffeine delegate to
+ * Caffeine's own {@code getAll}, so that all the misses are loaded in one go. Everything
+ * else falls back to probing one key at a time, but still loads the misses in one go.
+ *
+ * @author Josh Long
+ */
+public abstract class BulkCaches {
+
+	public static BulkCache from(Cache cache) {
+		Assert.notNull(cache, "the cache must not be null");
+		if (cache instanceof BulkCache bulkCache)
+			return bulkCache;
+		if (cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?>)
+			return new CaffeineBulkCache(cache);
+		return new SimpleBulkCache(cache);
+	}
+
+	abstract static class DelegatingBulkCache implements BulkCache {
+
+		protected final Cache delegate;
+
+		DelegatingBulkCache(Cache delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		@NullMarked
+		public String getName() {
+			return this.delegate.getName();
+		}
+
+		@Override
+		@NullMarked
+		public Object getNativeCache() {
+			return this.delegate.getNativeCache();
+		}
+
+		@Override
+		public @Nullable ValueWrapper get(Object key) {
+			return this.delegate.get(key);
+		}
+
+		@Override
+		public @Nullable <T> T get(Object key, @Nullable Class<T> type) {
+			return this.delegate.get(key, type);
+		}
+
+		@Override
+		public @Nullable <T> T get(Object key, Callable<T> valueLoader) {
+			return this.delegate.get(key, valueLoader);
+		}
+
+		@Override
+		public void put(Object key, @Nullable Object value) {
+			this.delegate.put(key, value);
+		}
+
+		@Override
+		public void putAll(Map<?, ?> entries) {
+			for (var entry : entries.entrySet())
+				this.delegate.put(entry.getKey(), entry.getValue());
+		}
+
+		@Override
+		public void evict(Object key) {
+			this.delegate.evict(key);
+		}
+
+		@Override
+		public boolean evictIfPresent(Object key) {
+			return this.delegate.evictIfPresent(key);
+		}
+
+		@Override
+		public void clear() {
+			this.delegate.clear();
+		}
+
+	}
+
+	static class CaffeineBulkCache extends DelegatingBulkCache {
+
+		private final com.github.benmanes.caffeine.cache.Cache<Object, Object> caffeine;
+
+		@SuppressWarnings("unchecked")
+		CaffeineBulkCache(Cache delegate) {
+			super(delegate);
+			this.caffeine = (com.github.benmanes.caffeine.cache.Cache<Object, Object>) delegate.getNativeCache();
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <K, V> Map<K, V> getAll(Collection<K> keys, Function<Set<K>, Map<K, V>> loader) {
+			var results = new HashMap<K, V>();
+			if (keys.isEmpty())
+				return results;
+			var all = this.caffeine.getAll(keys, missing -> loader.apply((Set<K>) missing));
+			for (var entry : all.entrySet()) {
+				// spring's CaffeineCache stores null values as NullValue
+				if (!(entry.getValue() instanceof NullValue))
+					results.put((K) entry.getKey(), (V) entry.getValue());
+			}
+			return results;
+		}
+
+	}
+
+	static class SimpleBulkCache extends DelegatingBulkCache {
+
+		SimpleBulkCache(Cache delegate) {
+			super(delegate);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <K, V> Map<K, V> getAll(Collection<K> keys, Function<Set<K>, Map<K, V>> loader) {
+			var results = new HashMap<K, V>();
+			var missing = new HashSet<K>();
+			for (var key : keys) {
+				var wrapper = this.delegate.get(key);
+				if (wrapper != null && wrapper.get() != null)
+					results.put(key, (V) wrapper.get());
+				else
+					missing.add(key);
+			}
+			if (!missing.isEmpty()) {
+				var loaded = loader.apply(missing);
+				this.putAll(loaded);
+				results.putAll(loaded);
+			}
+			return results;
+		}
+
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.joshlong.mogul.api.cache;
+
+import com.joshlong.mogul.api.ApiProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.integration.core.MessageSource;
+import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.integration.dsl.PollerFactory;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.Assert;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Set;
+
+@Configuration
+class CacheConfiguration {
+
+	@Bean
+	PostgresqlUnloggedTableCacheManager postgresqlUnloggedTableCacheManager(DataSource dataSource, JsonMapper json,
+			ApiProperties properties) {
+		var postgres = properties.cache().postgres();
+		Assert.state(postgres.ttl().compareTo(properties.cache().ttl()) <= 0,
+				"the shared cache's ttl must be no longer than the local cache's ttl");
+		return new PostgresqlUnloggedTableCacheManager(dataSource, json, postgres.ttl(), postgres.caches());
+	}
+
+	/**
+	 * everybody that injects a {@link CacheManager} gets this one: Caffeine first, then
+	 * the shared PostgreSQL table, if it's enabled. Evictions are broadcast to every
+	 * replica.
+	 */
+	@Bean
+	@Primary
+	TieredCacheManager tieredCacheManager(CaffeineCacheManager caffeineCacheManager,
+			PostgresqlUnloggedTableCacheManager postgresqlUnloggedTableCacheManager, CacheInvalidations invalidations,
+			ApiProperties properties) {
+		var postgres = properties.cache().postgres();
+		var cacheNames = postgres.enabled() ? postgres.cacheNames() : Set.<String>of();
+		return new TieredCacheManager(caffeineCacheManager, postgresqlUnloggedTableCacheManager, cacheNames,
+				invalidations);
+	}
+
+	@Bean
+	IntegrationFlow expiredCacheEntriesIntegrationFlow(
+			PostgresqlUnloggedTableCacheManager postgresqlUnloggedTableCacheManager) {
+		var messageSource = (MessageSource<Integer>) () -> MessageBuilder
+			.withPayload(postgresqlUnloggedTableCacheManager.purgeExpired())
+			.build();
+		return IntegrationFlow
+			.from(messageSource,
+					pc -> pc.poller(_ -> PollerFactory.fixedRate(Duration.ofMinutes(30), Duration.ofMinutes(5))))
+			.nullChannel();
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.joshlong.mogul.api.cache;
+
+import java.util.Collection;
+
+/**
+ * describes the eviction of a single key (or, if {@code key} is null, of every key) from
+ * a named cache. The key travels as a string alongside its type so that the receiving
+ * replica can rebuild a key that is {@link Object#equals(Object) equal} to the original.
+ *
+ * @param cacheName the name of the cache
+ * @param keyClass the fully qualified class name of the key
+ * @param key the key, rendered as a string, or null to clear the whole cache
+ */
+record CacheInvalidation(String cacheName, String keyClass, String key) {
+
+	static CacheInvalidation evict(String cacheName, Object key) {
+		return new CacheInvalidation(cacheName, key.getClass().getName(), String.valueOf(key));
+	}
+
+	static CacheInvalidation clear(String cacheName) {
+		return new CacheInvalidation(cacheName, null, null);
+	}
+
+	boolean isClear() {
+		return this.key == null;
+	}
+
+	/**
+	 * a batch of {@link CacheInvalidation invalidations}, coalesced on one replica and
+	 * broadcast to all the others.
+	 *
+	 * @param node the replica that produced the invalidations, which has already evicted
+	 * them from its own node-local tier
+	 */
+	record Batch(String node, Collection<CacheInvalidation> invalidations) {
+	}
+
+}
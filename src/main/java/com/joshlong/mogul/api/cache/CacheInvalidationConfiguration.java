@@ -0,0 +1,118 @@
+package com.joshlong.mogul.api.cache;
+
+import com.joshlong.mogul.api.ApiProperties;
+import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.amqp.dsl.Amqp;
+import org.springframework.integration.core.GenericTransformer;
+import org.springframework.integration.dsl.DirectChannelSpec;
+import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.integration.dsl.MessageChannels;
+import org.springframework.messaging.MessageChannel;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * broadcasts cache evictions to every replica over a RabbitMQ fanout exchange. Each
+ * replica binds its own anonymous, auto-delete queue to the exchange. Bursts of evictions
+ * are coalesced into a single message: we release a batch once it has
+ * {@link #MAX_BATCH_SIZE} invalidations or once {@link #BATCH_WINDOW} has passed,
+ * whichever comes first.
+ */
+@Configuration
+class CacheInvalidationConfiguration {
+
+	private static final String BEAN_PREFIX = "mogulCacheInvalidations";
+
+	private static final String QUEUE_NAME = BEAN_PREFIX + "Queue";
+
+	private static final String EXCHANGE_NAME = BEAN_PREFIX + "Exchange";
+
+	private static final int MAX_BATCH_SIZE = 500;
+
+	private static final Duration BATCH_WINDOW = Duration.ofMillis(250);
+
+	private final String exchangeName;
+
+	CacheInvalidationConfiguration(ApiProperties properties) {
+		this.exchangeName = properties.amqp().cacheInvalidations();
+	}
+
+	@Bean
+	CacheInvalidations cacheInvalidations(@CacheInvalidationMessageChannel MessageChannel outbound,
+			CaffeineCacheManager caffeineCacheManager,
+			PostgresqlUnloggedTableCacheManager postgresqlUnloggedTableCacheManager, ApiProperties properties) {
+		var postgres = properties.cache().postgres();
+		var cacheNames = postgres.enabled() ? postgres.cacheNames() : Set.<String>of();
+		return new CacheInvalidations(outbound, caffeineCacheManager, postgresqlUnloggedTableCacheManager, cacheNames);
+	}
+
+	@Bean
+	@CacheInvalidationMessageChannel
+	DirectChannelSpec cacheInvalidationMessageChannel() {
+		return MessageChannels.direct();
+	}
+
+	@Bean(EXCHANGE_NAME)
+	FanoutExchange mogulCacheInvalidationsExchange() {
+		return ExchangeBuilder.fanoutExchange(this.exchangeName).build();
+	}
+
+	@Bean(QUEUE_NAME)
+	Queue mogulCacheInvalidationsQueue() {
+		// every replica needs its own queue, and it should disappear with the replica
+		return new AnonymousQueue();
+	}
+
+	@Bean
+	Binding mogulCacheInvalidationsBinding(@Qualifier(QUEUE_NAME) Queue queue,
+			@Qualifier(EXCHANGE_NAME) FanoutExchange exchange) {
+		return BindingBuilder.bind(queue).to(exchange);
+	}
+
+	@Bean
+	IntegrationFlow cacheInvalidationsOutboundIntegrationFlow(@CacheInvalidationMessageChannel MessageChannel outbound,
+			CacheInvalidations invalidations, AmqpTemplate amqpTemplate, JsonMapper json) {
+		return IntegrationFlow //
+			.from(outbound) //
+			.aggregate(a -> a //
+				.correlationStrategy(_ -> CacheInvalidation.class.getName()) //
+				.releaseStrategy(group -> group.size() >= MAX_BATCH_SIZE) //
+				.groupTimeout(BATCH_WINDOW.toMillis()) //
+				.sendPartialResultOnExpiry(true) //
+				.expireGroupsUponCompletion(true) //
+				.expireGroupsUponTimeout(true) //
+				.outputProcessor(group -> {
+					// the same key evicted five times in a burst need only be sent once
+					var distinct = new LinkedHashSet<CacheInvalidation>();
+					for (var message : group.getMessages())
+						distinct.add((CacheInvalidation) message.getPayload());
+					return new CacheInvalidation.Batch(invalidations.node(), distinct);
+				})) //
+			.transform((GenericTransformer<CacheInvalidation.Batch, String>) json::writeValueAsString) //
+			.handle(Amqp.outboundAdapter(amqpTemplate).exchangeName(this.exchangeName)) //
+			.get();
+	}
+
+	@Bean
+	IntegrationFlow cacheInvalidationsInboundIntegrationFlow(ConnectionFactory connectionFactory,
+			@Qualifier(QUEUE_NAME) Queue queue, CacheInvalidations invalidations, JsonMapper json) {
+		return IntegrationFlow //
+			.from(Amqp.inboundAdapter(connectionFactory, queue)) //
+			.transform((GenericTransformer<String, CacheInvalidation.Batch>) payload -> json.readValue(payload,
+					CacheInvalidation.Batch.class)) //
+			.handle(CacheInvalidation.Batch.class, (batch, _) -> {
+				invalidations.apply(batch);
+				return null;
+			}) //
+			.get();
+	}
+
+}
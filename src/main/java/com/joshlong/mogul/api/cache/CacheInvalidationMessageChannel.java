@@ -0,0 +1,14 @@
+package com.joshlong.mogul.api.cache;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+
+import java.lang.annotation.*;
+
+@Target({ ElementType.FIELD, ElementType.METHOD, ElementType.PARAMETER, ElementType.TYPE, ElementType.ANNOTATION_TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+@Qualifier("cacheInvalidationMessageChannel")
+@interface CacheInvalidationMessageChannel {
+
+}
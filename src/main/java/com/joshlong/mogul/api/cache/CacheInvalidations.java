@@ -0,0 +1,152 @@
+package com.joshlong.mogul.api.cache;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * fans local cache evictions out to every other replica and applies the evictions that
+ * the other replicas send us. Outbound invalidations are sent to a
+ * {@link CacheInvalidationMessageChannel channel} where they're coalesced into batches
+ * (see {@link CacheInvalidationConfiguration}).
+ * <p>
+ * An eviction made in a transaction is only broadcast once the transaction commits: until
+ * then, any replica that reads the entry reads the old value from the database, and would
+ * put it straight back in the cache. For the same reason, we evict the node-local tier
+ * again after the commit, and every replica, including the one that did the eviction,
+ * evicts the shared tier again when the batch arrives, since a replica that read the old
+ * value before the commit may have put it there.
+ *
+ * @author Josh Long
+ */
+class CacheInvalidations {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final String node = UUID.randomUUID().toString();
+
+	private final MessageChannel outbound;
+
+	private final CacheManager local;
+
+	private final PostgresqlUnloggedTableCacheManager shared;
+
+	private final Set<String> sharedCacheNames;
+
+	CacheInvalidations(MessageChannel outbound, CacheManager local, PostgresqlUnloggedTableCacheManager shared,
+			Set<String> sharedCacheNames) {
+		this.outbound = outbound;
+		this.local = local;
+		this.shared = shared;
+		this.sharedCacheNames = Set.copyOf(sharedCacheNames);
+	}
+
+	String node() {
+		return this.node;
+	}
+
+	void publish(CacheInvalidation invalidation) {
+		if (!invalidation.isClear() && this.keyFor(invalidation) == null)
+			this.log.warn("the other replicas can't rebuild keys of type [{}], so they'll clear all of the cache [{}]",
+					invalidation.keyClass(), invalidation.cacheName());
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			this.send(invalidation);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+			@Override
+			public void afterCommit() {
+				// only the node-local tier: the transaction's connection can't be used
+				// now
+				evict(local, List.of(invalidation));
+				send(invalidation);
+			}
+
+		});
+	}
+
+	private void send(CacheInvalidation invalidation) {
+		try {
+			this.outbound.send(MessageBuilder.withPayload(invalidation).build());
+		} //
+		catch (Exception e) {
+			// the local eviction already happened. the other replicas will have to wait
+			// for the entry to expire
+			this.log.warn("could not broadcast the cache invalidation {}", invalidation, e);
+		}
+	}
+
+	void apply(CacheInvalidation.Batch batch) {
+		var invalidations = batch.invalidations();
+		this.evictShared(invalidations);
+		// we evicted our own node-local tier after the commit
+		if (!this.node.equals(batch.node()))
+			this.evict(this.local, invalidations);
+		this.log.debug("applied {} cache invalidations from replica {}", invalidations.size(), batch.node());
+	}
+
+	/**
+	 * one {@code delete} for each cache, rather than one for each key.
+	 */
+	private void evictShared(Collection<CacheInvalidation> invalidations) {
+		var keysByCache = new HashMap<String, List<Object>>();
+		var cleared = new HashSet<String>();
+		for (var invalidation : invalidations) {
+			if (!this.sharedCacheNames.contains(invalidation.cacheName()))
+				continue;
+			var key = invalidation.isClear() ? null : this.keyFor(invalidation);
+			if (key == null)
+				cleared.add(invalidation.cacheName());
+			else
+				keysByCache.computeIfAbsent(invalidation.cacheName(), _ -> new ArrayList<>()).add(key);
+		}
+		cleared.forEach(cacheName -> this.shared.getCache(cacheName).clear());
+		keysByCache.forEach((cacheName, keys) -> {
+			if (!cleared.contains(cacheName))
+				this.shared.getCache(cacheName).evictAll(keys);
+		});
+	}
+
+	private void evict(CacheManager cacheManager, Collection<CacheInvalidation> invalidations) {
+		for (var invalidation : invalidations) {
+			var cache = cacheManager.getCache(invalidation.cacheName());
+			if (cache == null)
+				continue;
+			var key = invalidation.isClear() ? null : this.keyFor(invalidation);
+			if (key == null)
+				cache.clear();
+			else
+				cache.evict(key);
+		}
+	}
+
+	/**
+	 * rebuilds the original key. Every cache we have today is keyed by a {@link Long} or
+	 * a {@link String}. if we don't know how, then we return null, and the whole cache is
+	 * cleared, which is wasteful but never wrong.
+	 */
+	private @Nullable Object keyFor(CacheInvalidation invalidation) {
+		var key = invalidation.key();
+		return switch (invalidation.keyClass()) {
+			case "java.lang.Long" -> Long.valueOf(key);
+			case "java.lang.Integer" -> Integer.valueOf(key);
+			case "java.lang.String" -> key;
+			default -> null;
+		};
+	}
+
+}
@@ -2,38 +2,75 @@ package com.joshlong.mogul.api.cache;
 
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.SqlArrayValue;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
+import tools.jackson.databind.json.JsonMapper;
 
 import javax.sql.DataSource;
-import java.util.Collection;
-import java.util.List;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * the idea here is simple, but i couldn't try it out on the plane: what if we implemented
- * a {@link CacheManager} in terms of PostgreSQL's "un-logged" tables. Un-logged tables
- * disable the write-ahead-log, so there are no guarantees about consistency and data
- * integrity, but that's fine for cache semantics. Such a table can go 2.5x faster than
- * the same writes to a logged table.
+ * a {@link CacheManager} implemented in terms of PostgreSQL's "un-logged" tables.
+ * Un-logged tables disable the write-ahead-log, so there are no guarantees about
+ * consistency and data integrity, but that's fine for cache semantics. Such a table can
+ * go 2.5x faster than the same writes to a logged table.
+ * <p>
+ * Every replica shares the same table, so this serves as the second tier behind the
+ * node-local Caffeine caches (see {@link TieredCacheManager}). Values are stored as JSON
+ * alongside their concrete class, and every row carries an {@code expires} column that is
+ * honored on read and swept periodically by {@link #purgeExpired()}.
+ * <p>
+ * The table is shared, so we don't trust the class it names: each cache is declared up
+ * front with the one type it may hold, values are only ever read as that type, and rows
+ * that name any other class are evicted rather than loaded.
  *
  * @author Josh Long
  */
 class PostgresqlUnloggedTableCacheManager implements CacheManager {
 
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final Map<String, PostgresqlUnloggedTableCache> caches = new ConcurrentHashMap<>();
+
+	private final Map<String, Class<?>> valueTypes;
+
 	private final JdbcClient db;
 
 	private final TransactionTemplate tx;
 
-	PostgresqlUnloggedTableCacheManager(DataSource dataSource) {
+	private final JsonMapper json;
+
+	private final Duration ttl;
+
+	/**
+	 * @param valueTypes the type of the values in each cache, by the name of the cache
+	 */
+	PostgresqlUnloggedTableCacheManager(DataSource dataSource, JsonMapper json, Duration ttl,
+			Map<String, Class<?>> valueTypes) {
 
 		Assert.notNull(dataSource, "the dataSource must not be null");
+		Assert.notNull(json, "the json mapper must not be null");
+		Assert.notNull(ttl, "the ttl must not be null");
+		Assert.notNull(valueTypes, "the value types must not be null");
 
 		this.db = JdbcClient.create(dataSource);
+		this.json = json;
+		this.ttl = ttl;
+		this.valueTypes = Map.copyOf(valueTypes);
 
 		var txManager = new DataSourceTransactionManager(dataSource);
 		txManager.afterPropertiesSet();
@@ -52,21 +89,45 @@ class PostgresqlUnloggedTableCacheManager implements CacheManager {
 	}
 
 	@Override
-	public @Nullable Cache getCache(String name) {
-		return new PostgresqlUnloggedTableCache(name);
+	public PostgresqlUnloggedTableCache getCache(String name) {
+		return this.caches.computeIfAbsent(name, n -> {
+			var valueType = this.valueTypes.get(n);
+			Assert.state(valueType != null, "there is no value type declared for the cache [" + n + "]");
+			return new PostgresqlUnloggedTableCache(n, valueType);
+		});
 	}
 
 	@Override
 	public Collection<String> getCacheNames() {
-		return List.of();
+		return Collections.unmodifiableSet(this.caches.keySet());
+	}
+
+	/**
+	 * deletes every row, in every cache, whose {@code expires} has passed.
+	 * @return the number of rows removed
+	 */
+	int purgeExpired() {
+		var deleted = this.db.sql("delete from cache_entry where expires < now()").update();
+		this.log.debug("purged {} expired cache entries", deleted);
+		return deleted;
+	}
+
+	private String keyFor(Object key) {
+		return String.valueOf(key);
+	}
+
+	private record Entry(String key, String valueClass, String value) {
 	}
 
-	static class PostgresqlUnloggedTableCache implements Cache {
+	class PostgresqlUnloggedTableCache implements Cache {
 
 		private final String cacheName;
 
-		PostgresqlUnloggedTableCache(String cacheName) {
+		private final Class<?> valueType;
+
+		PostgresqlUnloggedTableCache(String cacheName, Class<?> valueType) {
 			this.cacheName = cacheName;
+			this.valueType = valueType;
 		}
 
 		@Override
@@ -78,37 +139,172 @@ class PostgresqlUnloggedTableCacheManager implements CacheManager {
 		@Override
 		@NullMarked
 		public Object getNativeCache() {
-			return null;
+			return db;
 		}
 
 		@Override
 		public @Nullable ValueWrapper get(Object key) {
-			return null;
+			var value = this.getAll(List.of(key)).get(key);
+			return value == null ? null : new SimpleValueWrapper(value);
 		}
 
 		@Override
+		@SuppressWarnings("unchecked")
 		public @Nullable <T> T get(Object key, @Nullable Class<T> type) {
-			return null;
+			var wrapper = this.get(key);
+			if (wrapper == null)
+				return null;
+			var value = wrapper.get();
+			Assert.state(type == null || type.isInstance(value),
+					"the cached value [" + value + "] is not of the required type [" + type + "]");
+			return (T) value;
 		}
 
 		@Override
+		@SuppressWarnings("unchecked")
 		public @Nullable <T> T get(Object key, Callable<T> valueLoader) {
-			return null;
+			var wrapper = this.get(key);
+			if (wrapper != null)
+				return (T) wrapper.get();
+			try {
+				var value = valueLoader.call();
+				this.put(key, value);
+				return value;
+			} //
+			catch (Exception e) {
+				throw new ValueRetrievalException(key, valueLoader, e);
+			}
+		}
+
+		/**
+		 * resolves all the given keys in a single round trip. keys that aren't present,
+		 * have expired, name a class other than this cache's value type, or can no longer
+		 * be deserialized are simply absent from the resulting {@link Map}.
+		 */
+		<K> Map<K, Object> getAll(Collection<K> keys) {
+			var results = new HashMap<K, Object>();
+			if (keys.isEmpty())
+				return results;
+			var keysByString = new HashMap<String, K>();
+			for (var k : keys)
+				keysByString.put(keyFor(k), k);
+			try {
+				var entries = db.sql("""
+						select cache_key, value_class, value from cache_entry
+						where cache_name = ? and cache_key = any(?) and expires > now()
+						""")
+					.params(this.cacheName, new SqlArrayValue("text", keysByString.keySet().toArray()))
+					.query((rs, _) -> new Entry(rs.getString("cache_key"), rs.getString("value_class"),
+							rs.getString("value")))
+					.list();
+				for (var entry : entries) {
+					if (!this.valueType.getName().equals(entry.valueClass())) {
+						log.warn("the entry [{}] in the cache [{}] is a [{}], not a [{}]", entry.key(), this.cacheName,
+								entry.valueClass(), this.valueType.getName());
+						this.evict(entry.key());
+						continue;
+					}
+					try {
+						results.put(keysByString.get(entry.key()), json.readValue(entry.value(), this.valueType));
+					} //
+					catch (Exception e) {
+						// most likely the shape of the type changed since it was written
+						log.warn("could not deserialize the entry [{}] in the cache [{}]", entry.key(), this.cacheName,
+								e);
+						this.evict(entry.key());
+					}
+				}
+			} //
+			catch (DataAccessException e) {
+				log.warn("could not read from the cache [{}]", this.cacheName, e);
+			}
+			return results;
 		}
 
 		@Override
 		public void put(Object key, @Nullable Object value) {
+			var entries = new HashMap<Object, Object>();
+			entries.put(key, value);
+			this.putAll(entries);
+		}
 
+		/**
+		 * writes all the entries in a single round trip. we don't store nulls, but we
+		 * mustn't leave behind stale values for those keys either, so they're evicted.
+		 */
+		void putAll(Map<?, ?> entries) {
+			var nullKeys = new ArrayList<Object>();
+			var keys = new ArrayList<String>();
+			var valueClasses = new ArrayList<String>();
+			var values = new ArrayList<String>();
+			for (var entry : entries.entrySet()) {
+				var value = entry.getValue();
+				if (value == null) {
+					nullKeys.add(entry.getKey());
+					continue;
+				}
+				if (value.getClass() != this.valueType) {
+					log.warn("won't write the key [{}] to the cache [{}]: a [{}] is not a [{}]", entry.getKey(),
+							this.cacheName, value.getClass().getName(), this.valueType.getName());
+					nullKeys.add(entry.getKey());
+					continue;
+				}
+				try {
+					var serialized = json.writeValueAsString(value);
+					keys.add(keyFor(entry.getKey()));
+					valueClasses.add(this.valueType.getName());
+					values.add(serialized);
+				} //
+				catch (Exception e) {
+					log.warn("could not serialize the key [{}] for the cache [{}]", entry.getKey(), this.cacheName, e);
+					nullKeys.add(entry.getKey());
+				}
+			}
+			this.evictAll(nullKeys);
+			if (keys.isEmpty())
+				return;
+			try {
+				var expires = Timestamp.from(Instant.now().plus(ttl));
+				db.sql("""
+						insert into cache_entry (cache_name, cache_key, value_class, value, expires)
+						select ?, k, c, v, ? from unnest(?, ?, ?) as t (k, c, v)
+						on conflict (cache_name, cache_key)
+						do update set value_class = excluded.value_class, value = excluded.value,
+						 created = now(), expires = excluded.expires
+						""") //
+					.params(this.cacheName, expires, //
+							new SqlArrayValue("text", keys.toArray()), //
+							new SqlArrayValue("text", valueClasses.toArray()), //
+							new SqlArrayValue("text", values.toArray())) //
+					.update();
+			} //
+			catch (DataAccessException e) {
+				log.warn("could not write {} keys to the cache [{}]", keys.size(), this.cacheName, e);
+			}
 		}
 
 		@Override
 		public void evict(Object key) {
+			this.evictAll(List.of(key));
+		}
 
+		void evictAll(Collection<?> keys) {
+			if (keys.isEmpty())
+				return;
+			var strings = keys.stream().map(PostgresqlUnloggedTableCacheManager.this::keyFor).toArray();
+			try {
+				db.sql("delete from cache_entry where cache_name = ? and cache_key = any(?)")
+					.params(this.cacheName, new SqlArrayValue("text", strings))
+					.update();
+			} //
+			catch (DataAccessException e) {
+				log.warn("could not evict {} keys from the cache [{}]", strings.length, this.cacheName, e);
+			}
 		}
 
 		@Override
 		public void clear() {
-
+			db.sql("delete from cache_entry where cache_name = ?").param(this.cacheName).update();
 		}
 
 	}
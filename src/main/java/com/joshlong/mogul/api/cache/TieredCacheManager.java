@@ -0,0 +1,184 @@
+package com.joshlong.mogul.api.cache;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.util.Assert;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * a two-tier {@link CacheManager}: lookups are served from the node-local cache first
+ * (Caffeine, in our case), then from the {@link PostgresqlUnloggedTableCacheManager
+ * shared unlogged table}, and only then from whatever loads the value from the source
+ * tables. Hits in the second tier are promoted into the first tier. Writes and evictions
+ * go to both tiers.
+ * <p>
+ * Only the caches named in {@code cacheNames} get a second tier. Everything else is
+ * handed back straight from the local {@link CacheManager}. Either way, evictions are
+ * {@link BroadcastingCache broadcast} to the other replicas so that their local tiers
+ * don't keep serving stale values.
+ *
+ * @author Josh Long
+ */
+class TieredCacheManager implements CacheManager {
+
+	private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+	private final CacheManager local;
+
+	private final PostgresqlUnloggedTableCacheManager shared;
+
+	private final Set<String> cacheNames;
+
+	private final CacheInvalidations invalidations;
+
+	TieredCacheManager(CacheManager local, PostgresqlUnloggedTableCacheManager shared, Set<String> cacheNames,
+			CacheInvalidations invalidations) {
+		Assert.notNull(local, "the local cache manager must not be null");
+		Assert.notNull(shared, "the shared cache manager must not be null");
+		Assert.notNull(invalidations, "the cache invalidations must not be null");
+		this.local = local;
+		this.shared = shared;
+		this.invalidations = invalidations;
+		this.cacheNames = cacheNames == null ? Set.of() : Set.copyOf(cacheNames);
+	}
+
+	@Override
+	public @Nullable Cache getCache(String name) {
+		return this.caches.computeIfAbsent(name, n -> {
+			var localCache = this.local.getCache(n);
+			Assert.notNull(localCache, "there is no local cache called [" + n + "]");
+			var cache = this.cacheNames.contains(n) ? new TieredCache(localCache, this.shared.getCache(n)) : localCache;
+			return new BroadcastingCache(cache, this.invalidations);
+		});
+	}
+
+	@Override
+	public Collection<String> getCacheNames() {
+		return this.local.getCacheNames();
+	}
+
+	static class TieredCache implements BulkCache {
+
+		private final BulkCache local;
+
+		private final PostgresqlUnloggedTableCacheManager.PostgresqlUnloggedTableCache shared;
+
+		TieredCache(Cache local, PostgresqlUnloggedTableCacheManager.PostgresqlUnloggedTableCache shared) {
+			this.local = BulkCaches.from(local);
+			this.shared = shared;
+		}
+
+		@Override
+		@NullMarked
+		public String getName() {
+			return this.local.getName();
+		}
+
+		@Override
+		@NullMarked
+		public Object getNativeCache() {
+			return this.local.getNativeCache();
+		}
+
+		@Override
+		public @Nullable ValueWrapper get(Object key) {
+			var wrapper = this.local.get(key);
+			if (wrapper != null)
+				return wrapper;
+			var sharedWrapper = this.shared.get(key);
+			if (sharedWrapper != null)
+				this.local.put(key, sharedWrapper.get());
+			return sharedWrapper;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public @Nullable <T> T get(Object key, @Nullable Class<T> type) {
+			var wrapper = this.get(key);
+			if (wrapper == null)
+				return null;
+			var value = wrapper.get();
+			Assert.state(type == null || value == null || type.isInstance(value),
+					"the cached value [" + value + "] is not of the required type [" + type + "]");
+			return (T) value;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public @Nullable <T> T get(Object key, Callable<T> valueLoader) {
+			return this.local.get(key, () -> {
+				var sharedWrapper = this.shared.get(key);
+				if (sharedWrapper != null)
+					return (T) sharedWrapper.get();
+				var value = valueLoader.call();
+				this.shared.put(key, value);
+				return value;
+			});
+		}
+
+		/**
+		 * the local tier is consulted first. Whatever it misses is looked up in the
+		 * shared tier in a single query, and only what's still missing after that is
+		 * handed to the {@code loader}.
+		 */
+		@Override
+		@SuppressWarnings("unchecked")
+		public <K, V> Map<K, V> getAll(Collection<K> keys, Function<Set<K>, Map<K, V>> loader) {
+			return this.local.getAll(keys, missing -> {
+				var results = new HashMap<K, V>();
+				for (var entry : this.shared.getAll(missing).entrySet())
+					results.put(entry.getKey(), (V) entry.getValue());
+				var stillMissing = new HashSet<>(missing);
+				stillMissing.removeAll(results.keySet());
+				if (!stillMissing.isEmpty()) {
+					var loaded = loader.apply(stillMissing);
+					this.shared.putAll(loaded);
+					results.putAll(loaded);
+				}
+				return results;
+			});
+		}
+
+		@Override
+		public void put(Object key, @Nullable Object value) {
+			this.shared.put(key, value);
+			this.local.put(key, value);
+		}
+
+		@Override
+		public void putAll(Map<?, ?> entries) {
+			this.shared.putAll(entries);
+			this.local.putAll(entries);
+		}
+
+		@Override
+		public void evict(Object key) {
+			this.shared.evict(key);
+			this.local.evict(key);
+		}
+
+		@Override
+		public boolean evictIfPresent(Object key) {
+			this.shared.evict(key);
+			return this.local.evictIfPresent(key);
+		}
+
+		@Override
+		public void clear() {
+			this.shared.clear();
+			this.local.clear();
+		}
+
+	}
+
+}
@@ -1,5 +1,7 @@
 package com.joshlong.mogul.api.compositions;
 
+import com.joshlong.mogul.api.cache.BulkCache;
+import com.joshlong.mogul.api.cache.BulkCaches;
 import com.joshlong.mogul.api.compositions.attachments.previews.MarkdownPreview;
 import com.joshlong.mogul.api.managedfiles.CommonMediaTypes;
 import com.joshlong.mogul.api.managedfiles.ManagedFile;
@@ -17,6 +19,7 @@ import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.SqlArrayValue;
 import org.springframework.modulith.events.ApplicationModuleListener;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
@@ -47,7 +50,9 @@ class DefaultCompositionService implements CompositionService {
 
 	private final RowMapper<Attachment> attachmentRowMapper;
 
-	private final Cache compositionsByKeyCache, attachmentsCache, compositionsByIdCache;
+	private final Cache compositionsByKeyCache, attachmentsCache;
+
+	private final BulkCache compositionsByIdCache;
 
 	private final ResultSetExtractor<Collection<Composition>> compositionResultSetExtractor;
 
@@ -57,7 +62,7 @@ class DefaultCompositionService implements CompositionService {
 			Cache compositionsByIdCache, Cache attachmentsCache, ManagedFileService managedFileService,
 			MarkdownPreview[] markdownPreviews) {
 		this.db = db;
-		this.compositionsByIdCache = compositionsByIdCache;
+		this.compositionsByIdCache = BulkCaches.from(compositionsByIdCache);
 		this.attachmentsCache = attachmentsCache;
 		this.compositionsByKeyCache = compositionsByKeyCache;
 		this.managedFileService = managedFileService;
@@ -112,16 +117,7 @@ class DefaultCompositionService implements CompositionService {
 	}
 
 	private Composition readThroughCompositionById(Long id) {
-		if (this.compositionsByIdCache.get(id) == null) {
-			var comps = this.db //
-				.sql("select * from composition where id = ?")//
-				.param(id)//
-				.query(this.compositionResultSetExtractor);
-			var c = CollectionUtils.firstOrNull(comps);
-			this.compositionsByIdCache.put(id, c);
-			this.compositionsByKeyCache.put(compositionKey(c), c);
-		}
-		return this.compositionsByIdCache.get(id, Composition.class);
+		return this.getCompositionsByIds(Collections.singleton(id)).get(id);
 	}
 
 	@Override
@@ -129,9 +125,18 @@ class DefaultCompositionService implements CompositionService {
 		if (ids == null || ids.isEmpty()) {
 			return new HashMap<>();
 		}
+		return this.compositionsByIdCache.getAll(ids, this::loadCompositions);
+	}
+
+	private Map<Long, Composition> loadCompositions(Set<Long> ids) {
+		var compositions = this.db //
+			.sql("select * from composition where id = any(?)")//
+			.param(new SqlArrayValue("bigint", ids.toArray()))//
+			.query(this.compositionResultSetExtractor);
 		var map = new HashMap<Long, Composition>();
-		for (var id : ids) {
-			map.put(id, this.readThroughCompositionById(id));
+		for (var c : compositions) {
+			map.put(c.id(), c);
+			this.compositionsByKeyCache.put(compositionKey(c), c);
 		}
 		return map;
 	}
@@ -0,0 +1,95 @@
+package com.joshlong.mogul.api.managedfiles;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * remembers which S3 buckets we've already seen, so that we check with a single
+ * {@code HeadBucket} the first time a bucket is used rather than listing every bucket in
+ * the account on every write and delete.
+ * <p>
+ * Only buckets that exist are remembered: buckets don't disappear out from under us, but
+ * a bucket that's missing now might be created by another node a moment later.
+ * <p>
+ * {@code HeadBucket} answers 403 both for buckets that belong to another account and for
+ * our own buckets when we may list them but not {@code s3:ListBucket} them. In that case
+ * we fall back to what we did before there was a registry: the bucket is ours if
+ * {@code ListBuckets} lists it.
+ *
+ * @author Josh Long
+ */
+class BucketRegistry {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final Set<String> buckets = ConcurrentHashMap.newKeySet();
+
+	private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+	private final S3Client s3;
+
+	BucketRegistry(S3Client s3) {
+		this.s3 = s3;
+	}
+
+	boolean exists(String bucket) {
+		if (this.buckets.contains(bucket))
+			return true;
+		if (this.head(bucket)) {
+			this.buckets.add(bucket);
+			return true;
+		}
+		return false;
+	}
+
+	void ensureExists(String bucket) {
+		if (this.buckets.contains(bucket))
+			return;
+		// serialize the check-then-create per bucket, across threads on this node,
+		// without holding up any other bucket while we talk to S3
+		synchronized (this.locks.computeIfAbsent(bucket, _ -> new Object())) {
+			if (this.buckets.contains(bucket))
+				return;
+			if (this.head(bucket)) {
+				this.log.trace("the bucket named [{}] already exists", bucket);
+			}
+			else {
+				this.log.info("attempting to create the bucket called [{}]", bucket);
+				try {
+					this.s3.createBucket(CreateBucketRequest.builder().bucket(bucket).build());
+				} //
+				catch (BucketAlreadyOwnedByYouException e) {
+					this.log.debug("the bucket named [{}] was created concurrently", bucket);
+				}
+			}
+			this.buckets.add(bucket);
+		}
+	}
+
+	private boolean head(String bucket) {
+		try {
+			this.s3.headBucket(HeadBucketRequest.builder().bucket(bucket).build());
+			return true;
+		} //
+		catch (NoSuchBucketException e) {
+			return false;
+		} //
+		catch (S3Exception e) {
+			if (e.statusCode() != 403)
+				throw e;
+			this.log.debug("we may not HeadBucket [{}], so looking for it in ListBuckets", bucket);
+			return this.s3.listBuckets().buckets().stream().anyMatch(b -> b.name().equalsIgnoreCase(bucket));
+		}
+	}
+
+}
@@ -1,12 +1,15 @@
 package com.joshlong.mogul.api.managedfiles;
 
 import com.joshlong.mogul.api.ApiProperties;
+import com.joshlong.mogul.api.cache.BulkCache;
+import com.joshlong.mogul.api.cache.BulkCaches;
 import com.joshlong.mogul.api.utils.CollectionUtils;
 import com.joshlong.mogul.api.utils.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.Cache;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.AbstractResource;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
@@ -20,10 +23,11 @@ import org.springframework.util.Assert;
 import org.springframework.util.FileCopyUtils;
 import org.springframework.util.StringUtils;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.io.*;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -36,7 +40,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 class DefaultManagedFileService implements ManagedFileService {
 
-	private final Cache cache;
+	private final BulkCache cache;
 
 	private final String bucket;
 
@@ -50,6 +54,8 @@ class DefaultManagedFileService implements ManagedFileService {
 
 	private final Storage storage;
 
+	private final ManagedFileDiskCache diskCache;
+
 	private final ApplicationEventPublisher publisher;
 
 	private final TransactionTemplate transactionTemplate;
@@ -61,14 +67,16 @@ class DefaultManagedFileService implements ManagedFileService {
 	private final AtomicInteger counter = new AtomicInteger(0);
 
 	DefaultManagedFileService(String bucket, JdbcClient db, Storage storage, ApplicationEventPublisher publisher,
-			Cache cache, TransactionTemplate transactionTemplate, URI cloudfrontDomain, ApiProperties properties) {
+			Cache cache, TransactionTemplate transactionTemplate, URI cloudfrontDomain, ApiProperties properties,
+			ManagedFileDiskCache diskCache) {
 		this.bucket = bucket;
+		this.diskCache = diskCache;
 		this.db = db;
 		this.cloudfrontDomain = cloudfrontDomain;
 		this.storage = storage;
 		this.publisher = publisher;
 		this.transactionTemplate = transactionTemplate;
-		this.cache = cache;
+		this.cache = BulkCaches.from(cache);
 		this.log.debug(
 				"the file ManagedFile file system S3 bucket is called [{}] and the visible bucket is called [{}]",
 				bucket, visibleBucketFor(bucket));
@@ -137,11 +145,17 @@ class DefaultManagedFileService implements ManagedFileService {
 		this.storage.write(bucket, this.fqn(folder, managedFile.storageFilename()), resource, mediaType);
 		var clientMediaType = mediaType == null ? CommonMediaTypes.BINARY : mediaType;
 		this.db //
-			.sql("update managed_file set filename = ?, content_type = ?, written = true, size = ? where id= ?") //
+			.sql("""
+					update managed_file set filename = ?, content_type = ?, written = true, size = ?,
+					 version = version + 1
+					where id = ?
+					""") //
 			.params(filename, clientMediaType.toString(), contentLength(resource), managedFileId) //
 			.update();
 		this.invalidateCache(managedFileId);
 		var freshManagedFile = this.getManagedFileById(managedFileId);
+		if (resource.isFile())
+			this.diskCache.put(freshManagedFile, this.fileFor(resource).toPath());
 		this.transactionTemplate.execute(_ -> {
 			this.publisher.publishEvent(new ManagedFileUpdatedEvent(freshManagedFile));
 			return null;
@@ -169,7 +183,9 @@ class DefaultManagedFileService implements ManagedFileService {
 	public void refreshManagedFile(Long managedFileId) {
 		this.invalidateCache(managedFileId);
 		var managedFile = this.getManagedFileById(managedFileId);
-		var resource = this.read(managedFile.id());
+		// straight from S3, since the whole point is to pick up whatever's there now
+		var resource = this.storage.read(managedFile.bucket(),
+				this.fqn(managedFile.folder(), managedFile.storageFilename()));
 		var tmp = FileUtils.tempFileWithExtension();
 		try {
 			try (var in = resource.getInputStream(); var out = new FileOutputStream(tmp)) {
@@ -247,12 +263,68 @@ class DefaultManagedFileService implements ManagedFileService {
 		return folder + '/' + filename;
 	}
 
+	/**
+	 * the bytes are read through the {@link ManagedFileDiskCache node-local disk cache},
+	 * lazily, the first time the {@link Resource#getInputStream() stream} is opened.
+	 */
 	@Override
 	public Resource read(Long managedFileId) {
 		var mf = this.getManagedFileById(managedFileId);
-		var fn = this.fqn(mf.folder(), mf.storageFilename());
-		var bucket = mf.bucket();
-		return this.storage.read(bucket, fn);
+		return new AbstractResource() {
+
+			@Override
+			public String getDescription() {
+				return "managed file #" + mf.id() + " (version " + mf.version() + ")";
+			}
+
+			@Override
+			public String getFilename() {
+				return mf.filename();
+			}
+
+			@Override
+			public boolean exists() {
+				return mf.written();
+			}
+
+			@Override
+			public long contentLength() {
+				return mf.size();
+			}
+
+			@Override
+			public InputStream getInputStream() throws IOException {
+				return diskCache.open(mf, path -> download(mf, path));
+			}
+		};
+	}
+
+	@Override
+	public File read(Long managedFileId, File destination) {
+		var mf = this.getManagedFileById(managedFileId);
+		try {
+			return this.diskCache.link(mf, destination.toPath(), path -> this.download(mf, path)).toFile();
+		} //
+		catch (IOException e) {
+			throw new UncheckedIOException("could not read the managed file #" + managedFileId + " into ["
+					+ destination.getAbsolutePath() + "]", e);
+		}
+	}
+
+	private void download(ManagedFile managedFile, Path path) throws IOException {
+		var key = this.fqn(managedFile.folder(), managedFile.storageFilename());
+		try (var in = this.storage.read(managedFile.bucket(), key, null, null, null)) {
+			Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private File fileFor(Resource resource) {
+		try {
+			return resource.getFile();
+		} //
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 
 	private long contentLength(Resource resource) {
@@ -301,25 +373,19 @@ class DefaultManagedFileService implements ManagedFileService {
 	@Override
 	public Map<Long, ManagedFile> getManagedFiles(Collection<Long> managedFileIds) {
 		this.debug();
-		var outcome = new HashMap<Long, ManagedFile>();
-		for (var mfId : managedFileIds) {
-			var entry = this.cache.get(mfId, ManagedFile.class);
-			if (entry != null)
-				outcome.put(mfId, entry);
-		}
-		var everythingElse = new ArrayList<Long>();
-		for (var mfid : managedFileIds)
-			if (!outcome.containsKey(mfid))
-				everythingElse.add(mfid);
-		var results = db.sql("select * from managed_file where id = any(?)")
-			.params(new SqlArrayValue("bigint", everythingElse.toArray()))
-			.query(this.managedFileRowMapper)
+		return this.cache.getAll(managedFileIds, this::loadManagedFiles);
+	}
+
+	private Map<Long, ManagedFile> loadManagedFiles(Set<Long> managedFileIds) {
+		var results = new HashMap<Long, ManagedFile>();
+		var managedFiles = this.db //
+			.sql("select * from managed_file where id = any(?)") //
+			.params(new SqlArrayValue("bigint", managedFileIds.toArray())) //
+			.query(this.managedFileRowMapper) //
 			.list();
-		for (var r : results) {
-			this.cache.put(r.id(), r);
-			outcome.put(r.id(), r);
-		}
-		return outcome;
+		for (var managedFile : managedFiles)
+			results.put(managedFile.id(), managedFile);
+		return results;
 	}
 
 }
@@ -3,17 +3,17 @@ package com.joshlong.mogul.api.managedfiles;
 import com.joshlong.mogul.api.mogul.MogulService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.Resource;
 import org.springframework.graphql.data.method.annotation.Argument;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
 import org.springframework.graphql.data.method.annotation.SchemaMapping;
-import org.springframework.http.MediaType;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.util.Assert;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Map;
 
@@ -30,9 +30,13 @@ class ManagedFileController {
 
 	private final MogulService mogulService;
 
-	ManagedFileController(ManagedFileService managedFileService, MogulService mogulService) {
+	private final ManagedFileDownloads downloads;
+
+	ManagedFileController(ManagedFileService managedFileService, MogulService mogulService,
+			ManagedFileDownloads downloads) {
 		this.managedFileService = managedFileService;
 		this.mogulService = mogulService;
+		this.downloads = downloads;
 	}
 
 	@MutationMapping
@@ -67,17 +71,18 @@ class ManagedFileController {
 
 	@ResponseBody
 	@GetMapping(PUBLIC_MF_URL)
-	ResponseEntity<Resource> readPublic(@PathVariable Long id) {
-		return this.doRead(true, id);
+	ResponseEntity<StreamingResponseBody> readPublic(@PathVariable Long id, @RequestHeader HttpHeaders headers) {
+		return this.doRead(true, id, headers);
 	}
 
 	@ResponseBody
 	@GetMapping(MF_RW_URL)
-	ResponseEntity<Resource> read(@PathVariable Long id) {
-		return this.doRead(false, id);
+	ResponseEntity<StreamingResponseBody> read(@PathVariable Long id, @RequestHeader HttpHeaders headers) {
+		return this.doRead(false, id, headers);
 	}
 
-	private ResponseEntity<Resource> doRead(boolean assertVisible, Long managedFileId) {
+	private ResponseEntity<StreamingResponseBody> doRead(boolean assertVisible, Long managedFileId,
+			HttpHeaders headers) {
 		Assert.notNull(managedFileId, "the managedFileId is null");
 		var managedFile = this.managedFileService.getManagedFileById(managedFileId);
 		Assert.notNull(managedFile, "the managed file does not exist [" + managedFileId + "]");
@@ -88,13 +93,8 @@ class ManagedFileController {
 				return ResponseEntity.notFound().build();
 			}
 		}
-		var read = this.managedFileService.read(managedFileId);
-		var contentType = managedFile.contentType();
-		this.log.debug("content-type: {}", contentType);
-		return ResponseEntity.ok()
-			.contentLength(managedFile.size())
-			.contentType(MediaType.parseMediaType(contentType))
-			.body(read);
+		this.log.debug("content-type: {}", managedFile.contentType());
+		return this.downloads.download(managedFile, headers);
 	}
 
 	@ResponseBody
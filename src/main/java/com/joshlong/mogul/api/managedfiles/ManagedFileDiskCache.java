@@ -0,0 +1,251 @@
+package com.joshlong.mogul.api.managedfiles;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.function.ThrowingConsumer;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * a node-local, size-bounded LRU cache of the bytes behind {@link ManagedFile managed
+ * files}.
+ * <p>
+ * The media pipeline reads the same S3 objects over and over: producing an episode pulls
+ * down every segment, transcribing pulls them down again, and re-producing pulls them all
+ * down once more. Entries are keyed by the managed file's id <em>and</em> its
+ * {@link ManagedFile#version() version}, which is bumped on every write, so a stale entry
+ * is never served; it just ages out. Callers that need a file in their own workspace get
+ * a hard link to the cached copy, which costs neither time nor space, and which survives
+ * the entry being evicted out from under it. If the workspace is on another file system
+ * we fall back to a copy.
+ * <p>
+ * Concurrent misses for the same entry result in a single download.
+ *
+ * @author Josh Long
+ */
+class ManagedFileDiskCache {
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	// access-ordered, so the eldest entry is the least recently used one. guarded by this
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final Map<String, CompletableFuture<Path>> downloads = new ConcurrentHashMap<>();
+
+	private final Path root;
+
+	private final long maxBytes;
+
+	private final Counter hits, misses, evictions;
+
+	private long totalBytes;
+
+	ManagedFileDiskCache(Path root, DataSize maxSize, MeterRegistry registry) throws IOException {
+		Assert.notNull(root, "the root must not be null");
+		Assert.state(maxSize.toBytes() > 0, "the max size must be greater than zero");
+		this.root = Files.createDirectories(root);
+		this.maxBytes = maxSize.toBytes();
+		this.hits = Counter.builder("mogul.managedfiles.disk-cache.hits").register(registry);
+		this.misses = Counter.builder("mogul.managedfiles.disk-cache.misses").register(registry);
+		this.evictions = Counter.builder("mogul.managedfiles.disk-cache.evictions").register(registry);
+		Gauge.builder("mogul.managedfiles.disk-cache.bytes", this, ManagedFileDiskCache::totalBytes)
+			.baseUnit("bytes")
+			.register(registry);
+		this.recover();
+	}
+
+	/**
+	 * opens a stream to the cached copy of the managed file, downloading it first if
+	 * required.
+	 */
+	InputStream open(ManagedFile managedFile, ThrowingConsumer<Path> download) throws IOException {
+		for (var attempt = 1;; attempt++) {
+			var path = this.get(managedFile, download);
+			try {
+				return Files.newInputStream(path);
+			} //
+			catch (NoSuchFileException e) {
+				// evicted between the lookup and the open. unlikely, but possible
+				if (attempt > 1)
+					throw e;
+			}
+		}
+	}
+
+	/**
+	 * materializes the managed file at the destination, replacing whatever is there. The
+	 * result may be a hard link to the cached copy, so treat it as read-only.
+	 */
+	Path link(ManagedFile managedFile, Path destination, ThrowingConsumer<Path> download) throws IOException {
+		for (var attempt = 1;; attempt++) {
+			var path = this.get(managedFile, download);
+			try {
+				Files.deleteIfExists(destination);
+				try {
+					return Files.createLink(destination, path);
+				} //
+				catch (NoSuchFileException e) {
+					throw e;
+				} //
+				catch (UnsupportedOperationException | FileSystemException e) {
+					this.log.trace("could not link [{}] to [{}], so copying it instead", path, destination);
+					return Files.copy(path, destination, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} //
+			catch (NoSuchFileException e) {
+				if (attempt > 1)
+					throw e;
+			}
+		}
+	}
+
+	/**
+	 * adds a local copy of the bytes we've just written for the managed file, so that the
+	 * next read doesn't have to go back to S3 for them.
+	 */
+	void put(ManagedFile managedFile, Path source) {
+		var key = this.keyFor(managedFile);
+		try {
+			this.store(key, temp -> {
+				Files.deleteIfExists(temp);
+				try {
+					Files.createLink(temp, source);
+				} //
+				catch (UnsupportedOperationException | FileSystemException e) {
+					Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+				}
+			});
+		} //
+		catch (Exception e) {
+			this.log.warn("could not cache the managed file #{} locally", managedFile.id(), e);
+		}
+	}
+
+	private Path get(ManagedFile managedFile, ThrowingConsumer<Path> download) throws IOException {
+		var key = this.keyFor(managedFile);
+		var path = this.root.resolve(key);
+		synchronized (this) {
+			if (this.entries.get(key) != null && Files.exists(path)) {
+				this.hits.increment();
+				return path;
+			}
+		}
+		this.misses.increment();
+		var future = new CompletableFuture<Path>();
+		var inFlight = this.downloads.putIfAbsent(key, future);
+		if (inFlight != null) {
+			try {
+				return inFlight.join();
+			} //
+			catch (CompletionException e) {
+				throw e.getCause() instanceof IOException ioe ? ioe : new IOException(e.getCause());
+			}
+		}
+		try {
+			this.log.debug("downloading the managed file #{} to the local cache", managedFile.id());
+			var stored = this.store(key, download);
+			future.complete(stored);
+			return stored;
+		} //
+		catch (IOException | RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} //
+		finally {
+			this.downloads.remove(key, future);
+		}
+	}
+
+	private Path store(String key, ThrowingConsumer<Path> writer) throws IOException {
+		var temp = Files.createTempFile(this.root, key + "-", TEMP_SUFFIX);
+		try {
+			writer.acceptWithException(temp);
+			var path = Files.move(temp, this.root.resolve(key), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			this.admit(key, Files.size(path));
+			return path;
+		} //
+		catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		} //
+		catch (Exception e) {
+			Files.deleteIfExists(temp);
+			throw new IOException(e);
+		}
+	}
+
+	private synchronized void admit(String key, long size) {
+		var previous = this.entries.put(key, size);
+		this.totalBytes += size - (previous == null ? 0 : previous);
+		var iterator = this.entries.entrySet().iterator();
+		while (this.totalBytes > this.maxBytes && iterator.hasNext()) {
+			var eldest = iterator.next();
+			if (eldest.getKey().equals(key))
+				continue;
+			iterator.remove();
+			this.totalBytes -= eldest.getValue();
+			this.evictions.increment();
+			try {
+				Files.deleteIfExists(this.root.resolve(eldest.getKey()));
+			} //
+			catch (IOException e) {
+				this.log.warn("could not delete the evicted file [{}]", eldest.getKey(), e);
+			}
+		}
+	}
+
+	/*
+	 * picks up whatever the last run on this node left behind, least recently modified
+	 * first, and cleans up any downloads that didn't finish
+	 */
+	private void recover() throws IOException {
+		record Existing(Path path, BasicFileAttributes attributes) {
+		}
+		try (var files = Files.list(this.root)) {
+			var existing = files.filter(Files::isRegularFile).map(path -> {
+				try {
+					return new Existing(path, Files.readAttributes(path, BasicFileAttributes.class));
+				} //
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}).sorted(Comparator.comparing(e -> e.attributes().lastModifiedTime())).toList();
+			for (var e : existing) {
+				var name = e.path().getFileName().toString();
+				if (name.endsWith(TEMP_SUFFIX))
+					Files.deleteIfExists(e.path());
+				else
+					this.admit(name, e.attributes().size());
+			}
+		}
+		this.log.info("the managed file disk cache in [{}] holds {} bytes in {} files", this.root, this.totalBytes,
+				this.entries.size());
+	}
+
+	private synchronized long totalBytes() {
+		return this.totalBytes;
+	}
+
+	private String keyFor(ManagedFile managedFile) {
+		return managedFile.id() + "-" + managedFile.version();
+	}
+
+}
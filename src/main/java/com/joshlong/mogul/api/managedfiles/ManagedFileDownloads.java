@@ -0,0 +1,124 @@
+package com.joshlong.mogul.api.managedfiles;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * serves {@link ManagedFile managed files} over HTTP, with support for byte ranges and
+ * conditional requests.
+ * <p>
+ * Podcast players and browsers seek around large audio files and revalidate what they
+ * already have, so we hand the {@code Range}, {@code If-None-Match}, and {@code If-Range}
+ * headers to S3 and let it do the validation, then relay its {@code ETag},
+ * {@code Last-Modified}, and {@code Content-Range}. The body is written asynchronously
+ * through a fixed-size buffer, so a slow client doesn't hold a servlet thread for the
+ * whole object.
+ *
+ * @author Josh Long
+ */
+@Component
+class ManagedFileDownloads {
+
+	private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final Storage storage;
+
+	ManagedFileDownloads(Storage storage) {
+		this.storage = storage;
+	}
+
+	ResponseEntity<StreamingResponseBody> download(ManagedFile managedFile, HttpHeaders requestHeaders) {
+		var bucket = managedFile.bucket();
+		var key = managedFile.folder() + '/' + managedFile.storageFilename();
+		var range = this.rangeFor(requestHeaders);
+		var ifNoneMatch = requestHeaders.getFirst(HttpHeaders.IF_NONE_MATCH);
+		var ifRange = range == null ? null : requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+		if (ifRange != null && !ifRange.startsWith("\"")) {
+			// S3 only compares strong entity tags, so anything else gets the whole file
+			range = null;
+			ifRange = null;
+		}
+		try {
+			return this.respond(managedFile, this.storage.read(bucket, key, range, ifNoneMatch, ifRange));
+		} //
+		catch (S3Exception e) {
+			var etag = e.awsErrorDetails().sdkHttpResponse().firstMatchingHeader(HttpHeaders.ETAG).orElse(null);
+			return switch (e.statusCode()) {
+				case 304 -> ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+				// the file changed since the client cached the part it has, so start over
+				case 412 -> this.respond(managedFile, this.storage.read(bucket, key, null, ifNoneMatch, null));
+				case 416 -> ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+					.header(HttpHeaders.CONTENT_RANGE, "bytes */" + managedFile.size())
+					.build();
+				default -> throw e;
+			};
+		}
+	}
+
+	private ResponseEntity<StreamingResponseBody> respond(ManagedFile managedFile,
+			ResponseInputStream<GetObjectResponse> object) {
+		var response = object.response();
+		var partial = response.contentRange() != null;
+		var builder = ResponseEntity.status(partial ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
+			.header(HttpHeaders.ACCEPT_RANGES, "bytes")
+			.eTag(response.eTag())
+			.lastModified(response.lastModified())
+			.contentLength(response.contentLength())
+			.contentType(MediaType.parseMediaType(managedFile.contentType()));
+		if (partial)
+			builder = builder.header(HttpHeaders.CONTENT_RANGE, response.contentRange());
+		this.log.debug("serving managed file #{} ({})", managedFile.id(),
+				partial ? response.contentRange() : "the whole file");
+		return builder.body(out -> this.transfer(object, out));
+	}
+
+	/*
+	 * S3 only does a single range per request. we ignore anything else, which the HTTP
+	 * spec allows, and serve the whole file instead.
+	 */
+	private String rangeFor(HttpHeaders requestHeaders) {
+		var header = requestHeaders.getFirst(HttpHeaders.RANGE);
+		if (header == null)
+			return null;
+		try {
+			return HttpRange.parseRanges(header).size() == 1 ? header : null;
+		} //
+		catch (IllegalArgumentException e) {
+			this.log.debug("ignoring the invalid range [{}]", header);
+			return null;
+		}
+	}
+
+	private void transfer(ResponseInputStream<GetObjectResponse> in, OutputStream out) throws IOException {
+		try {
+			var buffer = new byte[TRANSFER_BUFFER_SIZE];
+			for (int read; (read = in.read(buffer)) != -1;)
+				out.write(buffer, 0, read);
+			out.flush();
+		} //
+		catch (IOException e) {
+			// most likely the client went away, so don't drain the rest of the object
+			in.abort();
+			throw e;
+		} //
+		finally {
+			in.close();
+		}
+	}
+
+}
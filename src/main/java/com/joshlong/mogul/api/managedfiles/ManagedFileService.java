@@ -33,6 +33,14 @@ public interface ManagedFileService {
 
 	Resource read(Long managedFileId);
 
+	/**
+	 * materializes the contents of the managed file at {@code destination}, replacing
+	 * anything already there. Repeated reads on this node are served from a local cache
+	 * rather than S3, and the result is very likely a hard link to the cached copy, so
+	 * treat it as read-only: delete it when you're done, but don't write to it.
+	 */
+	File read(Long managedFileId, File destination);
+
 	void write(Long managedFileId, String filename, MediaType mts, Resource resource);
 
 	/**
@@ -1,6 +1,7 @@
 package com.joshlong.mogul.api.managedfiles;
 
 import com.joshlong.mogul.api.ApiProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.cache.CacheManager;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
@@ -8,17 +9,25 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+
 @Configuration
 class ManagedFileServiceConfiguration {
 
 	@Bean
 	DefaultManagedFileService defaultManagedFileService(ApplicationEventPublisher publisher, CacheManager cache,
 			TransactionTemplate transactionTemplate, Storage storage, JdbcClient db, ApiProperties properties,
-			ApiProperties apiProperties) {
+			ApiProperties apiProperties, ManagedFileDiskCache diskCache) {
 		var bucket = properties.managedFiles().s3().bucket();
 		var managedFilesCache = cache.getCache("managedFiles");
 		return new DefaultManagedFileService(bucket, db, storage, publisher, managedFilesCache, transactionTemplate,
-				properties.aws().cloudfront().domain(), apiProperties);
+				properties.aws().cloudfront().domain(), apiProperties, diskCache);
+	}
+
+	@Bean
+	ManagedFileDiskCache managedFileDiskCache(ApiProperties properties, MeterRegistry registry) throws IOException {
+		var cache = properties.managedFiles().cache();
+		return new ManagedFileDiskCache(cache.root().toPath(), cache.maxSize(), registry);
 	}
 
 }
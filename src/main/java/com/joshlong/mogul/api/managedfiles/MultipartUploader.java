@@ -0,0 +1,271 @@
+package com.joshlong.mogul.api.managedfiles;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * uploads objects to S3, concurrently, in parts.
+ * <p>
+ * The calling thread reads the stream one part at a time into a pooled buffer and hands
+ * each part to a virtual thread for upload. A part takes its buffer, and its permit,
+ * before it's read, and gives both back only once it's uploaded, so there are only ever
+ * {@code partsInFlight} buffers on this node, counting the one being read into, and the
+ * calling thread blocks until one is free. Memory stays bounded and a slow S3 pushes back
+ * on the reader. Each part is retried on its own. If a part fails for good, we wait for
+ * the rest to settle and then abort the multipart upload so that S3 doesn't keep the
+ * orphaned parts around. Objects smaller than a single part skip all of that and go up in
+ * a single PUT.
+ *
+ * @author Josh Long
+ */
+class MultipartUploader {
+
+	private static final Duration RETRY_BACKOFF = Duration.ofMillis(500);
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	private final AtomicInteger partsInFlight = new AtomicInteger();
+
+	private final BlockingQueue<byte[]> buffers = new LinkedBlockingQueue<>();
+
+	private final Semaphore bufferPermits;
+
+	private final S3Client s3;
+
+	private final int partSize;
+
+	private final int maxAttempts;
+
+	private final Counter bytesUploaded, abortedUploads;
+
+	private final DistributionSummary throughput;
+
+	MultipartUploader(S3Client s3, DataSize partSize, int partsInFlight, int maxAttempts, MeterRegistry registry) {
+		// S3 rejects parts (other than the last one) smaller than 5MB
+		Assert.state(partSize.toBytes() >= DataSize.ofMegabytes(5).toBytes(), "the part size must be at least 5MB");
+		Assert.state(partsInFlight > 0, "there must be at least one part in flight");
+		Assert.state(maxAttempts > 0, "there must be at least one attempt");
+		this.s3 = s3;
+		this.partSize = (int) partSize.toBytes();
+		this.maxAttempts = maxAttempts;
+		// a part holds its permit from before it's read until it's uploaded
+		this.bufferPermits = new Semaphore(partsInFlight);
+		this.bytesUploaded = Counter.builder("mogul.storage.uploads.bytes")
+			.description("bytes uploaded to S3")
+			.baseUnit("bytes")
+			.register(registry);
+		this.abortedUploads = Counter.builder("mogul.storage.uploads.aborted")
+			.description("multipart uploads aborted after a part failed")
+			.register(registry);
+		this.throughput = DistributionSummary.builder("mogul.storage.uploads.throughput")
+			.description("the throughput of each upload to S3")
+			.baseUnit("bytes/second")
+			.register(registry);
+		Gauge.builder("mogul.storage.uploads.parts.in-flight", this.partsInFlight, AtomicInteger::get)
+			.description("parts currently being uploaded to S3")
+			.register(registry);
+	}
+
+	void upload(String bucket, String key, InputStream inputStream, MediaType mediaType) throws Exception {
+		var started = System.nanoTime();
+		var buffer = this.acquire();
+		var read = 0;
+		try {
+			read = inputStream.readNBytes(buffer, 0, this.partSize);
+		} //
+		catch (Exception e) {
+			this.release(buffer);
+			throw e;
+		}
+		if (read < this.partSize) {
+			try {
+				this.putObject(bucket, key, mediaType, buffer, read);
+			} //
+			finally {
+				this.release(buffer);
+			}
+			this.recordThroughput(read, started);
+			return;
+		}
+		this.uploadInParts(bucket, key, inputStream, mediaType, buffer, read, started);
+	}
+
+	private void uploadInParts(String bucket, String key, InputStream inputStream, MediaType mediaType,
+			byte[] firstBuffer, int firstRead, long started) throws Exception {
+		var builder = CreateMultipartUploadRequest.builder().bucket(bucket).key(key);
+		if (mediaType != null)
+			builder = builder.contentType(mediaType.toString());
+		var uploadId = (String) null;
+		try {
+			uploadId = this.s3.createMultipartUpload(builder.build()).uploadId();
+		} //
+		catch (Exception e) {
+			this.release(firstBuffer);
+			throw e;
+		}
+		var failure = new AtomicReference<Throwable>();
+		var futures = new ArrayList<Future<CompletedPart>>();
+		var buffer = firstBuffer;
+		var read = firstRead;
+		var total = 0L;
+		try {
+			var partNumber = 1;
+			while (read > 0 && failure.get() == null) {
+				total += read;
+				futures.add(this.submit(bucket, key, uploadId, partNumber++, buffer, read, failure));
+				buffer = null; // it belongs to the part, now
+				buffer = this.acquire();
+				read = inputStream.readNBytes(buffer, 0, this.partSize);
+			}
+		} //
+		catch (Throwable throwable) {
+			failure.compareAndSet(null, throwable);
+		} //
+		finally {
+			if (buffer != null)
+				this.release(buffer);
+		}
+		// parts are submitted in order, so the completed parts come back in order
+		var completedParts = new ArrayList<CompletedPart>();
+		for (var future : futures) {
+			try {
+				completedParts.add(future.get());
+			} //
+			catch (ExecutionException e) {
+				failure.compareAndSet(null, e.getCause());
+			}
+		}
+		if (failure.get() != null) {
+			this.abort(bucket, key, uploadId);
+			var throwable = failure.get();
+			if (throwable instanceof Exception exception)
+				throw exception;
+			throw new RuntimeException(throwable);
+		}
+		var completedMultipartUpload = CompletedMultipartUpload.builder().parts(completedParts).build();
+		var completeMultipartUploadRequest = CompleteMultipartUploadRequest.builder()
+			.bucket(bucket)
+			.key(key)
+			.uploadId(uploadId)
+			.multipartUpload(completedMultipartUpload)
+			.build();
+		this.s3.completeMultipartUpload(completeMultipartUploadRequest);
+		this.recordThroughput(total, started);
+	}
+
+	private Future<CompletedPart> submit(String bucket, String key, String uploadId, int partNumber, byte[] buffer,
+			int length, AtomicReference<Throwable> failure) {
+		return this.executor.submit(() -> {
+			this.partsInFlight.incrementAndGet();
+			try {
+				// another part already failed, so there's no point
+				if (failure.get() != null)
+					return null;
+				return this.uploadPart(bucket, key, uploadId, partNumber, buffer, length);
+			} //
+			catch (Throwable throwable) {
+				failure.compareAndSet(null, throwable);
+				throw throwable;
+			} //
+			finally {
+				this.partsInFlight.decrementAndGet();
+				this.release(buffer);
+			}
+		});
+	}
+
+	private CompletedPart uploadPart(String bucket, String key, String uploadId, int partNumber, byte[] buffer,
+			int length) throws InterruptedException {
+		var request = UploadPartRequest.builder()
+			.bucket(bucket)
+			.key(key)
+			.uploadId(uploadId)
+			.partNumber(partNumber)
+			.contentLength((long) length)
+			.build();
+		for (var attempt = 1;; attempt++) {
+			try {
+				this.log.trace("uploading part [{}] of [{}/{}], attempt [{}]", partNumber, bucket, key, attempt);
+				var etag = this.s3.uploadPart(request, this.body(buffer, length)).eTag();
+				this.bytesUploaded.increment(length);
+				return CompletedPart.builder().partNumber(partNumber).eTag(etag).build();
+			} //
+			catch (SdkException e) {
+				if (attempt >= this.maxAttempts)
+					throw e;
+				this.log.warn("could not upload part [{}] of [{}/{}] on attempt [{}], retrying", partNumber, bucket,
+						key, attempt, e);
+				Thread.sleep(RETRY_BACKOFF.multipliedBy(attempt));
+			}
+		}
+	}
+
+	private void putObject(String bucket, String key, MediaType mediaType, byte[] buffer, int length) {
+		var builder = PutObjectRequest.builder().bucket(bucket).key(key).contentLength((long) length);
+		if (mediaType != null)
+			builder = builder.contentType(mediaType.toString());
+		this.s3.putObject(builder.build(), this.body(buffer, length));
+		this.bytesUploaded.increment(length);
+	}
+
+	private void abort(String bucket, String key, String uploadId) {
+		this.abortedUploads.increment();
+		try {
+			this.s3.abortMultipartUpload(
+					AbortMultipartUploadRequest.builder().bucket(bucket).key(key).uploadId(uploadId).build());
+			this.log.warn("aborted the multipart upload [{}] for [{}/{}]", uploadId, bucket, key);
+		} //
+		catch (Exception e) {
+			this.log.error("could not abort the multipart upload [{}] for [{}/{}]", uploadId, bucket, key, e);
+		}
+	}
+
+	/*
+	 * the provider hands out a fresh stream over the same bytes on every attempt, so the
+	 * SDK can retry without copying the buffer.
+	 */
+	private RequestBody body(byte[] buffer, int length) {
+		return RequestBody.fromContentProvider(() -> new ByteArrayInputStream(buffer, 0, length), length,
+				MediaType.APPLICATION_OCTET_STREAM_VALUE);
+	}
+
+	private byte[] acquire() throws InterruptedException {
+		this.bufferPermits.acquire();
+		var buffer = this.buffers.poll();
+		return buffer == null ? new byte[this.partSize] : buffer;
+	}
+
+	private void release(byte[] buffer) {
+		this.buffers.offer(buffer);
+		this.bufferPermits.release();
+	}
+
+	private void recordThroughput(long bytes, long started) {
+		var seconds = Math.max(System.nanoTime() - started, 1) / 1_000_000_000.0;
+		var bytesPerSecond = bytes / seconds;
+		this.throughput.record(bytesPerSecond);
+		this.log.debug("uploaded {} bytes at {} bytes/second", bytes, (long) bytesPerSecond);
+	}
+
+}
@@ -1,5 +1,7 @@
 package com.joshlong.mogul.api.managedfiles;
 
+import com.joshlong.mogul.api.ApiProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.InputStreamResource;
@@ -7,15 +9,12 @@ import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
-import org.springframework.util.unit.DataSize;
-import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 
 import java.io.BufferedInputStream;
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Objects;
 
 @Component
@@ -25,8 +24,16 @@ class Storage {
 
 	private final S3Client s3;
 
-	public Storage(S3Client s3) {
+	private final MultipartUploader uploader;
+
+	private final BucketRegistry buckets;
+
+	public Storage(S3Client s3, MeterRegistry registry, ApiProperties properties) {
 		this.s3 = s3;
+		this.buckets = new BucketRegistry(s3);
+		var uploads = properties.managedFiles().s3().uploads();
+		this.uploader = new MultipartUploader(s3, uploads.partSize(), uploads.partsInFlight(), uploads.maxAttempts(),
+				registry);
 	}
 
 	public void remove(URI uri) {
@@ -35,7 +42,7 @@ class Storage {
 	}
 
 	public void remove(String bucket, String objectName) {
-		if (this.bucketExists(bucket)) {
+		if (this.buckets.exists(bucket)) {
 			var delete = DeleteObjectRequest.builder().bucket(bucket).key(objectName).build();
 			this.s3.deleteObject(delete);
 		}
@@ -46,57 +53,14 @@ class Storage {
 		this.write(uri.getHost(), uri.getPath(), resource, mediaType);
 	}
 
-	/*
-	 * writes N-mb sized chunks at a time to s3
-	 */
-	private void doWriteForLargeFiles(String bucketName, String keyName, Resource resource, DataSize maxSize,
-			MediaType mediaType) throws Exception {
-		try (var inputStream = new BufferedInputStream(resource.getInputStream())) {
-			var chunkSize = (int) maxSize.toBytes();
-			var builder = CreateMultipartUploadRequest.builder().bucket(bucketName).key(keyName);
-			if (mediaType != null)
-				builder = builder.contentType(mediaType.toString());
-			var createMultipartUploadRequest = builder.build();
-			var response = this.s3.createMultipartUpload(createMultipartUploadRequest);
-			var uploadId = response.uploadId();
-			var completedParts = new ArrayList<CompletedPart>();
-			var partNumber = 1;
-			var buffer = new byte[chunkSize];
-			var bytesRead = -1;
-			while ((bytesRead = inputStream.read(buffer)) > 0) {
-				this.log.trace("uploading part [{}]", partNumber);
-				var actualBytes = bytesRead == chunkSize ? buffer : Arrays.copyOf(buffer, bytesRead);
-				var uploadPartRequest = UploadPartRequest.builder()
-					.bucket(bucketName)
-					.key(keyName)
-					.uploadId(uploadId)
-					.partNumber(partNumber)
-					.build();
-				var etag = this.s3.uploadPart(uploadPartRequest, RequestBody.fromBytes(actualBytes)).eTag();
-				completedParts.add(CompletedPart.builder().partNumber(partNumber).eTag(etag).build());
-				partNumber++;
-				if (actualBytes != buffer) {
-					buffer = new byte[chunkSize];
-				}
-			}
-			var completedMultipartUpload = CompletedMultipartUpload.builder().parts(completedParts).build();
-			var completeMultipartUploadRequest = CompleteMultipartUploadRequest.builder()
-				.bucket(bucketName)
-				.key(keyName)
-				.uploadId(uploadId)
-				.multipartUpload(completedMultipartUpload)
-				.build();
-			this.s3.completeMultipartUpload(completeMultipartUploadRequest);
-		}
-	}
-
 	public void write(String bucket, String objectName, Resource resource, MediaType mediaType) {
 		try {
-			var largeFile = DataSize.ofMegabytes(10);
 			this.log.info("started executing an S3 PUT for [{}/{}] on thread [{}]", bucket, objectName,
 					Thread.currentThread());
-			this.ensureBucketExists(bucket);
-			this.doWriteForLargeFiles(bucket, objectName, resource, largeFile, mediaType);
+			this.buckets.ensureExists(bucket);
+			try (var inputStream = resource.getInputStream()) {
+				this.uploader.upload(bucket, objectName, inputStream, mediaType);
+			}
 			this.log.info("finished executing an S3 PUT for [{}/{}] on thread [{}]", bucket, objectName,
 					Thread.currentThread());
 		} //
@@ -106,14 +70,6 @@ class Storage {
 
 	}
 
-	private boolean bucketExists(String bucketName) {
-		var buckets = this.s3.listBuckets();
-		if (buckets.hasBuckets()) {
-			return buckets.buckets().stream().anyMatch(bucket -> bucket.name().equalsIgnoreCase(bucketName));
-		}
-		return false;
-	}
-
 	/* much faster than downloading the bytes and trying to write them back up again! */
 	public void copy(String src, String dest, String key, MediaType newContentType) {
 		var copyRequestBuilder = CopyObjectRequest.builder()
@@ -125,6 +81,7 @@ class Storage {
 		copyRequestBuilder = newContentType == null ? copyRequestBuilder
 				: copyRequestBuilder.contentType(newContentType.toString());
 		var result = copyRequestBuilder.build();
+		this.buckets.ensureExists(dest);
 		this.s3.copyObject(result);
 	}
 
@@ -151,18 +108,26 @@ class Storage {
 		}
 	}
 
+	/**
+	 * a conditional, optionally ranged, read. The validation happens in S3: a matching
+	 * {@code ifNoneMatch} surfaces as an {@link S3Exception} with a status of 304, a
+	 * failed {@code ifMatch} as 412, and an unsatisfiable {@code range} as 416.
+	 */
+	ResponseInputStream<GetObjectResponse> read(String bucket, String objectName, String range, String ifNoneMatch,
+			String ifMatch) {
+		var getObjectRequest = GetObjectRequest.builder()
+			.bucket(bucket)
+			.key(objectName)
+			.range(range)
+			.ifNoneMatch(ifNoneMatch)
+			.ifMatch(ifMatch)
+			.build();
+		return this.s3.getObject(getObjectRequest);
+	}
+
 	private void validUri(URI uri) {
 		Assert.state(uri != null && uri.getScheme().equalsIgnoreCase("s3") && uri.getPath().split("/").length == 2,
 				"this uri [" + Objects.requireNonNull(uri) + "] is not a valid s3 reference");
 	}
 
-	private void ensureBucketExists(String bucketName) {
-		if (bucketExists(bucketName)) {
-			this.log.trace("the bucket named [{}] already exists", bucketName);
-			return;
-		}
-		this.log.info("attempting to create the bucket called [{}]", bucketName);
-		this.s3.createBucket(CreateBucketRequest.builder().bucket(bucketName).build());
-	}
-
 }
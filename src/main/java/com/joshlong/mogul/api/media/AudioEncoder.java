@@ -5,9 +5,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
-import org.springframework.util.FileCopyUtils;
 
-import java.io.*;
+import java.io.File;
 
 // todo refactor so that this type can be package private.
 @Component
@@ -15,6 +14,12 @@ public class AudioEncoder implements Encoder<AudioEncodedFile> {
 
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
+	private final MediaProcesses processes;
+
+	public AudioEncoder(MediaProcesses processes) {
+		this.processes = processes;
+	}
+
 	@Override
 	public AudioEncodedFile encode(File input) {
 		try {
@@ -29,12 +34,12 @@ public class AudioEncoder implements Encoder<AudioEncodedFile> {
 			var mp3AbsolutePath = mp3.getAbsolutePath();
 			this.log.debug("mp3: {}", mp3AbsolutePath);
 			// this fixed #113
-			var exit = Runtime.getRuntime()
-				.exec(new String[] { "ffmpeg", "-i", inputAbsolutePath, "-ar", "48000", "-ac", "2", "-c:a",
-						"libmp3lame", "-b:a", "192k", mp3AbsolutePath })
-				.waitFor();
-			Assert.state(exit == 0, "the ffmpeg command ran successfully");
-			var durationMs = this.durationInMilliseconds(mp3AbsolutePath);
+			var result = this.processes.run("ffmpeg", "-i", inputAbsolutePath, "-ar", "48000", "-ac", "2", "-c:a",
+					"libmp3lame", "-b:a", "192k", mp3AbsolutePath);
+			Assert.state(result.success(), "the ffmpeg command ran successfully: " + result.error());
+			var probe = AudioProbe.probe(mp3);
+			// we only need ffprobe if we can't read the headers ourselves
+			var durationMs = probe != null ? probe.duration().toMillis() : this.durationInMilliseconds(mp3AbsolutePath);
 			return new AudioEncodedFile(mp3, durationMs);
 		} //
 		catch (Exception e) {
@@ -43,16 +48,10 @@ public class AudioEncoder implements Encoder<AudioEncodedFile> {
 	}
 
 	private float durationInMilliseconds(String file) throws Exception {
-		var pb = new ProcessBuilder("ffprobe", "-v", "error", "-show_entries", "format=duration", "-of", "csv=p=0",
-				file)
-			.redirectErrorStream(true)
-			.start();
-		var exitCode = pb.waitFor();
-		Assert.state(exitCode == 0, "ffprobe failed");
-		try (var i = new BufferedReader(new InputStreamReader(pb.getInputStream())); var o = new StringWriter()) {
-			FileCopyUtils.copy(i, o);
-			return Float.parseFloat(o.toString()) * 1000;// milliseconds
-		}
+		var result = this.processes.run("ffprobe", "-v", "error", "-show_entries", "format=duration", "-of", "csv=p=0",
+				file);
+		Assert.state(result.success(), "ffprobe failed: " + result.error());
+		return Float.parseFloat(result.output().trim()) * 1000;// milliseconds
 	}
 
 }
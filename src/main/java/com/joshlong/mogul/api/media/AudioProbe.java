@@ -0,0 +1,298 @@
+package com.joshlong.mogul.api.media;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * works out the duration, and the bitrate, of {@code .mp3} and {@code .wav} files by
+ * reading their headers, in process, rather than by launching {@code ffprobe}.
+ * <p>
+ * For a {@code .wav} we only need the {@code fmt} and {@code data} chunks. For an
+ * {@code .mp3} we look for a Xing, Info, or VBRI header in the first frame, which most
+ * encoders (including {@code libmp3lame}) write and which gives us the number of frames.
+ * Failing that, we read the header of every frame, skipping over the audio itself. Either
+ * way we count frames, so the duration is exact to the frame (about 26ms at 44.1kHz).
+ * Anything else gets a {@code null}, and the caller can fall back to {@code ffprobe}.
+ *
+ * @author Josh Long
+ */
+public abstract class AudioProbe {
+
+	private static final Logger log = LoggerFactory.getLogger(AudioProbe.class);
+
+	/** kbps, indexed by [version == MPEG-1 ? 0 : 1][layer - 1][bitrate index] */
+	private static final int[][][] BITRATES = { //
+			{ //
+					{ 0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448 }, //
+					{ 0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384 }, //
+					{ 0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 } //
+			}, //
+			{ //
+					{ 0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256 }, //
+					{ 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 }, //
+					{ 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 } //
+			} //
+	};
+
+	/** the longest a frame can be: layer II at 160kbps and 8kHz (MPEG-2.5), padded */
+	private static final int MAX_FRAME_LENGTH = 1152 / 8 * 160_000 / 8_000 + 1;
+
+	/** Hz, indexed by [version == MPEG-1 ? 0 : MPEG-2 ? 1 : 2][sample rate index] */
+	private static final int[][] SAMPLE_RATES = { { 44100, 48000, 32000 }, { 22050, 24000, 16000 },
+			{ 11025, 12000, 8000 } };
+
+	/**
+	 * @param duration how long the audio plays
+	 * @param bitsPerSecond the average bitrate of the audio
+	 * @param sampleRate the sample rate, in Hz
+	 */
+	public record Probe(Duration duration, long bitsPerSecond, int sampleRate) {
+	}
+
+	/**
+	 * @return what we could learn from the file's headers, or {@code null} if it's not an
+	 * {@code .mp3} or a {@code .wav} we understand
+	 */
+	public static Probe probe(File file) throws IOException {
+		try (var in = new RandomAccessFile(file, "r")) {
+			var magic = new byte[4];
+			if (in.read(magic) < 4)
+				return null;
+			var type = new String(magic, StandardCharsets.US_ASCII);
+			var probe = "RIFF".equals(type) ? wav(file) : mp3(file);
+			if (probe == null)
+				log.debug("could not probe [{}]", file.getAbsolutePath());
+			return probe;
+		} //
+		catch (EOFException e) {
+			log.debug("ran out of [{}] while probing it", file.getAbsolutePath());
+			return null;
+		}
+	}
+
+	private static Probe wav(File file) throws IOException {
+		try (var in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			var header = new byte[12];
+			in.readFully(header);
+			if (!"WAVE".equals(new String(header, 8, 4, StandardCharsets.US_ASCII)))
+				return null;
+			var offset = 12L;
+			var byteRate = 0L;
+			var sampleRate = 0;
+			while (true) {
+				var id = new byte[4];
+				in.readFully(id);
+				var size = Integer.toUnsignedLong(Integer.reverseBytes(in.readInt()));
+				offset += 8;
+				var chunk = new String(id, StandardCharsets.US_ASCII);
+				if ("fmt ".equals(chunk)) {
+					var fmt = new byte[(int) size];
+					in.readFully(fmt);
+					sampleRate = littleEndian(fmt, 4);
+					byteRate = Integer.toUnsignedLong(littleEndian(fmt, 8));
+				} //
+				else if ("data".equals(chunk)) {
+					if (byteRate == 0)
+						return null;
+					// streamed files don't know how much data they'll have, so they
+					// say the most they can
+					var available = file.length() - offset;
+					var bytes = size == 0xFFFFFFFFL || size > available ? available : size;
+					return new Probe(Duration.ofMillis(bytes * 1000 / byteRate), byteRate * 8, sampleRate);
+				} //
+				else {
+					skip(in, size);
+				}
+				// chunks are padded to an even size
+				if (size % 2 == 1)
+					skip(in, 1);
+				offset += size + (size % 2);
+			}
+		}
+	}
+
+	private static Probe mp3(File file) throws IOException {
+		try (var in = new BufferedInputStream(new FileInputStream(file), 64 * 1024)) {
+			var audioStart = skipId3v2(in);
+			var audioEnd = file.length() - (hasId3v1(file) ? 128 : 0);
+			var position = audioStart;
+
+			// find the first frame, allowing for a bit of junk in front of it
+			var header = new byte[4];
+			var first = (Frame) null;
+			var junk = 8 * 1024;
+			in.mark(junk + MAX_FRAME_LENGTH + header.length);
+			for (var i = 0; i < junk && first == null; i++) {
+				in.reset();
+				skip(in, i);
+				if (in.readNBytes(header, 0, 4) < 4)
+					return null;
+				var candidate = Frame.parse(header);
+				// any four bytes might look like a frame header (say, in an .m4a), so we
+				// believe it only if another frame like it follows
+				if (candidate != null && followedBy(in, candidate)) {
+					first = candidate;
+					position += i;
+				}
+			}
+			if (first == null)
+				return null;
+
+			// the first frame may be a Xing, Info or VBRI header, which knows the
+			// number of frames
+			in.reset();
+			skip(in, position - audioStart);
+			var frame = in.readNBytes(first.length());
+			var frames = vbrFrames(first, frame);
+			if (frames > 0) {
+				var samples = frames * first.samplesPerFrame();
+				var milliseconds = samples * 1000 / first.sampleRate();
+				var audioBytes = audioEnd - position - first.length();
+				var bitrate = milliseconds == 0 ? first.bitrate() : audioBytes * 8 * 1000 / milliseconds;
+				return new Probe(Duration.ofMillis(milliseconds), bitrate, first.sampleRate());
+			}
+
+			// otherwise, count the frames, reading only their headers
+			var count = 1L;
+			var bytes = (long) first.length();
+			position += first.length();
+			while (position + 4 <= audioEnd) {
+				if (in.readNBytes(header, 0, 4) < 4)
+					break;
+				var next = Frame.parse(header);
+				// stop at anything that isn't a whole frame, like a truncated last
+				// frame, or a tag
+				if (next == null || next.sampleRate() != first.sampleRate() || position + next.length() > audioEnd)
+					break;
+				skip(in, next.length() - 4);
+				position += next.length();
+				bytes += next.length();
+				count += 1;
+			}
+			var milliseconds = count * first.samplesPerFrame() * 1000 / first.sampleRate();
+			var bitrate = milliseconds == 0 ? first.bitrate() : bytes * 8 * 1000 / milliseconds;
+			return new Probe(Duration.ofMillis(milliseconds), bitrate, first.sampleRate());
+		}
+	}
+
+	/**
+	 * @return whether the frame, whose header we've just read, is followed by another
+	 * frame with the same sample rate and layout
+	 */
+	private static boolean followedBy(InputStream in, Frame frame) throws IOException {
+		var rest = frame.length() - 4;
+		if (in.readNBytes(rest).length < rest)
+			return false;
+		var header = in.readNBytes(4);
+		if (header.length < 4)
+			return false;
+		var next = Frame.parse(header);
+		return next != null && next.sampleRate() == frame.sampleRate() && next.mpeg1() == frame.mpeg1()
+				&& next.samplesPerFrame() == frame.samplesPerFrame();
+	}
+
+	/**
+	 * @return the number of frames recorded in a Xing, Info, or VBRI header, or zero
+	 */
+	private static long vbrFrames(Frame first, byte[] frame) {
+		var xing = 4 + (first.mpeg1() ? (first.mono() ? 17 : 32) : (first.mono() ? 9 : 17));
+		if (frame.length >= xing + 12) {
+			var tag = new String(frame, xing, 4, StandardCharsets.US_ASCII);
+			if ("Xing".equals(tag) || "Info".equals(tag)) {
+				var flags = bigEndian(frame, xing + 4);
+				if ((flags & 1) != 0)
+					return Integer.toUnsignedLong(bigEndian(frame, xing + 8));
+			}
+		}
+		var vbri = 4 + 32;
+		if (frame.length >= vbri + 18 && "VBRI".equals(new String(frame, vbri, 4, StandardCharsets.US_ASCII)))
+			return Integer.toUnsignedLong(bigEndian(frame, vbri + 14));
+		return 0;
+	}
+
+	/**
+	 * @return how many bytes the ID3v2 tag, if any, took up
+	 */
+	private static long skipId3v2(BufferedInputStream in) throws IOException {
+		in.mark(10);
+		var header = in.readNBytes(10);
+		if (header.length == 10 && header[0] == 'I' && header[1] == 'D' && header[2] == '3') {
+			// the size is "synchsafe": seven bits per byte
+			var size = ((header[6] & 0x7f) << 21) | ((header[7] & 0x7f) << 14) | ((header[8] & 0x7f) << 7)
+					| (header[9] & 0x7f);
+			var footer = (header[5] & 0x10) != 0 ? 10 : 0;
+			skip(in, size + footer);
+			return 10L + size + footer;
+		}
+		in.reset();
+		return 0;
+	}
+
+	private static boolean hasId3v1(File file) throws IOException {
+		if (file.length() < 128)
+			return false;
+		try (var in = new RandomAccessFile(file, "r")) {
+			in.seek(file.length() - 128);
+			var tag = new byte[3];
+			in.readFully(tag);
+			return "TAG".equals(new String(tag, StandardCharsets.US_ASCII));
+		}
+	}
+
+	private static void skip(InputStream in, long bytes) throws IOException {
+		in.skipNBytes(bytes);
+	}
+
+	private static int littleEndian(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xff) | ((bytes[offset + 1] & 0xff) << 8) | ((bytes[offset + 2] & 0xff) << 16)
+				| ((bytes[offset + 3] & 0xff) << 24);
+	}
+
+	private static int bigEndian(byte[] bytes, int offset) {
+		return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16) | ((bytes[offset + 2] & 0xff) << 8)
+				| (bytes[offset + 3] & 0xff);
+	}
+
+	/**
+	 * the interesting parts of an MPEG audio frame header.
+	 *
+	 * @param bitrate in bits per second
+	 * @param length the length of the whole frame, header included, in bytes
+	 */
+	private record Frame(boolean mpeg1, boolean mono, int sampleRate, int bitrate, int samplesPerFrame, int length) {
+
+		static Frame parse(byte[] header) {
+			if ((header[0] & 0xff) != 0xff || (header[1] & 0xe0) != 0xe0)
+				return null;
+			// 0: MPEG-2.5, 1: reserved, 2: MPEG-2, 3: MPEG-1
+			var version = (header[1] >> 3) & 0x3;
+			var layer = 4 - ((header[1] >> 1) & 0x3); // 4: reserved
+			var bitrateIndex = (header[2] >> 4) & 0xf;
+			var sampleRateIndex = (header[2] >> 2) & 0x3;
+			if (version == 1 || layer == 4 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3)
+				return null;
+			var mpeg1 = version == 3;
+			var padding = (header[2] >> 1) & 0x1;
+			var mono = ((header[3] >> 6) & 0x3) == 3;
+			var bitrate = BITRATES[mpeg1 ? 0 : 1][layer - 1][bitrateIndex] * 1000;
+			var sampleRate = SAMPLE_RATES[mpeg1 ? 0 : (version == 2 ? 1 : 2)][sampleRateIndex];
+			var samplesPerFrame = layer == 1 ? 384 : (layer == 3 && !mpeg1 ? 576 : 1152);
+			var length = layer == 1 ? (12 * bitrate / sampleRate + padding) * 4
+					: samplesPerFrame / 8 * bitrate / sampleRate + padding;
+			return new Frame(mpeg1, mono, sampleRate, bitrate, samplesPerFrame, length);
+		}
+
+	}
+
+}
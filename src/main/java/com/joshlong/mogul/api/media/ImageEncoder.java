@@ -1,32 +1,71 @@
 package com.joshlong.mogul.api.media;
 
 import com.joshlong.mogul.api.utils.FileUtils;
-import com.joshlong.mogul.api.utils.ProcessUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
+import org.springframework.util.function.ThrowingFunction;
 import org.springframework.util.unit.DataSize;
 
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.metadata.IIOMetadata;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * makes sure images are {@code .jpg}s no bigger than {@link #MAX_SIZE}.
+ * <p>
+ * Finding the right quality is a binary search, starting from a guess based on how many
+ * bytes we can afford for each pixel, so it takes a handful of encodings rather than one
+ * for every five points of quality. If {@link ImageIO} can decode the image, we decode it
+ * once and re-encode the pixels in process for each guess. Otherwise (say, it's a
+ * {@code .webp}, or a CMYK {@code .jpg}) each guess is a {@code magick} process.
+ *
+ * @author Josh Long
+ */
 @Component
 public class ImageEncoder implements Encoder<ImageEncodedFile> {
 
 	public final static DataSize MAX_SIZE = DataSize.ofMegabytes(1);
 
+	/**
+	 * roughly how many bytes a photograph takes per pixel, as a {@code .jpg}, at each
+	 * quality, best first.
+	 */
+	private static final int[] QUALITIES = { 100, 95, 90, 80, 70, 50, 25 };
+
+	private static final double[] BYTES_PER_PIXEL = { 0.9, 0.45, 0.3, 0.19, 0.15, 0.11, 0.07 };
+
+	/** what we start with if we don't know how big the image is */
+	private static final int DEFAULT_QUALITY = 85;
+
 	private final Logger log = LoggerFactory.getLogger(ImageEncoder.class);
 
+	private final MediaProcesses processes;
+
+	public ImageEncoder(MediaProcesses processes) {
+		this.processes = processes;
+	}
+
 	@Override
 	public ImageEncodedFile encode(File path) {
 		try {
 			var output = isValidImage(path) ? Files
 				.copy(path.toPath(), new File(path.getParentFile(), "copy-" + UUID.randomUUID() + ".jpg").toPath())
-				.toFile() : scale(convertFileToJpeg(path));
+				.toFile() : reencode(path);
 			Assert.state(isValidSize(output),
 					"the stdout image [" + path.getAbsolutePath() + "] must be of the right file size");
 			log.debug("in: {}{}out: {}{}", path.getAbsolutePath(), System.lineSeparator(), output.getAbsolutePath(),
@@ -39,6 +78,14 @@ public class ImageEncoder implements Encoder<ImageEncodedFile> {
 		}
 	}
 
+	private File reencode(File in) throws Exception {
+		var decoded = decode(in);
+		if (decoded != null)
+			return this.scale(in, decoded);
+		this.log.debug("could not decode [{}] in process, so using magick", in.getAbsolutePath());
+		return this.scale(this.convertFileToJpeg(in));
+	}
+
 	private boolean isValidSize(File in) {
 		return (in.length() <= MAX_SIZE.toBytes());
 	}
@@ -47,10 +94,8 @@ public class ImageEncoder implements Encoder<ImageEncodedFile> {
 		if (isValidType(in))
 			return in;
 		var converted = FileUtils.createRelativeTempFile(in, ".jpg");
-		var convert = new ProcessBuilder()
-			.command("magick", "convert", in.getAbsolutePath(), converted.getAbsolutePath())
-			.start();
-		Assert.state(convert.waitFor() == 0, "the process should exit normally");
+		var convert = this.processes.run("magick", "convert", in.getAbsolutePath(), converted.getAbsolutePath());
+		Assert.state(convert.success(), "the process should exit normally: " + convert.error());
 		return converted;
 	}
 
@@ -58,26 +103,175 @@ public class ImageEncoder implements Encoder<ImageEncodedFile> {
 		return in.getName().toLowerCase(Locale.ROOT).endsWith(".jpg");
 	}
 
+	/**
+	 * re-encodes the pixels we've already decoded, in process.
+	 */
+	private File scale(File file, Decoded decoded) throws Exception {
+		var image = decoded.image();
+		var best = new AtomicReference<byte[]>();
+		var quality = quality(estimateQuality((long) image.getWidth() * image.getHeight(), MAX_SIZE.toBytes()), q -> {
+			var bytes = encodeJpeg(decoded, q);
+			if (bytes.length > MAX_SIZE.toBytes())
+				return false;
+			best.set(bytes);
+			return true;
+		});
+		Assert.state(quality > 0, "[" + file.getAbsolutePath() + "] won't fit in " + MAX_SIZE + " at any quality");
+		this.log.debug("re-encoded [{}] at quality {}", file.getAbsolutePath(), quality);
+		var dest = FileUtils.createRelativeTempFile(file, ".jpg");
+		Files.write(dest.toPath(), best.get());
+		return dest;
+	}
+
 	private File scale(File file) throws Exception {
 		var original = file.getAbsolutePath();
 		var dest = FileUtils.createRelativeTempFile(file);
-		var output = dest.getAbsolutePath();
-		var quality = 100;
-		var size = 0L;
-		do {
-			var convert = ProcessUtils.runCommand("magick", "convert", original, "-quality", String.valueOf(quality),
-					output);
-			Assert.state(convert == 0, "the convert command failed to run.");
-			size = Files.size(Paths.get(output));
-			quality -= 5;
+		var attempt = FileUtils.createRelativeTempFile(file);
+		try {
+			var quality = quality(estimateQuality(pixels(file), MAX_SIZE.toBytes()), q -> {
+				var convert = this.processes.run("magick", "convert", original, "-quality", String.valueOf(q),
+						attempt.getAbsolutePath());
+				Assert.state(convert.success(), "the convert command failed to run: " + convert.error());
+				if (attempt.length() > MAX_SIZE.toBytes())
+					return false;
+				Files.move(attempt.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				return true;
+			});
+			Assert.state(quality > 0, "[" + original + "] won't fit in " + MAX_SIZE + " at any quality");
+			this.log.debug("converted [{}] at quality {}", original, quality);
+			return dest;
+		} //
+		finally {
+			Files.deleteIfExists(attempt.toPath());
 		}
-		while (size > MAX_SIZE.toBytes() && quality > 0);
-
-		return dest;
 	}
 
 	private boolean isValidImage(File f) {
 		return isValidSize(f) && isValidType(f);
 	}
 
+	/**
+	 * finds the highest quality, from 1 to 100, that {@code fits}, assuming that the
+	 * output only gets bigger as the quality goes up. We try the estimate first, and
+	 * bisect from there, so it takes at most eight attempts, and usually fewer.
+	 * @param fits encodes the image at the given quality, and says whether it fits
+	 * @return the highest quality that fits, or zero if not even the lowest does
+	 */
+	static int quality(int estimate, ThrowingFunction<Integer, Boolean> fits) {
+		var fit = 0;
+		var tooBig = 101;
+		var next = Math.clamp(estimate, 1, 100);
+		while (tooBig - fit > 1) {
+			if (fits.apply(next))
+				fit = next;
+			else
+				tooBig = next;
+			next = (fit + tooBig) / 2;
+		}
+		return fit;
+	}
+
+	/**
+	 * @return the best quality at which a typical image with this many pixels fits in
+	 * {@code maxBytes}
+	 */
+	static int estimateQuality(long pixels, long maxBytes) {
+		if (pixels <= 0)
+			return DEFAULT_QUALITY;
+		var budget = (double) maxBytes / pixels;
+		for (var i = 0; i < QUALITIES.length; i++)
+			if (BYTES_PER_PIXEL[i] <= budget)
+				return QUALITIES[i];
+		return QUALITIES[QUALITIES.length - 1] / 2;
+	}
+
+	/**
+	 * @param metadata the original {@code .jpg}'s metadata, if there was one, so that
+	 * things like its EXIF orientation survive
+	 */
+	private record Decoded(BufferedImage image, IIOMetadata metadata) {
+	}
+
+	/**
+	 * @return the image, or {@code null} if {@link ImageIO} doesn't understand it
+	 */
+	private static Decoded decode(File file) {
+		var reader = (ImageReader) null;
+		try (var in = ImageIO.createImageInputStream(file)) {
+			var readers = in == null ? null : ImageIO.getImageReaders(in);
+			if (readers == null || !readers.hasNext())
+				return null;
+			reader = readers.next();
+			reader.setInput(in, true, false);
+			var image = reader.read(0);
+			var metadata = "jpeg".equalsIgnoreCase(reader.getFormatName()) ? reader.getImageMetadata(0) : null;
+			var rgb = rgb(image);
+			// the metadata describes the original's color space, so it only fits
+			// if we kept it
+			return new Decoded(rgb, rgb == image ? metadata : null);
+		} //
+		catch (IOException | RuntimeException e) {
+			return null;
+		} //
+		finally {
+			if (reader != null)
+				reader.dispose();
+		}
+	}
+
+	/**
+	 * {@code .jpg}s can't have transparency or a palette, so we paint those on white.
+	 */
+	private static BufferedImage rgb(BufferedImage image) {
+		if (!image.getColorModel().hasAlpha() && !(image.getColorModel() instanceof IndexColorModel))
+			return image;
+		var rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+		var graphics = rgb.createGraphics();
+		try {
+			graphics.drawImage(image, 0, 0, Color.WHITE, null);
+		} //
+		finally {
+			graphics.dispose();
+		}
+		return rgb;
+	}
+
+	private static byte[] encodeJpeg(Decoded decoded, int quality) throws IOException {
+		var writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+		try (var bytes = new ByteArrayOutputStream(); var out = ImageIO.createImageOutputStream(bytes)) {
+			var param = writer.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(quality / 100f);
+			writer.setOutput(out);
+			writer.write(null, new IIOImage(decoded.image(), null, decoded.metadata()), param);
+			out.flush();
+			return bytes.toByteArray();
+		} //
+		finally {
+			writer.dispose();
+		}
+	}
+
+	/**
+	 * @return how many pixels the image has, from its header, or zero if we can't tell
+	 */
+	private static long pixels(File file) {
+		var reader = (ImageReader) null;
+		try (var in = ImageIO.createImageInputStream(file)) {
+			var readers = in == null ? null : ImageIO.getImageReaders(in);
+			if (readers == null || !readers.hasNext())
+				return 0;
+			reader = readers.next();
+			reader.setInput(in, true, true);
+			return (long) reader.getWidth(0) * reader.getHeight(0);
+		} //
+		catch (IOException | RuntimeException e) {
+			return 0;
+		} //
+		finally {
+			if (reader != null)
+				reader.dispose();
+		}
+	}
+
 }
@@ -0,0 +1,277 @@
+package com.joshlong.mogul.api.media;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.function.ThrowingFunction;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * runs the command line tools, like {@code ffmpeg}, {@code ffprobe}, and {@code magick},
+ * on which the media pipeline depends.
+ * <p>
+ * Each tool gets a fixed number of permits, so that a burst of work (say, a mogul
+ * uploading forty segments at once) queues up here instead of oversubscribing the node
+ * with processes. Both of a process' output streams are always drained, so it can never
+ * block on a full pipe, and only the last {@link #TAIL_BYTES bytes} of each are kept.
+ * Every process has a timeout, after which it's killed, along with its children, as it is
+ * if the calling thread is interrupted while waiting for it.
+ *
+ * @author Josh Long
+ */
+public class MediaProcesses {
+
+	/** how much of a process' output we keep, from the end */
+	private static final int TAIL_BYTES = 64 * 1024;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final ExecutorService drains = Executors.newVirtualThreadPerTaskExecutor();
+
+	private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+	private final Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+
+	private final Map<String, Integer> concurrency;
+
+	private final int defaultConcurrency;
+
+	private final Duration timeout;
+
+	private final MeterRegistry registry;
+
+	/**
+	 * @param concurrency how many processes of each tool may run at once. Tools that
+	 * aren't listed may run one per processor.
+	 * @param timeout how long a process may run, unless the caller says otherwise
+	 */
+	public MediaProcesses(Map<String, Integer> concurrency, Duration timeout, MeterRegistry registry) {
+		this.concurrency = concurrency == null ? Map.of() : Map.copyOf(concurrency);
+		this.defaultConcurrency = Runtime.getRuntime().availableProcessors();
+		this.timeout = timeout;
+		this.registry = registry;
+		Assert.state(this.timeout != null && !this.timeout.isNegative() && !this.timeout.isZero(),
+				"the timeout must be longer than zero");
+	}
+
+	/**
+	 * @param exitCode the exit code of the process
+	 * @param output whatever the caller made of the process' standard output
+	 * @param error the tail of the process' standard error
+	 */
+	public record Result<T>(int exitCode, T output, String error) {
+
+		public boolean success() {
+			return this.exitCode == 0;
+		}
+	}
+
+	public Result<String> run(String... command) throws IOException, InterruptedException {
+		return this.run(List.of(command), this.timeout);
+	}
+
+	/**
+	 * runs the command, keeping the tail of its standard output as a string.
+	 */
+	public Result<String> run(List<String> command, Duration timeout) throws IOException, InterruptedException {
+		return this.run(command, timeout, MediaProcesses::tail);
+	}
+
+	public <T> Result<T> run(List<String> command, ThrowingFunction<InputStream, T> output)
+			throws IOException, InterruptedException {
+		return this.run(command, this.timeout, output);
+	}
+
+	/**
+	 * runs the command, handing its standard output to {@code output} as it's written.
+	 * Whatever {@code output} doesn't read is discarded.
+	 */
+	public <T> Result<T> run(List<String> command, Duration timeout, ThrowingFunction<InputStream, T> output)
+			throws IOException, InterruptedException {
+		Assert.notEmpty(command, "the command must not be empty");
+		var tool = new File(command.getFirst()).getName();
+		var permits = this.permits.computeIfAbsent(tool, this::permitsFor);
+		var waiting = System.nanoTime();
+		permits.acquire();
+		return this.run(tool, permits, waiting, command, timeout, output);
+	}
+
+	/**
+	 * runs the command, like {@link #run(List, Duration)}, unless no permit frees up
+	 * within {@code wait}. For callers, like health checks, that shouldn't queue up
+	 * behind the real work.
+	 * @return the result, or {@code null} if we gave up waiting for a permit
+	 */
+	public Result<String> tryRun(List<String> command, Duration wait, Duration timeout)
+			throws IOException, InterruptedException {
+		Assert.notEmpty(command, "the command must not be empty");
+		var tool = new File(command.getFirst()).getName();
+		var permits = this.permits.computeIfAbsent(tool, this::permitsFor);
+		var waiting = System.nanoTime();
+		if (!permits.tryAcquire(wait.toNanos(), TimeUnit.NANOSECONDS)) {
+			this.log.debug("no permit to run {} freed up within {}", command, wait);
+			return null;
+		}
+		return this.run(tool, permits, waiting, command, timeout, MediaProcesses::tail);
+	}
+
+	/**
+	 * runs the command with a permit we already hold, and gives it back.
+	 */
+	private <T> Result<T> run(String tool, Semaphore permits, long waiting, List<String> command, Duration timeout,
+			ThrowingFunction<InputStream, T> output) throws IOException, InterruptedException {
+		var outcome = "error";
+		var started = System.nanoTime();
+		var running = this.running.get(tool);
+		running.incrementAndGet();
+		try {
+			Timer.builder("mogul.media.processes.wait")
+				.description("how long a process waits for a permit to run")
+				.tag("tool", tool)
+				.register(this.registry)
+				.record(started - waiting, TimeUnit.NANOSECONDS);
+			var result = this.execute(tool, command, timeout, output);
+			outcome = result.success() ? "success" : "failure";
+			return result;
+		} //
+		catch (ProcessTimeoutException e) {
+			outcome = "timeout";
+			throw e;
+		} //
+		finally {
+			running.decrementAndGet();
+			permits.release();
+			Timer.builder("mogul.media.processes")
+				.description("how long processes run, and how they end")
+				.tag("tool", tool)
+				.tag("outcome", outcome)
+				.publishPercentileHistogram()
+				.register(this.registry)
+				.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private <T> Result<T> execute(String tool, List<String> command, Duration timeout,
+			ThrowingFunction<InputStream, T> output) throws IOException, InterruptedException {
+		this.log.debug("running {}", command);
+		var process = new ProcessBuilder(command).start();
+		var timedOut = new AtomicBoolean();
+		var watchdog = (Future<?>) null;
+		var error = (Future<String>) null;
+		try {
+			// nothing we run reads from its standard input
+			process.getOutputStream().close();
+			error = this.drains.submit(() -> tail(process.getErrorStream()));
+			watchdog = this.drains.submit(() -> {
+				if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+					timedOut.set(true);
+					destroy(process);
+				}
+				return null;
+			});
+			T result;
+			try (var stdout = process.getInputStream()) {
+				result = output.apply(stdout);
+				stdout.transferTo(OutputStream.nullOutputStream());
+			} //
+			catch (IOException | RuntimeException e) {
+				// killing the process pulls the stream out from under the reader
+				if (timedOut.get())
+					throw new ProcessTimeoutException(tool, timeout);
+				throw e;
+			}
+			var exit = process.waitFor();
+			if (timedOut.get())
+				throw new ProcessTimeoutException(tool, timeout);
+			return new Result<>(exit, result, this.errorOutput(error));
+		} //
+		catch (InterruptedException e) {
+			// whoever was waiting for this has given up on it
+			destroy(process);
+			throw e;
+		} //
+		finally {
+			if (watchdog != null)
+				watchdog.cancel(true);
+			if (process.isAlive())
+				destroy(process);
+		}
+	}
+
+	private String errorOutput(Future<String> error) throws InterruptedException {
+		try {
+			return error.get(10, TimeUnit.SECONDS);
+		} //
+		catch (ExecutionException | TimeoutException e) {
+			this.log.debug("could not read the standard error of a process", e);
+			return "";
+		}
+	}
+
+	private Semaphore permitsFor(String tool) {
+		var permits = this.concurrency.getOrDefault(tool, this.defaultConcurrency);
+		var running = this.running.computeIfAbsent(tool, _ -> new AtomicInteger());
+		Gauge.builder("mogul.media.processes.running", running, AtomicInteger::get)
+			.description("processes currently running")
+			.tag("tool", tool)
+			.register(this.registry);
+		this.log.debug("up to {} {} processes may run at once", permits, tool);
+		return new Semaphore(permits, true);
+	}
+
+	private static void destroy(Process process) {
+		process.descendants().forEach(ProcessHandle::destroyForcibly);
+		process.destroyForcibly();
+	}
+
+	/**
+	 * reads the stream to the end, keeping only the last {@link #TAIL_BYTES bytes}.
+	 */
+	private static String tail(InputStream in) throws IOException {
+		var tail = new byte[TAIL_BYTES];
+		var length = 0;
+		var buffer = new byte[8192];
+		for (int read; (read = in.read(buffer)) != -1;) {
+			if (read >= TAIL_BYTES) {
+				System.arraycopy(buffer, read - TAIL_BYTES, tail, 0, TAIL_BYTES);
+				length = TAIL_BYTES;
+				continue;
+			}
+			var keep = Math.min(length, TAIL_BYTES - read);
+			System.arraycopy(tail, length - keep, tail, 0, keep);
+			System.arraycopy(buffer, 0, tail, keep, read);
+			length = keep + read;
+		}
+		return new String(tail, 0, length, StandardCharsets.UTF_8);
+	}
+
+	private static class ProcessTimeoutException extends IllegalStateException {
+
+		ProcessTimeoutException(String tool, Duration timeout) {
+			super("the " + tool + " process did not finish within " + timeout + ", so we killed it");
+		}
+
+	}
+
+}
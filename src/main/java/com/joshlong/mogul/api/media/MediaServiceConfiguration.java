@@ -1,5 +1,7 @@
 package com.joshlong.mogul.api.media;
 
+import com.joshlong.mogul.api.ApiProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEventPublisher;
@@ -25,6 +27,12 @@ class MediaServiceConfiguration {
 
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
+	@Bean
+	MediaProcesses mediaProcesses(ApiProperties properties, MeterRegistry registry) {
+		var processes = properties.processes();
+		return new MediaProcesses(processes.concurrency(), processes.timeout(), registry);
+	}
+
 	@Bean
 	DefaultMediaService mediaService(@MediaNormalizationMessageChannel MessageChannel channel) {
 		return new DefaultMediaService(channel);
@@ -3,18 +3,16 @@ package com.joshlong.mogul.api.media;
 import com.joshlong.mogul.api.managedfiles.CommonMediaTypes;
 import com.joshlong.mogul.api.managedfiles.ManagedFile;
 import com.joshlong.mogul.api.managedfiles.ManagedFileService;
-import com.joshlong.mogul.api.utils.FileUtils;
+import com.joshlong.mogul.api.workspaces.Workspaces;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
-import org.springframework.util.FileCopyUtils;
+import org.springframework.util.StringUtils;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -29,10 +27,14 @@ class Normalization {
 
 	private final ManagedFileService managedFileService;
 
-	Normalization(ImageEncoder imageEncoder, AudioEncoder audioEncoder, ManagedFileService managedFileService) {
+	private final Workspaces workspaces;
+
+	Normalization(ImageEncoder imageEncoder, AudioEncoder audioEncoder, ManagedFileService managedFileService,
+			Workspaces workspaces) {
 		this.imageEncoder = imageEncoder;
 		this.audioEncoder = audioEncoder;
 		this.managedFileService = managedFileService;
+		this.workspaces = workspaces;
 	}
 
 	Map<String, Object> normalize(ManagedFile input, ManagedFile output) throws Exception {
@@ -47,29 +49,18 @@ class Normalization {
 		var ext = isImage ? CommonMediaTypes.JPG : CommonMediaTypes.MP3;
 		var encodingFunction = isImage ? (Function<File, ImageEncodedFile>) this.imageEncoder::encode
 				: (Function<File, AudioEncodedFile>) this.audioEncoder::encode;
-		var filesToDelete = new HashSet<File>();
-		try {
-			var localFile = input.uniqueLocalFile();
-			filesToDelete.add(localFile);
-			var resource = this.managedFileService.read(input.id());
-			try (var i = resource.getInputStream(); var o = new FileOutputStream(localFile)) {
-				FileCopyUtils.copy(i, o);
-				var encodedFile = encodingFunction.apply(localFile);
-				var file = encodedFile.file();
-				filesToDelete.add(file);
-				if (encodedFile instanceof AudioEncodedFile audioEncodedFile) {
-					ctx.put("durationInMilliseconds", audioEncodedFile.millisecondsDuration());
-				}
-				this.managedFileService.write(output.id(), output.filename(), ext, new FileSystemResource(file));
-			}
-		} //
-		finally {
-			for (var f : filesToDelete) {
-				if (f.exists()) {
-					FileUtils.delete(f);
-					this.log.info("deleting {} after file normalization.", f.getAbsolutePath());
-				}
+		// the encoders write their intermediate files next to their input, so
+		// they all end up in the workspace, too
+		try (var workspace = this.workspaces.create("normalization")) {
+			var extension = StringUtils.getFilenameExtension(input.filename());
+			var localFile = workspace.file("managed-files-" + input.id() + (extension == null ? "" : "." + extension));
+			this.managedFileService.read(input.id(), localFile);
+			var encodedFile = encodingFunction.apply(localFile);
+			var file = encodedFile.file();
+			if (encodedFile instanceof AudioEncodedFile audioEncodedFile) {
+				ctx.put("durationInMilliseconds", audioEncodedFile.millisecondsDuration());
 			}
+			this.managedFileService.write(output.id(), output.filename(), ext, new FileSystemResource(file));
 		}
 		return ctx;
 	}
@@ -1,40 +1,43 @@
 package com.joshlong.mogul.api.notes;
 
 import com.joshlong.mogul.api.Note;
-import com.joshlong.mogul.api.search.SearchService;
+import com.joshlong.mogul.api.search.SearchIndexOutbox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.modulith.events.ApplicationModuleListener;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
+/**
+ * queues notes for the search index in the same transaction that changed them.
+ */
 @Component
 @Transactional
 class NoteIndexingListener {
 
-	private final SearchService searchService;
+	private final SearchIndexOutbox searchIndexOutbox;
 
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
-	NoteIndexingListener(SearchService searchService) {
-		this.searchService = searchService;
+	NoteIndexingListener(SearchIndexOutbox searchIndexOutbox) {
+		this.searchIndexOutbox = searchIndexOutbox;
 	}
 
-	@ApplicationModuleListener
+	@EventListener
 	void noteCreatedListener(NoteCreatedEvent event) {
 		this.indexNote("created", event.note());
 	}
 
-	@ApplicationModuleListener
+	@EventListener
 	void noteUpdatedEvent(NoteUpdatedEvent event) {
 		this.indexNote("updated", event.note());
 	}
 
 	private void indexNote(String message, Note note) {
 		Assert.notNull(note, "the note cannot be null");
-		this.log.info("{} a note {}", message, note);
-		this.searchService.index(note);
+		this.log.info("{} a note {}, so queued it for indexing", message, note);
+		this.searchIndexOutbox.enqueue(note);
 	}
 
 }
@@ -1,17 +1,24 @@
 package com.joshlong.mogul.api.observability;
 
+import com.joshlong.mogul.api.media.MediaProcesses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.health.contributor.Health;
 import org.springframework.boot.health.contributor.HealthIndicator;
-import org.springframework.util.FileCopyUtils;
 
-import java.io.InputStreamReader;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
 class CliHealthIndicator implements HealthIndicator {
 
+	/** a version check has no business taking longer than this */
+	private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+	/** how long to wait for the real work to leave us a permit */
+	private static final Duration WAIT = Duration.ofSeconds(2);
+
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
 	private final AtomicReference<Health> health = new AtomicReference<>();
@@ -20,7 +27,10 @@ class CliHealthIndicator implements HealthIndicator {
 
 	private final String name;
 
-	CliHealthIndicator(String[] command, String name) {
+	private final MediaProcesses processes;
+
+	CliHealthIndicator(MediaProcesses processes, String[] command, String name) {
+		this.processes = processes;
 		this.command = command;
 		this.name = name;
 	}
@@ -28,25 +38,25 @@ class CliHealthIndicator implements HealthIndicator {
 	@Override
 	public Health health() {
 		if (this.health.get() == null) {
-			this.health.set(computeHealth());
+			var health = computeHealth();
+			// every permit is busy with real work, so we'll ask again next time
+			if (health == null)
+				return Health.unknown().withDetail(this.name, "busy").build();
+			this.health.set(health);
 		}
 		return this.health.get();
 	}
 
 	private Health computeHealth() {
 		try {
-			var process = new ProcessBuilder().command(this.command).start();
-			try (var inStream = new InputStreamReader(process.getInputStream());
-					var errorStream = new InputStreamReader(process.getErrorStream());) {
-				var output = FileCopyUtils.copyToString(inStream);
-				var error = FileCopyUtils.copyToString(errorStream);
-				var exit = process.waitFor();
-				var health = exit == 0 ? Health.up() : Health.down();
-				return health //
-					.withDetail(this.name + "-output", output) //
-					.withDetail(this.name + "error", error) //
-					.build();
-			}
+			var result = this.processes.tryRun(List.of(this.command), WAIT, TIMEOUT);
+			if (result == null)
+				return null;
+			var health = result.success() ? Health.up() : Health.down();
+			return health //
+				.withDetail(this.name + "-output", result.output()) //
+				.withDetail(this.name + "error", result.error()) //
+				.build();
 		} //
 		catch (Throwable throwable) {
 			this.log.warn("could not capture the health for the command {}", Arrays.toString(this.command), throwable);
@@ -1,5 +1,6 @@
 package com.joshlong.mogul.api.observability;
 
+import com.joshlong.mogul.api.media.MediaProcesses;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -7,18 +8,18 @@ import org.springframework.context.annotation.Configuration;
 class CliHealthIndicators {
 
 	@Bean
-	CliHealthIndicator ffprobe() {
-		return new CliHealthIndicator(new String[] { "ffprobe", "-version" }, "ffprobe");
+	CliHealthIndicator ffprobe(MediaProcesses processes) {
+		return new CliHealthIndicator(processes, new String[] { "ffprobe", "-version" }, "ffprobe");
 	}
 
 	@Bean
-	CliHealthIndicator magick() {
-		return new CliHealthIndicator(new String[] { "magick", "--version" }, "imagemagick");
+	CliHealthIndicator magick(MediaProcesses processes) {
+		return new CliHealthIndicator(processes, new String[] { "magick", "--version" }, "imagemagick");
 	}
 
 	@Bean
-	CliHealthIndicator ffmpeg() {
-		return new CliHealthIndicator(new String[] { "ffmpeg", "-version" }, "ffmpeg");
+	CliHealthIndicator ffmpeg(MediaProcesses processes) {
+		return new CliHealthIndicator(processes, new String[] { "ffmpeg", "-version" }, "ffmpeg");
 	}
 
 }
@@ -1,5 +1,7 @@
 package com.joshlong.mogul.api.podcasts;
 
+import com.joshlong.mogul.api.cache.BulkCache;
+import com.joshlong.mogul.api.cache.BulkCaches;
 import com.joshlong.mogul.api.compositions.Composition;
 import com.joshlong.mogul.api.compositions.CompositionService;
 import com.joshlong.mogul.api.managedfiles.CommonMediaTypes;
@@ -11,10 +13,8 @@ import com.joshlong.mogul.api.media.MediaService;
 import com.joshlong.mogul.api.mogul.MogulCreatedEvent;
 import com.joshlong.mogul.api.transcripts.TranscriptInvalidatedEvent;
 import com.joshlong.mogul.api.transcripts.TranscriptRecordedEvent;
-import com.joshlong.mogul.api.utils.CacheUtils;
 import com.joshlong.mogul.api.utils.CollectionUtils;
 import com.joshlong.mogul.api.utils.JdbcUtils;
-import org.jspecify.annotations.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.Cache;
@@ -58,7 +58,7 @@ class DefaultPodcastService implements PodcastService {
 
 	private final ApplicationEventPublisher publisher;
 
-	private final Cache podcastCache, podcastEpisodesCache;
+	private final BulkCache podcastCache, podcastEpisodesCache;
 
 	private final TransactionTemplate transactions;
 
@@ -67,8 +67,8 @@ class DefaultPodcastService implements PodcastService {
 	DefaultPodcastService(CompositionService compositionService, MediaService mediaService, JdbcClient db,
 			ManagedFileService managedFileService, ApplicationEventPublisher publisher, Cache podcastCache,
 			Cache podcastEpisodesCache, TransactionTemplate transactions) {
-		this.podcastEpisodesCache = podcastEpisodesCache;
-		this.podcastCache = podcastCache;
+		this.podcastEpisodesCache = BulkCaches.from(podcastEpisodesCache);
+		this.podcastCache = BulkCaches.from(podcastCache);
 		this.compositionService = compositionService;
 		this.db = db;
 		this.mediaService = mediaService;
@@ -255,12 +255,11 @@ class DefaultPodcastService implements PodcastService {
 	 */
 	@Override
 	public Collection<Episode> getPodcastEpisodesByPodcast(Long podcastId, boolean deep) {
-		var episodeRowMapper = new EpisodeRowMapper(deep, this.managedFileService::getManagedFiles);
+		var episodeResultSetExtractor = new EpisodeResultSetExtractor(deep, this.managedFileService::getManagedFiles);
 		var results = this.db//
 			.sql("  select * from podcast_episode pe where pe.podcast_id  = ? ") //
 			.param(podcastId)//
-			.query(episodeRowMapper)//
-			.list();
+			.query(episodeResultSetExtractor);
 		log.info("getting episodes (deep? {}) for podcast {} returned {} episodes", deep, podcastId, results.size());
 		results.sort(this.episodeComparator);
 		return results;
@@ -657,25 +656,27 @@ class DefaultPodcastService implements PodcastService {
 		if (episodeIds.isEmpty()) {
 			return Set.of();
 		}
-		var map = new HashMap<Long, Episode>();
-		var idsNotInCache = CacheUtils.notPresentInCache(this.podcastEpisodesCache, episodeIds);
-		if (!idsNotInCache.isEmpty()) {
-			var idsArr = idsNotInCache.toArray(Long[]::new);
-			var episodes = this.db //
-				.sql("select * from podcast_episode pe where pe.id = any(? )") //
-				.params(new SqlArrayValue("bigint", (Object[]) idsArr))
-				.query(new EpisodeResultSetExtractor(managedFileService::getManagedFiles));
-			for (var episode : episodes) {
-				map.put(episode.id(), episode);
-			}
-		}
+		var episodes = this.podcastEpisodesCache.getAll(episodeIds, this::loadPodcastEpisodes);
 		var result = new ArrayList<Episode>();
 		for (var id : episodeIds) {
-			result.add(this.podcastEpisodesCache.get(id, () -> map.get(id)));
+			var episode = episodes.get(id);
+			if (episode != null)
+				result.add(episode);
 		}
 		return result;
 	}
 
+	private Map<Long, Episode> loadPodcastEpisodes(Set<Long> episodeIds) {
+		var episodes = this.db //
+			.sql("select * from podcast_episode pe where pe.id = any(? )") //
+			.params(new SqlArrayValue("bigint", episodeIds.toArray()))
+			.query(new EpisodeResultSetExtractor(true, managedFileService::getManagedFiles));
+		var map = new HashMap<Long, Episode>();
+		for (var episode : episodes)
+			map.put(episode.id(), episode);
+		return map;
+	}
+
 	@Override
 	public Collection<Podcast> getAllPodcastsByMogul(Long mogulId) {
 		return this.db //
@@ -689,14 +690,26 @@ class DefaultPodcastService implements PodcastService {
 	public Collection<Podcast> getAllPodcastsById(List<Long> mogulIds) {
 		if (null == mogulIds || mogulIds.isEmpty())
 			return Set.of();
-		var idsArray = new Long[mogulIds.size()];
-		for (var i = 0; i < mogulIds.size(); i++)
-			idsArray[i] = mogulIds.get(i);
-		return db//
+		var podcasts = this.podcastCache.getAll(mogulIds, this::loadPodcasts);
+		var result = new ArrayList<Podcast>();
+		for (var id : mogulIds) {
+			var podcast = podcasts.get(id);
+			if (podcast != null)
+				result.add(podcast);
+		}
+		return result;
+	}
+
+	private Map<Long, Podcast> loadPodcasts(Set<Long> podcastIds) {
+		var podcasts = this.db//
 			.sql("select * from podcast p where p.id = any(?)")//
-			.params(new SqlArrayValue("bigint", (Object[]) idsArray))
+			.params(new SqlArrayValue("bigint", podcastIds.toArray()))
 			.query(this.podcastRowMapper)//
 			.list();
+		var map = new HashMap<Long, Podcast>();
+		for (var podcast : podcasts)
+			map.put(podcast.id(), podcast);
+		return map;
 	}
 
 	static class SegmentResultSetExtractor implements ResultSetExtractor<List<Segment>> {
@@ -739,47 +752,4 @@ class DefaultPodcastService implements PodcastService {
 
 	}
 
-	static class EpisodeResultSetExtractor implements ResultSetExtractor<Collection<Episode>> {
-
-		private final Function<Collection<Long>, Map<Long, ManagedFile>> managedFileService;
-
-		EpisodeResultSetExtractor(Function<Collection<Long>, Map<Long, ManagedFile>> managedFileService) {
-			this.managedFileService = managedFileService;
-		}
-
-		@Override
-		public Collection<Episode> extractData(@NonNull ResultSet resultSet) throws SQLException, DataAccessException {
-			var rewind = JdbcUtils.rewindableResultSet(resultSet);
-
-			// iterate through the resultset, noting all ManagedFile IDs
-			var managedFileIds = new HashSet<Long>();
-			var noOpEpisodeRowMapper = new EpisodeRowMapper(true, longs -> {
-				managedFileIds.addAll(longs);
-				// don't care it'll return null, but c'est la vie
-				return Map.of();
-			});
-			while (rewind.next()) {
-				// force memoization
-				noOpEpisodeRowMapper.mapRow(rewind, 0);
-			}
-
-			// replay
-			rewind.rewind();
-			var allManagedFiles = this.managedFileService.apply(managedFileIds);
-			var resolvedEpisodeRowMapper = new EpisodeRowMapper(true, longs -> {
-				var map = new HashMap<Long, ManagedFile>();
-				for (var id : longs) {
-					map.put(id, allManagedFiles.getOrDefault(id, null));
-				}
-				return map;
-			});
-			var results = new ArrayList<Episode>();
-			while (rewind.next()) {
-				results.add(resolvedEpisodeRowMapper.mapRow(rewind, 0));
-			}
-			return results;
-		}
-
-	}
-
 }
@@ -0,0 +1,73 @@
+package com.joshlong.mogul.api.podcasts;
+
+import com.joshlong.mogul.api.managedfiles.ManagedFile;
+import org.jspecify.annotations.NonNull;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * loads {@link Episode episodes} in two phases: first it reads every row, noting the
+ * {@link ManagedFile managed file} IDs along the way, and then - if {@code deep} - it
+ * resolves all of those IDs in a single call before building the {@link Episode
+ * episodes}. This way, listing a podcast with 300 episodes costs one lookup for managed
+ * files, not 300.
+ */
+class EpisodeResultSetExtractor implements ResultSetExtractor<List<Episode>> {
+
+	private final EpisodeRowMapper episodeRowMapper = new EpisodeRowMapper();
+
+	private final Function<Collection<Long>, Map<Long, ManagedFile>> managedFileFunction;
+
+	private final boolean deep;
+
+	EpisodeResultSetExtractor(boolean deep, Function<Collection<Long>, Map<Long, ManagedFile>> managedFileFunction) {
+		this.deep = deep;
+		this.managedFileFunction = managedFileFunction;
+	}
+
+	@Override
+	public List<Episode> extractData(@NonNull ResultSet resultSet) throws SQLException, DataAccessException {
+		var rows = new ArrayList<EpisodeRow>();
+		var managedFileIds = new HashSet<Long>();
+		while (resultSet.next()) {
+			var row = new EpisodeRow(this.episodeRowMapper.mapRow(resultSet, rows.size()),
+					resultSet.getLong("graphic_managed_file_id"), //
+					resultSet.getLong("produced_graphic_managed_file_id"), //
+					resultSet.getLong("produced_audio_managed_file_id"));
+			rows.add(row);
+			managedFileIds.add(row.graphicId());
+			managedFileIds.add(row.producedGraphicId());
+			managedFileIds.add(row.producedAudioId());
+		}
+		var managedFiles = this.deep && !managedFileIds.isEmpty() ? this.managedFileFunction.apply(managedFileIds)
+				: Map.<Long, ManagedFile>of();
+		var episodes = new ArrayList<Episode>(rows.size());
+		for (var row : rows)
+			episodes.add(row.resolve(managedFiles));
+		return episodes;
+	}
+
+	private record EpisodeRow(Episode episode, long graphicId, long producedGraphicId, long producedAudioId) {
+
+		Episode resolve(Map<Long, ManagedFile> managedFiles) {
+			return new Episode(this.episode.id(), //
+					this.episode.podcastId(), //
+					this.episode.title(), //
+					this.episode.description(), //
+					this.episode.created(), //
+					managedFiles.get(this.graphicId), //
+					managedFiles.get(this.producedGraphicId), //
+					managedFiles.get(this.producedAudioId), //
+					this.episode.complete(), //
+					this.episode.producedAudioUpdated(), //
+					this.episode.producedAudioAssetsUpdated());
+		}
+
+	}
+
+}
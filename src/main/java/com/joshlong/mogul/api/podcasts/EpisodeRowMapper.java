@@ -1,48 +1,28 @@
 package com.joshlong.mogul.api.podcasts;
 
-import com.joshlong.mogul.api.managedfiles.ManagedFile;
 import org.springframework.jdbc.core.RowMapper;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Collection;
-import java.util.Map;
-import java.util.Set;
-import java.util.function.Function;
 
+/**
+ * maps the columns of a {@code podcast_episode} row to an {@link Episode}, but leaves the
+ * {@link com.joshlong.mogul.api.managedfiles.ManagedFile managed files} null. Use
+ * {@link EpisodeResultSetExtractor} to resolve those for a whole result set at once.
+ */
 class EpisodeRowMapper implements RowMapper<Episode> {
 
-	private final Function<Collection<Long>, Map<Long, ManagedFile>> managedFileFunction;
-
-	private final boolean deep;
-
-	EpisodeRowMapper(boolean deep, Function<Collection<Long>, Map<Long, ManagedFile>> managedFileFunction) {
-		this.managedFileFunction = managedFileFunction;
-		this.deep = deep;
-	}
-
 	@Override
 	public Episode mapRow(ResultSet resultSet, int rowNum) throws SQLException {
-		var episodeId = resultSet.getLong("id");
-
-		var graphicId = resultSet.getLong("graphic_managed_file_id");
-		var producedGraphicId = resultSet.getLong("produced_graphic_managed_file_id");
-		var producedAudioId = resultSet.getLong("produced_audio_managed_file_id");
-		var list = Set.of(graphicId, producedAudioId, producedGraphicId);
-		var all = deep ? managedFileFunction.apply(list) : Map.<Long, ManagedFile>of();
-		var graphic = all.getOrDefault(graphicId, null);
-		var producedGraphic = all.getOrDefault(producedGraphicId, null);
-		var producedAudio = all.getOrDefault(producedAudioId, null);
-
 		return new Episode(//
-				episodeId, //
+				resultSet.getLong("id"), //
 				resultSet.getLong("podcast_id"), //
 				resultSet.getString("title"), //
 				resultSet.getString("description"), //
 				resultSet.getTimestamp("created"), //
-				graphic, //
-				producedGraphic, //
-				producedAudio, //
+				null, //
+				null, //
+				null, //
 				resultSet.getBoolean("complete"), //
 				resultSet.getTimestamp("produced_audio_updated"), //
 				resultSet.getTimestamp("produced_audio_assets_updated") // ,
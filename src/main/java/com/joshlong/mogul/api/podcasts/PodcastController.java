@@ -227,10 +227,10 @@ class PodcastController {
 		} //
 	}
 
-	@SchemaMapping
-	Transcript transcript(Segment segment) {
+	@BatchMapping
+	Map<Segment, Transcript> transcript(List<Segment> segments) {
 		var mogul = this.mogulService.getCurrentMogul();
-		return this.transcriptService.transcript(mogul.id(), segment);
+		return this.transcriptService.transcripts(mogul.id(), segments);
 	}
 
 }
@@ -53,11 +53,8 @@ class NotesIndexerJob implements Job {
 			.param(mogulId)//
 			.query((rs, rowNum) -> rs.getLong("id")) //
 			.list();
-		for (var noteId : list) {
-			var note = noteService.getNoteById(noteId);
-			this.searchService.index(note);
-
-		}
+		var notes = this.noteService.getNotesById(list).values();
+		this.searchService.indexAll(notes);
 	}
 
 }
@@ -4,29 +4,24 @@ import com.joshlong.mogul.api.jobs.Job;
 import com.joshlong.mogul.api.jobs.JobExecutionContext;
 import com.joshlong.mogul.api.jobs.JobExecutionResult;
 import com.joshlong.mogul.api.podcasts.Episode;
-import com.joshlong.mogul.api.podcasts.Podcast;
 import com.joshlong.mogul.api.podcasts.PodcastService;
+import com.joshlong.mogul.api.podcasts.Segment;
 import com.joshlong.mogul.api.search.SearchService;
 import org.jspecify.annotations.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
-import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
 
 @Component
 class PodcastIndexerJob implements Job {
 
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
-	private final int concurrency = this.concurrency();
-
-	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
-
 	private final PodcastService podcastService;
 
 	private final SearchService searchService;
@@ -65,75 +60,29 @@ class PodcastIndexerJob implements Job {
 				.toList();
 			log.info("episodes: found {} episodes for podcast {} for mogulId # {}", episodes.size(), podcast.id(),
 					mogulId);
-
-			var mapDivided = this.divide(episodes);
-			var workQueuesCompletableFutures = new ArrayList<CompletableFuture<Void>>();
-			for (var entry : mapDivided.entrySet()) {
-				var cf = CompletableFuture.runAsync(new EpisodesRunnable(mogulId, podcast, entry.getValue()),
-						this.executor);
-				workQueuesCompletableFutures.add(cf);
-			}
-			CompletableFuture.allOf(workQueuesCompletableFutures.toArray(new CompletableFuture[0])).join();
-		}
-	}
-
-	private int concurrency() {
-		var c = Math.max(Runtime.getRuntime().availableProcessors(), 6);
-		log.info("concurrency is {}", c);
-		return c;
-	}
-
-	private Map<Integer, Collection<Episode>> divide(Collection<Episode> episodes) {
-		var map = new ConcurrentHashMap<Integer, Collection<Episode>>();
-		var counter = 0;
-		for (var episode : episodes) {
-			var k = counter % concurrency;
-			map.computeIfAbsent(k, _ -> new HashSet<>()).add(episode);
-			counter += 1;
-		}
-		return map;
-	}
-
-	class EpisodesRunnable implements Runnable {
-
-		private final Long mogulId;
-
-		private final Podcast podcast;
-
-		private final Collection<Episode> episodes;
-
-		EpisodesRunnable(Long mogulId, Podcast podcast, Collection<Episode> episodes) {
-			this.episodes = episodes;
-			this.podcast = podcast;
-			this.mogulId = mogulId;
-		}
-
-		@Override
-		public void run() {
-			for (var ep : this.episodes) {
-				ingestEpisode(podcast, ep, mogulId);
+			var completeEpisodeIds = new ArrayList<Long>();
+			for (var episode : episodes) {
+				if (episode.complete())
+					completeEpisodeIds.add(episode.id());
+				else
+					log.info("skipping episode # {} because it is not 'complete'", episode.id());
 			}
-		}
-
-		private void ingestEpisode(Podcast podcast, Episode episode, Long mogulId) {
-
-			if (!episode.complete()) {
-				log.info("skipping episode # {} because it is not 'complete'", episode.id());
-				return;
-			}
-
-			var segments = podcastService.getPodcastEpisodeSegmentsByEpisode(episode.id());
-			log.info("there are {} episode segments for podcast episode {} for podcast {} for mogulId # {}",
-					segments.size(), episode.id(), podcast.id(), mogulId);
-			for (var segment : segments) {
-				if (segment.audio() == null || segment.producedAudio() == null) {
-					log.info("producedAudio is null, skipping.");
-					continue;
+			// one query for all the segments, and one bulk request to index them
+			var segmentsByEpisode = this.podcastService.getPodcastEpisodeSegmentsByEpisodes(completeEpisodeIds);
+			var segments = new ArrayList<Segment>();
+			for (var episodeSegments : segmentsByEpisode.values()) {
+				for (var segment : episodeSegments) {
+					if (segment.audio() == null || segment.producedAudio() == null) {
+						log.info("producedAudio is null, skipping.");
+						continue;
+					}
+					segments.add(segment);
 				}
-				searchService.index(segment);
 			}
+			log.info("there are {} episode segments to index for podcast {} for mogulId # {}", segments.size(),
+					podcast.id(), mogulId);
+			this.searchService.indexAll(segments);
 		}
-
 	}
 
 }
@@ -0,0 +1,82 @@
+package com.joshlong.mogul.api.podcasts.jobs;
+
+import com.joshlong.mogul.api.jobs.Job;
+import com.joshlong.mogul.api.jobs.JobExecutionContext;
+import com.joshlong.mogul.api.jobs.JobExecutionResult;
+import com.joshlong.mogul.api.podcasts.Episode;
+import com.joshlong.mogul.api.podcasts.PodcastService;
+import com.joshlong.mogul.api.podcasts.Segment;
+import com.joshlong.mogul.api.transcripts.TranscriptService;
+import com.joshlong.mogul.api.transcripts.TranscriptionRequest;
+import org.jspecify.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * transcribes the segments of a podcast that don't have a transcript yet, say, because
+ * the podcast was imported, or predates transcription. Nobody is waiting on these, so
+ * they're {@link TranscriptionRequest.Priority#BULK bulk} requests, and they go after any
+ * request somebody is waiting on.
+ *
+ * @author Josh Long
+ */
+@Component
+class PodcastTranscriptionJob implements Job {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final PodcastService podcastService;
+
+	private final TranscriptService transcriptService;
+
+	PodcastTranscriptionJob(PodcastService podcastService, TranscriptService transcriptService) {
+		this.podcastService = podcastService;
+		this.transcriptService = transcriptService;
+	}
+
+	@Override
+	public JobExecutionResult run(JobExecutionContext context) throws Exception {
+		var mogulId = context.mogulId();
+		var podcastId = context.getContextAttribute(PODCAST_ID_KEY, Long.class);
+		var requested = this.doRun(mogulId, podcastId);
+		this.log.info("requested {} transcriptions for podcast # {} for mogulId # {}", requested, podcastId, mogulId);
+		return JobExecutionResult.ok(Map.of("requested", requested));
+	}
+
+	@Override
+	public @NonNull Set<String> requiredContextAttributes() {
+		var all = new HashSet<>(Job.super.requiredContextAttributes());
+		all.add(PODCAST_ID_KEY);
+		return all;
+	}
+
+	private int doRun(Long mogulId, Long podcastId) {
+		var episodeIds = this.podcastService.getPodcastEpisodesByPodcast(podcastId, false)
+			.stream()
+			.filter(Episode::complete)
+			.map(Episode::id)
+			.toList();
+		var segments = new ArrayList<Segment>();
+		for (var episodeSegments : this.podcastService.getPodcastEpisodeSegmentsByEpisodes(episodeIds).values())
+			for (var segment : episodeSegments)
+				if (segment.producedAudio() != null)
+					segments.add(segment);
+		var transcripts = this.transcriptService.readTranscripts(mogulId, segments);
+		var requested = 0;
+		for (var segment : segments) {
+			if (StringUtils.hasText(transcripts.get(segment)))
+				continue;
+			this.transcriptService.transcribe(mogulId, segment, Map.of(), TranscriptionRequest.Priority.BULK);
+			requested += 1;
+		}
+		return requested;
+	}
+
+}
@@ -0,0 +1,123 @@
+package com.joshlong.mogul.api.podcasts.production;
+
+import com.joshlong.mogul.api.media.AudioEncodedFile;
+import com.joshlong.mogul.api.media.MediaProcesses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * produces an episode's final {@code .mp3} from its segments with a single {@code ffmpeg}
+ * invocation.
+ * <p>
+ * Rather than converting every segment to a {@code .wav}, concatenating those into
+ * another {@code .wav}, and then encoding that to an {@code .mp3} (three PCM-sized trips
+ * through the disk, and a fourth process to learn the duration), we describe the whole
+ * thing as one {@code filter_complex}: each input is resampled to a common format, then
+ * each is joined to the one before it either with a {@code concat} or, if the segment
+ * asks for it, an {@code acrossfade}, and the result is encoded straight to the
+ * {@code .mp3}. The duration comes from the same process, by way of {@code -progress}.
+ *
+ * @author Josh Long
+ */
+class FilterGraphAudioProducer {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final MediaProcesses processes;
+
+	FilterGraphAudioProducer(MediaProcesses processes) {
+		this.processes = processes;
+	}
+
+	/**
+	 * @param file the audio for a segment, in any format {@code ffmpeg} can read
+	 * @param crossfadeInMilliseconds how long to crossfade from the previous segment into
+	 * this one. ignored for the first segment.
+	 */
+	record Input(File file, long crossfadeInMilliseconds) {
+	}
+
+	AudioEncodedFile produce(File workspace, List<Input> inputs) throws Exception {
+		Assert.notEmpty(inputs, "there must be at least one input");
+		var mp3 = new File(workspace, UUID.randomUUID() + ".mp3");
+		var command = new ArrayList<>(
+				List.of("ffmpeg", "-nostdin", "-y", "-hide_banner", "-nostats", "-progress", "pipe:1"));
+		for (var input : inputs) {
+			Assert.state(input.file().isFile(), "the input [" + input.file().getAbsolutePath() + "] does not exist");
+			command.addAll(List.of("-i", input.file().getAbsolutePath()));
+		}
+		command.addAll(List.of("-filter_complex", filterGraph(inputs), "-map", "[out]", "-ar", "48000", "-ac", "2",
+				"-c:a", "libmp3lame", "-b:a", "192k", mp3.getAbsolutePath()));
+		this.log.debug("producing [{}] from {} inputs", mp3.getAbsolutePath(), inputs.size());
+		var result = this.processes.run(command, FilterGraphAudioProducer::lastOutTimeInMicroseconds);
+		if (!result.success())
+			this.log.warn("ffmpeg exited with [{}]: {}", result.exitCode(), result.error());
+		Assert.state(result.success() && mp3.exists(), "could not produce [" + mp3.getAbsolutePath() + "]");
+		var outTimeInMicroseconds = result.output();
+		Assert.state(outTimeInMicroseconds >= 0, "could not determine the duration of [" + mp3.getAbsolutePath() + "]");
+		return new AudioEncodedFile(mp3, outTimeInMicroseconds / 1000f);
+	}
+
+	/**
+	 * reads the {@code -progress} that {@code ffmpeg} writes as it goes, keeping the last
+	 * time it reports.
+	 */
+	private static long lastOutTimeInMicroseconds(InputStream in) throws IOException {
+		var outTimeInMicroseconds = -1L;
+		var progress = new BufferedReader(new InputStreamReader(in));
+		for (var line = progress.readLine(); line != null; line = progress.readLine()) {
+			var outTime = outTimeInMicroseconds(line);
+			if (outTime >= 0)
+				outTimeInMicroseconds = outTime;
+		}
+		return outTimeInMicroseconds;
+	}
+
+	static String filterGraph(List<Input> inputs) {
+		var filters = new ArrayList<String>();
+		for (var i = 0; i < inputs.size(); i++)
+			filters.add("[%d:a]aresample=48000,aformat=sample_fmts=fltp:channel_layouts=stereo[a%d]".formatted(i, i));
+		if (inputs.size() == 1)
+			filters.add("[a0]anull[out]");
+		var previous = "a0";
+		for (var i = 1; i < inputs.size(); i++) {
+			var next = i == inputs.size() - 1 ? "out" : "j" + i;
+			var crossfade = inputs.get(i).crossfadeInMilliseconds();
+			var join = crossfade > 0 ? String.format(Locale.ROOT, "acrossfade=d=%.3f:c1=tri:c2=tri", crossfade / 1000.0)
+					: "concat=n=2:v=0:a=1";
+			filters.add("[%s][a%d]%s[%s]".formatted(previous, i, join, next));
+			previous = next;
+		}
+		return String.join(";", filters);
+	}
+
+	/*
+	 * newer ffmpeg versions report out_time_us, older ones only out_time_ms, which is
+	 * (despite its name) also in microseconds.
+	 */
+	private static long outTimeInMicroseconds(String line) {
+		for (var prefix : new String[] { "out_time_us=", "out_time_ms=" }) {
+			if (line.startsWith(prefix)) {
+				try {
+					return Long.parseLong(line.substring(prefix.length()).trim());
+				} //
+				catch (NumberFormatException e) {
+					return -1; // N/A, before the first frame
+				}
+			}
+		}
+		return -1;
+	}
+
+}
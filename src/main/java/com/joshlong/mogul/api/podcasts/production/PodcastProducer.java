@@ -1,24 +1,28 @@
 package com.joshlong.mogul.api.podcasts.production;
 
+import com.joshlong.mogul.api.ApiProperties;
 import com.joshlong.mogul.api.managedfiles.CommonMediaTypes;
 import com.joshlong.mogul.api.managedfiles.ManagedFile;
 import com.joshlong.mogul.api.managedfiles.ManagedFileService;
+import com.joshlong.mogul.api.media.AudioEncodedFile;
 import com.joshlong.mogul.api.media.AudioEncoder;
+import com.joshlong.mogul.api.media.MediaProcesses;
 import com.joshlong.mogul.api.podcasts.Episode;
 import com.joshlong.mogul.api.podcasts.PodcastService;
-import com.joshlong.mogul.api.utils.FileUtils;
-import com.joshlong.mogul.api.utils.ProcessUtils;
+import com.joshlong.mogul.api.podcasts.Segment;
+import com.joshlong.mogul.api.workspaces.Workspaces;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 import org.springframework.util.FileCopyUtils;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -37,45 +41,55 @@ public class PodcastProducer {
 
 	private final PodcastService podcastService;
 
-	private final File root;
+	private final Workspaces workspaces;
+
+	private final SegmentRenderCache segmentRenderCache;
+
+	private final FilterGraphAudioProducer filterGraphAudioProducer;
+
+	private final ApiProperties.Podcasts.Producer.Mode mode;
+
+	private final MediaProcesses processes;
+
+	private final Timer timer;
 
 	PodcastProducer(AudioEncoder audioEncoder, ManagedFileService managedFileService, PodcastService podcastService,
-			File root) {
+			Workspaces workspaces, SegmentRenderCache segmentRenderCache,
+			FilterGraphAudioProducer filterGraphAudioProducer, ApiProperties.Podcasts.Producer.Mode mode,
+			MediaProcesses processes, MeterRegistry registry) {
+		this.processes = processes;
 		this.audioEncoder = audioEncoder;
+		this.segmentRenderCache = segmentRenderCache;
+		this.filterGraphAudioProducer = filterGraphAudioProducer;
+		this.mode = mode;
+		Assert.notNull(this.mode, "the production mode is required");
+		// compare the modes by flipping mogul.podcasts.production.mode and watching this
+		this.timer = Timer.builder("mogul.podcasts.production")
+			.description("how long it takes to produce an episode's audio")
+			.tag("mode", this.mode.name().toLowerCase(Locale.ROOT))
+			.register(registry);
 		this.managedFileService = managedFileService;
 		this.podcastService = podcastService;
-		this.root = root;
+		this.workspaces = workspaces;
 		Assert.notNull(this.audioEncoder, "the AudioEncoder reference is required");
 		Assert.notNull(this.managedFileService, "the ManagedFileService reference is required");
-		Assert.notNull(this.root, "the root folder reference is required");
+		Assert.notNull(this.workspaces, "the Workspaces reference is required");
 		Assert.notNull(this.podcastService, "the PodcastService reference is required");
+		Assert.notNull(this.segmentRenderCache, "the SegmentRenderCache reference is required");
 	}
 
 	public ManagedFile produce(Episode episode) {
-		var managedFileRoot = new File(this.root, "managed-files-for-podcast-production");
-		var workspace = new File(managedFileRoot, episode.id() + "/" + UUID.randomUUID() + "/");
-		this.log.debug("going to produce podcast in the following workspace folder [{}]", workspace.getAbsolutePath());
-		try {
-			Assert.state(workspace.exists() || workspace.mkdirs(),
-					"the workspace directory [" + workspace.getAbsolutePath() + "] does not exist");
+		try (var productionWorkspace = this.workspaces.create("production")) {
+			var workspace = productionWorkspace.directory();
+			this.log.debug("going to produce podcast in the following workspace folder [{}]",
+					workspace.getAbsolutePath());
 			var episodeId = episode.id();
 			var segments = this.podcastService.getPodcastEpisodeSegmentsByEpisode(episodeId);
-			var segmentFiles = new ArrayList<File>();
-			for (var s : segments) {
-				var localFile = new File(workspace, Long.toString(s.producedAudio().id()));
-				this.log.debug("produced audio file name locally {}", localFile.getAbsolutePath());
-				try (var in = this.managedFileService.read(s.producedAudio().id()).getInputStream();
-						var out = new FileOutputStream(localFile)) {
-					FileCopyUtils.copy(in, out);
-					this.log.debug("downloading [{}] to [{}]", s.producedAudio().id(), localFile.getAbsolutePath());
-				} //
-				catch (IOException e) {
-					this.log.error("got an exception when downloading the file to ");
-				}
-				segmentFiles.add(localFile);
-			}
-			var producedWav = this.produce(workspace, segmentFiles.toArray(new File[0]));
-			var producedMp3 = this.audioEncoder.encode(producedWav);
+			var producedMp3 = this.timer.recordCallable(() -> switch (this.mode) {
+				case FILTER_GRAPH -> this.produceWithFilterGraph(workspace, segments);
+				case CONCAT -> this.produceWithConcat(workspace, episodeId, segments);
+			});
+			Assert.notNull(producedMp3, "the produced audio for episode #" + episodeId + " is null");
 			var producedAudio = episode.producedAudio();
 			this.managedFileService.write(producedAudio.id(), producedMp3.file().getName(), CommonMediaTypes.MP3,
 					producedMp3.file());
@@ -86,19 +100,46 @@ public class PodcastProducer {
 		} //
 		catch (Throwable throwable) {
 			throw new RuntimeException(throwable);
-		} //
-		finally {
-			try {
-				FileUtils.delete(workspace);
-			} //
-			catch (Exception e) {
-				log.trace("could not delete workspace directory [{}]", workspace.getAbsolutePath());
-			}
-			Assert.state(!workspace.exists(),
-					"we could not delete the temporary directory [" + workspace.getAbsolutePath() + "]");
 		}
 	}
 
+	private AudioEncodedFile produceWithFilterGraph(File workspace, List<Segment> segments) throws Exception {
+		var inputs = new ArrayList<FilterGraphAudioProducer.Input>();
+		for (var s : segments) {
+			var localFile = new File(workspace, Long.toString(s.producedAudio().id()));
+			this.managedFileService.read(s.producedAudio().id(), localFile);
+			inputs.add(new FilterGraphAudioProducer.Input(localFile, s.crossFadeDuration()));
+		}
+		return this.filterGraphAudioProducer.produce(workspace, inputs);
+	}
+
+	private AudioEncodedFile produceWithConcat(File workspace, Long episodeId, List<Segment> segments)
+			throws Exception {
+		var segmentFiles = new ArrayList<File>();
+		for (var s : segments) {
+			var segmentAudio = s.producedAudio();
+			segmentFiles.add(this.segmentRenderCache.render(workspace, episodeId, s.id(), segmentAudio,
+					wav -> this.renderWav(workspace, segmentAudio, wav)));
+		}
+		this.segmentRenderCache.retain(episodeId, segmentFiles);
+		var producedWav = this.produce(workspace, segmentFiles.toArray(new File[0]));
+		return this.audioEncoder.encode(producedWav);
+	}
+
+	/*
+	 * only runs for segments whose produced audio changed since the last production of
+	 * this episode.
+	 */
+	private void renderWav(File workspace, ManagedFile producedAudio, File wav) throws Exception {
+		var localFile = new File(workspace, Long.toString(producedAudio.id()));
+		this.log.debug("produced audio file name locally {}", localFile.getAbsolutePath());
+		this.managedFileService.read(producedAudio.id(), localFile);
+		var result = this.processes.run("ffmpeg", "-y", "-i", localFile.getAbsolutePath(), "-acodec", "pcm_s16le",
+				"-vn", "-f", "wav", wav.getAbsolutePath());
+		Assert.state(result.success(),
+				"could not render the produced audio [" + producedAudio.id() + "] as a .wav: " + result.error());
+	}
+
 	private File ensureWav(File workspace, File input) {
 		try {
 			var inputAbsolutePath = input.getAbsolutePath();
@@ -109,9 +150,9 @@ public class PodcastProducer {
 				return input;
 			var wav = workspaceTempFile(workspace, ext);
 			var wavAbsolutePath = wav.getAbsolutePath();
-			var exit = ProcessUtils.runCommand("ffmpeg", "-i", inputAbsolutePath, "-acodec", "pcm_s16le", "-vn", "-f",
+			var result = this.processes.run("ffmpeg", "-i", inputAbsolutePath, "-acodec", "pcm_s16le", "-vn", "-f",
 					"wav", wavAbsolutePath);
-			Assert.state(exit == 0, "the ffmpeg command ran successfully");
+			Assert.state(result.success(), "the ffmpeg command ran successfully: " + result.error());
 			return wav;
 		} //
 		catch (Exception e) {
@@ -140,10 +181,10 @@ public class PodcastProducer {
 			FileCopyUtils.copy(fileNames, out);
 		}
 		var producedWav = workspaceTempFile(workspace, "wav");
-		ProcessUtils.runCommand("ffmpeg", "-f", "concat", "-safe", "0", "-i", filesFile.getAbsolutePath(), "-c", "copy",
-				producedWav.getAbsolutePath());
-		Assert.state(producedWav.exists(),
-				"the produced audio at " + producedWav.getAbsolutePath() + " does not exist.");
+		var result = this.processes.run("ffmpeg", "-f", "concat", "-safe", "0", "-i", filesFile.getAbsolutePath(), "-c",
+				"copy", producedWav.getAbsolutePath());
+		Assert.state(result.success() && producedWav.exists(),
+				"the produced audio at " + producedWav.getAbsolutePath() + " does not exist: " + result.error());
 		return producedWav;
 
 	}
@@ -1,21 +1,26 @@
 package com.joshlong.mogul.api.podcasts.production;
 
+import com.joshlong.mogul.api.ApiProperties;
 import com.joshlong.mogul.api.managedfiles.ManagedFileService;
 import com.joshlong.mogul.api.media.AudioEncoder;
+import com.joshlong.mogul.api.media.MediaProcesses;
 import com.joshlong.mogul.api.podcasts.PodcastService;
-import org.springframework.beans.factory.annotation.Value;
+import com.joshlong.mogul.api.workspaces.Workspaces;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.io.File;
-
 @Configuration
 class PodcastProducerConfiguration {
 
 	@Bean
 	PodcastProducer podcastProducer(AudioEncoder audioEncoder, ManagedFileService managedFileService,
-			PodcastService podcastService, @Value("${mogul.podcasts.pipeline.root}") File root) {
-		return new PodcastProducer(audioEncoder, managedFileService, podcastService, root);
+			PodcastService podcastService, ApiProperties properties, MeterRegistry registry, Workspaces workspaces,
+			MediaProcesses processes) {
+		var production = properties.podcasts().production();
+		return new PodcastProducer(audioEncoder, managedFileService, podcastService, workspaces,
+				new SegmentRenderCache(production.renders().root(), production.renders().maxSize()),
+				new FilterGraphAudioProducer(processes), production.mode(), processes, registry);
 	}
 
 }
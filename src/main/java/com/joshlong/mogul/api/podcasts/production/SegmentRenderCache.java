@@ -0,0 +1,194 @@
+package com.joshlong.mogul.api.podcasts.production;
+
+import com.joshlong.mogul.api.managedfiles.ManagedFile;
+import com.joshlong.mogul.api.utils.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.function.ThrowingConsumer;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+
+/**
+ * a size-bounded LRU cache that keeps the {@code .wav} rendition of every segment's
+ * produced audio between productions of an episode, so that re-producing an episode after
+ * a small edit only has to transcode the segments that actually changed.
+ * <p>
+ * A rendition is keyed by the segment, the produced audio's managed file, and that
+ * managed file's {@link ManagedFile#version() version}, which changes every time the
+ * segment's audio is (re)normalized. Renditions for an episode live in a directory of
+ * their own; each production {@link #retain(Long, Collection) retains} only the current
+ * ones. Once the renditions use more than the max size, those of the least recently used
+ * segments are evicted.
+ * <p>
+ * Callers get a hard link to the rendition in their own workspace, which survives the
+ * rendition being evicted out from under them. If the workspace is on another file system
+ * we fall back to a copy.
+ *
+ * @author Josh Long
+ */
+class SegmentRenderCache {
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	// access-ordered, so the eldest entry is the least recently used one. guarded by this
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final File root;
+
+	private final long maxBytes;
+
+	private long totalBytes;
+
+	SegmentRenderCache(File root, DataSize maxSize) {
+		Assert.state(maxSize.toBytes() > 0, "the max size must be greater than zero");
+		this.root = FileUtils.ensureDirectoryExists(root);
+		this.maxBytes = maxSize.toBytes();
+		this.recover();
+	}
+
+	/**
+	 * links the {@code .wav} for the segment's produced audio into the workspace, calling
+	 * {@code render} with the destination file only if there isn't already a current one.
+	 * Treat the result as read-only.
+	 */
+	File render(File workspace, Long episodeId, Long segmentId, ManagedFile producedAudio,
+			ThrowingConsumer<File> render) throws IOException {
+		var name = segmentId + "-" + producedAudio.id() + "-" + producedAudio.version() + ".wav";
+		var key = episodeId + File.separator + name;
+		var destination = new File(workspace, name);
+		for (var attempt = 1;; attempt++) {
+			var wav = this.get(key, segmentId, render);
+			try {
+				Files.deleteIfExists(destination.toPath());
+				try {
+					Files.createLink(destination.toPath(), wav.toPath());
+				} //
+				catch (NoSuchFileException e) {
+					throw e;
+				} //
+				catch (UnsupportedOperationException | FileSystemException e) {
+					Files.copy(wav.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				return destination;
+			} //
+			catch (NoSuchFileException e) {
+				// evicted between the lookup and the link. very unlikely, but not
+				// impossible
+				if (attempt > 1)
+					throw e;
+			}
+		}
+	}
+
+	/**
+	 * deletes every rendition for the episode other than the given ones.
+	 */
+	void retain(Long episodeId, Collection<File> current) {
+		var keep = new HashSet<String>();
+		for (var file : current)
+			keep.add(file.getName());
+		var files = this.directoryFor(episodeId).listFiles();
+		if (files == null)
+			return;
+		for (var file : files)
+			// leave renditions still being written by a concurrent production alone
+			if (!keep.contains(file.getName()) && !file.getName().endsWith(TEMP_SUFFIX))
+				this.remove(episodeId + File.separator + file.getName());
+	}
+
+	private File get(String key, Long segmentId, ThrowingConsumer<File> render) throws IOException {
+		var wav = new File(this.root, key);
+		synchronized (this) {
+			if (this.entries.get(key) != null && wav.exists()) {
+				this.log.debug("reusing the rendition [{}] for segment #{}", key, segmentId);
+				return wav;
+			}
+		}
+		var temp = new File(FileUtils.ensureDirectoryExists(wav.getParentFile()),
+				wav.getName() + "." + UUID.randomUUID() + TEMP_SUFFIX);
+		try {
+			render.acceptWithException(temp);
+			Assert.state(temp.exists(), "the rendition for segment #" + segmentId + " was not written");
+			Files.move(temp.toPath(), wav.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			this.admit(key, wav.length());
+			this.log.debug("rendered [{}] for segment #{}", key, segmentId);
+			return wav;
+		} //
+		catch (IOException | RuntimeException e) {
+			FileUtils.delete(temp);
+			throw e;
+		} //
+		catch (Exception e) {
+			FileUtils.delete(temp);
+			throw new IOException(e);
+		}
+	}
+
+	private synchronized void admit(String key, long size) {
+		var previous = this.entries.put(key, size);
+		this.totalBytes += size - (previous == null ? 0 : previous);
+		var iterator = this.entries.entrySet().iterator();
+		while (this.totalBytes > this.maxBytes && iterator.hasNext()) {
+			var eldest = iterator.next();
+			if (eldest.getKey().equals(key))
+				continue;
+			iterator.remove();
+			this.totalBytes -= eldest.getValue();
+			this.log.debug("evicting the rendition [{}]", eldest.getKey());
+			FileUtils.delete(new File(this.root, eldest.getKey()));
+		}
+	}
+
+	private synchronized void remove(String key) {
+		var size = this.entries.remove(key);
+		if (size != null)
+			this.totalBytes -= size;
+		FileUtils.delete(new File(this.root, key));
+	}
+
+	/*
+	 * picks up whatever the last run on this node left behind, least recently modified
+	 * first, and cleans up any renditions that didn't finish
+	 */
+	private void recover() {
+		var episodes = this.root.listFiles(File::isDirectory);
+		if (episodes == null)
+			return;
+		var existing = new ArrayList<File>();
+		for (var episode : episodes) {
+			var files = episode.listFiles(File::isFile);
+			if (files != null)
+				for (var file : files)
+					if (file.getName().endsWith(TEMP_SUFFIX))
+						FileUtils.delete(file);
+					else
+						existing.add(file);
+		}
+		existing.sort(Comparator.comparingLong(File::lastModified));
+		for (var file : existing)
+			this.admit(file.getParentFile().getName() + File.separator + file.getName(), file.length());
+		this.log.info("the segment render cache in [{}] holds {} bytes in {} files", this.root, this.totalBytes,
+				this.entries.size());
+	}
+
+	private File directoryFor(Long episodeId) {
+		return new File(this.root, Long.toString(episodeId));
+	}
+
+}
@@ -11,13 +11,9 @@ import org.jspecify.annotations.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.BeanNameAware;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
-import org.springframework.util.FileCopyUtils;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -76,10 +72,10 @@ class PodbeanPodcastEpisodePublisherPlugin implements PodcastEpisodePublisherPlu
 		this.log.debug("publishing to podbean with context [{}] and payload [{}]. produced audio is [{}]", context,
 				payload, payload.producedAudio());
 
-		var tempProducedAudioFile = this.download(this.managedFileService.read(payload.producedAudio().id()),
+		var tempProducedAudioFile = this.managedFileService.read(payload.producedAudio().id(),
 				FileUtils.tempFileWithExtension("mp3"));
 		this.log.debug("downloaded the produced audio file for the podcast episode {}", payload.id());
-		var tempGraphicFile = this.download(this.managedFileService.read(payload.producedGraphic().id()),
+		var tempGraphicFile = this.managedFileService.read(payload.producedGraphic().id(),
 				FileUtils.tempFileWithExtension("jpg"));
 		this.log.debug("downloaded the produced graphic for the episode {}", payload.id());
 
@@ -114,20 +110,6 @@ class PodbeanPodcastEpisodePublisherPlugin implements PodcastEpisodePublisherPlu
 		pc.failure(pluginName, errorMessage);
 	}
 
-	private File download(Resource resource, File file) {
-		Assert.notNull(resource, "the resource you wanted to" + " download to local file [" + file.getAbsolutePath()
-				+ "] does not exist");
-		try (var bin = resource.getInputStream(); var bout = new FileOutputStream(file)) {
-			FileCopyUtils.copy(bin, bout);
-		} //
-		catch (Throwable throwable) {
-			this.log.error("could not download the resource {} to file {} ", resource.getFilename(),
-					file.getAbsolutePath());
-			throw new RuntimeException("could not download a resource ", throwable);
-		}
-		return file;
-	}
-
 	@Override
 	public boolean unpublish(UnpublishContext<Episode> uc) {
 		var context = uc.context();
@@ -33,6 +33,18 @@ class SegmentSearchableResolver extends AbstractSearchableResolver<Segment> {
 
 	@Override
 	public List<SearchableResult<Segment>> results(List<Long> searchableIds) {
+		return this.results(searchableIds, true);
+	}
+
+	/**
+	 * transcripts can run to megabytes, so we don't load them for search results.
+	 */
+	@Override
+	public List<SearchableResult<Segment>> summaries(List<Long> searchableIds) {
+		return this.results(searchableIds, false);
+	}
+
+	private List<SearchableResult<Segment>> results(List<Long> searchableIds, boolean transcripts) {
 		if (searchableIds.isEmpty())
 			return new ArrayList<>();
 
@@ -54,11 +66,14 @@ class SegmentSearchableResolver extends AbstractSearchableResolver<Segment> {
 				.ifPresent(it -> segmentsToEpisodes.put(s, it));
 		}
 		var results = new ArrayList<SearchableResult<Segment>>();
-		var mogulId = podcasts.iterator().next().mogulId();
-		var transcribableIds = segments.stream().map(s -> (Transcribable) s).toList();
-		var mapOfTranscripts = this.transcriptLoader.apply(mogulId, transcribableIds);
 		var mapOfTranscribableIdsToTranscripts = new HashMap<Long, String>();
-		mapOfTranscripts.forEach((key, value) -> mapOfTranscribableIdsToTranscripts.put(key.transcribableId(), value));
+		if (transcripts) {
+			var mogulId = podcasts.iterator().next().mogulId();
+			var transcribableIds = segments.stream().map(s -> (Transcribable) s).toList();
+			var mapOfTranscripts = this.transcriptLoader.apply(mogulId, transcribableIds);
+			mapOfTranscripts
+				.forEach((key, value) -> mapOfTranscribableIdsToTranscripts.put(key.transcribableId(), value));
+		}
 		for (var segment : segments) {
 			var episode = segmentsToEpisodes.get(segment);
 			var result = this.buildResultFor(segment, episode, mapOfTranscribableIdsToTranscripts.get((segment.id())));
@@ -0,0 +1,125 @@
+package com.joshlong.mogul.api.search;
+
+import com.joshlong.mogul.api.Searchable;
+import com.joshlong.mogul.api.SearchableResolver;
+import com.joshlong.mogul.api.SearchableResult;
+import org.jspecify.annotations.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * turns a page of hits from a search index into {@link SearchableResult results}, the
+ * same way for every {@link SearchService}.
+ *
+ * @author Josh Long
+ */
+public abstract class RankedSearchResults {
+
+	/**
+	 * the key on which the index collapses hits, so that we get only the best match for
+	 * each aggregate (so, the best matching segment of an episode). Aggregate ids are
+	 * only unique within a type.
+	 */
+	public static String aggregate(Class<?> searchableClass, long aggregateId) {
+		return searchableClass.getName() + '#' + aggregateId;
+	}
+
+	/**
+	 * @param type the type of the searchable that matched
+	 * @param searchableId its id
+	 * @param snippet the part of its text that matched, highlighted, if the index has one
+	 */
+	public record Hit(Class<? extends Searchable> type, Long searchableId, @Nullable String snippet) {
+	}
+
+	/**
+	 * a page of results, as an opaque cursor, so that we can change how we page without
+	 * changing our clients.
+	 *
+	 * @param number the page, starting at zero
+	 * @param size how many results it has
+	 */
+	public record Page(int number, int size) {
+
+		public static final int DEFAULT_SIZE = 20;
+
+		public static final int MAX_SIZE = 100;
+
+		public Page {
+			Assert.state(number >= 0, "the page number must not be negative");
+			Assert.state(size > 0 && size <= MAX_SIZE, "the page size must be between 1 and " + MAX_SIZE);
+		}
+
+		/**
+		 * @param first how many results we want, or {@code null} for the default
+		 * @param after the cursor for the previous page, or {@code null} for the first
+		 * page. The next page is the same size as the previous one, whatever we ask for,
+		 * or it wouldn't start where the previous one ended.
+		 */
+		public static Page of(@Nullable Integer first, @Nullable String after) {
+			if (!StringUtils.hasText(after))
+				return new Page(0, first == null ? DEFAULT_SIZE : first);
+			try {
+				var previous = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8).split(":");
+				Assert.state(previous.length == 2, "the cursor must have a page and a size");
+				return new Page(Integer.parseInt(previous[0]) + 1, Integer.parseInt(previous[1]));
+			} //
+			catch (IllegalArgumentException | IllegalStateException e) {
+				throw new IllegalArgumentException("the cursor [" + after + "] is not valid", e);
+			}
+		}
+
+		public int offset() {
+			return this.number * this.size;
+		}
+
+		/** the cursor which, passed as {@code after}, gets the page after this one */
+		public String cursor() {
+			var cursor = (this.number + ":" + this.size).getBytes(StandardCharsets.UTF_8);
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor);
+		}
+
+	}
+
+	/**
+	 * resolves the page of hits, with one query for each type, in the order the index
+	 * ranked them.
+	 * @param more whether the index has hits after these
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends Searchable> SearchResults<T> resolve(Page page, List<Hit> hits, boolean more,
+			Function<Class<? extends Searchable>, SearchableResolver<?>> resolvers) {
+		var idsByType = new LinkedHashMap<Class<? extends Searchable>, Set<Long>>();
+		for (var hit : hits)
+			idsByType.computeIfAbsent(hit.type(), _ -> new LinkedHashSet<>()).add(hit.searchableId());
+		var resolved = new HashMap<Class<? extends Searchable>, Map<Long, SearchableResult<?>>>();
+		for (var entry : idsByType.entrySet()) {
+			var resolver = resolvers.apply(entry.getKey());
+			Assert.notNull(resolver, "there must be a valid resolver for " + entry.getKey());
+			var results = new HashMap<Long, SearchableResult<?>>();
+			for (var result : resolver.summaries(new ArrayList<>(entry.getValue())))
+				results.put(result.searchableId(), result);
+			resolved.put(entry.getKey(), results);
+		}
+		var results = new ArrayList<SearchableResult<T>>(hits.size());
+		for (var hit : hits) {
+			// it may have been deleted since it was indexed
+			var result = resolved.get(hit.type()).get(hit.searchableId());
+			if (result != null)
+				results.add((SearchableResult<T>) result.withSnippet(hit.snippet()));
+		}
+		return new SearchResults<>(results, more ? page.cursor() : null);
+	}
+
+}
@@ -10,12 +10,16 @@ import org.springframework.graphql.data.method.annotation.SchemaMapping;
 import org.springframework.stereotype.Controller;
 
 import java.time.OffsetDateTime;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @Controller
 class SearchController {
 
+	/** how many results the unpaged query has always returned, at most */
+	private static final int UNPAGED_MAX_RESULTS = 1000;
+
 	private final SearchService searchService;
 
 	SearchController(SearchService searchService) {
@@ -33,8 +37,26 @@ class SearchController {
 	}
 
 	@QueryMapping
-	Collection<SearchableResult<Searchable>> search(@Argument String query, @Argument Map<String, Object> metadata) {
-		return this.searchService.search(query, metadata);
+	SearchResults<Searchable> searchPage(@Argument String query, @Argument Map<String, Object> metadata,
+			@Argument Integer first, @Argument String after) {
+		return this.searchService.search(query, metadata, first, after);
+	}
+
+	/**
+	 * the results all at once, up to as many as we've always returned, for clients that
+	 * haven't moved to {@link #searchPage pages} yet.
+	 * @deprecated use {@link #searchPage}
+	 */
+	@Deprecated
+	@QueryMapping
+	List<SearchableResult<Searchable>> search(@Argument String query, @Argument Map<String, Object> metadata) {
+		var page = this.searchService.<Searchable>search(query, metadata, RankedSearchResults.Page.MAX_SIZE, null);
+		var results = new ArrayList<>(page.results());
+		while (page.next() != null && results.size() < UNPAGED_MAX_RESULTS) {
+			page = this.searchService.search(query, metadata, null, page.next());
+			results.addAll(page.results());
+		}
+		return results;
 	}
 
 }
@@ -0,0 +1,190 @@
+package com.joshlong.mogul.api.search;
+
+import com.joshlong.mogul.api.Searchable;
+import com.joshlong.mogul.api.transcripts.TranscriptRecordedEvent;
+import com.joshlong.mogul.api.utils.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * a durable record of the {@link Searchable searchables} that have changed since they
+ * were last indexed.
+ * <p>
+ * Domain writes {@link #enqueue(Searchable) enqueue} the searchables they touch, in their
+ * own transaction, so a change can't be committed without also being queued for the
+ * index, nor queued without being committed. The indexer {@link #drain() drains} the
+ * outbox in batches, and only takes a searchable once it's gone {@code debounce} without
+ * changing, so that a segment whose transcript is rewritten five times in a row is
+ * indexed once. A searchable that never settles is taken anyway once its oldest change
+ * has waited {@code maxDelay}, so that it isn't left out of the index forever. It deletes
+ * the rows it takes in the same transaction in which it indexes them, so if indexing
+ * fails they're still there for the next attempt. A searchable the index rejects on its
+ * own (say, because its document is malformed) goes back in the outbox, with one more
+ * attempt to its name, until it's had {@code maxAttempts}. We checkpoint by deleting,
+ * rather than by remembering the highest id we've seen, because a transaction that
+ * started earlier can commit a lower id after we've moved past it.
+ *
+ * @author Josh Long
+ */
+public class SearchIndexOutbox {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final JdbcClient db;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final SearchService searchService;
+
+	private final Duration debounce;
+
+	private final Duration maxDelay;
+
+	private final int batchSize;
+
+	private final int maxAttempts;
+
+	SearchIndexOutbox(JdbcClient db, TransactionTemplate transactionTemplate, SearchService searchService,
+			Duration debounce, Duration maxDelay, int batchSize, int maxAttempts) {
+		this.db = db;
+		this.transactionTemplate = transactionTemplate;
+		this.searchService = searchService;
+		this.debounce = debounce;
+		this.maxDelay = maxDelay;
+		this.batchSize = batchSize;
+		this.maxAttempts = maxAttempts;
+		Assert.state(maxDelay.compareTo(debounce) >= 0, "the max delay must be no shorter than the debounce");
+		Assert.state(batchSize > 0, "the batch size must be greater than zero");
+		Assert.state(maxAttempts > 0, "there must be at least one attempt");
+	}
+
+	/**
+	 * queues the searchable to be indexed, as part of the current transaction, if any.
+	 */
+	public void enqueue(Searchable searchable) {
+		this.enqueue(searchable.getClass(), searchable.searchableId());
+	}
+
+	public void enqueue(Class<? extends Searchable> type, Long searchableId) {
+		this.db //
+			.sql("insert into search_index_outbox (searchable_class, searchable_id) values (?, ?)") //
+			.params(type.getName(), searchableId) //
+			.update();
+	}
+
+	/**
+	 * a new transcript changes what a transcribable's document says, and transcribables
+	 * are searchable by the same id.
+	 */
+	@EventListener
+	void transcriptRecorded(TranscriptRecordedEvent event) {
+		if (Searchable.class.isAssignableFrom(event.type()))
+			this.enqueue(event.type().asSubclass(Searchable.class), event.transcribableId());
+	}
+
+	/**
+	 * indexes the searchables that have settled, oldest first, a batch at a time, until
+	 * there are none left.
+	 */
+	void drainAll() {
+		while (this.drain() >= this.batchSize) {
+			this.log.debug("the search index outbox has more to drain");
+		}
+	}
+
+	/**
+	 * indexes one batch of the searchables that have settled.
+	 * @return how many searchables we took from the outbox
+	 */
+	int drain() {
+		return Objects.requireNonNull(this.transactionTemplate.execute(_ -> {
+			var rows = this.db //
+				.sql("""
+						with ready as (
+						    select searchable_class, searchable_id
+						    from search_index_outbox
+						    group by searchable_class, searchable_id
+						    having max(created) < now() - (? * interval '1 millisecond')
+						        or min(created) < now() - (? * interval '1 millisecond')
+						    order by min(id)
+						    limit ?)
+						delete from search_index_outbox o
+						using ready r
+						where o.searchable_class = r.searchable_class and o.searchable_id = r.searchable_id
+						returning o.searchable_class, o.searchable_id, o.attempts
+						""") //
+				.params(this.debounce.toMillis(), this.maxDelay.toMillis(), this.batchSize) //
+				.query((rs, _) -> new Row(rs.getString("searchable_class"), rs.getLong("searchable_id"),
+						rs.getInt("attempts"))) //
+				.list();
+			if (rows.isEmpty())
+				return 0;
+			// a change since the last rejection starts the count over, since it may have
+			// fixed whatever the index didn't like
+			var attemptsByClass = new HashMap<String, Map<Long, Integer>>();
+			for (var row : rows)
+				attemptsByClass.computeIfAbsent(row.searchableClass(), _ -> new LinkedHashMap<>())
+					.merge(row.searchableId(), row.attempts(), Math::min);
+			var count = 0;
+			var rejections = 0;
+			for (var entry : attemptsByClass.entrySet()) {
+				var attempts = entry.getValue();
+				count += attempts.size();
+				var type = this.type(entry.getKey());
+				if (type == null)
+					continue;
+				// if this fails outright, we roll back, and the rows are there for the
+				// next
+				// attempt
+				var rejected = this.searchService.indexAll(type, attempts.keySet());
+				for (var searchableId : rejected)
+					this.retry(type, searchableId, attempts.get(searchableId) + 1);
+				rejections += rejected.size();
+			}
+			this.log.debug("indexed {} searchables from the search index outbox, and {} were rejected",
+					count - rejections, rejections);
+			return count;
+		}));
+	}
+
+	/**
+	 * puts a searchable the index rejected back in the outbox, where it waits out the
+	 * {@code debounce} again, unless it's run out of attempts.
+	 */
+	private void retry(Class<? extends Searchable> type, Long searchableId, int attempts) {
+		if (attempts >= this.maxAttempts) {
+			this.log.error("giving up on indexing {} #{} after {} attempts", type.getName(), searchableId, attempts);
+			return;
+		}
+		this.log.warn("the index rejected {} #{}, so we'll try it again", type.getName(), searchableId);
+		this.db //
+			.sql("insert into search_index_outbox (searchable_class, searchable_id, attempts) values (?, ?, ?)") //
+			.params(type.getName(), searchableId, attempts) //
+			.update();
+	}
+
+	private Class<? extends Searchable> type(String className) {
+		try {
+			return ReflectionUtils.classForName(className).asSubclass(Searchable.class);
+		} //
+		catch (Exception e) {
+			// it'll never get any better, so there's no sense keeping it around
+			this.log.error("there's no searchable type {}, so we're dropping it from the outbox", className, e);
+			return null;
+		}
+	}
+
+	private record Row(String searchableClass, long searchableId, int attempts) {
+	}
+
+}
@@ -0,0 +1,37 @@
+package com.joshlong.mogul.api.search;
+
+import com.joshlong.mogul.api.ApiProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.core.MessageSource;
+import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.integration.dsl.PollerFactory;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+@Configuration
+class SearchIndexOutboxConfiguration {
+
+	@Bean
+	SearchIndexOutbox searchIndexOutbox(JdbcClient db, TransactionTemplate transactionTemplate,
+			SearchService searchService, ApiProperties properties) {
+		var outbox = properties.search().outbox();
+		return new SearchIndexOutbox(db, transactionTemplate, searchService, outbox.debounce(), outbox.maxDelay(),
+				outbox.batchSize(), outbox.maxAttempts());
+	}
+
+	@Bean
+	IntegrationFlow searchIndexOutboxIntegrationFlow(SearchIndexOutbox outbox) {
+		var messageSource = (MessageSource<Boolean>) () -> {
+			outbox.drainAll();
+			return MessageBuilder.withPayload(true).build();
+		};
+		return IntegrationFlow
+			.from(messageSource, pc -> pc.poller(_ -> PollerFactory.fixedDelay(Duration.ofSeconds(1))))
+			.nullChannel();
+	}
+
+}
@@ -0,0 +1,17 @@
+package com.joshlong.mogul.api.search;
+
+import com.joshlong.mogul.api.Searchable;
+import com.joshlong.mogul.api.SearchableResult;
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * a page of search results.
+ *
+ * @param results the best match for each aggregate, best first
+ * @param next the cursor for the next page, or {@code null} if this is the last one
+ * @author Josh Long
+ */
+public record SearchResults<T extends Searchable>(List<SearchableResult<T>> results, @Nullable String next) {
+}
@@ -1,15 +1,37 @@
 package com.joshlong.mogul.api.search;
 
 import com.joshlong.mogul.api.Searchable;
-import com.joshlong.mogul.api.SearchableResult;
+import org.jspecify.annotations.Nullable;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 
 public interface SearchService {
 
 	void index(Searchable searchable);
 
-	<T extends Searchable> Collection<SearchableResult<T>> search(String shouldContain, Map<String, Object> metadata);
+	/**
+	 * indexes all the searchables at once, which is much cheaper than calling
+	 * {@link #index(Searchable)} for each of them.
+	 */
+	void indexAll(Collection<? extends Searchable> searchables);
+
+	/**
+	 * indexes the searchables of the given type with the given ids, for callers that only
+	 * know which searchables changed.
+	 * @return the ids of the searchables the index rejected, which the caller may want to
+	 * try again
+	 */
+	Set<Long> indexAll(Class<? extends Searchable> type, Collection<Long> searchableIds);
+
+	/**
+	 * finds the best match for each aggregate, best first, a page at a time.
+	 * @param first how many results we want, or {@code null} for the default
+	 * @param after the {@link SearchResults#next() cursor} for the previous page, or
+	 * {@code null} for the first page
+	 */
+	<T extends Searchable> SearchResults<T> search(String shouldContain, Map<String, Object> metadata,
+			@Nullable Integer first, @Nullable String after);
 
 }
@@ -0,0 +1,120 @@
+package com.joshlong.mogul.api.search.elastic;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.util.Assert;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * buffers {@link Document documents} on their way to Elasticsearch's {@code _bulk} API.
+ * <p>
+ * A batch is sent when it has {@code maxActions} documents, when they add up to
+ * {@code maxSize}, or when the oldest of them has waited {@code maxAge} for the next one,
+ * whichever comes first, and whatever is left is sent on {@link #close()}. There's no
+ * timer: all three are only checked when a document is {@link #add(Document) added}, so a
+ * batch that stops growing waits for the next {@link #flush()} or {@link #close()}.
+ * That's fine for the one place we use it, which adds all of its documents in one go and
+ * then closes it. A document that Elasticsearch rejects doesn't fail the rest of its
+ * batch: it's logged, along with the reason, and kept in {@link #failures()}, so that the
+ * caller can try it again.
+ *
+ * @author Josh Long
+ */
+class BulkIndexer implements AutoCloseable {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final List<Document> buffer = new ArrayList<>();
+
+	private final Map<String, String> failures = new LinkedHashMap<>();
+
+	private final ElasticsearchOperations ops;
+
+	private final int maxActions;
+
+	private final long maxBytes;
+
+	private final long maxAgeInNanos;
+
+	private long bytes;
+
+	private long oldest;
+
+	private int indexed;
+
+	BulkIndexer(ElasticsearchOperations ops, int maxActions, DataSize maxSize, Duration maxAge) {
+		Assert.state(maxActions > 0, "the batch must have room for at least one document");
+		this.ops = ops;
+		this.maxActions = maxActions;
+		this.maxBytes = maxSize.toBytes();
+		this.maxAgeInNanos = maxAge.toNanos();
+	}
+
+	synchronized void add(Document document) {
+		if (this.buffer.isEmpty())
+			this.oldest = System.nanoTime();
+		this.buffer.add(document);
+		this.bytes += sizeOf(document);
+		if (this.buffer.size() >= this.maxActions || this.bytes >= this.maxBytes
+				|| System.nanoTime() - this.oldest >= this.maxAgeInNanos)
+			this.flush();
+	}
+
+	synchronized void flush() {
+		if (this.buffer.isEmpty())
+			return;
+		var queries = this.buffer.stream()
+			.map(document -> new IndexQueryBuilder().withId(document.id()).withObject(document).build())
+			.toList();
+		try {
+			this.ops.bulkIndex(queries, Document.class);
+			this.indexed += queries.size();
+		} //
+		catch (BulkFailureException e) {
+			var failed = e.getFailedDocuments();
+			this.indexed += queries.size() - failed.size();
+			failed.forEach((id, failure) -> {
+				this.failures.put(id, String.valueOf(failure));
+				this.log.warn("could not index document #{}: {}", id, failure);
+			});
+		} //
+		finally {
+			this.log.debug("sent a batch of {} documents ({} bytes)", queries.size(), this.bytes);
+			this.buffer.clear();
+			this.bytes = 0;
+		}
+	}
+
+	/** how many documents Elasticsearch has accepted */
+	synchronized int indexed() {
+		return this.indexed;
+	}
+
+	/** the documents Elasticsearch rejected, by id, and why */
+	synchronized Map<String, String> failures() {
+		return Map.copyOf(this.failures);
+	}
+
+	@Override
+	public void close() {
+		this.flush();
+	}
+
+	/**
+	 * roughly how many bytes the document takes up in the request: a byte for each
+	 * character of its text, plus a little for the action line and the other fields.
+	 */
+	private static long sizeOf(Document document) {
+		return 256 + document.title().length() + document.description().length();
+	}
+
+}
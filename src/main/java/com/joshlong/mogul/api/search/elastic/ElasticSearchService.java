@@ -1,11 +1,14 @@
 package com.joshlong.mogul.api.search.elastic;
 
+import co.elastic.clients.elasticsearch.core.search.FieldCollapse;
 import com.joshlong.mogul.api.AbstractDomainService;
+import com.joshlong.mogul.api.ApiProperties;
 import com.joshlong.mogul.api.Searchable;
 import com.joshlong.mogul.api.SearchableResolver;
 import com.joshlong.mogul.api.SearchableResult;
+import com.joshlong.mogul.api.search.RankedSearchResults;
+import com.joshlong.mogul.api.search.SearchResults;
 import com.joshlong.mogul.api.search.SearchService;
-import com.joshlong.mogul.api.transcripts.TranscriptRecordedEvent;
 import com.joshlong.mogul.api.utils.ReflectionUtils;
 import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
@@ -14,16 +17,23 @@ import org.springframework.aot.hint.MemberCategory;
 import org.springframework.aot.hint.RuntimeHints;
 import org.springframework.aot.hint.RuntimeHintsRegistrar;
 import org.springframework.aot.hint.TypeReference;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.elasticsearch.annotations.DateFormat;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
 import org.springframework.data.elasticsearch.client.elc.NativeQuery;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
-import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilterBuilder;
+import org.springframework.data.elasticsearch.core.query.HighlightQuery;
+import org.springframework.data.elasticsearch.core.query.highlight.Highlight;
+import org.springframework.data.elasticsearch.core.query.highlight.HighlightField;
+import org.springframework.data.elasticsearch.core.query.highlight.HighlightFieldParameters;
 import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
-import org.springframework.modulith.events.ApplicationModuleListener;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
@@ -36,23 +46,41 @@ interface DocumentRepository extends ElasticsearchRepository<Document, String> {
 }
 
 @Service
+@ConditionalOnProperty(name = "mogul.search.backend", havingValue = "elastic", matchIfMissing = true)
 @ImportRuntimeHints(ElasticSearchService.Hints.class)
 @SuppressWarnings("unchecked")
 class ElasticSearchService extends AbstractDomainService<Searchable, SearchableResolver<?>> implements SearchService {
 
 	static final String INDEX_NAME = "searchables";
 
+	static final String AGGREGATE = "aggregate";
+
+	/** the best matching part of the description, or else its beginning */
+	private static final HighlightQuery SNIPPET = new HighlightQuery(
+			new Highlight(List.of(new HighlightField("description", HighlightFieldParameters.builder() //
+				.withFragmentSize(200) //
+				.withNumberOfFragments(1) //
+				.withNoMatchSize(200) //
+				.build()))),
+			Document.class);
+
+	/** how many searchables we ask a resolver for at once */
+	private static final int RESOLVER_BATCH_SIZE = 500;
+
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
 	private final DocumentRepository documentRepository;
 
 	private final ElasticsearchOperations ops;
 
+	private final ApiProperties.Search.Bulk bulk;
+
 	ElasticSearchService(Collection<SearchableResolver<?>> resolvers, DocumentRepository documentRepository,
-			ElasticsearchOperations ops) {
+			ElasticsearchOperations ops, ApiProperties properties) {
 		super(resolvers);
 		this.documentRepository = documentRepository;
 		this.ops = ops;
+		this.bulk = properties.search().bulk();
 	}
 
 	private String keyFor(@Nullable Class<?> clzz) {
@@ -69,24 +97,85 @@ class ElasticSearchService extends AbstractDomainService<Searchable, SearchableR
 		Assert.notNull(repo, () -> "there's no repository for " + clzz + "!");
 		var results = repo.results(List.of(searchableId));
 		if (!results.isEmpty()) {
-			var result = results.getFirst();
-			var text = result.text();
-			var title = result.title();
-			if (StringUtils.hasText(title)) {
-				var document = new Document(Long.toString(searchableId), searchableId, title, Instant.now(),
-						StringUtils.hasText(text) ? text : "", clzz);
+			var document = this.document(results.getFirst(), searchableClass);
+			if (document != null)
 				this.documentRepository.save(document);
-			} //
-			else {
-				this.log.debug("we've got nothing to index for" + " searchable {} with class {}!", searchableId, clzz);
+		}
+	}
+
+	@Override
+	public void indexAll(Collection<? extends Searchable> searchables) {
+		var idsByClass = new LinkedHashMap<Class<? extends Searchable>, Set<Long>>();
+		for (var searchable : searchables)
+			idsByClass.computeIfAbsent(searchable.getClass(), _ -> new LinkedHashSet<>())
+				.add(searchable.searchableId());
+		this.indexAll(idsByClass);
+	}
+
+	@Override
+	public Set<Long> indexAll(Class<? extends Searchable> type, Collection<Long> searchableIds) {
+		var failures = new LinkedHashSet<Long>();
+		// all the documents are of the one type, so their ids are the searchable ids
+		for (var id : this.indexAll(Map.of(type, new LinkedHashSet<>(searchableIds))))
+			failures.add(Long.parseLong(id));
+		return failures;
+	}
+
+	/**
+	 * resolves the searchables a batch at a time for each type, rather than one at a
+	 * time, and sends the documents to Elasticsearch in bulk.
+	 * @return the ids of the documents that Elasticsearch rejected
+	 */
+	private Set<String> indexAll(Map<Class<? extends Searchable>, Set<Long>> idsByClass) {
+		var count = 0;
+		try (var bulkIndexer = new BulkIndexer(this.ops, this.bulk.maxActions(), this.bulk.maxSize(),
+				this.bulk.maxAge())) {
+			for (var entry : idsByClass.entrySet()) {
+				var clzz = entry.getKey();
+				var resolver = this.findResolver(clzz);
+				var ids = new ArrayList<>(entry.getValue());
+				count += ids.size();
+				for (var from = 0; from < ids.size(); from += RESOLVER_BATCH_SIZE) {
+					var batch = ids.subList(from, Math.min(ids.size(), from + RESOLVER_BATCH_SIZE));
+					for (var result : resolver.results(batch)) {
+						var document = this.document(result, clzz);
+						if (document != null)
+							bulkIndexer.add(document);
+					}
+				}
 			}
+			bulkIndexer.flush();
+			var failures = bulkIndexer.failures();
+			this.log.info("indexed {} of {} searchables, and {} were rejected", bulkIndexer.indexed(), count,
+					failures.size());
+			return failures.keySet();
 		}
 	}
 
+	private @Nullable Document document(SearchableResult<?> result, Class<?> searchableClass) {
+		var searchableId = result.searchableId();
+		var title = result.title();
+		var text = result.text();
+		var clzz = this.keyFor(searchableClass);
+		if (!StringUtils.hasText(title)) {
+			this.log.debug("we've got nothing to index for" + " searchable {} with class {}!", searchableId, clzz);
+			return null;
+		}
+		return new Document(Long.toString(searchableId), searchableId, title, Instant.now(),
+				StringUtils.hasText(text) ? text : "", clzz,
+				RankedSearchResults.aggregate(searchableClass, result.aggregateId()));
+	}
+
+	/**
+	 * Elasticsearch collapses the hits, so that we get the best match for each aggregate,
+	 * and highlights the snippets, so we needn't load the text of any of them, and we
+	 * load only the page we're asked for.
+	 */
 	@Override
-	public <T extends Searchable> Collection<SearchableResult<T>> search(String shouldContain,
-			Map<String, Object> metadata) {
-		this.log.info("searching for [{}] with metadata {}", shouldContain, metadata);
+	public <T extends Searchable> SearchResults<T> search(String shouldContain, Map<String, Object> metadata,
+			@Nullable Integer first, @Nullable String after) {
+		var page = RankedSearchResults.Page.of(first, after);
+		this.log.info("searching for [{}] with metadata {} on page {}", shouldContain, metadata, page);
 		var nativeQuery = NativeQuery.builder() //
 			.withQuery(q -> q //
 				.bool(b -> {
@@ -100,63 +189,53 @@ class ElasticSearchService extends AbstractDomainService<Searchable, SearchableR
 					}
 					return b;
 				})) //
-			.withMaxResults(1000) //
+			.withFieldCollapse(FieldCollapse.of(c -> c.field(AGGREGATE))) //
+			.withHighlightQuery(SNIPPET) //
+			.withSourceFilter(new FetchSourceFilterBuilder().withIncludes("searchableId", "className").build()) //
+			.withPageable(PageRequest.of(page.number(), page.size())) //
+			.withTrackTotalHits(false) //
 			.build();
 		var search = this.ops.search(nativeQuery, Document.class);
-		var rankedSearchableResults = this.mapDocumentsToSearchable(search);
-		return rankedSearchableResults.stream()
-			.map(rsr -> new SearchableResult<>(rsr.searchableId(), (T) rsr.searchable(), rsr.title(), rsr.text(),
-					rsr.aggregateId(), rsr.created(), rsr.type(), rsr.context()))
-			.toList();
+		var hits = new ArrayList<RankedSearchResults.Hit>();
+		for (var hit : search) {
+			var document = hit.getContent();
+			var clzz = ReflectionUtils.classForName(document.className()).asSubclass(Searchable.class);
+			var snippets = hit.getHighlightField("description");
+			var snippet = snippets.isEmpty() ? null : snippets.getFirst();
+			hits.add(new RankedSearchResults.Hit(clzz, document.searchableId(), snippet));
+		}
+		// there may be nothing after a full page, but we can't tell without asking
+		return RankedSearchResults.resolve(page, hits, hits.size() == page.size(), this::findResolver);
 	}
 
-	@SuppressWarnings("unchecked")
-	private List<SearchableResult<? extends Searchable>> mapDocumentsToSearchable(SearchHits<Document> search) {
-		var searchableToRank = new HashMap<Long, Float>();
-		var resultsBucketedByClass = new HashMap<Class<?>, List<Document>>();
-		var classToResolvers = new HashMap<Class<?>, SearchableResolver<?>>();
-		for (var doc : search) {
-			var clzz = (Class<Searchable>) ReflectionUtils.classForName(doc.getContent().className());
-			resultsBucketedByClass.computeIfAbsent(clzz, _ -> new ArrayList<>()).add(doc.getContent());
-			classToResolvers.computeIfAbsent(clzz, _ -> this.findResolver(clzz));
-			searchableToRank.put(doc.getContent().searchableId(), doc.getScore());
-		}
-		var map = new HashMap<Long, ArrayList<RankedSearchableResult<? extends Searchable>>>();
-		for (var entry : resultsBucketedByClass.entrySet()) {
-			var docs = entry.getValue();
-			var clazz = entry.getKey();
-			var searchableIds = docs.stream().map(Document::searchableId).toList();
-			var resolver = classToResolvers.get(clazz);
-			Assert.notNull(resolver, "there must be a valid resolver for " + clazz);
-			for (var searchableResult : resolver.results(searchableIds)) {
-				var rank = searchableToRank.getOrDefault(searchableResult.searchableId(), 0.0f);
-				map.computeIfAbsent(searchableResult.aggregateId(), _ -> new ArrayList<>())
-					.add(new RankedSearchableResult<>(rank, searchableResult));
+	/**
+	 * documents indexed before we collapsed on {@link #AGGREGATE} don't have one, and
+	 * Elasticsearch would collapse them all into one hit, so we add the field to the
+	 * mapping and index them again.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	void indexDocumentsWithoutAggregates() {
+		try {
+			this.ops.indexOps(Document.class).putMapping();
+			var query = NativeQuery.builder() //
+				.withQuery(q -> q.bool(b -> b.mustNot(mn -> mn.exists(e -> e.field(AGGREGATE))))) //
+				.withSourceFilter(new FetchSourceFilterBuilder().withIncludes("searchableId", "className").build()) //
+				.withPageable(PageRequest.of(0, RESOLVER_BATCH_SIZE)) //
+				.build();
+			var idsByClass = new LinkedHashMap<Class<? extends Searchable>, Set<Long>>();
+			try (var stream = this.ops.searchForStream(query, Document.class)) {
+				stream.forEachRemaining(hit -> {
+					var document = hit.getContent();
+					var clzz = ReflectionUtils.classForName(document.className()).asSubclass(Searchable.class);
+					idsByClass.computeIfAbsent(clzz, _ -> new LinkedHashSet<>()).add(document.searchableId());
+				});
 			}
+			if (!idsByClass.isEmpty())
+				this.indexAll(idsByClass);
+		} //
+		catch (Exception e) {
+			this.log.warn("could not index the documents without an aggregate", e);
 		}
-		var searchableResults = new ArrayList<RankedSearchableResult<? extends Searchable>>();
-		for (var entry : map.entrySet()) {
-			entry.getValue()
-				.stream()
-				.max((o1, o2) -> Float.compare(o2.rank(), o1.rank()))
-				.ifPresent(searchableResults::add);
-		}
-		searchableResults.sort((o1, o2) -> Float.compare(o2.rank(), o1.rank()));
-		var finalList = new ArrayList<SearchableResult<? extends Searchable>>();
-		for (var r : searchableResults) {
-			finalList.add(r.searchableResult());
-		}
-		return finalList;
-	}
-
-	@SuppressWarnings("unchecked")
-	@ApplicationModuleListener
-	void indexForSearchOnTranscriptCompletion(TranscriptRecordedEvent event) {
-		var aClazz = (Class<? extends Searchable>) event.type();
-		var repo = this.findResolver(aClazz);
-		var transcribable = Objects.requireNonNull(repo).find(event.transcribableId());
-		Assert.notNull(transcribable, "the transcribable id " + event.transcribableId() + " was null!");
-		this.index(transcribable);
 	}
 
 	static class Hints implements RuntimeHintsRegistrar {
@@ -171,14 +250,11 @@ class ElasticSearchService extends AbstractDomainService<Searchable, SearchableR
 
 }
 
-record RankedSearchableResult<T extends Searchable>(float rank, SearchableResult<T> searchableResult) {
-
-}
-
 @org.springframework.data.elasticsearch.annotations.Document(indexName = ElasticSearchService.INDEX_NAME)
 record Document(@Id String id, @Field(type = FieldType.Long) Long searchableId,
 		@Field(type = FieldType.Text, analyzer = "english") String title,
 		@Field(type = FieldType.Date, format = DateFormat.epoch_millis) Instant when,
 		@Field(type = FieldType.Text, analyzer = "english") String description,
-		@Field(type = FieldType.Text) String className) {
+		@Field(type = FieldType.Text) String className,
+		@Field(name = ElasticSearchService.AGGREGATE, type = FieldType.Keyword) String aggregate) {
 }
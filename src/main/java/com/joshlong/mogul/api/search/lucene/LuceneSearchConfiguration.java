@@ -0,0 +1,43 @@
+package com.joshlong.mogul.api.search.lucene;
+
+import com.joshlong.mogul.api.ApiProperties;
+import com.joshlong.mogul.api.SearchableResolver;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.core.MessageSource;
+import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.integration.dsl.PollerFactory;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.io.IOException;
+import java.util.Collection;
+
+@Configuration
+@ConditionalOnProperty(name = "mogul.search.backend", havingValue = "lucene")
+class LuceneSearchConfiguration {
+
+	@Bean
+	LuceneSearchService luceneSearchService(Collection<SearchableResolver<?>> resolvers, ApiProperties properties)
+			throws IOException {
+		return new LuceneSearchService(resolvers, properties.search().lucene().directory());
+	}
+
+	@Bean
+	IntegrationFlow luceneCommitIntegrationFlow(LuceneSearchService searchService, ApiProperties properties) {
+		var messageSource = (MessageSource<Boolean>) () -> {
+			try {
+				searchService.commit();
+			} //
+			catch (IOException e) {
+				throw new IllegalStateException("could not commit the search index", e);
+			}
+			return MessageBuilder.withPayload(true).build();
+		};
+		var commitInterval = properties.search().lucene().commitInterval();
+		return IntegrationFlow //
+			.from(messageSource, pc -> pc.poller(_ -> PollerFactory.fixedDelay(commitInterval)))
+			.nullChannel();
+	}
+
+}
@@ -0,0 +1,289 @@
+package com.joshlong.mogul.api.search.lucene;
+
+import com.joshlong.mogul.api.AbstractDomainService;
+import com.joshlong.mogul.api.Searchable;
+import com.joshlong.mogul.api.SearchableResolver;
+import com.joshlong.mogul.api.SearchableResult;
+import com.joshlong.mogul.api.search.RankedSearchResults;
+import com.joshlong.mogul.api.search.SearchResults;
+import com.joshlong.mogul.api.search.SearchService;
+import com.joshlong.mogul.api.utils.ReflectionUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.MMapDirectory;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * a {@link SearchService} backed by a Lucene index on the local disk, for a single node,
+ * or for tests, with no cluster to run and no network between us and the index.
+ * <p>
+ * The index is memory mapped. Searches use near-real-time readers that we refresh after
+ * every write, so they see changes as soon as they're made, and the index is
+ * {@link #commit() committed} to disk in the background, because a commit (an
+ * {@code fsync}) is far more expensive than a refresh. The exception is what the outbox
+ * hands us, which we commit before we return, because the outbox forgets it when we do.
+ * The query reproduces {@code ElasticSearchService}'s: the terms must match the title or
+ * the description, each boosted by two, with {@code AUTO} fuzziness, taking whichever
+ * field matches best, and an exact match in the description counts for more.
+ *
+ * @author Josh Long
+ */
+class LuceneSearchService extends AbstractDomainService<Searchable, SearchableResolver<?>>
+		implements SearchService, DisposableBean {
+
+	/** how many hits we read at a time while collapsing them */
+	private static final int HITS_BATCH_SIZE = 100;
+
+	/** how many searchables we ask a resolver for at once */
+	private static final int RESOLVER_BATCH_SIZE = 500;
+
+	private static final String ID = "id";
+
+	private static final String SEARCHABLE_ID = "searchableId";
+
+	private static final String CLASS_NAME = "className";
+
+	private static final String TITLE = "title";
+
+	private static final String DESCRIPTION = "description";
+
+	private static final String AGGREGATE = "aggregate";
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final Analyzer analyzer = new EnglishAnalyzer();
+
+	private final IndexWriter writer;
+
+	private final SearcherManager searcherManager;
+
+	LuceneSearchService(Collection<SearchableResolver<?>> resolvers, File directory) throws IOException {
+		super(resolvers);
+		Assert.state(directory.isDirectory() || directory.mkdirs(),
+				"the directory [" + directory.getAbsolutePath() + "] does not exist");
+		var config = new IndexWriterConfig(this.analyzer).setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+		this.writer = new IndexWriter(new MMapDirectory(directory.toPath()), config);
+		this.searcherManager = new SearcherManager(this.writer, null);
+	}
+
+	@Override
+	public void index(Searchable searchable) {
+		this.indexAll(List.of(searchable));
+	}
+
+	@Override
+	public void indexAll(Collection<? extends Searchable> searchables) {
+		var idsByClass = new LinkedHashMap<Class<? extends Searchable>, Set<Long>>();
+		for (var searchable : searchables)
+			idsByClass.computeIfAbsent(searchable.getClass(), _ -> new LinkedHashSet<>())
+				.add(searchable.searchableId());
+		this.indexAll(idsByClass);
+	}
+
+	@Override
+	public Set<Long> indexAll(Class<? extends Searchable> type, Collection<Long> searchableIds) {
+		this.indexAll(Map.of(type, new LinkedHashSet<>(searchableIds)));
+		// the outbox forgets these once we return, so they mustn't only be in memory
+		try {
+			this.commit();
+		} //
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		// the index takes every document or, if it can't write, none of them
+		return Set.of();
+	}
+
+	private void indexAll(Map<Class<? extends Searchable>, Set<Long>> idsByClass) {
+		try {
+			var count = 0;
+			for (var entry : idsByClass.entrySet()) {
+				var clzz = entry.getKey();
+				var resolver = this.findResolver(clzz);
+				var ids = new ArrayList<>(entry.getValue());
+				for (var from = 0; from < ids.size(); from += RESOLVER_BATCH_SIZE) {
+					var batch = ids.subList(from, Math.min(ids.size(), from + RESOLVER_BATCH_SIZE));
+					for (var result : resolver.results(batch)) {
+						var document = this.document(result, clzz);
+						if (document == null)
+							continue;
+						// replaces the document, if there is one
+						this.writer.updateDocument(new Term(ID, document.get(ID)), document);
+						count += 1;
+					}
+				}
+			}
+			this.searcherManager.maybeRefresh();
+			this.log.debug("indexed {} searchables", count);
+		} //
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private @Nullable Document document(SearchableResult<?> result, Class<?> searchableClass) {
+		var title = result.title();
+		var text = result.text();
+		if (!StringUtils.hasText(title)) {
+			this.log.debug("we've got nothing to index for searchable {} with class {}!", result.searchableId(),
+					searchableClass.getName());
+			return null;
+		}
+		var document = new Document();
+		// searchable ids are only unique within a type
+		document.add(new StringField(ID, searchableClass.getName() + '#' + result.searchableId(), Field.Store.YES));
+		document.add(new StoredField(SEARCHABLE_ID, result.searchableId()));
+		document.add(new StringField(CLASS_NAME, searchableClass.getName(), Field.Store.YES));
+		document.add(new StringField(AGGREGATE, RankedSearchResults.aggregate(searchableClass, result.aggregateId()),
+				Field.Store.YES));
+		document.add(new TextField(TITLE, title, Field.Store.NO));
+		document.add(new TextField(DESCRIPTION, StringUtils.hasText(text) ? text : "", Field.Store.NO));
+		return document;
+	}
+
+	/**
+	 * we read the hits, best first, until we've seen enough aggregates to fill the page,
+	 * and one more, so we know whether there's another page, and keep only the best hit
+	 * for each aggregate. We don't keep the text we index, so there are no snippets.
+	 */
+	@Override
+	public <T extends Searchable> SearchResults<T> search(String shouldContain, Map<String, Object> metadata,
+			@Nullable Integer first, @Nullable String after) {
+		var page = RankedSearchResults.Page.of(first, after);
+		this.log.info("searching for [{}] with metadata {} on page {}", shouldContain, metadata, page);
+		var terms = this.terms(shouldContain);
+		// like a multi_match with no terms, this matches nothing
+		if (terms.isEmpty())
+			return new SearchResults<>(List.of(), null);
+		var fuzzy = new DisjunctionMaxQuery(List.of( //
+				new BoostQuery(matchQuery(TITLE, terms, true), 2), //
+				new BoostQuery(matchQuery(DESCRIPTION, terms, true), 2)), 0);
+		var query = new BooleanQuery.Builder() //
+			.add(fuzzy, BooleanClause.Occur.MUST) //
+			.add(matchQuery(DESCRIPTION, terms, false), BooleanClause.Occur.SHOULD) //
+			.build();
+		var wanted = page.offset() + page.size() + 1;
+		var bestByAggregate = new LinkedHashMap<String, RankedSearchResults.Hit>();
+		try {
+			var searcher = this.searcherManager.acquire();
+			try {
+				var storedFields = searcher.storedFields();
+				var last = (ScoreDoc) null;
+				while (bestByAggregate.size() < wanted) {
+					var scoreDocs = (last == null ? searcher.search(query, HITS_BATCH_SIZE)
+							: searcher.searchAfter(last, query, HITS_BATCH_SIZE)).scoreDocs;
+					for (var scoreDoc : scoreDocs) {
+						var document = storedFields.document(scoreDoc.doc);
+						// documents we indexed before we collapsed stand alone
+						var aggregate = Objects.requireNonNullElse(document.get(AGGREGATE), document.get(ID));
+						if (bestByAggregate.containsKey(aggregate))
+							continue;
+						var clzz = ReflectionUtils.classForName(document.get(CLASS_NAME)).asSubclass(Searchable.class);
+						var searchableId = document.getField(SEARCHABLE_ID).numericValue().longValue();
+						bestByAggregate.put(aggregate, new RankedSearchResults.Hit(clzz, searchableId, null));
+					}
+					if (scoreDocs.length < HITS_BATCH_SIZE)
+						break;
+					last = scoreDocs[scoreDocs.length - 1];
+				}
+			} //
+			finally {
+				this.searcherManager.release(searcher);
+			}
+		} //
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		var hits = new ArrayList<>(bestByAggregate.values());
+		var pageOfHits = hits.subList(Math.min(hits.size(), page.offset()),
+				Math.min(hits.size(), page.offset() + page.size()));
+		return RankedSearchResults.resolve(page, pageOfHits, hits.size() == wanted, this::findResolver);
+	}
+
+	/**
+	 * commits whatever's been indexed since the last commit to disk.
+	 */
+	void commit() throws IOException {
+		if (this.writer.hasUncommittedChanges()) {
+			this.writer.commit();
+			this.log.debug("committed the search index");
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		this.commit();
+		this.searcherManager.close();
+		this.writer.close();
+		this.analyzer.close();
+	}
+
+	/**
+	 * each term, analyzed as the field would be, should match, as in a {@code match}
+	 * query.
+	 */
+	private static Query matchQuery(String field, List<String> terms, boolean fuzzy) {
+		var builder = new BooleanQuery.Builder();
+		for (var term : terms) {
+			var edits = fuzzy ? autoFuzziness(term) : 0;
+			var query = edits == 0 ? new TermQuery(new Term(field, term))
+					: new FuzzyQuery(new Term(field, term), edits, 0, 50, true);
+			builder.add(query, BooleanClause.Occur.SHOULD);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Elasticsearch's {@code AUTO}: exact for short terms, then one edit, then two.
+	 */
+	private static int autoFuzziness(String term) {
+		var length = term.codePointCount(0, term.length());
+		return length <= 2 ? 0 : (length <= 5 ? 1 : 2);
+	}
+
+	private List<String> terms(String text) {
+		var terms = new ArrayList<String>();
+		if (!StringUtils.hasText(text))
+			return terms;
+		try (var tokens = this.analyzer.tokenStream(DESCRIPTION, text)) {
+			var term = tokens.addAttribute(CharTermAttribute.class);
+			tokens.reset();
+			while (tokens.incrementToken())
+				terms.add(term.toString());
+			tokens.end();
+		} //
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return terms;
+	}
+
+}
@@ -0,0 +1,4 @@
+@NullMarked
+package com.joshlong.mogul.api.search.lucene;
+
+import org.jspecify.annotations.NullMarked;
@@ -19,7 +19,10 @@ import org.springframework.modulith.events.ApplicationModuleListener;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @Transactional
@@ -51,12 +54,33 @@ class DefaultTranscriptService extends AbstractDomainService<Transcribable, Tran
 		return transcribable.getClass().getName();
 	}
 
-	private Transcript readThroughTranscriptionByKey(String clazz, String payloadKeyAsJson) {
-		return CollectionUtils
-			.firstOrNull(this.db.sql("select * from transcript where payload_class = ? and payload = ?")
-				.params(clazz, payloadKeyAsJson)
-				.query(this.transcribableRowMapper)
-				.list());
+	private static Key uniqueKeyFor(Transcribable transcribable) {
+		return new Key(classNameFor(transcribable), JsonUtils.write(transcribable.transcribableId()));
+	}
+
+	private static Key uniqueKeyFor(Transcript transcript) {
+		return new Key(transcript.payloadClass().getName(), transcript.payload());
+	}
+
+	/**
+	 * a transcript is unique by the class and the (JSON) key of its payload.
+	 */
+	private record Key(String payloadClass, String payload) {
+	}
+
+	private static <T extends Transcribable> Map<Key, T> keysFor(Collection<T> transcribables) {
+		var keys = new LinkedHashMap<Key, T>();
+		for (var transcribable : transcribables)
+			keys.put(uniqueKeyFor(transcribable), transcribable);
+		return keys;
+	}
+
+	private static SqlArrayValue payloadClasses(Collection<Key> keys) {
+		return new SqlArrayValue("text", keys.stream().map(Key::payloadClass).toArray());
+	}
+
+	private static SqlArrayValue payloads(Collection<Key> keys) {
+		return new SqlArrayValue("text", keys.stream().map(Key::payload).toArray());
 	}
 
 	@Override
@@ -100,6 +124,12 @@ class DefaultTranscriptService extends AbstractDomainService<Transcribable, Tran
 
 	@Override
 	public void transcribe(Long mogulId, Transcribable payload, Map<String, Object> context) {
+		this.transcribe(mogulId, payload, context, TranscriptionRequest.Priority.INTERACTIVE);
+	}
+
+	@Override
+	public void transcribe(Long mogulId, Transcribable payload, Map<String, Object> context,
+			TranscriptionRequest.Priority priority) {
 		var transcript = this.transcript(mogulId, payload);
 		var transcribableKey = this.keyFor(transcript);
 		var defaultContext = this.resolverFor(payload.getClass()).defaultContext(transcribableKey);
@@ -107,7 +137,7 @@ class DefaultTranscriptService extends AbstractDomainService<Transcribable, Tran
 		finalMap.putAll(defaultContext);
 		finalMap.putAll(context);
 		var message = MessageBuilder //
-			.withPayload(new TranscriptionRequest(mogulId, payload, finalMap)) //
+			.withPayload(new TranscriptionRequest(mogulId, payload, finalMap, priority)) //
 			.build();
 		this.requests.send(message);
 	}
@@ -120,10 +150,24 @@ class DefaultTranscriptService extends AbstractDomainService<Transcribable, Tran
 
 	@Override
 	public void writeTranscript(Transcribable transcribable, String transcript) {
-		var payloadKeyAsJson = JsonUtils.write(transcribable.transcribableId());
-		var clazz = classNameFor(transcribable);
-		var transcriptObject = this.readThroughTranscriptionByKey(clazz, payloadKeyAsJson);
-		this.writeTranscript(transcriptObject.id(), transcript);
+		this.writeTranscripts(Collections.singletonMap(transcribable, transcript));
+	}
+
+	@Override
+	public void writeTranscripts(Map<? extends Transcribable, String> transcripts) {
+		if (transcripts.isEmpty())
+			return;
+		var keys = keysFor(transcripts.keySet());
+		var texts = keys.values().stream().map(transcripts::get).toArray();
+		this.db //
+			.sql("""
+					update transcript t
+					set transcript = w.transcript
+					from unnest(?::text[], ?::text[], ?::text[]) as w(payload_class, payload, transcript)
+					where t.payload_class = w.payload_class and t.payload = w.payload
+					""") //
+			.params(payloadClasses(keys.keySet()), payloads(keys.keySet()), new SqlArrayValue("text", texts)) //
+			.update();
 	}
 
 	@Override
@@ -142,43 +186,70 @@ class DefaultTranscriptService extends AbstractDomainService<Transcribable, Tran
 
 	@Override
 	public Transcript transcript(Long mogulId, Transcribable payload) {
-		var clazz = classNameFor(payload);
-		var payloadKeyAsJson = JsonUtils.write(payload.transcribableId());
-		var transcript = this.readThroughTranscriptionByKey(clazz, payloadKeyAsJson);
-		if (null == transcript) {
-			this.db //
-				.sql("insert into transcript(mogul_id,payload, payload_class) values (?,?,?)") //
-				.params(mogulId, payloadKeyAsJson, clazz) //
-				.update();
-			transcript = this.readThroughTranscriptionByKey(clazz, payloadKeyAsJson);
-		}
-		return transcript;
+		return this.transcripts(mogulId, List.of(payload)).get(payload);
 	}
 
 	@Override
-	public <T extends Transcribable> Map<Transcribable, String> readTranscripts(Long mogulId, Collection<T> toRead) {
-		if (toRead.isEmpty())
+	public <T extends Transcribable> Map<T, Transcript> transcripts(Long mogulId, Collection<T> payloads) {
+		if (payloads.isEmpty())
 			return Map.of();
-
-		var mapOfIdToTranscribable = new HashMap<String, Transcribable>();
-		for (var tr : toRead) {
-			mapOfIdToTranscribable.put(JsonUtils.write(tr.transcribableId()), tr);
+		var keys = keysFor(payloads);
+		// the select can't see rows that the insert in the same statement creates, so
+		// each
+		// transcript comes back from exactly one side of the union
+		var transcripts = this.db //
+			.sql("""
+					with requested(payload_class, payload) as (select * from unnest(?::text[], ?::text[])),
+					     inserted as (
+					         insert into transcript (mogul_id, payload_class, payload)
+					             select ?, payload_class, payload from requested
+					             on conflict (payload_class, payload) do nothing
+					             returning *)
+					select * from inserted
+					union all
+					select t.*
+					from transcript t
+					         join requested r on r.payload_class = t.payload_class and r.payload = t.payload
+					""") //
+			.params(payloadClasses(keys.keySet()), payloads(keys.keySet()), mogulId) //
+			.query(this.transcribableRowMapper) //
+			.list();
+		var map = new HashMap<T, Transcript>();
+		for (var transcript : transcripts)
+			map.put(keys.get(uniqueKeyFor(transcript)), transcript);
+		if (map.size() < keys.size()) {
+			// somebody else inserted the missing ones after our statement started
+			map.putAll(this.readTranscriptsByKeys(keys));
 		}
+		return map;
+	}
 
-		var transcriptIds = toRead.stream().map(x -> JsonUtils.write(x.transcribableId())).toList();
-
-		var sql = "select * from transcript where mogul_id = ? and payload = any(?)";
-
-		this.log.info("sql query: [{}]", sql);
-		var transcripts = db.sql(sql) //
-			.params(mogulId, new SqlArrayValue("text", transcriptIds.toArray(String[]::new)))//
-			.query(transcribableRowMapper) //
+	private <T extends Transcribable> Map<T, Transcript> readTranscriptsByKeys(Map<Key, T> keys) {
+		var transcripts = this.db //
+			.sql("""
+					select t.*
+					from transcript t
+					         join unnest(?::text[], ?::text[]) as r(payload_class, payload)
+					              on r.payload_class = t.payload_class and r.payload = t.payload
+					""") //
+			.params(payloadClasses(keys.keySet()), payloads(keys.keySet())) //
+			.query(this.transcribableRowMapper) //
 			.list();
+		var map = new HashMap<T, Transcript>();
+		for (var transcript : transcripts)
+			map.put(keys.get(uniqueKeyFor(transcript)), transcript);
+		return map;
+	}
+
+	@Override
+	public <T extends Transcribable> Map<Transcribable, String> readTranscripts(Long mogulId, Collection<T> toRead) {
+		if (toRead.isEmpty())
+			return Map.of();
 		var map = new HashMap<Transcribable, String>();
-		for (var tr : transcripts) {
-			var transcribableId = tr.payload(); // map id to object by transcribableId
-			map.put(mapOfIdToTranscribable.get(transcribableId), tr.transcript());
-		}
+		this.readTranscriptsByKeys(keysFor(toRead)).forEach((transcribable, transcript) -> {
+			if (mogulId.equals(transcript.mogulId()))
+				map.put(transcribable, transcript.transcript());
+		});
 		return map;
 	}
 
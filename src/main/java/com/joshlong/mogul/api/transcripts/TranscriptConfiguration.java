@@ -1,27 +1,37 @@
 package com.joshlong.mogul.api.transcripts;
 
+import com.joshlong.mogul.api.ApiProperties;
 import com.joshlong.mogul.api.Transcribable;
 import com.joshlong.mogul.api.TranscribableResolver;
 import com.joshlong.mogul.api.transcripts.audio.Transcriber;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.task.SimpleAsyncTaskSchedulerBuilder;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.integration.core.GenericHandler;
+import org.springframework.integration.core.MessageSource;
+import org.springframework.integration.dsl.DirectChannelSpec;
 import org.springframework.integration.dsl.IntegrationFlow;
 import org.springframework.integration.dsl.MessageChannels;
-import org.springframework.integration.dsl.PublishSubscribeChannelSpec;
+import org.springframework.integration.dsl.PollerFactory;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.util.Map;
 
 @Configuration
 class TranscriptConfiguration {
 
+	/**
+	 * how many times we'll claim a transcription request before giving up on it
+	 */
+	private static final int MAX_ATTEMPTS = 3;
+
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
 	@Bean
@@ -31,32 +41,92 @@ class TranscriptConfiguration {
 		return new DefaultTranscriptService(transcriptRowMapper, db, repositories.values(), publisher, in);
 	}
 
+	/**
+	 * the channel is a direct channel, so the request is written in the same transaction
+	 * as whatever asked for it.
+	 */
 	@Bean
-	IntegrationFlow transcriptIntegrationFlow(ApplicationEventPublisher publisher,
-			@TranscriptMessageChannel MessageChannel inbound, TranscriptService transcriptService,
-			Transcriber transcriber, TransactionTemplate tx) {
+	IntegrationFlow transcriptIntegrationFlow(@TranscriptMessageChannel MessageChannel inbound,
+			TranscriptionQueue queue) {
 		return IntegrationFlow //
 			.from(inbound) //
 			.handle((GenericHandler<TranscriptionRequest>) (payload, headers) -> {
 				this.log.debug("received a transcript request for mogul# {}, context: {}, transcribable# {}",
 						payload.mogulId(), payload.context(), payload.payload().transcribableId());
-				var transcribable = payload.payload();
-				var mogulId = payload.mogulId();
-				var transcript = transcriptService.transcript(payload.mogulId(), transcribable);
-				var clazz = (Class<? extends Transcribable>) transcript.payloadClass();
-				var transcribableId = transcribable.transcribableId();
-				this.publishInTransaction(publisher, tx,
-						new TranscriptionStartedEvent(mogulId, transcribableId, transcript.id(), clazz));
-				var repository = transcriptService.resolverFor(clazz);
-				var audio = repository.audio(transcribableId);
-				var content = transcriber.transcribe(audio);
-				this.publishInTransaction(publisher, tx,
-						new TranscriptCompletedEvent(mogulId, transcribableId, transcript.id(), clazz, content));
+				queue.enqueue(payload);
 				return null;
 			}) //
 			.get();
 	}
 
+	/**
+	 * claims as many requests as we can start right away, and hands them to the
+	 * {@link TranscriptionScheduler scheduler}. Requests whose node died are picked up
+	 * here, too, once their leases expire.
+	 */
+	@Bean
+	IntegrationFlow transcriptionRequestsIntegrationFlow(ApiProperties properties, TranscriptionQueue queue,
+			TranscriptionScheduler scheduler, ApplicationEventPublisher publisher, TranscriptService transcriptService,
+			Transcriber transcriber, TransactionTemplate tx) {
+		var concurrency = properties.transcripts().concurrency();
+		var messageSource = (MessageSource<Integer>) () -> {
+			var leases = queue.claim(concurrency - queue.held());
+			for (var lease : leases) {
+				scheduler.submit(lease.request(), () -> {
+					try {
+						this.transcribe(publisher, transcriptService, transcriber, tx, lease.request());
+						queue.complete(lease);
+					} //
+					catch (Throwable throwable) {
+						// an Error, too, or the lease is never let go, and we never
+						// claim more than our concurrency less the leases we think
+						// we still hold
+						queue.fail(lease, throwable);
+						throw throwable;
+					}
+				});
+			}
+			return MessageBuilder.withPayload(leases.size()).build();
+		};
+		return IntegrationFlow //
+			.from(messageSource, pc -> pc.poller(_ -> PollerFactory.fixedDelay(Duration.ofSeconds(2))))
+			.nullChannel();
+	}
+
+	@Bean
+	IntegrationFlow transcriptionRequestsHeartbeatIntegrationFlow(ApiProperties properties, TranscriptionQueue queue) {
+		var messageSource = (MessageSource<Boolean>) () -> {
+			queue.heartbeat();
+			return MessageBuilder.withPayload(true).build();
+		};
+		var heartbeat = properties.transcripts().lease().dividedBy(3);
+		return IntegrationFlow //
+			.from(messageSource, pc -> pc.poller(_ -> PollerFactory.fixedRate(heartbeat)))
+			.nullChannel();
+	}
+
+	@Bean
+	TranscriptionQueue transcriptionQueue(JdbcClient db, TranscriptService transcriptService,
+			ApiProperties properties) {
+		return new TranscriptionQueue(db, transcriptService, properties.transcripts().lease(), MAX_ATTEMPTS);
+	}
+
+	private void transcribe(ApplicationEventPublisher publisher, TranscriptService transcriptService,
+			Transcriber transcriber, TransactionTemplate tx, TranscriptionRequest payload) {
+		var transcribable = payload.payload();
+		var mogulId = payload.mogulId();
+		var transcript = transcriptService.transcript(payload.mogulId(), transcribable);
+		var clazz = (Class<? extends Transcribable>) transcript.payloadClass();
+		var transcribableId = transcribable.transcribableId();
+		this.publishInTransaction(publisher, tx,
+				new TranscriptionStartedEvent(mogulId, transcribableId, transcript.id(), clazz));
+		var repository = transcriptService.resolverFor(clazz);
+		var audio = repository.audio(transcribableId);
+		var content = transcriber.transcribe(audio);
+		this.publishInTransaction(publisher, tx,
+				new TranscriptCompletedEvent(mogulId, transcribableId, transcript.id(), clazz, content));
+	}
+
 	private void publishInTransaction(ApplicationEventPublisher publisher, TransactionTemplate transactionTemplate,
 			Object eventObject) {
 		transactionTemplate.execute(_ -> {
@@ -67,12 +137,13 @@ class TranscriptConfiguration {
 
 	@Bean
 	@TranscriptMessageChannel
-	PublishSubscribeChannelSpec<?> transcriptMessageChannel() {
-		var transcriptionTaskExecutor = new SimpleAsyncTaskSchedulerBuilder()//
-			.virtualThreads(true) //
-			.concurrencyLimit(2)//
-			.build();
-		return MessageChannels.publishSubscribe(transcriptionTaskExecutor);
+	DirectChannelSpec transcriptMessageChannel() {
+		return MessageChannels.direct();
+	}
+
+	@Bean
+	TranscriptionScheduler transcriptionScheduler(ApiProperties properties, MeterRegistry registry) {
+		return new TranscriptionScheduler(properties.transcripts().concurrency(), registry);
 	}
 
 	@Bean
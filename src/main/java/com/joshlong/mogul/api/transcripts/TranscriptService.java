@@ -13,10 +13,24 @@ public interface TranscriptService {
 
 	Transcript transcript(Long mogulId, Transcribable payload);
 
+	/**
+	 * the transcripts for all the payloads, creating the ones that don't exist yet, in a
+	 * single round trip.
+	 */
+	<T extends Transcribable> Map<T, Transcript> transcripts(Long mogulId, Collection<T> payloads);
+
 	Transcript transcriptById(Long id);
 
 	void transcribe(Long mogulId, Transcribable payload, Map<String, Object> context);
 
+	/**
+	 * requests a transcription that runs with the given priority. The other
+	 * {@code transcribe} variants are all
+	 * {@link TranscriptionRequest.Priority#INTERACTIVE interactive}.
+	 */
+	void transcribe(Long mogulId, Transcribable payload, Map<String, Object> context,
+			TranscriptionRequest.Priority priority);
+
 	void transcribe(Long mogulId, Long transcriptId, Map<String, Object> context);
 
 	void transcribe(Long mogulId, Transcribable payload);
@@ -29,6 +43,11 @@ public interface TranscriptService {
 
 	void writeTranscript(Long transcriptId, String transcript);
 
+	/**
+	 * writes the transcripts for all the transcribables in a single round trip.
+	 */
+	void writeTranscripts(Map<? extends Transcribable, String> transcripts);
+
 	<T extends Transcribable> String readTranscript(Long mogulId, T toRead);
 
 	<T extends Transcribable> Map<Transcribable, String> readTranscripts(Long mogulId, Collection<T> toRead);
@@ -0,0 +1,229 @@
+package com.joshlong.mogul.api.transcripts;
+
+import com.joshlong.mogul.api.Transcribable;
+import com.joshlong.mogul.api.utils.JsonUtils;
+import com.joshlong.mogul.api.utils.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.support.SqlArrayValue;
+import org.springframework.util.Assert;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * keeps {@link TranscriptionRequest transcription requests} in the database until they've
+ * been transcribed, so that they survive a restart.
+ * <p>
+ * A node {@link #claim(int) claims} requests by taking a lease on them, and keeps the
+ * leases alive with a {@link #heartbeat() heartbeat} for as long as it works on them. A
+ * request is deleted when it's {@link #complete(Lease) complete}. If the node dies, its
+ * leases expire and another node (or the same one, once it's back) claims the requests
+ * again. The chunks that were transcribed before the node died are in the
+ * {@code transcription_chunk_cache}, so picking the work up again only costs us the
+ * chunks that hadn't been transcribed yet.
+ *
+ * @author Josh Long
+ */
+@SuppressWarnings("unchecked")
+class TranscriptionQueue {
+
+	private static final ParameterizedTypeReference<Map<String, Object>> CONTEXT = new ParameterizedTypeReference<>() {
+	};
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final Set<Long> held = ConcurrentHashMap.newKeySet();
+
+	private final String owner = owner();
+
+	private final JdbcClient db;
+
+	private final TranscriptService transcriptService;
+
+	private final Duration lease;
+
+	private final int maxAttempts;
+
+	/**
+	 * @param lease how long a claim lasts without a heartbeat
+	 * @param maxAttempts how many times to claim a request before giving up on it
+	 */
+	TranscriptionQueue(JdbcClient db, TranscriptService transcriptService, Duration lease, int maxAttempts) {
+		this.db = db;
+		this.transcriptService = transcriptService;
+		this.lease = lease;
+		this.maxAttempts = maxAttempts;
+		Assert.state(!lease.isNegative() && !lease.isZero(), "the lease must be longer than zero");
+		Assert.state(maxAttempts > 0, "there must be at least one attempt");
+	}
+
+	record Lease(Long id, int attempts, TranscriptionRequest request) {
+	}
+
+	/**
+	 * adds the request to the queue, unless there's already a request for the same
+	 * transcribable waiting to be claimed. The waiting request then takes on the newer
+	 * context and the more urgent of the two priorities, so that, say, an interactive
+	 * request isn't stuck behind the bulk request a backfill made earlier.
+	 */
+	void enqueue(TranscriptionRequest request) {
+		var priority = request.priority() == null ? TranscriptionRequest.Priority.INTERACTIVE : request.priority();
+		var priorities = priorities();
+		this.db //
+			.sql("""
+					insert into transcription_request(mogul_id, payload_class, payload, context, priority)
+					values (?, ?, ?, ?, ?)
+					on conflict (payload_class, payload) where lease_owner is null do update
+					set context = excluded.context,
+					    priority = case
+					        when array_position(?, excluded.priority) < array_position(?, transcription_request.priority)
+					            then excluded.priority
+					        else transcription_request.priority end
+					""") //
+			.params(request.mogulId(), request.payload().getClass().getName(),
+					JsonUtils.write(request.payload().transcribableId()), JsonUtils.write(request.context()),
+					priority.name(), priorities, priorities) //
+			.update();
+	}
+
+	/**
+	 * leases up to {@code max} requests that nobody holds, or whose holder has stopped
+	 * renewing the lease. Interactive requests go first and, within a priority, we take
+	 * turns between moguls.
+	 */
+	List<Lease> claim(int max) {
+		if (max <= 0)
+			return List.of();
+		// the candidates are picked once, up front: as a subquery, the planner may run
+		// them again for each row it updates, and claim more than the limit
+		var rows = this.db //
+			.sql("""
+					with claimed as materialized (
+					    select r.id
+					    from transcription_request r
+					    join (select id, row_number() over (partition by priority, mogul_id order by id) as turn
+					          from transcription_request
+					          where lease_expires is null or lease_expires < now()) available on available.id = r.id
+					    order by array_position(?, r.priority), available.turn, r.id
+					    limit ?
+					    for update of r skip locked)
+					update transcription_request t
+					set lease_owner = ?,
+					    lease_expires = now() + (? * interval '1 millisecond'),
+					    attempts = t.attempts + 1
+					from claimed
+					where t.id = claimed.id
+					returning t.*
+					""") //
+			.params(priorities(), max, this.owner, this.lease.toMillis()) //
+			.query((rs, _) -> new Row(rs.getLong("id"), rs.getInt("attempts"), rs.getLong("mogul_id"),
+					rs.getString("payload_class"), rs.getString("payload"), rs.getString("context"),
+					rs.getString("priority"))) //
+			.list();
+		if (!rows.isEmpty())
+			this.log.debug("claimed {} transcription requests", rows.size());
+		var leases = new ArrayList<Lease>();
+		for (var row : rows) {
+			this.held.add(row.id());
+			if (row.attempts() > this.maxAttempts) {
+				this.log.error("giving up on transcription request #{} for mogul #{} after {} attempts", row.id(),
+						row.mogulId(), this.maxAttempts);
+				this.delete(row.id());
+				continue;
+			}
+			try {
+				leases.add(new Lease(row.id(), row.attempts(), this.request(row)));
+			} //
+			catch (Exception e) {
+				// the transcribable is gone, or we can't make sense of the row, so it
+				// will
+				// never succeed
+				this.log.error("could not read transcription request #{}, so dropping it", row.id(), e);
+				this.delete(row.id());
+			}
+		}
+		return leases;
+	}
+
+	/**
+	 * renews the leases on every request this node holds.
+	 */
+	void heartbeat() {
+		if (this.held.isEmpty())
+			return;
+		var renewed = this.db //
+			.sql("""
+					update transcription_request
+					set lease_expires = now() + (? * interval '1 millisecond')
+					where lease_owner = ? and id = any(?)
+					""") //
+			.params(this.lease.toMillis(), this.owner, new SqlArrayValue("bigint", this.held.toArray()))
+			.update();
+		if (renewed < this.held.size())
+			this.log.warn("renewed {} of the {} transcription leases held by {}", renewed, this.held.size(),
+					this.owner);
+	}
+
+	void complete(Lease lease) {
+		this.delete(lease.id());
+	}
+
+	/**
+	 * gives the request back, to be claimed again once its lease expires.
+	 */
+	void fail(Lease lease, Throwable throwable) {
+		this.held.remove(lease.id());
+		this.log.warn("transcription request #{} failed on attempt {} of {}", lease.id(), lease.attempts(),
+				this.maxAttempts, throwable);
+	}
+
+	/** how many requests this node holds leases on */
+	int held() {
+		return this.held.size();
+	}
+
+	private void delete(Long id) {
+		this.held.remove(id);
+		this.db //
+			.sql("delete from transcription_request where id = ? and lease_owner = ?") //
+			.params(id, this.owner) //
+			.update();
+	}
+
+	private TranscriptionRequest request(Row row) {
+		var clazz = (Class<? extends Transcribable>) ReflectionUtils.classForName(row.payloadClass());
+		var transcribable = this.transcriptService.transcribable(JsonUtils.read(row.payload(), Long.class), clazz);
+		Assert.notNull(transcribable, "there is no " + clazz.getName() + " #" + row.payload());
+		return new TranscriptionRequest(row.mogulId(), transcribable, JsonUtils.read(row.context(), CONTEXT),
+				TranscriptionRequest.Priority.valueOf(row.priority()));
+	}
+
+	/** the priorities, most urgent first */
+	private static SqlArrayValue priorities() {
+		return new SqlArrayValue("text",
+				(Object[]) Arrays.stream(TranscriptionRequest.Priority.values())
+					.map(Enum::name)
+					.toArray(String[]::new));
+	}
+
+	private record Row(Long id, int attempts, Long mogulId, String payloadClass, String payload, String context,
+			String priority) {
+	}
+
+	private static String owner() {
+		var host = "unknown";
+		try {
+			host = InetAddress.getLocalHost().getHostName();
+		} //
+		catch (Exception e) {
+			// we only want something a human can recognize in the table
+		}
+		return host + "/" + UUID.randomUUID();
+	}
+
+}
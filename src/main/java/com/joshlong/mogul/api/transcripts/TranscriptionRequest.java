@@ -4,5 +4,25 @@ import com.joshlong.mogul.api.Transcribable;
 
 import java.util.Map;
 
-public record TranscriptionRequest(Long mogulId, Transcribable payload, Map<String, Object> context) {
+public record TranscriptionRequest(Long mogulId, Transcribable payload, Map<String, Object> context,
+		Priority priority) {
+
+	/**
+	 * which requests go first when there are more of them than we can run at once. In
+	 * order of precedence.
+	 */
+	public enum Priority {
+
+		/**
+		 * somebody is waiting on the result, say, because they just uploaded new audio or
+		 * asked for the transcript to be refreshed.
+		 */
+		INTERACTIVE,
+
+		/**
+		 * backfills, imports, and other work nobody is watching.
+		 */
+		BULK
+
+	}
 }
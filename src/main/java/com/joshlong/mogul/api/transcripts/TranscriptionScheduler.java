@@ -0,0 +1,161 @@
+package com.joshlong.mogul.api.transcripts;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * decides which {@link TranscriptionRequest transcription request} runs next.
+ * <p>
+ * At most {@code concurrency} transcriptions run at once, across every mogul. Waiting
+ * requests are queued by {@link TranscriptionRequest.Priority priority}, and then by
+ * mogul: an {@link TranscriptionRequest.Priority#INTERACTIVE interactive} request always
+ * goes before a {@link TranscriptionRequest.Priority#BULK bulk} one, and within a
+ * priority we take turns, one request per mogul, so that a mogul with a backlog of forty
+ * episodes doesn't make everybody else wait behind them.
+ *
+ * @author Josh Long
+ */
+class TranscriptionScheduler {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	private final Map<TranscriptionRequest.Priority, Queues> queues = new EnumMap<>(
+			TranscriptionRequest.Priority.class);
+
+	private final Map<TranscriptionRequest.Priority, Timer> waits = new EnumMap<>(TranscriptionRequest.Priority.class);
+
+	private final int concurrency;
+
+	private int running;
+
+	TranscriptionScheduler(int concurrency, MeterRegistry registry) {
+		Assert.state(concurrency > 0, "the concurrency must be greater than zero");
+		this.concurrency = concurrency;
+		for (var priority : TranscriptionRequest.Priority.values()) {
+			var tag = priority.name().toLowerCase(Locale.ROOT);
+			this.queues.put(priority, new Queues());
+			this.waits.put(priority,
+					Timer.builder("mogul.transcriptions.wait")
+						.description("how long a transcription request waits before it starts")
+						.tag("priority", tag)
+						.register(registry));
+			Gauge.builder("mogul.transcriptions.queue.depth", this, s -> s.depth(priority))
+				.description("transcription requests waiting to start")
+				.tag("priority", tag)
+				.register(registry);
+		}
+		Gauge.builder("mogul.transcriptions.running", this, TranscriptionScheduler::running)
+			.description("transcriptions currently running")
+			.register(registry);
+	}
+
+	/**
+	 * queues the work to run when it's this request's turn.
+	 */
+	void submit(TranscriptionRequest request, Runnable work) {
+		var priority = request.priority() == null ? TranscriptionRequest.Priority.INTERACTIVE : request.priority();
+		synchronized (this) {
+			this.queues.get(priority).add(request.mogulId(), new Job(priority, work, System.nanoTime()));
+			this.log.debug("queued a {} transcription request for mogul #{}", priority, request.mogulId());
+		}
+		this.dispatch();
+	}
+
+	private void dispatch() {
+		var ready = new ArrayList<Job>();
+		synchronized (this) {
+			while (this.running < this.concurrency) {
+				var next = this.next();
+				if (next == null)
+					break;
+				this.running += 1;
+				ready.add(next);
+			}
+		}
+		for (var job : ready)
+			this.executor.submit(() -> this.run(job));
+	}
+
+	private void run(Job job) {
+		this.waits.get(job.priority()).record(System.nanoTime() - job.queued(), TimeUnit.NANOSECONDS);
+		try {
+			job.work().run();
+		} //
+		catch (Throwable throwable) {
+			this.log.error("could not complete a transcription", throwable);
+		} //
+		finally {
+			synchronized (this) {
+				this.running -= 1;
+			}
+			this.dispatch();
+		}
+	}
+
+	private Job next() {
+		for (var priority : TranscriptionRequest.Priority.values()) {
+			var job = this.queues.get(priority).poll();
+			if (job != null)
+				return job;
+		}
+		return null;
+	}
+
+	private synchronized int depth(TranscriptionRequest.Priority priority) {
+		return this.queues.get(priority).size;
+	}
+
+	private synchronized int running() {
+		return this.running;
+	}
+
+	private record Job(TranscriptionRequest.Priority priority, Runnable work, long queued) {
+	}
+
+	/**
+	 * a queue for each mogul, and the order in which to visit them.
+	 */
+	private static class Queues {
+
+		private final Map<Long, Deque<Job>> jobsByMogul = new HashMap<>();
+
+		private final Deque<Long> turns = new ArrayDeque<>();
+
+		private int size;
+
+		void add(Long mogulId, Job job) {
+			var jobs = this.jobsByMogul.computeIfAbsent(mogulId, _ -> new ArrayDeque<>());
+			if (jobs.isEmpty())
+				this.turns.addLast(mogulId);
+			jobs.addLast(job);
+			this.size += 1;
+		}
+
+		Job poll() {
+			var mogulId = this.turns.pollFirst();
+			if (mogulId == null)
+				return null;
+			var jobs = this.jobsByMogul.get(mogulId);
+			var job = jobs.pollFirst();
+			if (jobs.isEmpty())
+				this.jobsByMogul.remove(mogulId);
+			else
+				this.turns.addLast(mogulId);
+			this.size -= 1;
+			return job;
+		}
+
+	}
+
+}
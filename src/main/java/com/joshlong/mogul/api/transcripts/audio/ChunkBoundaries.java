@@ -0,0 +1,98 @@
+package com.joshlong.mogul.api.transcripts.audio;
+
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * decides where to cut a long file into chunks while its gaps of silence are still being
+ * {@link SilenceDetector detected}, so that the first chunks can be cut, and transcribed,
+ * long before the whole file has been decoded.
+ * <p>
+ * The file is divided into {@code parts} chunks of about the same duration, and each cut
+ * is moved to the start of the gap of silence closest to it, as long as that's no further
+ * away than {@code maxShift}. If there's no such gap we cut where we'd planned to. A cut
+ * is made as soon as the detector has {@link SilenceDetector.Listener#passed(float)
+ * passed} the point after which no gap could be any closer.
+ *
+ * @author Josh Long
+ */
+class ChunkBoundaries implements SilenceDetector.Listener {
+
+	private final List<SilenceDetector.Silence> silences = new ArrayList<>();
+
+	private final long[] targets;
+
+	private final float maxShift;
+
+	private final LongConsumer cuts;
+
+	private int next;
+
+	private float previous;
+
+	/**
+	 * @param duration the duration of the whole file
+	 * @param parts how many chunks to cut it into
+	 * @param maxShift the furthest we'll move a cut to land in a gap of silence
+	 * @param cuts called with each cut, in milliseconds, in order
+	 */
+	ChunkBoundaries(Duration duration, int parts, Duration maxShift, LongConsumer cuts) {
+		Assert.state(parts > 0, "there can not be zero parts. this won't work!");
+		this.targets = new long[parts - 1];
+		for (var i = 0; i < this.targets.length; i++)
+			this.targets[i] = (i + 1) * (duration.toMillis() / parts);
+		this.maxShift = maxShift.toMillis();
+		this.cuts = cuts;
+	}
+
+	@Override
+	public void silence(SilenceDetector.Silence silence) {
+		if (silence.start() > this.previous)
+			this.silences.add(silence);
+	}
+
+	@Override
+	public void passed(float milliseconds) {
+		while (this.next < this.targets.length) {
+			var target = this.targets[this.next];
+			var closest = this.closestTo(target);
+			var distance = closest == null ? this.maxShift : Math.abs(closest.start() - target);
+			// a gap that's yet to be reported might still be closer
+			if (milliseconds - target < distance)
+				return;
+			this.cut(closest == null ? target : closest.start());
+		}
+	}
+
+	/**
+	 * makes whatever cuts are left, once the whole file has been decoded.
+	 */
+	void finish() {
+		this.passed(Float.MAX_VALUE);
+	}
+
+	private SilenceDetector.Silence closestTo(long target) {
+		SilenceDetector.Silence closest = null;
+		for (var silence : this.silences) {
+			var distance = Math.abs(silence.start() - target);
+			if (distance <= this.maxShift && (closest == null || distance < Math.abs(closest.start() - target)))
+				closest = silence;
+		}
+		return closest;
+	}
+
+	private void cut(float at) {
+		this.next += 1;
+		// never cut before, or at, the previous cut
+		if (at <= this.previous)
+			return;
+		this.previous = at;
+		this.silences.removeIf(silence -> silence.start() <= at);
+		this.cuts.accept((long) at);
+	}
+
+}
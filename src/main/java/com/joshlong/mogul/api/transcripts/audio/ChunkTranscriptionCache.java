@@ -0,0 +1,159 @@
+package com.joshlong.mogul.api.transcripts.audio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.openai.OpenAiAudioTranscriptionOptions;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * remembers what the transcription model said about each chunk of audio, keyed by the
+ * SHA-256 of the chunk's bytes along with the model and the options we used.
+ * <p>
+ * Re-transcribing a segment whose audio hasn't changed, or retrying a transcription in
+ * which only some chunks failed, then costs nothing for the chunks we've already seen.
+ * Only non-empty transcripts are cached, since an empty one is how a failed chunk is
+ * reported. Transcripts older than the {@code ttl} are ignored on read and swept
+ * periodically by {@link #purgeExpired()}.
+ *
+ * @author Josh Long
+ */
+class ChunkTranscriptionCache {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final JdbcClient db;
+
+	private final String model;
+
+	private final String options;
+
+	private final Duration ttl;
+
+	/**
+	 * @param options the options the transcription model uses for every call. We don't
+	 * override them per call, so they're the ones that produced each transcript.
+	 */
+	ChunkTranscriptionCache(JdbcClient db, OpenAiAudioTranscriptionOptions options, Duration ttl) {
+		this(db, modelOf(options), keyOf(options), ttl);
+	}
+
+	ChunkTranscriptionCache(JdbcClient db, String model, String options, Duration ttl) {
+		Assert.notNull(db, "the db must not be null");
+		Assert.hasText(model, "the model must not be empty");
+		Assert.state(ttl != null && ttl.isPositive(), "the ttl must be positive");
+		this.db = db;
+		this.model = model;
+		this.options = options == null ? "" : options;
+		this.ttl = ttl;
+	}
+
+	static String modelOf(OpenAiAudioTranscriptionOptions options) {
+		return options == null || !StringUtils.hasText(options.getModel())
+				? OpenAiAudioTranscriptionOptions.DEFAULT_TRANSCRIPTION_MODEL : options.getModel();
+	}
+
+	/**
+	 * everything besides the model that changes what the model says about a chunk.
+	 */
+	static String keyOf(OpenAiAudioTranscriptionOptions options) {
+		if (options == null)
+			return "";
+		var values = new LinkedHashMap<String, Object>();
+		values.put("language", options.getLanguage());
+		values.put("prompt", options.getPrompt());
+		values.put("temperature", options.getTemperature());
+		values.put("response-format", options.getResponseFormat());
+		values.put("timestamp-granularities", options.getTimestampGranularities());
+		return values.entrySet()
+			.stream()
+			.map(e -> e.getKey() + "=" + (e.getValue() == null ? "" : e.getValue()))
+			.collect(Collectors.joining(","));
+	}
+
+	String transcribe(Resource chunk, Supplier<String> transcriber) throws IOException {
+		var hash = this.hash(chunk);
+		var cached = this.read(hash);
+		if (cached != null) {
+			this.log.debug("reusing the transcript for the chunk [{}] with hash [{}]", chunk.getFilename(), hash);
+			return cached;
+		}
+		var transcript = transcriber.get();
+		if (transcript != null && !transcript.isEmpty())
+			this.write(hash, transcript);
+		return transcript;
+	}
+
+	/**
+	 * deletes every transcript older than the {@code ttl}.
+	 * @return the number of rows removed
+	 */
+	int purgeExpired() {
+		var deleted = this.db.sql("delete from transcription_chunk_cache where created < ?")
+			.params(this.oldest())
+			.update();
+		this.log.debug("purged {} expired chunk transcripts", deleted);
+		return deleted;
+	}
+
+	private String read(String hash) {
+		try {
+			return this.db.sql("""
+					select transcript from transcription_chunk_cache
+					where hash = ? and model = ? and options = ? and created >= ?
+					""")
+				.params(hash, this.model, this.options, this.oldest())
+				.query(String.class)
+				.optional()
+				.orElse(null);
+		} //
+		catch (DataAccessException e) {
+			this.log.warn("could not read the cached transcript for the hash [{}]", hash, e);
+			return null;
+		}
+	}
+
+	private void write(String hash, String transcript) {
+		try {
+			// an expired row that's yet to be purged is replaced
+			this.db.sql("""
+					insert into transcription_chunk_cache (hash, model, options, transcript) values (?, ?, ?, ?)
+					on conflict (hash, model, options) do update set transcript = excluded.transcript, created = now()
+					""").params(hash, this.model, this.options, transcript).update();
+		} //
+		catch (DataAccessException e) {
+			this.log.warn("could not cache the transcript for the hash [{}]", hash, e);
+		}
+	}
+
+	private Timestamp oldest() {
+		return Timestamp.from(Instant.now().minus(this.ttl));
+	}
+
+	private String hash(Resource chunk) throws IOException {
+		try (var in = new DigestInputStream(chunk.getInputStream(), MessageDigest.getInstance("SHA-256"))) {
+			in.transferTo(OutputStream.nullOutputStream());
+			return HexFormat.of().formatHex(in.getMessageDigest().digest());
+		} //
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -1,6 +1,9 @@
 package com.joshlong.mogul.api.transcripts.audio;
 
-import com.joshlong.mogul.api.utils.FileUtils;
+import com.joshlong.mogul.api.media.AudioProbe;
+import com.joshlong.mogul.api.media.MediaProcesses;
+import com.joshlong.mogul.api.workspaces.Workspace;
+import com.joshlong.mogul.api.workspaces.Workspaces;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.audio.transcription.AudioTranscriptionPrompt;
@@ -10,19 +13,17 @@ import org.springframework.core.io.Resource;
 import org.springframework.core.retry.RetryTemplate;
 import org.springframework.util.Assert;
 import org.springframework.util.FileCopyUtils;
+import org.springframework.util.function.ThrowingConsumer;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.text.NumberFormat;
 import java.time.Duration;
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -38,42 +39,45 @@ class ChunkingTranscriber implements Transcriber {
 
 	private static final ThreadLocal<NumberFormat> NUMBER_FORMAT = new ThreadLocal<>();
 
+	/** the furthest we'll move a cut to land in a gap of silence */
+	private static final Duration MAX_CUT_SHIFT = Duration.ofSeconds(30);
+
+	private static final long END_OF_CUTS = -1;
+
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
 	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
 
 	private final RetryTemplate retryTemplate;
 
-	private final Map<Instant, Set<File>> filesToDelete = new ConcurrentHashMap<>();
-
 	private final OpenAiAudioTranscriptionModel openAiAudioTranscriptionModel;
 
-	private final File root;
+	private final Workspaces workspaces;
 
 	private final long maxFileSize;
 
-	private final Runnable cleanup = () -> {
-		var key = futureInstant(0);
-		log.debug("the current instant is {}", key.toString());
-		for (var file : filesToDelete.getOrDefault(key, new HashSet<>())) {
-			FileUtils.delete(file);
-		}
-	};
+	private final int chunksInFlight;
+
+	private final ChunkTranscriptionCache chunkTranscriptionCache;
+
+	private final MediaProcesses processes;
 
-	ChunkingTranscriber(OpenAiAudioTranscriptionModel openAiAudioTranscriptionModel, File root,
-			RetryTemplate retryTemplate, long maxFileSizeInBytes) {
+	ChunkingTranscriber(OpenAiAudioTranscriptionModel openAiAudioTranscriptionModel, Workspaces workspaces,
+			RetryTemplate retryTemplate, long maxFileSizeInBytes, int chunksInFlight,
+			ChunkTranscriptionCache chunkTranscriptionCache, MediaProcesses processes) {
+		this.chunkTranscriptionCache = chunkTranscriptionCache;
+		this.processes = processes;
 		this.retryTemplate = retryTemplate;
 		this.openAiAudioTranscriptionModel = openAiAudioTranscriptionModel;
-		this.root = root;
+		this.workspaces = workspaces;
 		this.maxFileSize = maxFileSizeInBytes;
+		this.chunksInFlight = chunksInFlight;
 		Assert.notNull(this.openAiAudioTranscriptionModel, "the openAiAudioTranscriptionModel must not be null");
-		Assert.notNull(this.root, "the root directory must not be null");
+		Assert.notNull(this.workspaces, "the workspaces must not be null");
 		Assert.state(this.maxFileSize > 0, "the max file size must be greater than zero");
-		Assert.state(this.root.exists() || this.root.mkdirs(),
-				"the root for transcripts, " + this.root.getAbsolutePath() + ", could not be created");
-		try (var scheduledThreadPool = Executors.newScheduledThreadPool(1)) {
-			scheduledThreadPool.scheduleAtFixedRate(this.cleanup, 1, 10, TimeUnit.MINUTES);
-		}
+		Assert.state(this.chunksInFlight > 0, "there must be at least one chunk in flight");
+		Assert.notNull(this.chunkTranscriptionCache, "the chunkTranscriptionCache must not be null");
+		Assert.notNull(this.processes, "the processes must not be null");
 	}
 
 	private static String convertMillisToTimeFormat(long millis) {
@@ -95,37 +99,34 @@ class ChunkingTranscriber implements Transcriber {
 
 	@Override
 	public String transcribe(Resource audio) {
-		var transcriptForResource = new File(this.root, UUID.randomUUID().toString());
-		var parentFile = transcriptForResource.getParentFile();
-		Assert.state(parentFile.exists() || parentFile.mkdirs(), "the directory into which we're writing this file ["
-				+ parentFile.getAbsolutePath() + "] does not exist, and could not be created.");
-		try {
-			var orderedAudio = this.divide(transcriptForResource, audio)//
-				.map(resource -> (Callable<String>) () -> {
-					var audioResource = resource.audio();
-					if (audioResource != null) {
-						try {
-							return this.retryTemplate.execute(() -> {
-								this.log.debug("start transcribe audio resource {}", audioResource);
-								var apt = new AudioTranscriptionPrompt(audioResource);
-								var result = this.openAiAudioTranscriptionModel.call(apt);
-								this.log.debug("finish transcribe audio result {}", result);
-								return result.getResult().getOutput();
-							});
-						} //
-						catch (Throwable e) { // this will capture RetryException as
-							// thrown by RetryTemplate
-							var formatted = "oops! an error when trying to process a %s # %s"
-								.formatted(TranscriptionSegment.class.getName(), audioResource.getFilename());
-							this.log.error(formatted, e);
-						}
+		// cuts wait for a free permit, so we never get too far ahead of the transcription
+		// model
+		var inFlight = new Semaphore(this.chunksInFlight);
+		var chunks = new ArrayList<Chunk>();
+		// each chunk holds on to the workspace, so it outlives us if we give up early
+		try (var workspace = this.workspaces.create("transcripts")) {
+			this.divide(workspace.directory(), audio, segment -> {
+				inFlight.acquire();
+				this.log.debug("submitting chunk #{} for transcription", segment.order());
+				var chunkWorkspace = workspace.retain();
+				var claimed = new AtomicBoolean();
+				var transcription = this.executor.submit(() -> {
+					// it was abandoned before it started, and its reference released for
+					// it
+					if (!claimed.compareAndSet(false, true))
+						return "";
+					try (chunkWorkspace) {
+						return this.transcribe(segment);
+					} //
+					finally {
+						inFlight.release();
 					}
-					return "";
-				})//
-				.toList();
-			var collected = this.executor//
-				.invokeAll(orderedAudio)//
+				});
+				chunks.add(new Chunk(transcription, claimed, chunkWorkspace));
+			});
+			var collected = chunks//
 				.stream()//
+				.map(Chunk::transcription)//
 				.map(ChunkingTranscriber::from)//
 				.collect(Collectors.joining());
 			if (this.log.isInfoEnabled()) {
@@ -135,118 +136,138 @@ class ChunkingTranscriber implements Transcriber {
 		} //
 		catch (Exception e) {
 			this.log.error("trouble trying to transcode!", e);
+			chunks.forEach(Chunk::abandon);
 			throw new RuntimeException(e);
-		} //
-		finally {
-			FileUtils.delete(transcriptForResource);
 		}
 	}
 
-	private Instant futureInstant(int hour) {
-		var now = ZonedDateTime.now(ZoneId.systemDefault());
-		var hoursFromNow = now.plusHours(hour);
-		var topOfTheHour = hoursFromNow.withMinute(0).withSecond(0).withNano(0);
-		return topOfTheHour.toInstant();
+	/**
+	 * a chunk on its way to the transcription model, and its reference to the workspace,
+	 * which whoever {@link #claimed claims} the chunk first must close: the task, once it
+	 * starts, or {@link #abandon()}, if it never does.
+	 */
+	private record Chunk(Future<String> transcription, AtomicBoolean claimed, Workspace workspace) {
+
+		/**
+		 * cancels the chunk. A task that's cancelled before it starts never runs, so if
+		 * it hasn't started, we close its reference for it.
+		 */
+		void abandon() {
+			this.transcription.cancel(true);
+			if (this.claimed.compareAndSet(false, true))
+				this.workspace.close();
+		}
+
+	}
+
+	private String transcribe(TranscriptionSegment segment) {
+		var audioResource = segment.audio();
+		if (audioResource != null) {
+			try {
+				return this.chunkTranscriptionCache.transcribe(audioResource, () -> this.callModel(audioResource));
+			} //
+			catch (IOException e) {
+				this.log.warn("could not hash the chunk [{}], so not caching it", audioResource.getFilename(), e);
+				return this.callModel(audioResource);
+			}
+		}
+		return "";
 	}
 
-	private void enqueueForDeletion(File file) {
-		var futureInstant = this.futureInstant(2);
-		this.filesToDelete.computeIfAbsent(futureInstant, _ -> new HashSet<>()).add(file);
+	private String callModel(Resource audioResource) {
+		try {
+			return this.retryTemplate.execute(() -> {
+				this.log.debug("start transcribe audio resource {}", audioResource);
+				var apt = new AudioTranscriptionPrompt(audioResource);
+				var result = this.openAiAudioTranscriptionModel.call(apt);
+				this.log.debug("finish transcribe audio result {}", result);
+				return result.getResult().getOutput();
+			});
+		} //
+		catch (Throwable e) { // this will capture RetryException as
+			// thrown by RetryTemplate
+			var formatted = "oops! an error when trying to process a %s # %s"
+				.formatted(TranscriptionSegment.class.getName(), audioResource.getFilename());
+			this.log.error(formatted, e);
+		}
+		return "";
 	}
 
-	private Stream<TranscriptionSegment> divide(File file, Resource audio) throws Exception {
+	/**
+	 * cuts the audio into chunks, handing each one to {@code segments} as soon as it's
+	 * been cut, in order.
+	 */
+	private void divide(File file, Resource audio, ThrowingConsumer<TranscriptionSegment> segments) throws Exception {
 
 		// make sure we have the file locally
 		var originalAudio = new File(file, "audio.mp3");
-		Assert.state(file.mkdirs(), "the directory [" + file.getAbsolutePath() + "] has not been created");
 		Assert.notNull(audio, "the audio file must be non null!");
-		FileCopyUtils.copy(audio.getInputStream(), new FileOutputStream(originalAudio));
-		this.enqueueForDeletion(file);
-		var duration = this.durationFor(originalAudio);
+		try (var in = audio.getInputStream(); var out = new FileOutputStream(originalAudio)) {
+			FileCopyUtils.copy(in, out);
+		}
 		var sizeInBytes = originalAudio.length();
 
 		// special case if the file is small enough
 		if (originalAudio.length() < this.maxFileSize) {
-			return Stream
-				.of(new TranscriptionSegment(new FileSystemResource(originalAudio), 0, 0, duration.toMillis()));
+			var duration = this.durationFor(originalAudio);
+			segments.acceptWithException(
+					new TranscriptionSegment(new FileSystemResource(originalAudio), 0, 0, duration.toMillis()));
+			return;
 		}
 
-		// 1. find duration/size of the file
-		// 2. find gaps/silence in the audio file.
-		// 3. find the gap in the file nearest to the appropriate divided timecode
-		// 4. divide the file into 20mb chunks.
-
-		// 2. find gaps/silence in the audio file.
-		var silentGapsInAudio = SilenceDetector.detect(originalAudio);
-
-		// 3. find the gap in the file nearest to the appropriate divided timecode
-		var parts = (int) (sizeInBytes <= this.maxFileSize ? 1 : sizeInBytes / this.maxFileSize);
-		if (sizeInBytes % this.maxFileSize != 0) {
+		// 1. find the duration of the file without decoding it, and so where we'd like
+		// to cut it into chunks of about the maximum size
+		var duration = this.durationFor(originalAudio);
+		var parts = (int) (sizeInBytes / this.maxFileSize);
+		if (sizeInBytes % this.maxFileSize != 0)
 			parts += 1;
-		}
-
-		Assert.state(parts > 0, "there can not be zero parts. this won't work!");
-		var totalDurationInMillis = duration.toMillis();
-		var durationOfASinglePart = totalDurationInMillis / parts; // 724333
-		var rangesOfSilence = new long[1 + parts];
-
-		rangesOfSilence[0] = 0;
-
-		for (var indx = 1; indx < rangesOfSilence.length; indx++)
-			rangesOfSilence[indx] = (indx) * durationOfASinglePart;
 
-		rangesOfSilence[rangesOfSilence.length - 1] = totalDurationInMillis;
-
-		Assert.state(rangesOfSilence[rangesOfSilence.length - 1] + durationOfASinglePart >= totalDurationInMillis,
-				"the last silence marker (plus individual duration of " + durationOfASinglePart
-						+ " ) should be greater than (or at least equal to) the total duration of the entire audio clip, "
-						+ durationOfASinglePart);
-
-		var ranges = new ArrayList<float[]>();
-		for (var i = 1; i < rangesOfSilence.length; i += 1) {
-			var range = new float[] { rangesOfSilence[i - 1], rangesOfSilence[i] };
-			ranges.add(range);
-		}
-
-		var betterRanges = new ArrayList<float[]>();
-
-		for (var range : ranges) {
-			var start = findSilenceClosestTo(range[0], silentGapsInAudio).start();
-			var stop = findSilenceClosestTo(range[1], silentGapsInAudio).start();
-			var e = new float[] { start, stop };
-			if (Arrays.equals(range, ranges.getFirst()))
-				e[0] = 0;
-			if (Arrays.equals(range, ranges.getLast()))
-				e[1] = totalDurationInMillis;
-			betterRanges.add(e);
-		}
+		// 2. find the gaps of silence nearest those cuts as the file's decoded, in the
+		// background. each cut is made as soon as no gap could be any closer to it
+		var cuts = new LinkedBlockingQueue<Long>();
+		var boundaries = new ChunkBoundaries(duration, parts, MAX_CUT_SHIFT, cuts::add);
+		var detection = this.executor.submit(() -> {
+			try {
+				var decoded = SilenceDetector.detect(this.processes, originalAudio, boundaries);
+				boundaries.finish();
+				return decoded;
+			} //
+			finally {
+				cuts.add(END_OF_CUTS);
+			}
+		});
 
-		// 4. divide the file into N-mb chunks.
-		var indx = 0;
-		var listOfSegments = new ArrayList<TranscriptionSegment>();
-		var numberFormat = numberFormat(); // not thread safe. not cheap.
-		for (var r : betterRanges) {
-			var destinationFile = new File(file, numberFormat.format(indx) + ".mp3");
-			var start = (long) r[0];
-			var stop = (long) r[1];
-			this.bisect(originalAudio, destinationFile, start, stop);
-			listOfSegments.add(new TranscriptionSegment(new FileSystemResource(destinationFile), indx, start, stop));
-			indx += 1;
+		// 3. cut each chunk, and hand it off, while the rest of the file is still being
+		// decoded
+		try {
+			var indx = 0;
+			var start = 0L;
+			var numberFormat = numberFormat(); // not thread safe. not cheap.
+			for (long stop = cuts.take(); stop != END_OF_CUTS; stop = cuts.take()) {
+				segments.acceptWithException(this.cut(file, originalAudio, numberFormat, indx++, start, stop));
+				start = stop;
+			}
+			var end = Math.max(detection.get().toMillis(), duration.toMillis());
+			segments.acceptWithException(this.cut(file, originalAudio, numberFormat, indx, start, end));
+		} //
+		finally {
+			detection.cancel(true);
 		}
+	}
 
-		return listOfSegments.stream();
+	private TranscriptionSegment cut(File directory, File source, NumberFormat numberFormat, int indx, long start,
+			long stop) throws IOException, InterruptedException {
+		var destinationFile = new File(directory, numberFormat.format(indx) + ".mp3");
+		this.bisect(source, destinationFile, start, stop);
+		return new TranscriptionSegment(new FileSystemResource(destinationFile), indx, start, stop);
 	}
 
 	private void bisect(File source, File destination, long start, long stop) throws IOException, InterruptedException {
-		var result = new ProcessBuilder()
-			.command("ffmpeg", "-i", source.getAbsolutePath(), "-ss", convertMillisToTimeFormat(start), "-to",
-					convertMillisToTimeFormat(stop), "-c", "copy", destination.getAbsolutePath())
-			.inheritIO()
-			.redirectOutput(ProcessBuilder.Redirect.PIPE)
-			.redirectError(ProcessBuilder.Redirect.PIPE)
-			.start();
-		var exitCode = result.waitFor();
-		Assert.state(exitCode == 0, "the result must be a zero exit code, but was [" + exitCode + "]");
+		var result = this.processes.run("ffmpeg", "-i", source.getAbsolutePath(), "-ss",
+				convertMillisToTimeFormat(start), "-to", convertMillisToTimeFormat(stop), "-c", "copy",
+				destination.getAbsolutePath());
+		Assert.state(result.success(),
+				"the result must be a zero exit code, but was [" + result.exitCode() + "]: " + result.error());
 	}
 
 	private NumberFormat numberFormat() {
@@ -260,48 +281,33 @@ class ChunkingTranscriber implements Transcriber {
 	}
 
 	private Duration durationFor(File originalAudio) throws Exception {
-		var durationOfFileExecution = Runtime.getRuntime()
-			.exec(new String[] { "ffmpeg", "-i", originalAudio.getAbsolutePath() });
-		durationOfFileExecution.waitFor();
-		try (var content = new InputStreamReader(durationOfFileExecution.getErrorStream())) {
-			var output = FileCopyUtils.copyToString(content);
-			var durationPrefix = "Duration:";
-			var duration = Stream.of(output.split(System.lineSeparator()))
-				.filter(line -> line.contains(durationPrefix))
-				.map(line -> line.split(durationPrefix)[1].split(",")[0])
-				.collect(Collectors.joining(""))
-				.trim();
-			return durationFromTimecode(duration);
-		}
+		var probe = AudioProbe.probe(originalAudio);
+		if (probe != null)
+			return probe.duration();
+		// ffmpeg complains that there's no output file, and exits with an error, but not
+		// before it's described the input
+		var output = this.processes.run("ffmpeg", "-i", originalAudio.getAbsolutePath()).error();
+		var durationPrefix = "Duration:";
+		var duration = Stream.of(output.split(System.lineSeparator()))
+			.filter(line -> line.contains(durationPrefix))
+			.map(line -> line.split(durationPrefix)[1].split(",")[0])
+			.collect(Collectors.joining(""))
+			.trim();
+		return durationFromTimecode(duration);
 	}
 
 	private Duration durationFromTimecode(String tc) {
-		var timecode = tc.lastIndexOf(".") == -1 ? tc : tc.substring(0, tc.lastIndexOf("."));
 		try {
-			var parts = timecode.split(":");
+			var parts = tc.split(":");
 			var hours = Integer.parseInt(parts[0]) * 60 * 60 * 1000;
 			var mins = Integer.parseInt(parts[1]) * 60 * 1000;
-			var secs = Integer.parseInt(parts[2]) * 1000;
+			// ffmpeg reports hundredths of a second
+			var secs = Math.round(Double.parseDouble(parts[2]) * 1000);
 			return Duration.ofMillis(hours + mins + secs);
 		} //
-		catch (DateTimeParseException e) {
+		catch (NumberFormatException | DateTimeParseException e) {
 			throw new IllegalStateException("can't parse the date ", e);
 		}
 	}
 
-	private SilenceDetector.Silence findSilenceClosestTo(float startToFind, SilenceDetector.Silence[] detectedSilence) {
-		Assert.state(detectedSilence != null && detectedSilence.length > 0,
-				"detectedSilence array cannot be null or empty");
-		var closestSilence = detectedSilence[0];
-		var closestDistance = Math.abs(closestSilence.start() - startToFind);
-		for (var silence : detectedSilence) {
-			var currentDistance = Math.abs(silence.start() - startToFind);
-			if (currentDistance < closestDistance) {
-				closestSilence = silence;
-				closestDistance = currentDistance;
-			}
-		}
-		return closestSilence;
-	}
-
 }
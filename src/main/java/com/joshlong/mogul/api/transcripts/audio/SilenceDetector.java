@@ -1,89 +1,143 @@
 package com.joshlong.mogul.api.transcripts.audio;
 
+import com.joshlong.mogul.api.media.MediaProcesses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
-import org.springframework.util.FileCopyUtils;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
 
+/**
+ * finds the gaps of silence in audio, so that we can cut long files along them.
+ * <p>
+ * {@code ffmpeg} decodes the file to 16-bit, mono PCM on its standard output, and we read
+ * that as a stream, keeping the sum of the squares of the samples in a sliding window
+ * (backed by a ring buffer) and comparing the window's RMS against a threshold every
+ * {@link #HOP_MILLISECONDS hop}. Gaps are emitted as they're found, along with how far
+ * into the audio we've got, so that callers can act on the start of a long file while the
+ * rest of it is still being decoded. There's nothing to buffer or parse, and no temp
+ * file, and the number of samples gives us the duration of the file for free.
+ *
+ * @author Josh Long
+ */
 abstract class SilenceDetector {
 
-	private static final Map<String, Pattern> PATTERNS = new ConcurrentHashMap<>();
+	static final int SAMPLE_RATE = 16_000;
+
+	/** anything quieter than this, relative to full scale, is silence */
+	private static final double THRESHOLD_DB = -30;
+
+	private static final long MIN_SILENCE_MILLISECONDS = 500;
+
+	private static final int WINDOW_MILLISECONDS = 20;
+
+	private static final int HOP_MILLISECONDS = 10;
 
 	private static final Logger log = LoggerFactory.getLogger(SilenceDetector.class);
 
-	static Silence[] detect(File audio) throws Exception {
-		log.debug("detecting silence in the file [{}]", audio.getAbsolutePath());
-		var silence = new File(audio.getParentFile(), "silence");
-		var result = new ProcessBuilder()
-			.command("ffmpeg", "-i", audio.getAbsolutePath(), "-af", "silencedetect=noise=-30dB:d=0.5", "-f", "null",
-					"-")
-			.inheritIO()
-			.redirectOutput(silence)
-			.redirectError(silence)
-			.start();
-		Assert.state(result.waitFor(1, TimeUnit.MINUTES), "the result of silence detection should be 0, or good.");
-		try (var output = new InputStreamReader(new FileInputStream(silence))) {
-			var content = FileCopyUtils.copyToString(output);
-			var silenceDetectionLogLines = Stream //
-				.of(content.split(System.lineSeparator())) //
-				.filter(l -> l.contains("silencedetect")) //
-				.map(l -> l.split("]")[1]) //
-				.toList(); //
-			var silences = new ArrayList<Silence>();
-			var offset = 0;
-
-			// to be reused
-			var start = 0f;
-			var stop = 0f;
-			var duration = 0f;
-
-			// look for and parse lines that look like this:
-			// [silencedetect @ 0x600000410000] silence_start: 18.671708
-			// [silencedetect @ 0x600000410000] silence_end: 19.178 | silence_duration:
-			for (var silenceDetectionLogLine : silenceDetectionLogLines) {
-				if (offset % 2 == 0) {
-					start = 1000 * Float.parseFloat(numberFor("silence_start", silenceDetectionLogLine));
-				} //
-				else {
-					var pikeCharIndex = silenceDetectionLogLine.indexOf("|");
-					Assert.state(pikeCharIndex != -1, "the '|' character was not found");
-					var before = silenceDetectionLogLine.substring(0, pikeCharIndex);
-					var after = silenceDetectionLogLine.substring(1 + pikeCharIndex);
-					stop = 1000 * Float.parseFloat(numberFor("silence_end", before));
-					duration = 1000 * Float.parseFloat(numberFor("silence_duration", after));
-					silences.add(new Silence(start, stop, duration));
-				}
-				offset += 1;
-			}
+	public record Silence(float start, float end, float duration) {
+	}
 
-			log.debug("silence detection completed. found {} silence gaps.", silences.size());
+	/**
+	 * hears about the gaps of silence, in order, as they're found.
+	 */
+	interface Listener {
 
-			return silences.toArray(new Silence[0]);
+		void silence(Silence silence);
+
+		/**
+		 * called every hop with the earliest point, in milliseconds, at which a gap of
+		 * silence that hasn't been reported yet could start.
+		 */
+		default void passed(float milliseconds) {
 		}
+
 	}
 
-	private static String numberFor(String prefix, String line) {
-		var regex = """
-				    (?<=XXXX:\\s)\\d+(\\.\\d+)?
-				""".trim().replace("XXXX", prefix);
-		var pattern = PATTERNS.computeIfAbsent(regex, r -> Pattern.compile(regex));
-		var matcher = pattern.matcher(line);
-		if (matcher.find())
-			return matcher.group();
-		throw new IllegalArgumentException("line [" + line + "] does not match pattern [" + pattern.pattern() + "]");
+	/**
+	 * decodes the whole file, handing each gap of silence to the listener as soon as it
+	 * ends.
+	 * @return the duration of the whole file
+	 */
+	static Duration detect(MediaProcesses processes, File audio, Listener listener)
+			throws IOException, InterruptedException {
+		log.debug("detecting silence in the file [{}]", audio.getAbsolutePath());
+		var command = List.of("ffmpeg", "-nostdin", "-v", "error", "-i", audio.getAbsolutePath(), "-vn", "-ac", "1",
+				"-ar", Integer.toString(SAMPLE_RATE), "-f", "s16le", "-");
+		var result = processes.run(command, pcm -> detect(pcm, SAMPLE_RATE, listener));
+		Assert.state(result.success(), "could not decode [" + audio.getAbsolutePath() + "]: ffmpeg exited with "
+				+ result.exitCode() + ": " + result.error());
+		log.debug("silence detection completed for [{}]", audio.getAbsolutePath());
+		return Duration.ofMillis(result.output());
 	}
 
-	public record Silence(float start, float end, float duration) {
+	/**
+	 * reads signed, 16-bit, little-endian, mono PCM to the end of the stream, handing
+	 * each gap of silence to the listener as soon as it ends.
+	 * @return the duration of the audio in milliseconds
+	 */
+	static long detect(InputStream pcm, int sampleRate, Listener listener) throws IOException {
+		var windowSize = Math.max(1, sampleRate * WINDOW_MILLISECONDS / 1000);
+		var hopSize = Math.max(1, sampleRate * HOP_MILLISECONDS / 1000);
+		var amplitude = 32768 * Math.pow(10, THRESHOLD_DB / 20);
+		// compare mean squares, rather than taking a square root and a log every hop
+		var threshold = amplitude * amplitude;
+
+		var window = new int[windowSize];
+		var sumOfSquares = 0L;
+		var samples = 0L;
+		var silenceStart = -1L;
+
+		var buffer = new byte[8192];
+		var low = -1; // the first byte of a sample, which may arrive in an earlier read
+		for (int read; (read = pcm.read(buffer)) != -1;) {
+			for (var i = 0; i < read; i++) {
+				if (low == -1) {
+					low = buffer[i] & 0xff;
+					continue;
+				}
+				var sample = (short) (low | (buffer[i] << 8));
+				low = -1;
+				var square = sample * sample;
+				var slot = (int) (samples % windowSize);
+				sumOfSquares += square - window[slot];
+				window[slot] = square;
+				samples += 1;
+				if (samples >= windowSize && samples % hopSize == 0) {
+					var silent = (double) sumOfSquares / windowSize < threshold;
+					if (silent && silenceStart == -1) {
+						// the whole window is quiet, so the silence started no later than
+						// its start
+						silenceStart = samples - windowSize;
+					} //
+					else if (!silent && silenceStart != -1) {
+						// and the sound started no earlier than the last hop
+						emit(silenceStart, samples - hopSize, sampleRate, listener);
+						silenceStart = -1;
+					}
+					// the next gap can start no earlier than the start of the next
+					// window, and
+					// a gap that's still going is reported once it ends, from where it
+					// started
+					var earliest = silenceStart == -1 ? samples - windowSize : silenceStart;
+					listener.passed(earliest * 1000f / sampleRate);
+				}
+			}
+		}
+		if (silenceStart != -1)
+			emit(silenceStart, samples, sampleRate, listener);
+		return samples * 1000 / sampleRate;
+	}
+
+	private static void emit(long startSample, long endSample, int sampleRate, Listener listener) {
+		var start = startSample * 1000f / sampleRate;
+		var end = endSample * 1000f / sampleRate;
+		if (end - start >= MIN_SILENCE_MILLISECONDS)
+			listener.silence(new Silence(start, end, end - start));
 	}
 
 }
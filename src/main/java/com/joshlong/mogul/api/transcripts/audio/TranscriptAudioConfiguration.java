@@ -1,11 +1,18 @@
 package com.joshlong.mogul.api.transcripts.audio;
 
 import com.joshlong.mogul.api.ApiProperties;
+import com.joshlong.mogul.api.media.MediaProcesses;
+import com.joshlong.mogul.api.workspaces.Workspaces;
 import org.springframework.ai.openai.OpenAiAudioTranscriptionModel;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.retry.RetryPolicy;
 import org.springframework.core.retry.RetryTemplate;
+import org.springframework.integration.core.MessageSource;
+import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.integration.dsl.PollerFactory;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.messaging.support.MessageBuilder;
 
 import java.time.Duration;
 
@@ -13,10 +20,33 @@ import java.time.Duration;
 class TranscriptAudioConfiguration {
 
 	@Bean
-	ChunkingTranscriber chunkingTranscriber(ApiProperties properties, OpenAiAudioTranscriptionModel transcriptModel) {
-		var root = properties.transcripts().root();
+	ChunkingTranscriber chunkingTranscriber(ApiProperties properties, OpenAiAudioTranscriptionModel transcriptModel,
+			ChunkTranscriptionCache chunkTranscriptionCache, Workspaces workspaces, MediaProcesses processes) {
 		var retryTemplate = new RetryTemplate(RetryPolicy.builder().timeout(Duration.ofMinutes(2)).build());
-		return new ChunkingTranscriber(transcriptModel, root, retryTemplate, (10 * 1024 * 1024));
+		return new ChunkingTranscriber(transcriptModel, workspaces, retryTemplate, (10 * 1024 * 1024),
+				properties.transcripts().chunksInFlight(), chunkTranscriptionCache, processes);
+	}
+
+	/**
+	 * a transcript is only as good as the model and the options that produced it, so they
+	 * are part of the key, too. They're taken from the very model the
+	 * {@link ChunkingTranscriber} calls.
+	 */
+	@Bean
+	ChunkTranscriptionCache chunkTranscriptionCache(JdbcClient db, OpenAiAudioTranscriptionModel transcriptModel,
+			ApiProperties properties) {
+		return new ChunkTranscriptionCache(db, transcriptModel.getOptions(), properties.transcripts().chunkCacheTtl());
+	}
+
+	@Bean
+	IntegrationFlow expiredChunkTranscriptsIntegrationFlow(ChunkTranscriptionCache chunkTranscriptionCache) {
+		var messageSource = (MessageSource<Integer>) () -> MessageBuilder
+			.withPayload(chunkTranscriptionCache.purgeExpired())
+			.build();
+		return IntegrationFlow
+			.from(messageSource,
+					pc -> pc.poller(_ -> PollerFactory.fixedRate(Duration.ofHours(6), Duration.ofMinutes(5))))
+			.nullChannel();
 	}
 
 }
@@ -1,6 +1,5 @@
 package com.joshlong.mogul.api.utils;
 
-import com.joshlong.mogul.api.utils.jdbc.RewindableResultSets;
 import org.springframework.jdbc.support.KeyHolder;
 
 import java.net.MalformedURLException;
@@ -46,14 +45,4 @@ public abstract class JdbcUtils {
 
 	}
 
-	/**
-	 * wraps the {@link ResultSet} in a {@link RewindableResultSet} that can be iterated
-	 * over multiple times. this is useful for scenarios where where you'd like to load
-	 * all the records, first, then load the details for particular objects in bulk using
-	 * IDs collected during the first sweep.
-	 */
-	public static RewindableResultSet rewindableResultSet(ResultSet resultSet) {
-		return RewindableResultSets.build(resultSet);
-	}
-
 }
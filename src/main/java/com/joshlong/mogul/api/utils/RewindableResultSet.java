@@ -1,9 +0,0 @@
-package com.joshlong.mogul.api.utils;
-
-import java.sql.ResultSet;
-
-public interface RewindableResultSet extends ResultSet {
-
-	void rewind();
-
-}
@@ -0,0 +1,62 @@
+package com.joshlong.mogul.api.workspaces;
+
+import org.springframework.util.Assert;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * a reference-counted scratch directory, handed out by {@link Workspaces}.
+ * <p>
+ * Whoever {@link Workspaces#create(String) creates} a workspace holds the first
+ * reference. Work that might outlive the creator, like a task on another thread, should
+ * {@link #retain() retain} the workspace and {@link #close() close} it when it's done.
+ * The directory, and everything in it, is deleted when the last reference is closed.
+ *
+ * @author Josh Long
+ */
+public class Workspace implements AutoCloseable {
+
+	private final AtomicInteger references = new AtomicInteger(1);
+
+	private final File directory;
+
+	private final Consumer<Workspace> release;
+
+	Workspace(File directory, Consumer<Workspace> release) {
+		this.directory = directory;
+		this.release = release;
+	}
+
+	public File directory() {
+		return this.directory;
+	}
+
+	public File file(String name) {
+		return new File(this.directory, name);
+	}
+
+	/**
+	 * takes another reference to the workspace, which must be closed in turn.
+	 */
+	public Workspace retain() {
+		var references = this.references.getAndUpdate(r -> r > 0 ? r + 1 : r);
+		Assert.state(references > 0, "the workspace [" + this.directory + "] has already been released");
+		return this;
+	}
+
+	@Override
+	public void close() {
+		var references = this.references.decrementAndGet();
+		Assert.state(references >= 0, "the workspace [" + this.directory + "] was closed too many times");
+		if (references == 0)
+			this.release.accept(this);
+	}
+
+	@Override
+	public String toString() {
+		return "Workspace{directory=" + this.directory + ", references=" + this.references.get() + '}';
+	}
+
+}
@@ -0,0 +1,185 @@
+package com.joshlong.mogul.api.workspaces;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * hands out scratch directories for the media pipeline (transcription, production,
+ * normalization, and so on) and makes sure they don't fill up the disk.
+ * <p>
+ * Every {@link Workspace workspace} lives in a directory of its own under
+ * {@code <root>/<purpose>/} and is reference-counted: the directory is deleted as soon as
+ * the last holder {@link Workspace#close() closes} it. Creating a workspace fails if the
+ * workspaces on this node already use more than the quota. The {@link #reap() reaper}
+ * runs periodically to measure how much is in use, and to delete directories that no live
+ * workspace owns (left behind by a crash, say) once they've been idle for a while.
+ *
+ * @author Josh Long
+ */
+public class Workspaces {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final Map<Path, Workspace> live = new ConcurrentHashMap<>();
+
+	private final Map<String, AtomicLong> bytesByPurpose = new ConcurrentHashMap<>();
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	private final MeterRegistry registry;
+
+	private final Path root;
+
+	private final long quota;
+
+	private final Duration orphanTtl;
+
+	Workspaces(File root, DataSize quota, Duration orphanTtl, MeterRegistry registry) {
+		Assert.notNull(root, "the root must not be null");
+		Assert.state(quota.toBytes() > 0, "the quota must be greater than zero");
+		this.root = root.toPath();
+		this.quota = quota.toBytes();
+		this.orphanTtl = orphanTtl;
+		this.registry = registry;
+		Gauge.builder("mogul.workspaces.bytes", this.bytes, AtomicLong::get)
+			.description("bytes used by all the workspaces on this node")
+			.baseUnit("bytes")
+			.register(registry);
+		Gauge.builder("mogul.workspaces.active", this.live, Map::size)
+			.description("workspaces currently in use on this node")
+			.register(registry);
+		this.reap();
+	}
+
+	/**
+	 * creates a new, empty, workspace. The caller holds the only reference to it, and
+	 * must {@link Workspace#close() close} it.
+	 * @param purpose what the workspace is for. Workspaces are grouped, and metered, by
+	 * purpose.
+	 */
+	public Workspace create(String purpose) {
+		Assert.hasText(purpose, "the purpose must not be empty");
+		if (this.bytes.get() > this.quota) {
+			// the last measurement may be stale, so measure again before giving up
+			this.reap();
+			Assert.state(this.bytes.get() <= this.quota, "the workspaces on this node use " + this.bytes.get()
+					+ " bytes, which is more than the quota of " + this.quota + " bytes");
+		}
+		try {
+			var directory = Files.createDirectories(this.root.resolve(purpose).resolve(UUID.randomUUID().toString()));
+			this.meter(purpose);
+			var workspace = new Workspace(directory.toFile(), this::release);
+			this.live.put(directory, workspace);
+			this.log.debug("created the workspace [{}]", directory);
+			return workspace;
+		} //
+		catch (IOException e) {
+			throw new UncheckedIOException("could not create a workspace for [" + purpose + "]", e);
+		}
+	}
+
+	/**
+	 * measures the disk used by each purpose and deletes any orphaned directories that
+	 * have been idle for longer than the orphan TTL.
+	 */
+	public void reap() {
+		var purposes = this.root.toFile().listFiles(File::isDirectory);
+		if (purposes == null)
+			return;
+		var total = 0L;
+		var cutoff = Instant.now().minus(this.orphanTtl).toEpochMilli();
+		for (var purpose : purposes) {
+			var used = 0L;
+			var directories = purpose.listFiles(File::isDirectory);
+			for (var directory : directories == null ? new File[0] : directories) {
+				var size = sizeOf(directory.toPath());
+				if (!this.live.containsKey(directory.toPath()) && lastModified(directory.toPath()) < cutoff) {
+					this.log.info("reaping the orphaned workspace [{}] ({} bytes)", directory, size);
+					delete(directory.toPath());
+					continue;
+				}
+				used += size;
+			}
+			this.meter(purpose.getName()).set(used);
+			total += used;
+		}
+		this.bytes.set(total);
+	}
+
+	private void release(Workspace workspace) {
+		var directory = workspace.directory().toPath();
+		this.live.remove(directory);
+		delete(directory);
+		this.log.debug("deleted the workspace [{}]", directory);
+	}
+
+	private AtomicLong meter(String purpose) {
+		return this.bytesByPurpose.computeIfAbsent(purpose, p -> {
+			var gauge = new AtomicLong();
+			Gauge.builder("mogul.workspaces.purpose.bytes", gauge, AtomicLong::get)
+				.description("bytes used by the workspaces for a given purpose on this node")
+				.baseUnit("bytes")
+				.tag("purpose", p)
+				.register(this.registry);
+			return gauge;
+		});
+	}
+
+	private static long sizeOf(Path directory) {
+		try (var files = Files.walk(directory)) {
+			return files.filter(Files::isRegularFile).mapToLong(Workspaces::sizeOfFile).sum();
+		} //
+		catch (IOException | UncheckedIOException e) {
+			// files come and go while we walk a live workspace
+			return 0;
+		}
+	}
+
+	private static long sizeOfFile(Path file) {
+		try {
+			return Files.size(file);
+		} //
+		catch (IOException e) {
+			return 0;
+		}
+	}
+
+	/*
+	 * the most recent modification of anything in the directory, or the directory itself
+	 */
+	private static long lastModified(Path directory) {
+		try (var files = Files.walk(directory)) {
+			return files.map(Path::toFile).mapToLong(File::lastModified).max().orElse(0);
+		} //
+		catch (IOException | UncheckedIOException e) {
+			return Long.MAX_VALUE;
+		}
+	}
+
+	private static void delete(Path directory) {
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted((a, b) -> b.compareTo(a)).map(Path::toFile).forEach(File::delete);
+		} //
+		catch (IOException | UncheckedIOException e) {
+			LoggerFactory.getLogger(Workspaces.class).warn("could not delete the workspace [{}]", directory, e);
+		}
+	}
+
+}
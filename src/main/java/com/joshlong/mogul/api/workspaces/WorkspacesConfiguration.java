@@ -0,0 +1,33 @@
+package com.joshlong.mogul.api.workspaces;
+
+import com.joshlong.mogul.api.ApiProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.core.MessageSource;
+import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.integration.dsl.PollerFactory;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.time.Duration;
+
+@Configuration
+class WorkspacesConfiguration {
+
+	@Bean
+	Workspaces workspaces(ApiProperties properties, MeterRegistry registry) {
+		var workspaces = properties.workspaces();
+		return new Workspaces(workspaces.root(), workspaces.quota(), workspaces.orphanTtl(), registry);
+	}
+
+	@Bean
+	IntegrationFlow workspacesReaperIntegrationFlow(Workspaces workspaces) {
+		var messageSource = (MessageSource<Boolean>) () -> {
+			workspaces.reap();
+			return MessageBuilder.withPayload(true).build();
+		};
+		return IntegrationFlow.from(messageSource, pc -> pc.poller(_ -> PollerFactory.fixedRate(Duration.ofMinutes(1))))
+			.nullChannel();
+	}
+
+}
@@ -0,0 +1,14 @@
+-- backs the PostgresqlUnloggedTableCacheManager. unlogged tables skip the write-ahead-log, so
+-- the contents may vanish after a crash, which is fine for a cache.
+create unlogged table if not exists cache_entry
+(
+    cache_name  text      not null,
+    cache_key   text      not null,
+    value_class text      not null,
+    value       text      not null,
+    created     timestamp not null default now(),
+    expires     timestamp not null,
+    primary key (cache_name, cache_key)
+);
+
+create index if not exists cache_entry_expires_idx on cache_entry (expires);
@@ -0,0 +1,2 @@
+-- bumped on every write, so that node-local copies of a managed file's bytes can be keyed by their content
+alter table managed_file add column version bigint not null default 0;
@@ -0,0 +1,10 @@
+-- the transcripts for chunks of audio we've already sent to the transcription model, keyed by the chunk's bytes
+create table if not exists transcription_chunk_cache
+(
+    hash       text      not null,
+    model      text      not null,
+    options    text      not null,
+    transcript text      not null,
+    created    timestamp not null default now(),
+    primary key (hash, model, options)
+);
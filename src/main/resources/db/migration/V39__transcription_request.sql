@@ -0,0 +1,17 @@
+-- transcription requests waiting to be transcribed, or being transcribed by the node that holds the lease
+create table if not exists transcription_request
+(
+    id            serial primary key,
+    created       timestamp not null default now(),
+    mogul_id      bigint    not null,
+    payload_class text      not null,
+    payload       text      not null,
+    context       text      not null,
+    priority      text      not null,
+    attempts      int       not null default 0,
+    lease_owner   text      null,
+    lease_expires timestamp null
+);
+
+create index if not exists transcription_request_lease_expires_idx on transcription_request (lease_expires);
+create index if not exists transcription_request_lease_owner_idx on transcription_request (lease_owner);
@@ -0,0 +1,12 @@
+-- there should only ever be one transcript for a given transcribable. keep the one that's been transcribed, if any,
+-- and the oldest one otherwise.
+delete
+from transcript
+where id in (select id
+             from (select id,
+                          row_number() over (partition by payload_class, payload
+                              order by (transcript is null), transcribed desc nulls last, id) as rn
+                   from transcript) ranked
+             where ranked.rn > 1);
+
+create unique index if not exists transcript_payload_class_payload_idx on transcript (payload_class, payload);
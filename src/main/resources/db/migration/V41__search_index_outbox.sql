@@ -0,0 +1,11 @@
+-- searchables that have changed since they were last indexed. domain writes append to this in their own transaction,
+-- and the indexer deletes the rows once it's indexed them.
+create table if not exists search_index_outbox
+(
+    id               bigserial primary key,
+    created          timestamp not null default now(),
+    searchable_class text      not null,
+    searchable_id    bigint    not null
+);
+
+create index if not exists search_index_outbox_searchable_idx on search_index_outbox (searchable_class, searchable_id);
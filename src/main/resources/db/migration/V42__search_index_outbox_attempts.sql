@@ -0,0 +1,3 @@
+-- how many times the index has rejected the searchable, so that one it will never accept isn't retried forever
+alter table search_index_outbox
+    add column if not exists attempts int not null default 0;
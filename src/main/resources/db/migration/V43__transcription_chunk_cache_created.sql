@@ -0,0 +1,2 @@
+-- chunk transcripts older than mogul.transcripts.chunk-cache-ttl are purged periodically
+create index if not exists transcription_chunk_cache_created_idx on transcription_chunk_cache (created);
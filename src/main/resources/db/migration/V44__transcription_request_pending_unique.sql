@@ -0,0 +1,15 @@
+-- there should only ever be one pending request for a given transcribable. keep the most urgent, and the oldest of
+-- those. requests that are leased are being transcribed, possibly from audio that's since changed, so a new request
+-- for the same transcribable may wait alongside them.
+delete
+from transcription_request
+where id in (select id
+             from (select id,
+                          row_number() over (partition by payload_class, payload
+                              order by (priority <> 'INTERACTIVE'), id) as rn
+                   from transcription_request
+                   where lease_owner is null) ranked
+             where ranked.rn > 1);
+
+create unique index if not exists transcription_request_pending_payload_class_payload_idx
+    on transcription_request (payload_class, payload) where lease_owner is null;
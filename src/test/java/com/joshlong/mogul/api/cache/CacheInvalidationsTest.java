@@ -0,0 +1,130 @@
+package com.joshlong.mogul.api.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+class CacheInvalidationsTest {
+
+	// keyed by Long, with a shared tier
+	private static final String PODCASTS = "podcasts";
+
+	// keyed by String, local only
+	private static final String SETTINGS = "mogulSettingsCategory";
+
+	@MockitoSpyBean
+	CacheInvalidations invalidations;
+
+	@Autowired
+	CaffeineCacheManager local;
+
+	@Autowired
+	CacheManager cacheManager;
+
+	@Autowired
+	TransactionTemplate tx;
+
+	@AfterEach
+	void reset() {
+		this.local.getCache(PODCASTS).evict(-1L);
+		this.local.getCache(PODCASTS).evict(-2L);
+		this.local.getCache(SETTINGS).clear();
+	}
+
+	@Test
+	void keysOfEveryTypeOurCachesUseAreRebuilt() {
+		var podcasts = this.local.getCache(PODCASTS);
+		var settings = this.local.getCache(SETTINGS);
+		podcasts.put(-1L, "evicted");
+		podcasts.put(-2L, "kept");
+		settings.put("-1:evicted", "evicted");
+		settings.put("-1:kept", "kept");
+		this.invalidations.apply(new CacheInvalidation.Batch("another replica",
+				List.of(CacheInvalidation.evict(PODCASTS, -1L), CacheInvalidation.evict(SETTINGS, "-1:evicted"))));
+		Assertions.assertNull(podcasts.get(-1L));
+		Assertions.assertNotNull(podcasts.get(-2L), "only the evicted key should be gone");
+		Assertions.assertNull(settings.get("-1:evicted"));
+		Assertions.assertNotNull(settings.get("-1:kept"), "only the evicted key should be gone");
+	}
+
+	@Test
+	void keysThatCantBeRebuiltClearTheWholeCache() {
+		var settings = this.local.getCache(SETTINGS);
+		settings.put("-1:kept", "kept");
+		this.invalidations.apply(new CacheInvalidation.Batch("another replica",
+				List.of(CacheInvalidation.evict(SETTINGS, UUID.randomUUID()))));
+		Assertions.assertNull(settings.get("-1:kept"));
+	}
+
+	@Test
+	void burstsOfEvictionsAreSentAsOneBatch() {
+		var cache = this.cacheManager.getCache(SETTINGS);
+		var expected = new ArrayList<CacheInvalidation>();
+		for (var i = 0; i < 5; i++)
+			expected.add(CacheInvalidation.evict(SETTINGS, "-1:" + i));
+		// each key twice
+		for (var i = 0; i < 10; i++)
+			cache.evict("-1:" + (i % 5));
+		verify(this.invalidations, timeout(5_000).atLeastOnce()).apply(any());
+		// for anything else in the burst to arrive
+		pause();
+		var batches = ArgumentCaptor.forClass(CacheInvalidation.Batch.class);
+		verify(this.invalidations, atLeastOnce()).apply(batches.capture());
+		var ours = batches.getAllValues()
+			.stream()
+			.filter(batch -> batch.invalidations().stream().anyMatch(expected::contains))
+			.toList();
+		Assertions.assertEquals(1, ours.size(), "the burst should have been sent as one batch");
+		var batch = ours.getFirst();
+		Assertions.assertEquals(expected, batch.invalidations().stream().filter(expected::contains).toList(),
+				"each key should be sent once, in order");
+		Assertions.assertEquals(this.invalidations.node(), batch.node());
+	}
+
+	@Test
+	void evictionsInATransactionAreOnlySentOnceItCommits() {
+		var committed = CacheInvalidation.evict(SETTINGS, "-1:committed");
+		this.tx.executeWithoutResult(_ -> {
+			this.cacheManager.getCache(SETTINGS).evict("-1:committed");
+			// longer than the batch window
+			pause();
+			verify(this.invalidations, never()).apply(argThat(b -> b.invalidations().contains(committed)));
+		});
+		verify(this.invalidations, timeout(5_000)).apply(argThat(b -> b.invalidations().contains(committed)));
+	}
+
+	@Test
+	void evictionsInATransactionThatRollsBackAreNotSent() {
+		var rolledBack = CacheInvalidation.evict(SETTINGS, "-1:rolled-back");
+		this.tx.executeWithoutResult(status -> {
+			this.cacheManager.getCache(SETTINGS).evict("-1:rolled-back");
+			status.setRollbackOnly();
+		});
+		pause();
+		verify(this.invalidations, never()).apply(argThat(b -> b.invalidations().contains(rolledBack)));
+	}
+
+	private static void pause() {
+		try {
+			Thread.sleep(1_000);
+		} //
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,176 @@
+package com.joshlong.mogul.api.cache;
+
+import com.joshlong.mogul.api.compositions.Attachment;
+import com.joshlong.mogul.api.compositions.Composition;
+import com.joshlong.mogul.api.managedfiles.ManagedFile;
+import com.joshlong.mogul.api.managedfiles.ManagedFileService;
+import com.joshlong.mogul.api.podcasts.Episode;
+import com.joshlong.mogul.api.podcasts.Podcast;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+@SpringBootTest
+class TieredCacheManagerTest {
+
+	// ids that no real row will ever have
+	private static final Long KEY = -1L;
+
+	private static final List<Long> KEYS = List.of(KEY, -2L, -3L, -4L);
+
+	private static final ManagedFile MANAGED_FILE = new ManagedFile(1L, 2L, "bucket", "storage", "folder", "audio.mp3",
+			new Date(), true, 42, "audio/mpeg", true, 3);
+
+	private static final Attachment ATTACHMENT = new Attachment(3L, "a caption", MANAGED_FILE);
+
+	@Autowired
+	JdbcClient db;
+
+	@Autowired
+	PostgresqlUnloggedTableCacheManager shared;
+
+	@Autowired
+	CaffeineCacheManager local;
+
+	@Autowired
+	CacheManager cacheManager;
+
+	@AfterEach
+	void reset() {
+		for (var key : KEYS) {
+			this.db.sql("delete from cache_entry where cache_key = ?").param(String.valueOf(key)).update();
+			for (var name : this.local.getCacheNames())
+				this.local.getCache(name).evict(key);
+		}
+	}
+
+	@Test
+	void everyCachedTypeSurvivesTheTrip() {
+		var values = Map.of("managedFiles", MANAGED_FILE, //
+				"podcasts", new Podcast(1L, 4L, "a podcast", new Date()), //
+				"podcastEpisodes",
+				new Episode(5L, 4L, "an episode", "about things", new Date(), MANAGED_FILE, MANAGED_FILE, null, true,
+						new Date(), new Date()), //
+				"compositionsById", new Composition(6L, "5", Episode.class, "title", List.of(ATTACHMENT)), //
+				"compositionAttachments", ATTACHMENT);
+		for (var entry : values.entrySet()) {
+			this.shared.getCache(entry.getKey()).put(KEY, entry.getValue());
+			var read = this.shared.getCache(entry.getKey()).get(KEY);
+			Assertions.assertNotNull(read, "nothing came back from [" + entry.getKey() + "]");
+			Assertions.assertEquals(entry.getValue(), read.get());
+		}
+	}
+
+	@Test
+	void rowsOfAnyOtherClassAreNeitherLoadedNorKept() {
+		this.db.sql("""
+				insert into cache_entry (cache_name, cache_key, value_class, value, expires)
+				values ('podcasts', ?, 'java.util.HashMap', '{}', now() + interval '1 hour')
+				""").param(String.valueOf(KEY)).update();
+		Assertions.assertNull(this.shared.getCache("podcasts").get(KEY));
+		Assertions.assertEquals(0, this.count("podcasts"), "the row should have been evicted");
+	}
+
+	@Test
+	void valuesOfAnyOtherTypeAreNotWritten() {
+		this.shared.getCache("podcasts").put(KEY, ATTACHMENT);
+		Assertions.assertEquals(0, this.count("podcasts"));
+	}
+
+	@Test
+	void expiredEntriesAreNotReadAndArePurged(@Autowired DataSource dataSource, @Autowired JsonMapper json)
+			throws Exception {
+		var shortLived = new PostgresqlUnloggedTableCacheManager(dataSource, json, Duration.ofMillis(100),
+				Map.of("managedFiles", ManagedFile.class));
+		shortLived.getCache("managedFiles").put(KEY, MANAGED_FILE);
+		Assertions.assertNotNull(shortLived.getCache("managedFiles").get(KEY));
+		Thread.sleep(500);
+		Assertions.assertNull(shortLived.getCache("managedFiles").get(KEY), "the entry should have expired");
+		Assertions.assertEquals(1, this.count("managedFiles"), "expired entries linger until they're purged");
+		Assertions.assertTrue(shortLived.purgeExpired() >= 1);
+		Assertions.assertEquals(0, this.count("managedFiles"));
+	}
+
+	@Test
+	void localMissesAreFilledFromTheSharedTier() {
+		this.shared.getCache("managedFiles").put(KEY, MANAGED_FILE);
+		Assertions.assertNull(this.local.getCache("managedFiles").get(KEY));
+		var read = this.cacheManager.getCache("managedFiles").get(KEY);
+		Assertions.assertNotNull(read);
+		Assertions.assertEquals(MANAGED_FILE, read.get());
+		var promoted = this.local.getCache("managedFiles").get(KEY);
+		Assertions.assertNotNull(promoted, "the hit should have been promoted to the local tier");
+		Assertions.assertEquals(MANAGED_FILE, promoted.get());
+	}
+
+	@Test
+	void evictionsClearBothTiers() {
+		var cache = this.cacheManager.getCache("managedFiles");
+		cache.put(KEY, MANAGED_FILE);
+		Assertions.assertNotNull(this.local.getCache("managedFiles").get(KEY));
+		Assertions.assertEquals(1, this.count("managedFiles"));
+		cache.evict(KEY);
+		Assertions.assertNull(this.local.getCache("managedFiles").get(KEY));
+		Assertions.assertEquals(0, this.count("managedFiles"));
+	}
+
+	@Test
+	void bulkLookupsOnlyLoadWhatNeitherTierHas() {
+		var local = this.local.getCache("managedFiles");
+		var shared = this.shared.getCache("managedFiles");
+		local.put(KEY, MANAGED_FILE);
+		shared.put(-2L, MANAGED_FILE);
+		var loads = new ArrayList<Set<Long>>();
+		var cache = (BulkCache) this.cacheManager.getCache("managedFiles");
+		// like a "where id = any(?)" query that finds only some of the rows
+		Function<Set<Long>, Map<Long, ManagedFile>> loader = ids -> {
+			loads.add(Set.copyOf(ids));
+			return ids.contains(-3L) ? Map.of(-3L, MANAGED_FILE) : Map.of();
+		};
+		var results = cache.getAll(KEYS, loader);
+		Assertions.assertEquals(Set.of(KEY, -2L, -3L), results.keySet());
+		Assertions.assertEquals(List.of(Set.of(-3L, -4L)), loads, "only what neither tier has should be loaded");
+		Assertions.assertNotNull(local.get(-2L), "shared hits should have been promoted to the local tier");
+		Assertions.assertEquals(1, this.count("managedFiles", -3L), "loaded values should be shared");
+		Assertions.assertNull(local.get(-4L), "rows that weren't found should not be cached");
+		Assertions.assertEquals(0, this.count("managedFiles", -4L), "rows that weren't found should not be shared");
+		Assertions.assertEquals(Set.of(KEY, -2L, -3L), cache.getAll(KEYS, loader).keySet());
+		Assertions.assertEquals(List.of(Set.of(-3L, -4L), Set.of(-4L)), loads);
+	}
+
+	@Test
+	void idsTheDatabaseDoesntHaveAreLeftOut(@Autowired ManagedFileService managedFileService) {
+		this.local.getCache("managedFiles").put(KEY, MANAGED_FILE);
+		var found = managedFileService.getManagedFiles(List.of(KEY, -2L));
+		Assertions.assertEquals(Map.of(KEY, MANAGED_FILE), found);
+		Assertions.assertNull(this.local.getCache("managedFiles").get(-2L));
+		Assertions.assertEquals(0, this.count("managedFiles", -2L));
+	}
+
+	private long count(String cacheName) {
+		return this.count(cacheName, KEY);
+	}
+
+	private long count(String cacheName, Long key) {
+		return this.db.sql("select count(*) from cache_entry where cache_name = ? and cache_key = ?")
+			.params(cacheName, String.valueOf(key))
+			.query(Long.class)
+			.single();
+	}
+
+}
@@ -0,0 +1,105 @@
+package com.joshlong.mogul.api.managedfiles;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.Mockito.*;
+
+class BucketRegistryTest {
+
+	private final S3Client s3 = mock(S3Client.class);
+
+	private final BucketRegistry buckets = new BucketRegistry(this.s3);
+
+	@Test
+	void knownBucketsAreOnlyCheckedOnce() {
+		when(this.s3.headBucket(any(HeadBucketRequest.class))).thenReturn(HeadBucketResponse.builder().build());
+		Assertions.assertTrue(this.buckets.exists("mine"));
+		Assertions.assertTrue(this.buckets.exists("mine"));
+		this.buckets.ensureExists("mine");
+		verify(this.s3, times(1)).headBucket(any(HeadBucketRequest.class));
+		verify(this.s3, never()).createBucket(any(CreateBucketRequest.class));
+	}
+
+	@Test
+	void missingBucketsAreNotRemembered() {
+		when(this.s3.headBucket(any(HeadBucketRequest.class))).thenThrow(NoSuchBucketException.builder().build())
+			.thenReturn(HeadBucketResponse.builder().build());
+		Assertions.assertFalse(this.buckets.exists("later"));
+		Assertions.assertTrue(this.buckets.exists("later"), "another node might have created it since");
+	}
+
+	@Test
+	void concurrentWritersToANewBucketCreateItOnce() throws Exception {
+		var created = new AtomicBoolean();
+		when(this.s3.headBucket(any(HeadBucketRequest.class))).thenAnswer(_ -> {
+			if (!created.get())
+				throw NoSuchBucketException.builder().build();
+			return HeadBucketResponse.builder().build();
+		});
+		when(this.s3.createBucket(any(CreateBucketRequest.class))).thenAnswer(_ -> {
+			Thread.sleep(100);
+			created.set(true);
+			return CreateBucketResponse.builder().build();
+		});
+		var start = new CountDownLatch(1);
+		try (var executor = Executors.newCachedThreadPool()) {
+			var writers = new ArrayList<Future<?>>();
+			for (var i = 0; i < 10; i++)
+				writers.add(executor.submit(() -> {
+					start.await();
+					this.buckets.ensureExists("new");
+					return null;
+				}));
+			start.countDown();
+			for (var writer : writers)
+				writer.get(10, TimeUnit.SECONDS);
+		}
+		verify(this.s3, times(1)).createBucket(any(CreateBucketRequest.class));
+	}
+
+	@Test
+	void aSlowBucketDoesNotHoldUpAnotherBucket() throws Exception {
+		var slow = new CountDownLatch(1);
+		when(this.s3.headBucket(any(HeadBucketRequest.class))).thenAnswer(invocation -> {
+			if (invocation.getArgument(0, HeadBucketRequest.class).bucket().equals("slow"))
+				slow.await();
+			return HeadBucketResponse.builder().build();
+		});
+		try (var executor = Executors.newCachedThreadPool()) {
+			var blocked = executor.submit(() -> this.buckets.ensureExists("slow"));
+			executor.submit(() -> this.buckets.ensureExists("fast")).get(5, TimeUnit.SECONDS);
+			slow.countDown();
+			blocked.get(5, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	void forbiddenBucketsFallBackToListingOurBuckets() {
+		when(this.s3.headBucket(any(HeadBucketRequest.class)))
+			.thenThrow(S3Exception.builder().statusCode(403).message("forbidden").build());
+		when(this.s3.listBuckets()).thenReturn(
+				ListBucketsResponse.builder().buckets(Bucket.builder().name("mine-but-no-list-bucket").build()).build());
+		Assertions.assertTrue(this.buckets.exists("mine-but-no-list-bucket"));
+		Assertions.assertFalse(this.buckets.exists("someone-elses"), "deletes in a bucket that isn't ours are skipped");
+	}
+
+	@Test
+	void otherFailuresPropagate() {
+		when(this.s3.headBucket(any(HeadBucketRequest.class)))
+			.thenThrow(S3Exception.builder().statusCode(500).message("oops").build());
+		Assertions.assertThrows(S3Exception.class, () -> this.buckets.exists("broken"));
+		Assertions.assertThrows(S3Exception.class, () -> this.buckets.ensureExists("broken"));
+		verify(this.s3, never()).createBucket(any(CreateBucketRequest.class));
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.joshlong.mogul.api.managedfiles;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ManagedFileDiskCacheTest {
+
+	@TempDir
+	Path root;
+
+	@Test
+	void concurrentMissesDownloadOnce() throws Exception {
+		var cache = new ManagedFileDiskCache(this.root, DataSize.ofMegabytes(1), new SimpleMeterRegistry());
+		var downloads = new AtomicInteger();
+		var file = managedFile(1, 1);
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			var futures = new ArrayList<Future<String>>();
+			for (var i = 0; i < 8; i++)
+				futures.add(executor.submit(() -> {
+					try (var in = cache.open(file, path -> {
+						downloads.incrementAndGet();
+						// long enough for the others to miss, too
+						Thread.sleep(100);
+						Files.writeString(path, "hello");
+					})) {
+						return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+					}
+				}));
+			for (var future : futures)
+				Assertions.assertEquals("hello", future.get());
+		}
+		Assertions.assertEquals(1, downloads.get());
+	}
+
+	@Test
+	void leastRecentlyUsedEntriesAreEvicted() throws Exception {
+		var cache = new ManagedFileDiskCache(this.root, DataSize.ofBytes(10), new SimpleMeterRegistry());
+		var downloads = new AtomicInteger();
+		var first = managedFile(1, 1);
+		var second = managedFile(2, 1);
+		var third = managedFile(3, 1);
+		this.read(cache, first, downloads);
+		this.read(cache, second, downloads);
+		// first is now the most recently used
+		this.read(cache, first, downloads);
+		this.read(cache, third, downloads);
+		Assertions.assertEquals(3, downloads.get());
+		this.read(cache, first, downloads);
+		Assertions.assertEquals(3, downloads.get(), "the first file should still be cached");
+		this.read(cache, second, downloads);
+		Assertions.assertEquals(4, downloads.get(), "the second file should have been evicted");
+	}
+
+	@Test
+	void newVersionsAreDownloadedAgain() throws Exception {
+		var cache = new ManagedFileDiskCache(this.root, DataSize.ofMegabytes(1), new SimpleMeterRegistry());
+		var downloads = new AtomicInteger();
+		this.read(cache, managedFile(1, 1), downloads);
+		this.read(cache, managedFile(1, 1), downloads);
+		Assertions.assertEquals(1, downloads.get());
+		this.read(cache, managedFile(1, 2), downloads);
+		Assertions.assertEquals(2, downloads.get());
+	}
+
+	@Test
+	void linksAreReadOnlyCopiesOfTheCachedFile() throws Exception {
+		var cache = new ManagedFileDiskCache(this.root.resolve("cache"), DataSize.ofMegabytes(1),
+				new SimpleMeterRegistry());
+		var destination = Files.createDirectories(this.root.resolve("workspace")).resolve("file.mp3");
+		var link = cache.link(managedFile(1, 1), destination, path -> Files.writeString(path, "hello"));
+		Assertions.assertEquals("hello", Files.readString(link));
+		Assertions.assertEquals(destination, link);
+	}
+
+	private void read(ManagedFileDiskCache cache, ManagedFile managedFile, AtomicInteger downloads) throws Exception {
+		try (var in = cache.open(managedFile, path -> {
+			downloads.incrementAndGet();
+			// four bytes, so that only two files fit
+			Files.writeString(path, "abcd");
+		})) {
+			Assertions.assertEquals("abcd", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+		}
+	}
+
+	private static ManagedFile managedFile(long id, long version) {
+		return new ManagedFile(1L, id, "bucket", id + ".mp3", "folder", id + ".mp3", new Date(), true, 4, "audio/mpeg",
+				false, version);
+	}
+
+}
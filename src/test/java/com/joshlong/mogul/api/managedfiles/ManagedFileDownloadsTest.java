@@ -0,0 +1,132 @@
+package com.joshlong.mogul.api.managedfiles;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.mockito.Mockito.*;
+
+class ManagedFileDownloadsTest {
+
+	private static final String KEY = "folder/file.mp3";
+
+	private static final String ETAG = "\"abc\"";
+
+	private final ManagedFile managedFile = new ManagedFile(1L, 2L, "bucket", "file.mp3", "folder", "file.mp3",
+			new Date(), true, 10, "audio/mpeg", false, 1);
+
+	private final Storage storage = mock(Storage.class);
+
+	private final ManagedFileDownloads downloads = new ManagedFileDownloads(this.storage);
+
+	@Test
+	void whole() throws Exception {
+		when(this.storage.read("bucket", KEY, null, null, null)).thenReturn(this.object("0123456789", null));
+		var response = this.downloads.download(this.managedFile, new HttpHeaders());
+		Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+		Assertions.assertEquals(ETAG, response.getHeaders().getETag());
+		Assertions.assertEquals("bytes", response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+		Assertions.assertEquals("0123456789", this.body(response.getBody()));
+	}
+
+	@Test
+	void range() throws Exception {
+		when(this.storage.read("bucket", KEY, "bytes=2-4", null, ETAG)).thenReturn(this.object("234", "bytes 2-4/10"));
+		var response = this.downloads.download(this.managedFile, this.headers("bytes=2-4", ETAG, null));
+		Assertions.assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+		Assertions.assertEquals("bytes 2-4/10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+		Assertions.assertEquals(3, response.getHeaders().getContentLength());
+		Assertions.assertEquals("234", this.body(response.getBody()));
+	}
+
+	@Test
+	void multipleRangesGetTheWholeFile() throws Exception {
+		when(this.storage.read("bucket", KEY, null, null, null)).thenReturn(this.object("0123456789", null));
+		var response = this.downloads.download(this.managedFile, this.headers("bytes=0-1,4-5", null, null));
+		Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+	}
+
+	@Test
+	void weakIfRangeGetsTheWholeFile() {
+		when(this.storage.read("bucket", KEY, null, null, null)).thenReturn(this.object("0123456789", null));
+		var response = this.downloads.download(this.managedFile, this.headers("bytes=2-4", "W/" + ETAG, null));
+		Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+	}
+
+	@Test
+	void notModified() {
+		when(this.storage.read("bucket", KEY, null, ETAG, null)).thenThrow(this.s3Exception(304));
+		var response = this.downloads.download(this.managedFile, this.headers(null, null, ETAG));
+		Assertions.assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+		Assertions.assertEquals(ETAG, response.getHeaders().getETag());
+		Assertions.assertNull(response.getBody());
+	}
+
+	@Test
+	void changedSinceTheRangeWasCached() throws Exception {
+		when(this.storage.read("bucket", KEY, "bytes=2-4", null, ETAG)).thenThrow(this.s3Exception(412));
+		when(this.storage.read("bucket", KEY, null, null, null)).thenReturn(this.object("9876543210", null));
+		var response = this.downloads.download(this.managedFile, this.headers("bytes=2-4", ETAG, null));
+		Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+		Assertions.assertEquals("9876543210", this.body(response.getBody()));
+	}
+
+	@Test
+	void unsatisfiableRange() {
+		when(this.storage.read("bucket", KEY, "bytes=20-30", null, null)).thenThrow(this.s3Exception(416));
+		var response = this.downloads.download(this.managedFile, this.headers("bytes=20-30", null, null));
+		Assertions.assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+		Assertions.assertEquals("bytes */10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+	}
+
+	private HttpHeaders headers(String range, String ifRange, String ifNoneMatch) {
+		var headers = new HttpHeaders();
+		if (range != null)
+			headers.set(HttpHeaders.RANGE, range);
+		if (ifRange != null)
+			headers.set(HttpHeaders.IF_RANGE, ifRange);
+		if (ifNoneMatch != null)
+			headers.set(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+		return headers;
+	}
+
+	private ResponseInputStream<GetObjectResponse> object(String body, String contentRange) {
+		var bytes = body.getBytes(StandardCharsets.UTF_8);
+		var response = GetObjectResponse.builder()
+			.eTag(ETAG)
+			.lastModified(Instant.now())
+			.contentLength((long) bytes.length)
+			.contentRange(contentRange)
+			.build();
+		return new ResponseInputStream<>(response, AbortableInputStream.create(new ByteArrayInputStream(bytes)));
+	}
+
+	private S3Exception s3Exception(int status) {
+		var http = SdkHttpResponse.builder().statusCode(status).putHeader(HttpHeaders.ETAG, ETAG).build();
+		return (S3Exception) S3Exception.builder()
+			.statusCode(status)
+			.awsErrorDetails(AwsErrorDetails.builder().sdkHttpResponse(http).build())
+			.build();
+	}
+
+	private String body(StreamingResponseBody body) throws Exception {
+		var out = new ByteArrayOutputStream();
+		body.writeTo(out);
+		return out.toString(StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.joshlong.mogul.api.managedfiles;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.*;
+
+class MultipartUploaderTest {
+
+	private static final DataSize PART_SIZE = DataSize.ofMegabytes(5);
+
+	private static final int PARTS_IN_FLIGHT = 2;
+
+	private final S3Client s3 = mock(S3Client.class);
+
+	private final MultipartUploader uploader = new MultipartUploader(this.s3, PART_SIZE, PARTS_IN_FLIGHT, 2,
+			new SimpleMeterRegistry());
+
+	private final AtomicInteger inFlight = new AtomicInteger(), maxInFlight = new AtomicInteger();
+
+	@Test
+	void smallObjectsAreSentInOnePut() throws Exception {
+		when(this.s3.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+			.thenReturn(PutObjectResponse.builder().build());
+		this.uploader.upload("bucket", "key", this.bytes(1024), MediaType.IMAGE_JPEG);
+		verify(this.s3).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+		verify(this.s3, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+	}
+
+	@Test
+	void partsAreCompletedInOrder() throws Exception {
+		this.createMultipartUpload();
+		when(this.s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+			var request = invocation.getArgument(0, UploadPartRequest.class);
+			this.maxInFlight.accumulateAndGet(this.inFlight.incrementAndGet(), Math::max);
+			try {
+				// so that the parts finish out of order
+				Thread.sleep(ThreadLocalRandom.current().nextInt(50));
+				return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+			} //
+			finally {
+				this.inFlight.decrementAndGet();
+			}
+		});
+		when(this.s3.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+			.thenReturn(CompleteMultipartUploadResponse.builder().build());
+
+		var parts = 5;
+		this.uploader.upload("bucket", "key", this.bytes((parts - 1) * (int) PART_SIZE.toBytes() + 1024),
+				MediaType.APPLICATION_OCTET_STREAM);
+
+		var captor = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+		verify(this.s3).completeMultipartUpload(captor.capture());
+		var completed = captor.getValue().multipartUpload().parts();
+		Assertions.assertEquals(parts, completed.size());
+		for (var i = 0; i < parts; i++) {
+			Assertions.assertEquals(i + 1, completed.get(i).partNumber());
+			Assertions.assertEquals("etag-" + (i + 1), completed.get(i).eTag());
+		}
+		Assertions.assertTrue(this.maxInFlight.get() <= PARTS_IN_FLIGHT,
+				"there were " + this.maxInFlight.get() + " parts in flight");
+		verify(this.s3, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+	}
+
+	@Test
+	void failedPartsAbortTheUpload() {
+		this.createMultipartUpload();
+		when(this.s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+			var request = invocation.getArgument(0, UploadPartRequest.class);
+			if (request.partNumber() == 2)
+				throw SdkClientException.create("the network is down");
+			return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+		});
+		when(this.s3.abortMultipartUpload(any(AbortMultipartUploadRequest.class)))
+			.thenReturn(AbortMultipartUploadResponse.builder().build());
+
+		Assertions.assertThrows(SdkClientException.class, () -> this.uploader.upload("bucket", "key",
+				this.bytes(3 * (int) PART_SIZE.toBytes()), MediaType.APPLICATION_OCTET_STREAM));
+
+		var captor = ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+		verify(this.s3).abortMultipartUpload(captor.capture());
+		Assertions.assertEquals("upload", captor.getValue().uploadId());
+		verify(this.s3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+		// the failed part was retried
+		verify(this.s3, times(2)).uploadPart(argThat((UploadPartRequest r) -> r.partNumber() == 2),
+				any(RequestBody.class));
+	}
+
+	private void createMultipartUpload() {
+		when(this.s3.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+			.thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+	}
+
+	private ByteArrayInputStream bytes(int length) {
+		var bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+		return new ByteArrayInputStream(bytes);
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.joshlong.mogul.api.media;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class AudioProbeTest {
+
+	/** MPEG-1, layer III, 128kbps, 44.1kHz, stereo, no padding */
+	private static final byte[] FRAME_HEADER = { (byte) 0xff, (byte) 0xfb, (byte) 0x90, 0 };
+
+	private static final int FRAME_LENGTH = 144 * 128_000 / 44_100;
+
+	@Test
+	void constantBitrateMp3(@TempDir Path directory) throws Exception {
+		var mp3 = new ByteArrayOutputStream();
+		// an ID3v2 tag of 128 bytes (the size is synchsafe)
+		mp3.write(new byte[] { 'I', 'D', '3', 3, 0, 0, 0, 0, 1, 0 });
+		mp3.write(new byte[128]);
+		for (var i = 0; i < 100; i++)
+			mp3.write(frame());
+		// an ID3v1 tag
+		mp3.write(new byte[] { 'T', 'A', 'G' });
+		mp3.write(new byte[125]);
+		var file = directory.resolve("cbr.mp3");
+		Files.write(file, mp3.toByteArray());
+
+		var probe = AudioProbe.probe(file.toFile());
+		Assertions.assertNotNull(probe);
+		Assertions.assertEquals(100 * 1152 * 1000 / 44_100, probe.duration().toMillis());
+		Assertions.assertEquals(44_100, probe.sampleRate());
+		Assertions.assertEquals(128_000, probe.bitsPerSecond(), 500);
+	}
+
+	@Test
+	void xingHeader(@TempDir Path directory) throws Exception {
+		var first = frame();
+		System.arraycopy("Xing".getBytes(), 0, first, 36, 4);
+		first[43] = 1; // the frame count is present
+		first[46] = 0x03; // 1000 frames
+		first[47] = (byte) 0xe8;
+		var mp3 = new ByteArrayOutputStream();
+		mp3.write(first);
+		mp3.write(frame());
+		var file = directory.resolve("vbr.mp3");
+		Files.write(file, mp3.toByteArray());
+
+		var probe = AudioProbe.probe(file.toFile());
+		Assertions.assertNotNull(probe);
+		Assertions.assertEquals(1000L * 1152 * 1000 / 44_100, probe.duration().toMillis());
+	}
+
+	@Test
+	void wav(@TempDir Path directory) throws Exception {
+		var bytes = new ByteArrayOutputStream();
+		var wav = new DataOutputStream(bytes);
+		wav.writeBytes("RIFF");
+		wav.writeInt(Integer.reverseBytes(4 + 12 + 24 + 8 + 64_000));
+		wav.writeBytes("WAVE");
+		// a chunk we don't care about, with an odd size
+		wav.writeBytes("LIST");
+		wav.writeInt(Integer.reverseBytes(3));
+		wav.write(new byte[] { 1, 2, 3, 0 });
+		// 16kHz, mono, 16-bit PCM
+		wav.writeBytes("fmt ");
+		wav.writeInt(Integer.reverseBytes(16));
+		wav.writeShort(Short.reverseBytes((short) 1));
+		wav.writeShort(Short.reverseBytes((short) 1));
+		wav.writeInt(Integer.reverseBytes(16_000));
+		wav.writeInt(Integer.reverseBytes(32_000));
+		wav.writeShort(Short.reverseBytes((short) 2));
+		wav.writeShort(Short.reverseBytes((short) 16));
+		wav.writeBytes("data");
+		wav.writeInt(Integer.reverseBytes(64_000));
+		wav.write(new byte[64_000]);
+		var file = directory.resolve("audio.wav");
+		Files.write(file, bytes.toByteArray());
+
+		var probe = AudioProbe.probe(file.toFile());
+		Assertions.assertNotNull(probe);
+		Assertions.assertEquals(2000, probe.duration().toMillis());
+		Assertions.assertEquals(256_000, probe.bitsPerSecond());
+		Assertions.assertEquals(16_000, probe.sampleRate());
+	}
+
+	@Test
+	void somethingElse(@TempDir Path directory) throws Exception {
+		var file = directory.resolve("notes.txt");
+		Files.writeString(file, "this is not audio, not even a little bit");
+		Assertions.assertNull(AudioProbe.probe(file.toFile()));
+	}
+
+	@Test
+	void somethingThatLooksLikeAFrame(@TempDir Path directory) throws Exception {
+		var m4a = new ByteArrayOutputStream();
+		var data = new DataOutputStream(m4a);
+		data.writeInt(20);
+		data.writeBytes("ftypM4A ");
+		data.writeInt(0);
+		data.writeBytes("M4A ");
+		data.writeInt(8 + 4096);
+		data.writeBytes("mdat");
+		// AAC that happens to have a frame header in it, but no frame after it
+		var aac = new byte[4096];
+		for (var i = 0; i < aac.length; i++)
+			aac[i] = (byte) (i * 31 % 0xff);
+		System.arraycopy(FRAME_HEADER, 0, aac, 100, FRAME_HEADER.length);
+		data.write(aac);
+		var file = directory.resolve("audio.m4a");
+		Files.write(file, m4a.toByteArray());
+		Assertions.assertNull(AudioProbe.probe(file.toFile()));
+	}
+
+	private static byte[] frame() {
+		var frame = new byte[FRAME_LENGTH];
+		System.arraycopy(FRAME_HEADER, 0, frame, 0, FRAME_HEADER.length);
+		return frame;
+	}
+
+}
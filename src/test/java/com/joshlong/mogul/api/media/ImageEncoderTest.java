@@ -0,0 +1,77 @@
+package com.joshlong.mogul.api.media;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+
+class ImageEncoderTest {
+
+	@Test
+	void quality() {
+		for (var estimate : new int[] { 1, 25, 63, 64, 90, 100 }) {
+			var attempts = new ArrayList<Integer>();
+			var quality = ImageEncoder.quality(estimate, q -> {
+				attempts.add(q);
+				return q <= 63;
+			});
+			Assertions.assertEquals(63, quality);
+			Assertions.assertEquals(estimate, attempts.getFirst());
+			Assertions.assertTrue(attempts.size() <= 8, "it took " + attempts.size() + " attempts: " + attempts);
+		}
+	}
+
+	@Test
+	void nothingFits() {
+		Assertions.assertEquals(0, ImageEncoder.quality(80, _ -> false));
+	}
+
+	@Test
+	void everythingFits() {
+		var attempts = new ArrayList<Integer>();
+		Assertions.assertEquals(100, ImageEncoder.quality(100, q -> attempts.add(q)));
+		Assertions.assertEquals(1, attempts.size());
+	}
+
+	@Test
+	void estimateQuality() {
+		var max = ImageEncoder.MAX_SIZE.toBytes();
+		Assertions.assertEquals(100, ImageEncoder.estimateQuality(500 * 500, max));
+		Assertions.assertTrue(ImageEncoder.estimateQuality(4000 * 3000, max) < 90);
+		Assertions.assertTrue(ImageEncoder.estimateQuality(0, max) > 0);
+	}
+
+	@Test
+	void reencodeInProcess(@TempDir Path directory) throws Exception {
+		var random = new Random(42);
+		var image = new BufferedImage(2400, 1800, BufferedImage.TYPE_INT_ARGB);
+		for (var y = 0; y < image.getHeight(); y++) {
+			for (var x = 0; x < image.getWidth(); x++) {
+				var red = x * 255 / image.getWidth();
+				var green = y * 255 / image.getHeight();
+				image.setRGB(x, y, 0xff000000 | (red << 16) | (green << 8) | random.nextInt(64));
+			}
+		}
+		var png = directory.resolve("big.png").toFile();
+		ImageIO.write(image, "png", png);
+		Assertions.assertTrue(png.length() > ImageEncoder.MAX_SIZE.toBytes());
+
+		// if we got this far, we shouldn't need magick
+		var encoder = new ImageEncoder(new MediaProcesses(Map.of(), Duration.ofMinutes(1), new SimpleMeterRegistry()));
+		var jpg = encoder.encode(png).file();
+		Assertions.assertTrue(jpg.getName().endsWith(".jpg"));
+		Assertions.assertTrue(jpg.length() <= ImageEncoder.MAX_SIZE.toBytes());
+		var decoded = ImageIO.read(jpg);
+		Assertions.assertEquals(image.getWidth(), decoded.getWidth());
+		Assertions.assertEquals(image.getHeight(), decoded.getHeight());
+	}
+
+}
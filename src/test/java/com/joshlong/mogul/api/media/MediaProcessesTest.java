@@ -0,0 +1,78 @@
+package com.joshlong.mogul.api.media;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+class MediaProcessesTest {
+
+	private final MediaProcesses processes = new MediaProcesses(Map.of("sleep", 1), Duration.ofSeconds(30),
+			new SimpleMeterRegistry());
+
+	@Test
+	void outputErrorAndExitCode() throws Exception {
+		var result = this.processes.run("sh", "-c", "echo out; echo err 1>&2; exit 3");
+		Assertions.assertFalse(result.success());
+		Assertions.assertEquals(3, result.exitCode());
+		Assertions.assertEquals("out\n", result.output());
+		Assertions.assertEquals("err\n", result.error());
+	}
+
+	@Test
+	void bothStreamsAreDrainedAndOnlyTheirTailsKept() throws Exception {
+		// far more than a pipe holds, on both streams, so a process whose streams we
+		// didn't drain would never finish
+		var result = this.processes.run("sh", "-c",
+				"head -c 1000000 /dev/zero | tr '\\0' a; head -c 1000000 /dev/zero | tr '\\0' b 1>&2");
+		Assertions.assertTrue(result.success());
+		Assertions.assertEquals("a".repeat(64 * 1024), result.output());
+		Assertions.assertEquals("b".repeat(64 * 1024), result.error());
+	}
+
+	@Test
+	void processesThatRunTooLongAreKilledWithTheirChildren() throws Exception {
+		var child = new AtomicLong();
+		var started = System.nanoTime();
+		Assertions.assertThrows(IllegalStateException.class, () -> this.processes
+			.run(List.of("sh", "-c", "sleep 30 & echo $!; wait"), Duration.ofMillis(500), in -> {
+				child.set(Long.parseLong(new BufferedReader(new InputStreamReader(in)).readLine()));
+				return null;
+			}));
+		Assertions.assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(10),
+				"the process should have been killed long before it finished");
+		var handle = ProcessHandle.of(child.get());
+		if (handle.isPresent())
+			handle.get().onExit().get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void permitsLimitHowManyProcessesRunAtOnce() throws Exception {
+		var running = new CountDownLatch(1);
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			// the only permit for sleep
+			var busy = executor.submit(() -> this.processes.run(List.of("sleep", "1"), Duration.ofSeconds(10), in -> {
+				running.countDown();
+				return in.readAllBytes();
+			}));
+			Assertions.assertTrue(running.await(5, TimeUnit.SECONDS));
+			Assertions.assertNull(
+					this.processes.tryRun(List.of("sleep", "0"), Duration.ofMillis(100), Duration.ofSeconds(10)),
+					"there should be no permit free");
+			Assertions.assertTrue(busy.get().success());
+			var result = this.processes.tryRun(List.of("sleep", "0"), Duration.ofSeconds(5), Duration.ofSeconds(10));
+			Assertions.assertNotNull(result, "the permit should have been given back");
+			Assertions.assertTrue(result.success());
+		}
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.joshlong.mogul.api.podcasts;
+
+import com.joshlong.mogul.api.managedfiles.ManagedFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EpisodeResultSetExtractorTest {
+
+	private static final int EPISODES = 300;
+
+	private final List<Collection<Long>> lookups = new ArrayList<>();
+
+	private final Function<Collection<Long>, Map<Long, ManagedFile>> managedFiles = ids -> {
+		this.lookups.add(Set.copyOf(ids));
+		var results = new HashMap<Long, ManagedFile>();
+		for (var id : ids)
+			results.put(id, new ManagedFile(1L, id, "bucket", "storage", "folder", id + ".mp3", new Date(), true, 42,
+					"audio/mpeg", true, 3));
+		return results;
+	};
+
+	@Test
+	void aWholeResultSetIsResolvedWithOneManagedFileLookup() throws Exception {
+		var episodes = new EpisodeResultSetExtractor(true, this.managedFiles).extractData(episodes());
+		Assertions.assertEquals(EPISODES, episodes.size());
+		Assertions.assertEquals(1, this.lookups.size(), "all the managed files should be resolved in one go");
+		Assertions.assertEquals(EPISODES * 3, this.lookups.getFirst().size());
+		for (var i = 0; i < EPISODES; i++) {
+			var episode = episodes.get(i);
+			Assertions.assertEquals(i, episode.id(), "the episodes should keep the order of the rows");
+			Assertions.assertEquals(graphicId(i), episode.graphic().id());
+			Assertions.assertEquals(producedGraphicId(i), episode.producedGraphic().id());
+			Assertions.assertEquals(producedAudioId(i), episode.producedAudio().id());
+		}
+	}
+
+	@Test
+	void shallowResultSetsNeverLookUpManagedFiles() throws Exception {
+		var episodes = new EpisodeResultSetExtractor(false, this.managedFiles).extractData(episodes());
+		Assertions.assertEquals(EPISODES, episodes.size());
+		Assertions.assertTrue(this.lookups.isEmpty());
+		Assertions.assertNull(episodes.getFirst().producedAudio());
+	}
+
+	private static long graphicId(int row) {
+		return 1_000 + row;
+	}
+
+	private static long producedGraphicId(int row) {
+		return 2_000 + row;
+	}
+
+	private static long producedAudioId(int row) {
+		return 3_000 + row;
+	}
+
+	private static ResultSet episodes() throws Exception {
+		var row = new AtomicInteger(-1);
+		var resultSet = mock(ResultSet.class);
+		when(resultSet.next()).thenAnswer(_ -> row.incrementAndGet() < EPISODES);
+		when(resultSet.getLong(anyString())).thenAnswer(invocation -> switch (invocation.<String>getArgument(0)) {
+			case "id" -> (long) row.get();
+			case "podcast_id" -> 1L;
+			case "graphic_managed_file_id" -> graphicId(row.get());
+			case "produced_graphic_managed_file_id" -> producedGraphicId(row.get());
+			case "produced_audio_managed_file_id" -> producedAudioId(row.get());
+			default -> 0L;
+		});
+		when(resultSet.getString(anyString())).thenAnswer(invocation -> invocation.getArgument(0) + " " + row.get());
+		when(resultSet.getTimestamp(anyString())).thenReturn(new Timestamp(System.currentTimeMillis()));
+		return resultSet;
+	}
+
+}
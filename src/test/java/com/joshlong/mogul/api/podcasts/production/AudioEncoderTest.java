@@ -1,6 +1,8 @@
 package com.joshlong.mogul.api.podcasts.production;
 
 import com.joshlong.mogul.api.media.AudioEncoder;
+import com.joshlong.mogul.api.media.MediaProcesses;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.springframework.core.io.ClassPathResource;
@@ -10,11 +12,14 @@ import org.springframework.util.FileCopyUtils;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Map;
 
 @Disabled
 class AudioEncoderTest {
 
-	private final AudioEncoder encoder = new AudioEncoder();
+	private final AudioEncoder encoder = new AudioEncoder(
+			new MediaProcesses(Map.of(), Duration.ofMinutes(5), new SimpleMeterRegistry()));
 
 	@Test
 	void transcodeWavToMp3s() throws Exception {
@@ -0,0 +1,130 @@
+package com.joshlong.mogul.api.podcasts.production;
+
+import com.joshlong.mogul.api.ApiProperties;
+import com.joshlong.mogul.api.media.AudioEncodedFile;
+import com.joshlong.mogul.api.media.AudioEncoder;
+import com.joshlong.mogul.api.media.MediaProcesses;
+import com.joshlong.mogul.api.utils.FileUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.FileCopyUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+class FilterGraphAudioProducerTest {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final MediaProcesses processes = new MediaProcesses(Map.of(), Duration.ofMinutes(5),
+			new SimpleMeterRegistry());
+
+	@Test
+	void singleInput() {
+		var graph = FilterGraphAudioProducer.filterGraph(List.of(new FilterGraphAudioProducer.Input(new File("a"), 0)));
+		Assertions.assertEquals(
+				"[0:a]aresample=48000,aformat=sample_fmts=fltp:channel_layouts=stereo[a0];[a0]anull[out]", graph);
+	}
+
+	@Test
+	void concatenationsAndCrossfades() {
+		var graph = FilterGraphAudioProducer.filterGraph(List.of( //
+				new FilterGraphAudioProducer.Input(new File("a"), 500), //
+				new FilterGraphAudioProducer.Input(new File("b"), 0), //
+				new FilterGraphAudioProducer.Input(new File("c"), 1500)));
+		var filters = graph.split(";");
+		Assertions.assertEquals(5, filters.length);
+		Assertions.assertEquals("[a0][a1]concat=n=2:v=0:a=1[j1]", filters[3]);
+		Assertions.assertEquals("[j1][a2]acrossfade=d=1.500:c1=tri:c2=tri[out]", filters[4]);
+	}
+
+	/**
+	 * compares the filter graph against the concat-then-encode path on a multi-segment
+	 * episode, taking the median of a few runs of each, after a warm up. requires
+	 * {@code ffmpeg} on the {@code PATH}.
+	 * <p>
+	 * With ffmpeg 7.1, on a single core: for six copies of the 2.4s sample segment,
+	 * concat took 967ms and the filter graph 676ms. For six 61s segments (the sample,
+	 * looped), concat took 15.7s and the filter graph 13.5s.
+	 */
+	@Test
+	@Disabled
+	void benchmark() throws Exception {
+		var workspace = Files.createTempDirectory("filter-graph-benchmark").toFile();
+		try {
+			var segments = new ArrayList<File>();
+			for (var i = 0; i < 6; i++) {
+				var segment = new File(workspace, i + ".mp3");
+				try (var in = new ClassPathResource("/samples/sample-segment-0.mp3").getInputStream();
+						var out = new FileOutputStream(segment)) {
+					FileCopyUtils.copy(in, out);
+				}
+				segments.add(segment);
+			}
+			var inputs = segments.stream().map(f -> new FilterGraphAudioProducer.Input(f, 0)).toList();
+			var producer = new FilterGraphAudioProducer(this.processes);
+			var concat = this.concat(workspace, segments);
+			var filterGraph = producer.produce(workspace, inputs);
+			Assertions.assertEquals(concat.millisecondsDuration(), filterGraph.millisecondsDuration(), 100);
+
+			var concatMillis = new ArrayList<Long>();
+			var filterGraphMillis = new ArrayList<Long>();
+			for (var run = 0; run < 5; run++) {
+				var start = System.nanoTime();
+				this.concat(workspace, segments);
+				concatMillis.add((System.nanoTime() - start) / 1_000_000);
+				start = System.nanoTime();
+				producer.produce(workspace, inputs);
+				filterGraphMillis.add((System.nanoTime() - start) / 1_000_000);
+			}
+			this.log.info("{} segments: concat took {}ms (median of {}), the filter graph took {}ms (median of {})",
+					segments.size(), median(concatMillis), concatMillis, median(filterGraphMillis), filterGraphMillis);
+		} //
+		finally {
+			FileUtils.delete(workspace);
+		}
+	}
+
+	/**
+	 * the {@link ApiProperties.Podcasts.Producer.Mode#CONCAT concat} path: a {@code .wav}
+	 * for each segment, then one for all of them, then the {@code .mp3}.
+	 */
+	private AudioEncodedFile concat(File workspace, List<File> segments) throws Exception {
+		var wavs = new ArrayList<File>();
+		for (var segment : segments) {
+			var wav = new File(workspace, segment.getName() + ".wav");
+			var result = this.processes.run("ffmpeg", "-y", "-i", segment.getAbsolutePath(), "-acodec", "pcm_s16le",
+					"-vn", "-f", "wav", wav.getAbsolutePath());
+			Assertions.assertTrue(result.success(), result.error());
+			wavs.add(wav);
+		}
+		var list = new File(workspace, "files.txt");
+		try (var out = new FileWriter(list)) {
+			FileCopyUtils.copy(
+					wavs.stream().map(f -> "file '" + f.getAbsolutePath() + "'").collect(Collectors.joining("\n")),
+					out);
+		}
+		var concatenated = new File(workspace, "concatenated.wav");
+		var result = this.processes.run("ffmpeg", "-y", "-f", "concat", "-safe", "0", "-i", list.getAbsolutePath(),
+				"-c", "copy", concatenated.getAbsolutePath());
+		Assertions.assertTrue(result.success(), result.error());
+		return new AudioEncoder(this.processes).encode(concatenated);
+	}
+
+	private static long median(List<Long> millis) {
+		return millis.stream().sorted().toList().get(millis.size() / 2);
+	}
+
+}
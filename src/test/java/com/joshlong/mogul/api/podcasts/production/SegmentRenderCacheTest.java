@@ -0,0 +1,106 @@
+package com.joshlong.mogul.api.podcasts.production;
+
+import com.joshlong.mogul.api.managedfiles.ManagedFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class SegmentRenderCacheTest {
+
+	private static final Long EPISODE = 1L;
+
+	@TempDir
+	File root;
+
+	@TempDir
+	File workspace;
+
+	private final AtomicInteger renders = new AtomicInteger();
+
+	@Test
+	void unchangedSegmentsAreRenderedOnce() throws Exception {
+		var cache = new SegmentRenderCache(this.root, DataSize.ofMegabytes(1));
+		var first = this.render(cache, 1L, audio(10, 1));
+		var second = this.render(cache, 1L, audio(10, 1));
+		Assertions.assertEquals(1, this.renders.get());
+		Assertions.assertEquals(first, second);
+		Assertions.assertEquals(this.workspace, second.getParentFile(), "the rendition should be in the workspace");
+		Assertions.assertEquals("10:1", Files.readString(second.toPath()));
+	}
+
+	@Test
+	void newVersionsOfTheAudioAreRenderedAgainAndTheOldOnesDropped() throws Exception {
+		var cache = new SegmentRenderCache(this.root, DataSize.ofMegabytes(1));
+		var old = this.render(cache, 1L, audio(10, 1));
+		var kept = this.render(cache, 2L, audio(20, 1));
+		var current = this.render(cache, 1L, audio(10, 2));
+		Assertions.assertEquals(3, this.renders.get());
+		Assertions.assertEquals("10:2", Files.readString(current.toPath()));
+		cache.retain(EPISODE, List.of(current, kept));
+		var names = new File(this.root, Long.toString(EPISODE)).list();
+		Assertions.assertNotNull(names);
+		Assertions.assertEquals(2, names.length);
+		Assertions.assertFalse(List.of(names).contains(old.getName()), "the stale rendition should be gone");
+	}
+
+	@Test
+	void leastRecentlyUsedRenditionsAreEvicted() throws Exception {
+		// each rendition is 4 bytes
+		var cache = new SegmentRenderCache(this.root, DataSize.ofBytes(10));
+		var first = this.render(cache, 1L, audio(11, 1));
+		this.render(cache, 2L, audio(12, 1));
+		// first is now the most recently used
+		this.render(cache, 1L, audio(11, 1));
+		this.render(cache, 3L, audio(13, 1));
+		Assertions.assertEquals(3, this.renders.get());
+		Assertions.assertEquals("11:1", Files.readString(first.toPath()), "links should survive evictions");
+		this.render(cache, 1L, audio(11, 1));
+		Assertions.assertEquals(3, this.renders.get(), "the most recently used should have been kept");
+		this.render(cache, 2L, audio(12, 1));
+		Assertions.assertEquals(4, this.renders.get(), "the least recently used should have been evicted");
+	}
+
+	@Test
+	void renditionsSurviveARestart() throws Exception {
+		this.render(new SegmentRenderCache(this.root, DataSize.ofMegabytes(1)), 1L, audio(10, 1));
+		var unfinished = new File(new File(this.root, Long.toString(EPISODE)), "2-20-1.wav.abc.tmp");
+		Files.writeString(unfinished.toPath(), "partial");
+		var restarted = new SegmentRenderCache(this.root, DataSize.ofMegabytes(1));
+		this.render(restarted, 1L, audio(10, 1));
+		Assertions.assertEquals(1, this.renders.get());
+		Assertions.assertFalse(unfinished.exists(), "unfinished renditions should be cleaned up");
+	}
+
+	@Test
+	void failedRendersLeaveNothingBehind() {
+		var cache = new SegmentRenderCache(this.root, DataSize.ofMegabytes(1));
+		Assertions.assertThrows(IllegalStateException.class,
+				() -> cache.render(this.workspace, EPISODE, 1L, audio(10, 1), wav -> {
+					Files.writeString(wav.toPath(), "partial");
+					throw new IllegalStateException("ffmpeg failed");
+				}));
+		var names = new File(this.root, Long.toString(EPISODE)).list();
+		Assertions.assertNotNull(names);
+		Assertions.assertEquals(0, names.length);
+	}
+
+	private File render(SegmentRenderCache cache, Long segmentId, ManagedFile audio) throws Exception {
+		return cache.render(this.workspace, EPISODE, segmentId, audio, wav -> {
+			this.renders.incrementAndGet();
+			Files.writeString(wav.toPath(), audio.id() % 100 + ":" + audio.version());
+		});
+	}
+
+	private static ManagedFile audio(long id, long version) {
+		return new ManagedFile(1L, id, "bucket", "storage", "folder", id + ".mp3", new Date(), true, 42, "audio/mpeg",
+				true, version);
+	}
+
+}
@@ -0,0 +1,144 @@
+package com.joshlong.mogul.api.search;
+
+import com.joshlong.mogul.api.Searchable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+class SearchIndexOutboxTest {
+
+	private static final Duration DEBOUNCE = Duration.ofMinutes(1);
+
+	private static final Duration MAX_DELAY = Duration.ofMinutes(10);
+
+	private static final int MAX_ATTEMPTS = 3;
+
+	// so that this node doesn't drain the rows out from under the outbox we test
+	@MockitoBean
+	SearchIndexOutbox searchIndexOutbox;
+
+	@Autowired
+	JdbcClient db;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	private final SearchService searchService = mock(SearchService.class);
+
+	private SearchIndexOutbox outbox;
+
+	record Note(Long searchableId) implements Searchable {
+	}
+
+	@BeforeEach
+	void reset() {
+		this.db.sql("delete from search_index_outbox").update();
+		this.outbox = new SearchIndexOutbox(this.db, this.transactionTemplate, this.searchService, DEBOUNCE, MAX_DELAY,
+				100, MAX_ATTEMPTS);
+	}
+
+	@Test
+	void searchablesAreOnlyIndexedOnceTheyveSettled() {
+		this.enqueue(1L, DEBOUNCE.multipliedBy(3));
+		this.enqueue(1L, DEBOUNCE.multipliedBy(2));
+		this.enqueue(2L, DEBOUNCE.multipliedBy(3));
+		this.enqueue(2L, DEBOUNCE.dividedBy(2));
+		Assertions.assertEquals(1, this.outbox.drain());
+		verify(this.searchService).indexAll(Note.class, Set.of(1L));
+		Assertions.assertEquals(List.of(2L), this.ids(), "2 changed too recently");
+	}
+
+	@Test
+	void searchablesThatNeverSettleAreIndexedAfterTheMaxDelay() {
+		this.enqueue(1L, MAX_DELAY.plusMinutes(1));
+		this.enqueue(1L, Duration.ZERO);
+		this.enqueue(2L, MAX_DELAY.minusMinutes(1));
+		this.enqueue(2L, Duration.ZERO);
+		Assertions.assertEquals(1, this.outbox.drain());
+		verify(this.searchService).indexAll(Note.class, Set.of(1L));
+		Assertions.assertEquals(List.of(2L), this.ids());
+	}
+
+	@Test
+	void indexedSearchablesAreDeletedFromTheOutbox() {
+		this.enqueue(1L, DEBOUNCE.multipliedBy(2));
+		this.enqueue(1L, DEBOUNCE.multipliedBy(2));
+		Assertions.assertEquals(1, this.outbox.drain());
+		Assertions.assertTrue(this.ids().isEmpty());
+		Assertions.assertEquals(0, this.outbox.drain());
+		verify(this.searchService, times(1)).indexAll(any(), any());
+	}
+
+	@Test
+	void searchablesStayInTheOutboxIfIndexingFails() {
+		when(this.searchService.indexAll(any(), any())).thenThrow(new IllegalStateException("the index is down"));
+		this.enqueue(1L, DEBOUNCE.multipliedBy(2));
+		this.enqueue(2L, DEBOUNCE.multipliedBy(2));
+		Assertions.assertThrows(IllegalStateException.class, () -> this.outbox.drain());
+		Assertions.assertEquals(List.of(1L, 2L), this.ids(), "the delete should have been rolled back");
+	}
+
+	@Test
+	void rejectedSearchablesAreTriedAgain() {
+		when(this.searchService.indexAll(any(), any())).thenReturn(Set.of(2L));
+		this.enqueue(1L, DEBOUNCE.multipliedBy(2));
+		this.enqueue(2L, DEBOUNCE.multipliedBy(2));
+		Assertions.assertEquals(2, this.outbox.drain());
+		Assertions.assertEquals(List.of(2L), this.ids());
+		Assertions.assertEquals(1, this.attempts(2L));
+		Assertions.assertEquals(0, this.outbox.drain(), "the rejected searchable should wait out the debounce again");
+	}
+
+	@Test
+	void rejectedSearchablesAreDroppedAfterTheLastAttempt() {
+		when(this.searchService.indexAll(any(), any())).thenReturn(Set.of(1L));
+		this.enqueue(1L, DEBOUNCE.multipliedBy(2));
+		for (var attempt = 1; attempt < MAX_ATTEMPTS; attempt++) {
+			Assertions.assertEquals(1, this.outbox.drain());
+			Assertions.assertEquals(attempt, this.attempts(1L));
+			this.age(DEBOUNCE.multipliedBy(2));
+		}
+		Assertions.assertEquals(1, this.outbox.drain());
+		Assertions.assertTrue(this.ids().isEmpty(), "there are no attempts left");
+		verify(this.searchService, times(MAX_ATTEMPTS)).indexAll(Note.class, Set.of(1L));
+	}
+
+	private void enqueue(Long id, Duration ago) {
+		this.db.sql("""
+				insert into search_index_outbox (searchable_class, searchable_id, created)
+				values (?, ?, now() - (? * interval '1 millisecond'))
+				""").params(Note.class.getName(), id, ago.toMillis()).update();
+	}
+
+	private void age(Duration by) {
+		this.db.sql("update search_index_outbox set created = created - (? * interval '1 millisecond')")
+			.params(by.toMillis())
+			.update();
+	}
+
+	private List<Long> ids() {
+		return this.db.sql("select distinct searchable_id from search_index_outbox order by searchable_id")
+			.query(Long.class)
+			.list();
+	}
+
+	private int attempts(Long id) {
+		return this.db.sql("select attempts from search_index_outbox where searchable_id = ?")
+			.params(id)
+			.query(Integer.class)
+			.single();
+	}
+
+}
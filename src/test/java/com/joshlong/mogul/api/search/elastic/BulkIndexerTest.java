@@ -0,0 +1,93 @@
+package com.joshlong.mogul.api.search.elastic;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.Mockito.*;
+
+class BulkIndexerTest {
+
+	private final ElasticsearchOperations ops = mock(ElasticsearchOperations.class);
+
+	@Test
+	void batchesAreSentWhenTheyHaveMaxActionsDocuments() {
+		try (var indexer = new BulkIndexer(this.ops, 2, DataSize.ofMegabytes(1), Duration.ofHours(1))) {
+			indexer.add(document(1));
+			verifyNoInteractions(this.ops);
+			indexer.add(document(2));
+			indexer.add(document(3));
+			Assertions.assertEquals(List.of(List.of("1", "2")), this.batches());
+			Assertions.assertEquals(2, indexer.indexed());
+		}
+		Assertions.assertEquals(List.of(List.of("1", "2"), List.of("3")), this.batches(),
+				"whatever is left should be sent on close");
+	}
+
+	@Test
+	void batchesAreSentWhenTheyAddUpToMaxSize() {
+		// a document with no text is 256 bytes, see BulkIndexer#sizeOf
+		var indexer = new BulkIndexer(this.ops, 100, DataSize.ofBytes(256 * 3 + 10), Duration.ofHours(1));
+		indexer.add(document(1));
+		indexer.add(document(2));
+		indexer.add(document(3));
+		verifyNoInteractions(this.ops);
+		indexer.add(document(4));
+		Assertions.assertEquals(List.of(List.of("1", "2", "3", "4")), this.batches());
+	}
+
+	@Test
+	void batchesAreSentWhenTheOldestDocumentHasWaitedMaxAge() throws Exception {
+		var maxAge = Duration.ofMillis(100);
+		var indexer = new BulkIndexer(this.ops, 100, DataSize.ofMegabytes(1), maxAge);
+		indexer.add(document(1));
+		Thread.sleep(maxAge.multipliedBy(2));
+		verifyNoInteractions(this.ops);
+		indexer.add(document(2));
+		Assertions.assertEquals(List.of(List.of("1", "2")), this.batches(),
+				"the age is checked as documents are added");
+		indexer.add(document(3));
+		Assertions.assertEquals(1, this.batches().size(), "the clock starts again with the next batch");
+	}
+
+	@Test
+	void rejectedDocumentsDontFailTheirBatch() {
+		when(this.ops.bulkIndex(anyList(), eq(Document.class)))
+			.thenThrow(new BulkFailureException("some documents were rejected",
+					Map.of("2", new BulkFailureException.FailureDetails(400, "mapper_parsing_exception"))));
+		var indexer = new BulkIndexer(this.ops, 3, DataSize.ofMegabytes(1), Duration.ofHours(1));
+		indexer.add(document(1));
+		indexer.add(document(2));
+		indexer.add(document(3));
+		Assertions.assertEquals(2, indexer.indexed());
+		Assertions.assertEquals(Set.of("2"), indexer.failures().keySet());
+		Assertions.assertTrue(indexer.failures().get("2").contains("mapper_parsing_exception"));
+		indexer.close();
+		Assertions.assertEquals(1, this.batches().size(), "the rejected batch should not be sent again");
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<List<String>> batches() {
+		var captor = ArgumentCaptor.forClass(List.class);
+		verify(this.ops, atLeast(0)).bulkIndex(captor.capture(), eq(Document.class));
+		return captor.getAllValues()
+			.stream()
+			.map(queries -> ((List<IndexQuery>) queries).stream().map(IndexQuery::getId).toList())
+			.toList();
+	}
+
+	private static Document document(long id) {
+		return new Document(Long.toString(id), id, "", Instant.now(), "", "episode", "episode-" + id);
+	}
+
+}
@@ -0,0 +1,153 @@
+package com.joshlong.mogul.api.search.lucene;
+
+import com.joshlong.mogul.api.Searchable;
+import com.joshlong.mogul.api.SearchableResolver;
+import com.joshlong.mogul.api.SearchableResult;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+class LuceneSearchServiceTest {
+
+	record Episode(Long searchableId, long podcastId, String title, String text) implements Searchable {
+	}
+
+	static class Episodes implements SearchableResolver<Episode> {
+
+		private final Map<Long, Episode> episodes = new ConcurrentHashMap<>();
+
+		void save(Episode episode) {
+			this.episodes.put(episode.searchableId(), episode);
+		}
+
+		@Override
+		public boolean supports(Class<?> clazz) {
+			return Episode.class.equals(clazz);
+		}
+
+		@Override
+		public Episode find(Long key) {
+			return this.episodes.get(key);
+		}
+
+		@Override
+		public List<SearchableResult<Episode>> results(List<Long> searchableIds) {
+			return searchableIds.stream()
+				.map(this.episodes::get)
+				.filter(Objects::nonNull)
+				.map(episode -> new SearchableResult<>(episode.searchableId(), episode, episode.title(), episode.text(),
+						episode.podcastId(), new Date(), "episode"))
+				.toList();
+		}
+
+	}
+
+	@TempDir
+	Path directory;
+
+	private final Episodes episodes = new Episodes();
+
+	private LuceneSearchService searchService;
+
+	@BeforeEach
+	void open() throws Exception {
+		this.searchService = new LuceneSearchService(List.of(this.episodes), this.directory.toFile());
+	}
+
+	@AfterEach
+	void close() throws Exception {
+		this.searchService.destroy();
+	}
+
+	@Test
+	void search() {
+		this.index(new Episode(1L, 1, "cloud native java", "all about kubernetes and spring boot"),
+				new Episode(2L, 2, "a bootiful podcast", "this week, we talk to a friend about graalvm"),
+				new Episode(3L, 3, "the history of coffee", "nothing to do with java at all"));
+		Assertions.assertEquals(List.of(1L), this.search("kubernetes"));
+		Assertions.assertEquals(List.of(2L), this.search("graalvm"));
+		Assertions.assertTrue(this.search("rust").isEmpty());
+		Assertions.assertTrue(this.search("").isEmpty(), "no terms match nothing");
+	}
+
+	@Test
+	void misspellingsStillMatch() {
+		this.index(new Episode(1L, 1, "cloud native java", "all about kubernetes and spring boot"));
+		Assertions.assertEquals(List.of(1L), this.search("kubernetis"));
+		Assertions.assertEquals(List.of(1L), this.search("clowd"));
+	}
+
+	@Test
+	void exactMatchesRankAboveFuzzyOnes() {
+		this.index(new Episode(1L, 1, "a talk", "we sprint through the release"),
+				new Episode(2L, 2, "another talk", "we love spring, of course"));
+		Assertions.assertEquals(List.of(2L, 1L), this.search("spring"));
+	}
+
+	@Test
+	void reindexingReplacesTheDocument() {
+		this.index(new Episode(1L, 1, "an episode", "all about java"));
+		this.index(new Episode(1L, 1, "an episode", "all about kotlin"));
+		Assertions.assertTrue(this.search("java").isEmpty(), "the old text should be gone");
+		Assertions.assertEquals(List.of(1L), this.search("kotlin"));
+	}
+
+	@Test
+	void onlyTheBestMatchForEachAggregate() {
+		this.index(new Episode(1L, 1, "part one", "graalvm"), new Episode(2L, 1, "part two", "graalvm graalvm"),
+				new Episode(3L, 2, "another podcast", "graalvm native images"));
+		var results = this.search("graalvm");
+		Assertions.assertEquals(2, results.size(), "one result for each of the two podcasts");
+		Assertions.assertTrue(results.contains(3L));
+	}
+
+	@Test
+	void pages() {
+		for (var i = 1L; i <= 3; i++)
+			this.index(new Episode(i, i, "episode " + i, "about graalvm"));
+		var first = this.searchService.search("graalvm", Map.of(), 2, null);
+		Assertions.assertEquals(2, first.results().size());
+		Assertions.assertNotNull(first.next());
+		var second = this.searchService.search("graalvm", Map.of(), null, first.next());
+		Assertions.assertEquals(1, second.results().size());
+		Assertions.assertNull(second.next());
+	}
+
+	@Test
+	void whatTheOutboxIndexesIsCommitted() throws Exception {
+		this.episodes.save(new Episode(1L, 1, "an episode", "all about java"));
+		this.episodes.save(new Episode(2L, 2, "another episode", "all about kotlin"));
+		var rejected = this.searchService.indexAll(Episode.class, List.of(1L, 2L));
+		Assertions.assertTrue(rejected.isEmpty());
+		// a reader that isn't near-real-time sees only what's been committed
+		try (var reader = DirectoryReader.open(FSDirectory.open(this.directory))) {
+			Assertions.assertEquals(2, reader.numDocs());
+		}
+	}
+
+	private void index(Episode... episodes) {
+		for (var episode : episodes)
+			this.episodes.save(episode);
+		this.searchService.indexAll(List.of(episodes));
+	}
+
+	private List<Long> search(String query) {
+		return this.searchService.<Episode>search(query, Map.of(), null, null)
+			.results()
+			.stream()
+			.map(SearchableResult::searchableId)
+			.toList();
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.joshlong.mogul.api.transcripts;
+
+import com.joshlong.mogul.api.Transcribable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@SpringBootTest
+class DefaultTranscriptServiceTest {
+
+	private static final Long MOGUL_ID = 1L;
+
+	@Autowired
+	JdbcClient db;
+
+	@Autowired
+	TranscriptService transcriptService;
+
+	// two kinds of transcribable whose ids overlap
+	record First(Long transcribableId) implements Transcribable {
+	}
+
+	record Second(Long transcribableId) implements Transcribable {
+	}
+
+	@BeforeEach
+	void reset() {
+		this.db.sql("delete from transcript where payload_class in (?, ?)")
+			.params(First.class.getName(), Second.class.getName())
+			.update();
+	}
+
+	@Test
+	void transcriptsAreCreatedOnlyForNewPayloads() {
+		var existing = this.transcriptService.transcript(MOGUL_ID, new First(1L));
+		var transcripts = this.transcriptService.transcripts(MOGUL_ID,
+				List.of(new First(1L), new First(2L), new First(3L)));
+		Assertions.assertEquals(3, transcripts.size());
+		Assertions.assertEquals(existing.id(), transcripts.get(new First(1L)).id(), "the existing one is reused");
+		for (var entry : transcripts.entrySet())
+			Assertions.assertEquals(String.valueOf(entry.getKey().transcribableId()), entry.getValue().payload());
+		var again = this.transcriptService.transcripts(MOGUL_ID, List.of(new First(2L), new First(3L)));
+		Assertions.assertEquals(transcripts.get(new First(2L)).id(), again.get(new First(2L)).id());
+		Assertions.assertEquals(transcripts.get(new First(3L)).id(), again.get(new First(3L)).id());
+		Assertions.assertEquals(3, this.count(First.class));
+	}
+
+	@Test
+	void transcriptsOfDifferentClassesWithTheSameIdAreKeptApart() {
+		var first = new First(1L);
+		var second = new Second(1L);
+		var transcripts = this.transcriptService.transcripts(MOGUL_ID, List.of(first, second));
+		Assertions.assertNotEquals(transcripts.get(first).id(), transcripts.get(second).id());
+		this.transcriptService.writeTranscripts(Map.of(first, "the first", second, "the second"));
+		var read = this.transcriptService.readTranscripts(MOGUL_ID, List.of(first, second));
+		Assertions.assertEquals(Map.of(first, "the first", second, "the second"), read);
+		Assertions.assertTrue(this.transcriptService.readTranscripts(MOGUL_ID + 1, List.of(first, second)).isEmpty(),
+				"the transcripts belong to another mogul");
+	}
+
+	@Test
+	void duplicatesAreCollapsed(@Autowired TransactionTemplate tx) throws Exception {
+		var migration = new ClassPathResource("db/migration/V40__transcript_payload_unique.sql")
+			.getContentAsString(StandardCharsets.UTF_8);
+		var collapse = migration.substring(0, migration.indexOf("create unique index"));
+		var now = Instant.now();
+		tx.executeWithoutResult(status -> {
+			// so that we can put the duplicates back, just for this transaction
+			status.setRollbackOnly();
+			this.db.sql("drop index transcript_payload_class_payload_idx").update();
+			// the newest transcribed one wins over older and untranscribed ones
+			this.insert(1L, null, null);
+			this.insert(1L, "old", now.minus(1, ChronoUnit.DAYS));
+			var newest = this.insert(1L, "new", now);
+			// with nothing transcribed, the oldest one wins
+			var oldest = this.insert(2L, null, null);
+			this.insert(2L, null, null);
+			var unique = this.insert(3L, null, null);
+			this.db.sql(collapse).update();
+			var left = this.db.sql("select id from transcript where payload_class = ?")
+				.params(First.class.getName())
+				.query(Long.class)
+				.set();
+			Assertions.assertEquals(Set.of(newest, oldest, unique), left);
+		});
+	}
+
+	private Long insert(Long payload, String transcript, Instant transcribed) {
+		return this.db.sql("""
+				insert into transcript(mogul_id, payload_class, payload, transcript, transcribed)
+				values (?, ?, ?, ?, ?)
+				returning id
+				""")
+			.params(MOGUL_ID, First.class.getName(), String.valueOf(payload), transcript,
+					transcribed == null ? null : Timestamp.from(transcribed))
+			.query(Long.class)
+			.single();
+	}
+
+	private long count(Class<? extends Transcribable> clazz) {
+		return this.db.sql("select count(*) from transcript where payload_class = ?")
+			.params(clazz.getName())
+			.query(Long.class)
+			.single();
+	}
+
+}
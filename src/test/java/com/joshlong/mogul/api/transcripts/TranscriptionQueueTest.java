@@ -0,0 +1,177 @@
+package com.joshlong.mogul.api.transcripts;
+
+import com.joshlong.mogul.api.Transcribable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static com.joshlong.mogul.api.transcripts.TranscriptionRequest.Priority.BULK;
+import static com.joshlong.mogul.api.transcripts.TranscriptionRequest.Priority.INTERACTIVE;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+class TranscriptionQueueTest {
+
+	// so that this node doesn't claim the requests out from under the queues we test
+	@MockitoBean
+	TranscriptionQueue transcriptionQueue;
+
+	@Autowired
+	JdbcClient db;
+
+	private final TranscriptService transcriptService = mock(TranscriptService.class);
+
+	record Audio(Long transcribableId) implements Transcribable {
+	}
+
+	@BeforeEach
+	void reset() {
+		this.db.sql("delete from transcription_request").update();
+		when(this.transcriptService.transcribable(anyLong(), any()))
+			.thenAnswer(invocation -> new Audio(invocation.getArgument(0)));
+	}
+
+	@Test
+	void interactiveRequestsAreClaimedFirstAndMogulsTakeTurns() {
+		var queue = this.queue(Duration.ofMinutes(1), 3);
+		this.enqueue(queue, 1L, 1L, BULK);
+		this.enqueue(queue, 1L, 2L, INTERACTIVE);
+		this.enqueue(queue, 1L, 3L, INTERACTIVE);
+		this.enqueue(queue, 2L, 4L, INTERACTIVE);
+		Assertions.assertEquals(Set.of(2L, 4L), ids(queue.claim(2)), "each mogul's first interactive request");
+		Assertions.assertEquals(Set.of(3L), ids(queue.claim(1)));
+		Assertions.assertEquals(Set.of(1L), ids(queue.claim(5)));
+		Assertions.assertTrue(queue.claim(5).isEmpty(), "everything should be leased");
+		Assertions.assertEquals(4, queue.held());
+	}
+
+	@Test
+	void nodesNeverClaimTheSameRequest() throws Exception {
+		var one = this.queue(Duration.ofMinutes(1), 3);
+		var two = this.queue(Duration.ofMinutes(1), 3);
+		for (var i = 0L; i < 20; i++)
+			this.enqueue(one, i % 3, i, INTERACTIVE);
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			var first = executor.submit(() -> ids(one.claim(15)));
+			var second = executor.submit(() -> ids(two.claim(15)));
+			var all = new HashSet<>(first.get());
+			all.addAll(second.get());
+			Assertions.assertEquals(20, all.size(), "every request should be claimed");
+			Assertions.assertEquals(20, first.get().size() + second.get().size(), "no request claimed twice");
+		}
+	}
+
+	@Test
+	void expiredLeasesAreClaimedAgain() throws Exception {
+		var lease = Duration.ofMillis(500);
+		var dead = this.queue(lease, 3);
+		var alive = this.queue(lease, 3);
+		this.enqueue(dead, 1L, 1L, INTERACTIVE);
+		Assertions.assertEquals(1, dead.claim(1).size());
+		Assertions.assertTrue(alive.claim(1).isEmpty(), "the lease hasn't expired");
+		Thread.sleep(lease.multipliedBy(2));
+		var leases = alive.claim(1);
+		Assertions.assertEquals(1, leases.size(), "the lease should have expired");
+		Assertions.assertEquals(2, leases.getFirst().attempts());
+	}
+
+	@Test
+	void heartbeatsRenewLeases() throws Exception {
+		var lease = Duration.ofMillis(500);
+		var holder = this.queue(lease, 3);
+		var other = this.queue(lease, 3);
+		this.enqueue(holder, 1L, 1L, INTERACTIVE);
+		Assertions.assertEquals(1, holder.claim(1).size());
+		for (var i = 0; i < 4; i++) {
+			Thread.sleep(lease.dividedBy(2));
+			holder.heartbeat();
+		}
+		Assertions.assertTrue(other.claim(1).isEmpty(), "the lease should have been renewed");
+	}
+
+	@Test
+	void requestsAreDroppedAfterTheLastAttempt() throws Exception {
+		var lease = Duration.ofMillis(200);
+		var queue = this.queue(lease, 2);
+		this.enqueue(queue, 1L, 1L, INTERACTIVE);
+		for (var attempt = 1; attempt <= 2; attempt++) {
+			var leases = queue.claim(1);
+			Assertions.assertEquals(1, leases.size());
+			Assertions.assertEquals(attempt, leases.getFirst().attempts());
+			queue.fail(leases.getFirst(), new IllegalStateException("the model is down"));
+			Thread.sleep(lease.multipliedBy(2));
+		}
+		Assertions.assertTrue(queue.claim(1).isEmpty(), "there are no attempts left");
+		Assertions.assertEquals(0, this.count());
+		Assertions.assertEquals(0, queue.held());
+	}
+
+	@Test
+	void completedRequestsAreDeleted() {
+		var queue = this.queue(Duration.ofMinutes(1), 3);
+		this.enqueue(queue, 1L, 1L, INTERACTIVE);
+		var leases = queue.claim(1);
+		Assertions.assertEquals(1, queue.held());
+		queue.complete(leases.getFirst());
+		Assertions.assertEquals(0, queue.held());
+		Assertions.assertEquals(0, this.count());
+	}
+
+	@Test
+	void enqueueingTheSameTranscribableTwiceWaitsOnce() {
+		var queue = this.queue(Duration.ofMinutes(1), 3);
+		this.enqueue(queue, 1L, 1L, BULK);
+		this.enqueue(queue, 1L, 1L, BULK);
+		Assertions.assertEquals(1, this.count(), "a backfill run twice should only queue one request");
+		this.enqueue(queue, 1L, 2L, BULK);
+		this.enqueue(queue, 1L, 1L, INTERACTIVE);
+		this.enqueue(queue, 1L, 1L, BULK);
+		Assertions.assertEquals(2, this.count());
+		var leases = queue.claim(1);
+		Assertions.assertEquals(Set.of(1L), ids(leases), "the interactive request should have raised the bulk one");
+		Assertions.assertEquals(INTERACTIVE, leases.getFirst().request().priority(),
+				"a bulk request should never lower an interactive one");
+	}
+
+	@Test
+	void transcribablesBeingTranscribedMayBeQueuedAgain() {
+		var queue = this.queue(Duration.ofMinutes(1), 3);
+		this.enqueue(queue, 1L, 1L, INTERACTIVE);
+		var leases = queue.claim(1);
+		// the audio changed while we were transcribing the old audio
+		this.enqueue(queue, 1L, 1L, INTERACTIVE);
+		this.enqueue(queue, 1L, 1L, INTERACTIVE);
+		Assertions.assertEquals(2, this.count());
+		queue.complete(leases.getFirst());
+		Assertions.assertEquals(Set.of(1L), ids(queue.claim(1)));
+	}
+
+	private TranscriptionQueue queue(Duration lease, int maxAttempts) {
+		return new TranscriptionQueue(this.db, this.transcriptService, lease, maxAttempts);
+	}
+
+	private void enqueue(TranscriptionQueue queue, Long mogulId, Long id, TranscriptionRequest.Priority priority) {
+		queue.enqueue(new TranscriptionRequest(mogulId, new Audio(id), Map.of(), priority));
+	}
+
+	private long count() {
+		return this.db.sql("select count(*) from transcription_request").query(Long.class).single();
+	}
+
+	private static Set<Long> ids(List<TranscriptionQueue.Lease> leases) {
+		return leases.stream().map(lease -> lease.request().payload().transcribableId()).collect(Collectors.toSet());
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.joshlong.mogul.api.transcripts;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.joshlong.mogul.api.transcripts.TranscriptionRequest.Priority.BULK;
+import static com.joshlong.mogul.api.transcripts.TranscriptionRequest.Priority.INTERACTIVE;
+
+class TranscriptionSchedulerTest {
+
+	private final List<String> order = new CopyOnWriteArrayList<>();
+
+	// holds the only slot, so that everything else queues up behind it
+	private final CountDownLatch gate = new CountDownLatch(1);
+
+	@Test
+	void interactiveRequestsGoBeforeBulkOnes() throws Exception {
+		var scheduler = new TranscriptionScheduler(1, new SimpleMeterRegistry());
+		var done = new CountDownLatch(3);
+		scheduler.submit(request(0L, INTERACTIVE), this::waitForTheGate);
+		scheduler.submit(request(1L, BULK), this.record("bulk #1", done));
+		scheduler.submit(request(2L, BULK), this.record("bulk #2", done));
+		scheduler.submit(request(1L, INTERACTIVE), this.record("interactive", done));
+		this.gate.countDown();
+		Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(List.of("interactive", "bulk #1", "bulk #2"), this.order);
+	}
+
+	@Test
+	void mogulsTakeTurns() throws Exception {
+		var scheduler = new TranscriptionScheduler(1, new SimpleMeterRegistry());
+		var done = new CountDownLatch(5);
+		scheduler.submit(request(0L, BULK), this::waitForTheGate);
+		for (var i = 1; i <= 3; i++)
+			scheduler.submit(request(1L, BULK), this.record("a" + i, done));
+		for (var i = 1; i <= 2; i++)
+			scheduler.submit(request(2L, BULK), this.record("b" + i, done));
+		this.gate.countDown();
+		Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(List.of("a1", "b1", "a2", "b2", "a3"), this.order, "each mogul should take a turn");
+	}
+
+	@Test
+	void noMoreThanTheConcurrencyRunAtOnce() throws Exception {
+		var concurrency = 2;
+		var scheduler = new TranscriptionScheduler(concurrency, new SimpleMeterRegistry());
+		var running = new AtomicInteger();
+		var maxRunning = new AtomicInteger();
+		var done = new CountDownLatch(8);
+		for (var i = 0; i < 8; i++)
+			scheduler.submit(request((long) i, INTERACTIVE), () -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(20);
+				} //
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} //
+				finally {
+					running.decrementAndGet();
+					done.countDown();
+				}
+			});
+		Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+		Assertions.assertTrue(maxRunning.get() <= concurrency, "there were " + maxRunning.get() + " running");
+	}
+
+	@Test
+	void failuresFreeTheirSlot() throws Exception {
+		var scheduler = new TranscriptionScheduler(1, new SimpleMeterRegistry());
+		var done = new CountDownLatch(1);
+		scheduler.submit(request(1L, INTERACTIVE), () -> {
+			throw new IllegalStateException("the model is down");
+		});
+		scheduler.submit(request(1L, INTERACTIVE), this.record("next", done));
+		Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+	}
+
+	private void waitForTheGate() {
+		try {
+			this.gate.await();
+		} //
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private Runnable record(String name, CountDownLatch done) {
+		return () -> {
+			this.order.add(name);
+			done.countDown();
+		};
+	}
+
+	private static TranscriptionRequest request(Long mogulId, TranscriptionRequest.Priority priority) {
+		return new TranscriptionRequest(mogulId, null, Map.of(), priority);
+	}
+
+}
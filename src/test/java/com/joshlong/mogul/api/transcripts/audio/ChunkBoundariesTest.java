@@ -0,0 +1,126 @@
+package com.joshlong.mogul.api.transcripts.audio;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+class ChunkBoundariesTest {
+
+	private static final int SAMPLE_RATE = SilenceDetector.SAMPLE_RATE;
+
+	private static final Duration MAX_SHIFT = Duration.ofSeconds(5);
+
+	private final List<Long> cuts = new ArrayList<>();
+
+	// two chunks, so one cut, at 50s
+	private final ChunkBoundaries boundaries = new ChunkBoundaries(Duration.ofSeconds(100), 2, MAX_SHIFT,
+			this.cuts::add);
+
+	@Test
+	void cutsAreMadeAsSoonAsNoGapCouldBeCloser() {
+		this.boundaries.silence(silence(48_000));
+		this.boundaries.passed(51_999);
+		Assertions.assertTrue(this.cuts.isEmpty(), "a gap starting before 52s would be closer");
+		this.boundaries.passed(52_000);
+		Assertions.assertEquals(List.of(48_000L), this.cuts);
+		this.boundaries.finish();
+		Assertions.assertEquals(List.of(48_000L), this.cuts);
+	}
+
+	@Test
+	void theClosestGapWins() {
+		this.boundaries.silence(silence(46_000));
+		this.boundaries.silence(silence(50_500));
+		this.boundaries.passed(51_000);
+		Assertions.assertEquals(List.of(50_500L), this.cuts);
+	}
+
+	@Test
+	void withoutAGapCloseEnoughWeCutWhereWePlanned() {
+		this.boundaries.silence(silence(40_000));
+		this.boundaries.passed(54_999);
+		Assertions.assertTrue(this.cuts.isEmpty());
+		this.boundaries.passed(55_000);
+		Assertions.assertEquals(List.of(50_000L), this.cuts);
+	}
+
+	@Test
+	void whateverIsLeftIsCutWhenTheFileEnds() {
+		var cuts = new ArrayList<Long>();
+		var boundaries = new ChunkBoundaries(Duration.ofSeconds(100), 4, MAX_SHIFT, cuts::add);
+		boundaries.silence(silence(26_000));
+		boundaries.passed(30_000);
+		Assertions.assertEquals(List.of(26_000L), cuts);
+		boundaries.silence(silence(49_000));
+		boundaries.finish();
+		Assertions.assertEquals(List.of(26_000L, 49_000L, 75_000L), cuts);
+	}
+
+	@Test
+	void theFirstChunkIsCutLongBeforeTheFileIsDecoded() throws Exception {
+		// a minute of tone, with gaps at 19s and 41s, to be cut into three
+		var pcm = new ByteArrayOutputStream();
+		var samples = tone(pcm, 19_000, 0);
+		samples = silence(pcm, 1_000, samples);
+		samples = tone(pcm, 21_000, samples);
+		samples = silence(pcm, 1_000, samples);
+		tone(pcm, 18_000, samples);
+		var cutWhen = new ArrayList<Float>();
+		var position = new float[1];
+		var boundaries = new ChunkBoundaries(Duration.ofSeconds(60), 3, MAX_SHIFT, cut -> {
+			this.cuts.add(cut);
+			cutWhen.add(position[0]);
+		});
+		SilenceDetector.detect(new ByteArrayInputStream(pcm.toByteArray()), SAMPLE_RATE,
+				new SilenceDetector.Listener() {
+
+					@Override
+					public void silence(SilenceDetector.Silence silence) {
+						boundaries.silence(silence);
+					}
+
+					@Override
+					public void passed(float milliseconds) {
+						position[0] = milliseconds;
+						boundaries.passed(milliseconds);
+					}
+				});
+		boundaries.finish();
+		Assertions.assertEquals(2, this.cuts.size());
+		Assertions.assertEquals(19_000, this.cuts.get(0), 20);
+		Assertions.assertEquals(41_000, this.cuts.get(1), 20);
+		// each cut is made a moment after the gap nearest to it, not at the end of the
+		// file
+		Assertions.assertEquals(21_000, cutWhen.get(0), 100);
+		Assertions.assertEquals(42_000, cutWhen.get(1), 100);
+	}
+
+	private static SilenceDetector.Silence silence(float start) {
+		return new SilenceDetector.Silence(start, start + 1_000, 1_000);
+	}
+
+	private static long tone(ByteArrayOutputStream pcm, int millis, long offset) {
+		var count = SAMPLE_RATE * millis / 1000;
+		for (var i = 0; i < count; i++) {
+			var sample = (short) (10_000 * Math.sin(2 * Math.PI * 440 * (offset + i) / SAMPLE_RATE));
+			pcm.write(sample & 0xff);
+			pcm.write((sample >> 8) & 0xff);
+		}
+		return offset + count;
+	}
+
+	private static long silence(ByteArrayOutputStream pcm, int millis, long offset) {
+		var count = SAMPLE_RATE * millis / 1000;
+		for (var i = 0; i < count; i++) {
+			pcm.write(0);
+			pcm.write(0);
+		}
+		return offset + count;
+	}
+
+}
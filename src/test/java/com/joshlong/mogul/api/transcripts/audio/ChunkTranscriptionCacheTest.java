@@ -0,0 +1,121 @@
+package com.joshlong.mogul.api.transcripts.audio;
+
+import com.openai.models.audio.AudioResponseFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.openai.OpenAiAudioTranscriptionModel;
+import org.springframework.ai.openai.OpenAiAudioTranscriptionOptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SpringBootTest
+class ChunkTranscriptionCacheTest {
+
+	// a model no real transcript will ever be cached under
+	private final String model = "test-" + UUID.randomUUID();
+
+	private final AtomicInteger calls = new AtomicInteger();
+
+	@Autowired
+	JdbcClient db;
+
+	@AfterEach
+	void cleanUp() {
+		this.db.sql("delete from transcription_chunk_cache where model = ?").params(this.model).update();
+	}
+
+	@Test
+	void chunksAreOnlyTranscribedOnce() throws Exception {
+		var cache = new ChunkTranscriptionCache(this.db, this.model, "", Duration.ofDays(1));
+		Assertions.assertEquals("hello", cache.transcribe(chunk("a"), () -> this.transcript("hello")));
+		Assertions.assertEquals("hello", cache.transcribe(chunk("a"), () -> this.transcript("goodbye")));
+		Assertions.assertEquals(1, this.calls.get());
+		Assertions.assertEquals("goodbye", cache.transcribe(chunk("b"), () -> this.transcript("goodbye")),
+				"different bytes are a miss");
+		Assertions.assertEquals(2, this.calls.get());
+	}
+
+	@Test
+	void failedChunksAreNotCached() throws Exception {
+		var cache = new ChunkTranscriptionCache(this.db, this.model, "", Duration.ofDays(1));
+		Assertions.assertEquals("", cache.transcribe(chunk("a"), () -> this.transcript("")));
+		Assertions.assertEquals("hello", cache.transcribe(chunk("a"), () -> this.transcript("hello")));
+		Assertions.assertEquals(2, this.calls.get());
+	}
+
+	@Test
+	void otherOptionsAreAMiss() throws Exception {
+		new ChunkTranscriptionCache(this.db, this.model, "language=en", Duration.ofDays(1)).transcribe(chunk("a"),
+				() -> this.transcript("hello"));
+		var french = new ChunkTranscriptionCache(this.db, this.model, "language=fr", Duration.ofDays(1));
+		Assertions.assertEquals("bonjour", french.transcribe(chunk("a"), () -> this.transcript("bonjour")));
+		Assertions.assertEquals(2, this.calls.get());
+	}
+
+	@Test
+	void expiredTranscriptsAreNotReadAndArePurged() throws Exception {
+		var cache = new ChunkTranscriptionCache(this.db, this.model, "", Duration.ofDays(1));
+		cache.transcribe(chunk("a"), () -> this.transcript("hello"));
+		this.db.sql("update transcription_chunk_cache set created = now() - interval '2 days' where model = ?")
+			.params(this.model)
+			.update();
+		Assertions.assertEquals("hello again", cache.transcribe(chunk("a"), () -> this.transcript("hello again")));
+		Assertions.assertEquals(2, this.calls.get(), "the expired transcript should not have been read");
+		cache.transcribe(chunk("b"), () -> this.transcript("goodbye"));
+		this.db.sql("update transcription_chunk_cache set created = now() - interval '2 days' where model = ?")
+			.params(this.model)
+			.update();
+		Assertions.assertTrue(cache.purgeExpired() >= 2);
+		Assertions.assertEquals(0,
+				this.db.sql("select count(*) from transcription_chunk_cache where model = ?")
+					.params(this.model)
+					.query(Integer.class)
+					.single());
+	}
+
+	@Test
+	void theKeyIsEverythingTheModelIsConfiguredWith() {
+		var english = OpenAiAudioTranscriptionOptions.builder()
+			.language("en")
+			.temperature(0f)
+			.responseFormat(AudioResponseFormat.TEXT)
+			.build();
+		var french = OpenAiAudioTranscriptionOptions.builder().from(english).language("fr").build();
+		var warmer = OpenAiAudioTranscriptionOptions.builder().from(english).temperature(0.5f).build();
+		var prompted = OpenAiAudioTranscriptionOptions.builder().from(english).prompt("a podcast").build();
+		var keys = Set.of(ChunkTranscriptionCache.keyOf(english), ChunkTranscriptionCache.keyOf(french),
+				ChunkTranscriptionCache.keyOf(warmer), ChunkTranscriptionCache.keyOf(prompted));
+		Assertions.assertEquals(4, keys.size());
+		Assertions.assertEquals(ChunkTranscriptionCache.keyOf(english),
+				ChunkTranscriptionCache.keyOf(OpenAiAudioTranscriptionOptions.builder().from(english).build()));
+		Assertions.assertEquals(OpenAiAudioTranscriptionOptions.DEFAULT_TRANSCRIPTION_MODEL,
+				ChunkTranscriptionCache.modelOf(OpenAiAudioTranscriptionOptions.builder().build()));
+	}
+
+	@Test
+	void theKeyComesFromTheModelTheTranscriberCalls(@Autowired ChunkTranscriptionCache cache,
+			@Autowired OpenAiAudioTranscriptionModel transcriptModel) {
+		var options = transcriptModel.getOptions();
+		Assertions.assertEquals(ChunkTranscriptionCache.modelOf(options), ReflectionTestUtils.getField(cache, "model"));
+		Assertions.assertEquals(ChunkTranscriptionCache.keyOf(options), ReflectionTestUtils.getField(cache, "options"));
+	}
+
+	private String transcript(String transcript) {
+		this.calls.incrementAndGet();
+		return transcript;
+	}
+
+	private static ByteArrayResource chunk(String bytes) {
+		return new ByteArrayResource(bytes.getBytes());
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.joshlong.mogul.api.transcripts.audio;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+class SilenceDetectorTest {
+
+	private static final int SAMPLE_RATE = SilenceDetector.SAMPLE_RATE;
+
+	@Test
+	void detect() throws Exception {
+		// tone, a second of silence, tone, a pause too short to count, tone, trailing
+		// silence
+		var pcm = new ByteArrayOutputStream();
+		var samples = this.tone(pcm, 1000, 0);
+		samples = this.silence(pcm, 1000, samples);
+		samples = this.tone(pcm, 1000, samples);
+		samples = this.silence(pcm, 200, samples);
+		samples = this.tone(pcm, 1000, samples);
+		this.silence(pcm, 700, samples);
+
+		// reads of an odd length split samples across reads
+		var in = new FilterInputStream(new ByteArrayInputStream(pcm.toByteArray())) {
+			@Override
+			public int read(byte[] b) throws IOException {
+				return super.read(b, 0, 777);
+			}
+		};
+		var silences = new ArrayList<SilenceDetector.Silence>();
+		var duration = SilenceDetector.detect(in, SAMPLE_RATE, silences::add);
+
+		Assertions.assertEquals(4900, duration);
+		Assertions.assertEquals(2, silences.size());
+		Assertions.assertEquals(1000, silences.get(0).start(), 20);
+		Assertions.assertEquals(2000, silences.get(0).end(), 20);
+		Assertions.assertEquals(4200, silences.get(1).start(), 20);
+		Assertions.assertEquals(4900, silences.get(1).end(), 20);
+	}
+
+	private long tone(ByteArrayOutputStream pcm, int millis, long offset) {
+		var count = SAMPLE_RATE * millis / 1000;
+		for (var i = 0; i < count; i++) {
+			var sample = (short) (10_000 * Math.sin(2 * Math.PI * 440 * (offset + i) / SAMPLE_RATE));
+			pcm.write(sample & 0xff);
+			pcm.write((sample >> 8) & 0xff);
+		}
+		return offset + count;
+	}
+
+	private long silence(ByteArrayOutputStream pcm, int millis, long offset) {
+		var count = SAMPLE_RATE * millis / 1000;
+		for (var i = 0; i < count; i++) {
+			pcm.write(0);
+			pcm.write(0);
+		}
+		return offset + count;
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.joshlong.mogul.api.workspaces;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+
+class WorkspacesTest {
+
+	private static final Duration ORPHAN_TTL = Duration.ofHours(1);
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@TempDir
+	File root;
+
+	@Test
+	void theDirectoryIsDeletedWhenTheLastReferenceIsClosed() {
+		var workspaces = this.workspaces(DataSize.ofMegabytes(1));
+		var workspace = workspaces.create("test");
+		var directory = workspace.directory();
+		Assertions.assertTrue(directory.isDirectory());
+		Assertions.assertEquals(new File(this.root, "test"), directory.getParentFile());
+		Assertions.assertEquals(1, this.registry.get("mogul.workspaces.active").gauge().value());
+		Assertions.assertSame(workspace, workspace.retain());
+		workspace.close();
+		Assertions.assertTrue(directory.isDirectory(), "another reference is still open");
+		workspace.close();
+		Assertions.assertFalse(directory.exists());
+		Assertions.assertEquals(0, this.registry.get("mogul.workspaces.active").gauge().value());
+		Assertions.assertThrows(IllegalStateException.class, workspace::retain);
+		Assertions.assertThrows(IllegalStateException.class, workspace::close);
+	}
+
+	@Test
+	void workspacesAreRefusedOnceTheQuotaIsUsed() throws Exception {
+		var workspaces = this.workspaces(DataSize.ofBytes(10));
+		var workspace = workspaces.create("test");
+		Files.write(workspace.file("big").toPath(), new byte[20]);
+		workspaces.reap();
+		Assertions.assertEquals(20, this.registry.get("mogul.workspaces.bytes").gauge().value());
+		Assertions.assertEquals(20,
+				this.registry.get("mogul.workspaces.purpose.bytes").tag("purpose", "test").gauge().value());
+		Assertions.assertThrows(IllegalStateException.class, () -> workspaces.create("test"));
+		workspace.close();
+		// the stale measurement is taken again before refusing
+		workspaces.create("test").close();
+	}
+
+	@Test
+	void idleOrphansAreReaped() throws Exception {
+		var workspaces = this.workspaces(DataSize.ofMegabytes(1));
+		var idle = this.orphan("idle", Instant.now().minus(ORPHAN_TTL.multipliedBy(2)));
+		var recent = this.orphan("recent", Instant.now().minus(ORPHAN_TTL.dividedBy(2)));
+		var live = workspaces.create("test");
+		Files.write(live.file("audio.wav").toPath(), new byte[5]);
+		age(live.directory(), Instant.now().minus(ORPHAN_TTL.multipliedBy(2)));
+		workspaces.reap();
+		Assertions.assertFalse(idle.exists(), "idle orphans should be reaped");
+		Assertions.assertTrue(recent.exists(), "orphans that haven't been idle long enough should be kept");
+		Assertions.assertTrue(live.directory().exists(), "live workspaces should never be reaped, however idle");
+		Assertions.assertEquals(10, this.registry.get("mogul.workspaces.bytes").gauge().value());
+		live.close();
+	}
+
+	@Test
+	void orphansLeftBeforeARestartAreReaped() throws Exception {
+		var idle = this.orphan("idle", Instant.now().minus(ORPHAN_TTL.multipliedBy(2)));
+		this.workspaces(DataSize.ofMegabytes(1));
+		Assertions.assertFalse(idle.exists());
+	}
+
+	private Workspaces workspaces(DataSize quota) {
+		return new Workspaces(this.root, quota, ORPHAN_TTL, this.registry);
+	}
+
+	/** a directory with a file in it, as a crash would leave it */
+	private File orphan(String name, Instant modified) throws Exception {
+		var directory = new File(new File(this.root, "test"), name);
+		Assertions.assertTrue(directory.mkdirs());
+		Files.write(new File(directory, "audio.wav").toPath(), new byte[5]);
+		age(directory, modified);
+		return directory;
+	}
+
+	private static void age(File directory, Instant modified) {
+		var files = directory.listFiles();
+		Assertions.assertNotNull(files);
+		for (var file : files)
+			Assertions.assertTrue(file.setLastModified(modified.toEpochMilli()));
+		Assertions.assertTrue(directory.setLastModified(modified.toEpochMilli()));
+	}
+
+}